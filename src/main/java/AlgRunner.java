@@ -7,52 +7,143 @@ import org.cloudbus.cloudsim.provisioners.RamProvisionerSimple;
 import java.io.*;
 import java.text.DecimalFormat;
 import java.util.*;
-import java.util.function.Consumer;
-import java.util.function.Supplier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
 
 public class AlgRunner {
 
-    // string constants
-    private static final String
-            COMMA_DELIMITER = ",";
-
     //input paths
-    private static String
+    private final String
 
             vm_path,
             moer_path;
 
     private static final DecimalFormat dft = new DecimalFormat("##############0.###");
 
-    private static int numVMs, numDCs = 2;
-    private static boolean fast;
+    // size of the simulated datacenters (see createDatacenter)
+    public static final int NUM_DCS = 2, HOSTS_PER_DC = 10, PES_PER_HOST = 30;
+    // cores available in all datacenters together
+    public static final int CAPACITY = NUM_DCS * HOSTS_PER_DC * PES_PER_HOST;
 
-    // lists
-    private static List<Cloudlet> cloudletList;
-    public static List<Vm> vmlist, vmflist;
-    // MOER data (index represents how many 5-minute intervals have passed since start of month, value represents MOER (CO2 lbs/MWh) at that time)
-    public static List<Integer> MOER, PMOER;
+    private final int numVMs, numDCs = NUM_DCS;
+    private final boolean fast, stream;
+
+    // the VM trace, read once and shared by every cycle (not loaded in streaming mode)
+    private VmTrace trace;
 
-    // datacenter-related
-    private static Datacenter[] datacenters;
-    private static DatacenterBroker broker;
+    // MOER data (index represents how many 5-minute intervals have passed since start of month, value represents MOER (CO2 lbs/MWh) at that time)
+    private MoerSeries MOER, PMOER;
 
-    // carbon & waste (is updated after each simulation)!
-    public static double lastCarbon, lastWaste;
-    public static double[] lastDelay;
+    private volatile double[] baseResult;
 
-    private static long lastStart;
-    private static double[] baseResult;
+    // cycles that run at the same time in display mode (each one is a whole CloudSim simulation, see #setDisplayThreads)
+    private int displayThreads = 1;
 
-    // constructor sets the input paths
+    // constructor sets the input paths and reads the input files
     public AlgRunner(String vm_path, String moer_path, int numVMs, boolean fast) throws IOException
     {
-        this.baseResult = null; this.vm_path = vm_path; this.moer_path = moer_path; this.numVMs = numVMs; this.fast = fast; this.MOER = new ArrayList<>(); this.PMOER = new ArrayList<>(); init_MOER();
+        this(vm_path, moer_path, numVMs, fast, false);
+    }
+
+    /**
+     * @param stream true to evaluate the VM trace batch by batch instead of loading it (see CycleRun#simRunStream),
+     *               for traces that don't fit into memory. Only works together with fast, and only runs cycles whose
+     *               algorithms work on one vm at a time (see Pipeline#isPerVm).
+     */
+    public AlgRunner(String vm_path, String moer_path, int numVMs, boolean fast, boolean stream) throws IOException
+    {
+        if(stream && !fast) throw new IllegalArgumentException("streaming mode only works in fast mode");
+        this.baseResult = null; this.vm_path = vm_path; this.moer_path = moer_path; this.numVMs = numVMs; this.fast = fast; this.stream = stream; init_MOER();
+        if(!stream) init_trace();
     }
-    public static void setBaseResult(double[] result)
+    // same trace, other MOER data (see #forRegion)
+    private AlgRunner(AlgRunner other, String moer_path) throws IOException
+    {
+        this.baseResult = null; this.vm_path = other.vm_path; this.moer_path = moer_path; this.numVMs = other.numVMs;
+        this.fast = other.fast; this.stream = other.stream; this.trace = other.trace; this.displayThreads = other.displayThreads; init_MOER();
+    }
+
+    /**
+     * Creates a runner for the same vms in another grid region, e.g. to compare the regions (see ParetoExplorer).
+     * Only the MOER data is read, the trace is shared with this runner.
+     *
+     * @param moer_path path to the MOER data of the region
+     * @return the runner
+     * @throws IOException b/c reading from file...
+     */
+    public AlgRunner forRegion(String moer_path) throws IOException
+    {
+        return new AlgRunner(this, moer_path);
+    }
+
+    public void setBaseResult(double[] result)
     {
         baseResult = result;
     }
+
+    /**
+     * Sets how many cycles run at the same time in display mode (see #runCycles). Every cycle runs its own CloudSim simulation
+     * (see CloudSim#getContext) and keeps all of its VMs and cloudlets in memory, so the default is 1 (one after another).
+     *
+     * @param threads the number of cycles to run at the same time
+     */
+    public void setDisplayThreads(int threads)
+    {
+        if(threads < 1) throw new IllegalArgumentException("the number of threads should be positive, but is " + threads);
+        displayThreads = threads;
+    }
+
+    public boolean isFast() {return fast;}
+    public boolean isStream() {return stream;}
+
+    /**
+     * @return a new table of the vms (as read, without any algorithm applied), for evaluations outside of a cycle
+     */
+    public VmTable newTable()
+    {
+        if(trace == null) throw new IllegalStateException("the trace isn't loaded in streaming mode");
+        return new VmTable(trace, MOER, PMOER);
+    }
+
+    public MoerSeries getMOER() {return MOER;}
+    public MoerSeries getPMOER() {return PMOER;}
+
+    /**
+     * One simulation cycle to run: its name, the algorithms to apply and where to write the results (display mode only).
+     */
+    public static final class Cycle
+    {
+        final String name, sp, svmlp;
+        final Pipeline pipeline;
+
+        /**
+         * @param name the name of the simulation
+         * @param save_carbon the carbon-saving algorithm (runs on all vms of the cycle)
+         * @param vm_adjuster adjusts one vm (given the table and the vm id)
+         * @param sp path to the output file to contain cloudlets' final states
+         * @param svmlp path to the output file to contain adjusted vms
+         */
+        public Cycle(String name, Function<VmTable, double[]> save_carbon, ObjIntConsumer<VmTable> vm_adjuster, String sp, String svmlp)
+        {
+            this(name, new Pipeline().table(save_carbon).each(vm_adjuster), sp, svmlp);
+        }
+
+        /**
+         * @param name the name of the simulation
+         * @param pipeline the algorithms to apply, in order
+         * @param sp path to the output file to contain cloudlets' final states
+         * @param svmlp path to the output file to contain adjusted vms
+         */
+        public Cycle(String name, Pipeline pipeline, String sp, String svmlp)
+        {
+            this.name = name; this.pipeline = pipeline; this.sp = sp; this.svmlp = svmlp;
+        }
+    }
+
     //------------Below are initialization functions------------//
 
     private static Datacenter createDatacenter(String name)
@@ -63,16 +154,16 @@ public class AlgRunner {
         //    our machine
         List<Host> hostList = new ArrayList<>();
 
-        for(int i = 0; i < 10; i++) {
+        for(int i = 0; i < HOSTS_PER_DC; i++) {
             // 2. A Machine contains one or more PEs or CPUs/Cores.
             // In this example, it will have only one core.
             List<Pe> peList = new ArrayList<>();
 
-            int mips = Integer.MAX_VALUE / 30;
+            int mips = Integer.MAX_VALUE / PES_PER_HOST;
 
             // 3. Create PEs and add these into a list.
-            for(int j = 0; j < 30; j++)
-                peList.add(new Pe(i * 30 + j, new PeProvisionerSimple(mips))); // need to store Pe id and MIPS Rating
+            for(int j = 0; j < PES_PER_HOST; j++)
+                peList.add(new Pe(i * PES_PER_HOST + j, new PeProvisionerSimple(mips))); // need to store Pe id and MIPS Rating
 
             //4. Create Host with its id and list of PEs and add them to the list of machines
             int hostId = i;
@@ -144,269 +235,538 @@ public class AlgRunner {
     }
 
     /**
-     * Initialize datacenter(s).
+     * Initialize moer data from one month (same time interval as VM shortlist timestamps).
+     *
+     * @throws IOException b/c reading from file...
      */
-    private static void init_datacenters()
+    private void init_MOER() throws IOException
     {
-        for(int i = 0; i < datacenters.length; i++)
-            datacenters[i] = createDatacenter("Datacenter_" + i);
+        // the file is split up and parsed in parallel, chunks come back in file order
+        List<MoerChunk> chunks = ParallelCsvReader.read(moer_path, true, MoerChunk::new, Integer.MAX_VALUE);
+        int n = 0;
+        for(MoerChunk chunk : chunks) n += chunk.n;
+
+        int[] moer = new int[n], pmoer = new int[n];
+        int pos = 0;
+        for(MoerChunk chunk : chunks)
+        {
+            System.arraycopy(chunk.moer, 0, moer, pos, chunk.n);
+            System.arraycopy(chunk.pmoer, 0, pmoer, pos, chunk.n);
+            pos += chunk.n;
+        }
+        MOER = new MoerSeries(moer);
+        PMOER = new MoerSeries(pmoer);
     }
 
     /**
-     * Initialize moer data from one month (same time interval as VM shortlist timestamps).
-     *
-     * @throws IOException b/c reading from file...
+     * The MOER values of one byte range of the MOER file.
      */
-    private static void init_MOER() throws IOException
+    private static final class MoerChunk extends ParallelCsvReader.ChunkParser
     {
-        BufferedReader br = new BufferedReader(new FileReader(moer_path));
-
-        String line;
-        br.readLine(); // flush the useless header line
+        int n;
+        int[] moer = new int[1 << 12], pmoer = new int[1 << 12];
 
-        while((line = br.readLine()) != null)
+        @Override
+        void row(ParallelCsvReader.Row row)
         {
-            String[] values = line.split(COMMA_DELIMITER);
-            MOER.add((int)Double.parseDouble(values[0]));
-            PMOER.add((int)Double.parseDouble(values[1]));
+            if(n == moer.length) {moer = Arrays.copyOf(moer, n * 2); pmoer = Arrays.copyOf(pmoer, n * 2);}
+            moer[n] = (int)row.getDouble(0);
+            pmoer[n] = (int)row.getDouble(1);
+            n++;
         }
 
-        br.close();
+        @Override
+        int size() {return n;}
     }
 
     /**
-     * Initialize the VM list. Vm data from VM shortlist.
+     * Read the VM trace (only once, all cycles share the parsed trace).
+     * If the trace was converted to the binary format (see VmTraceConverter), the binary file is memory-mapped instead.
      *
      * @throws IOException b/c reading from file...
      */
-    private static void init_VMs(Supplier<double[]> carbon_adjuster, Consumer<Vm> vm_adjuster) throws IOException
+    private void init_trace() throws IOException
     {
+        long start = System.currentTimeMillis();
+        trace = VmTrace.load(vm_path, numVMs);
+        if(SimMain.fullOutput) System.out.println(duration(start, "read VM trace"));
+    }
+
 
-        //Fourth step: Create VMs
-        int brokerId = broker.getId();
-        BufferedReader br = new BufferedReader(new FileReader(vm_path));
+    //------------Below are simulation functions-----------//
+
+
+    /**
+     * Runs one cycle of the program.
+     * One cycle includes:
+     *  initialization of the cloud simulation,
+     *  **execution of carbon+waste-saving algorithm**,
+     *  execution of CloudSim simulation,
+     *  outputting results+data to files and console.
+     *
+     * @param name the name of the simulation
+     * @param save_carbon **the Function referencing the carbon-saving algorithm function (runs on all vms of the cycle)**
+     * @param vm_adjuster **the Consumer referencing a function that adjusts one vm (given the table and the vm id)**
+     * @param sp path to the output file to contain cloudlets' final states
+     * @param svmlp path to the output file to contain adjusted vms
+     * @return returns an array: {[carbon that was emitted (lbs CO2)], [wasted money ($)], [avg. delay (hrs)], [avg. delay of postponed vms (hrs)]}
+     */
+    public double[] runCycle(String name, Function<VmTable, double[]> save_carbon, ObjIntConsumer<VmTable> vm_adjuster, String sp, String svmlp)
+    {
+        return runCycles(Collections.singletonList(new Cycle(name, save_carbon, vm_adjuster, sp, svmlp))).get(0);
+    }
 
-        UtilizationModel utilizationModel = new UtilizationModelFull();
+    /**
+     * Runs one cycle of the program (see #runCycle) with the algorithms as a pipeline.
+     *
+     * @param name the name of the simulation
+     * @param pipeline the algorithms to apply, in order
+     * @param sp path to the output file to contain cloudlets' final states
+     * @param svmlp path to the output file to contain adjusted vms
+     * @return see #runCycle
+     */
+    public double[] runCycle(String name, Pipeline pipeline, String sp, String svmlp)
+    {
+        return runCycles(Collections.singletonList(new Cycle(name, pipeline, sp, svmlp))).get(0);
+    }
 
-        // read data from vmtable.csv
-        String line;
+    /**
+     * Runs several cycles (see #runCycle).
+     * In fast mode the cycles don't share any mutable state, so they run concurrently on a bounded thread pool.
+     * In display mode every cycle runs its own CloudSim simulation on its thread; they run concurrently with more than one
+     * display thread (see #setDisplayThreads) and one after another otherwise.
+     * Either way, the console output (and the CloudSim log) of each cycle is printed as a block and in the order of the given cycles.
+     *
+     * @param cycles the cycles to run
+     * @return the result of each cycle (see #runCycle), in the same order as the cycles
+     */
+    public List<double[]> runCycles(List<Cycle> cycles)
+    {
+        return runCycles(cycles, true);
+    }
 
-        //flush useless header line
-        br.readLine();
+    /**
+     * Runs several cycles (see #runCycles(List)).
+     *
+     * @param cycles the cycles to run
+     * @param print false to drop the console output of the cycles (e.g. for parameter sweeps)
+     * @return the result of each cycle (see #runCycle), in the same order as the cycles
+     * @throws IllegalArgumentException in streaming mode, if a cycle has an algorithm that works on the whole table
+     */
+    public List<double[]> runCycles(List<Cycle> cycles, boolean print)
+    {
+        if(stream)
+        {
+            for(Cycle c : cycles)
+            {
+                if(!c.pipeline.isPerVm())
+                    throw new IllegalArgumentException("streaming mode only runs algorithms that work on one vm at a time, '" + c.name + "' doesn't");
+            }
+        }
+        List<double[]> results = new ArrayList<>(cycles.size());
+        int threads = Math.min(fast ? Runtime.getRuntime().availableProcessors() : displayThreads, cycles.size());
+        if(threads <= 1)
+        {
+            for(Cycle c : cycles)
+            {
+                results.add(new CycleRun(c, !print, false).run());
+            }
+            return results;
+        }
 
-        while(vmlist.size() < numVMs)
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "cycle-runner");
+            t.setDaemon(true);
+            return t;
+        });
+        try
+        {
+            List<CycleRun> runs = new ArrayList<>(cycles.size());
+            List<Future<double[]>> futures = new ArrayList<>(cycles.size());
+            for(Cycle c : cycles)
+            {
+                CycleRun run = new CycleRun(c, true, !fast);
+                runs.add(run);
+                futures.add(pool.submit(run::run));
+            }
+            for(int i = 0; i < futures.size(); i++)
+            {
+                results.add(futures.get(i).get());
+                if(print) System.out.print(runs.get(i).out);
+                runs.get(i).writeLog();
+            }
+            return results;
+        }
+        catch(InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while running cycles", ex);
+        }
+        catch(ExecutionException ex)
+        {
+            Throwable cause = ex.getCause();
+            if(cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if(cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+        finally
         {
-            if ((line = br.readLine()) == null) break;
-
-            String[] values = line.split(COMMA_DELIMITER);
-            boolean missingValue = false; for(String s : values) if(s.equals("")) {missingValue = true; break;}
-            if(missingValue) continue;
-
-            int
-                    vmid = vmlist.size(), // Vm ID
-                    ram = (int)Double.parseDouble(values[6]) * 1000, //RAM in MB
-                    numCPUCore = (int)Double.parseDouble(values[5]), //Number of CPUs requested
-                    mips = 1000, // Million instructions per second (using default value of 1000)
-                    bw = 1000, // bandwidth (using default value of 1000)
-                    size = 10000, // idk what this size is specifically referring to
-                    startTime = (int)(Double.parseDouble(values[0])),
-                    endTime = (int)(Double.parseDouble(values[1]));
-            double
-                    avgUtil = Double.parseDouble(values[3]) / 100,
-                    maxUtil = Double.parseDouble(values[2]) / 100,
-                    p95 = Double.parseDouble(values[4]) / 100,
-                    power = Double.parseDouble(values[8]);
-            String
-                    vmm = "Windows Hyper-V"; // Azure uses this virtual machine manager (hypervisor)
-
-
-            Vm vm = new Vm(
-                    vmid,
-                    brokerId,
-                    mips,
-                    numCPUCore,
-                    ram,
-                    bw,
-                    size,
-                    vmm,
-                    avgUtil,
-                    maxUtil,
-                    p95,
-                    startTime,
-                    endTime,
-                    power,
-                    MOER,
-                    PMOER,
-                    new CloudletSchedulerTimeShared());
-
-            if(endTime - startTime >= 2100 && endTime - startTime <= 86100) vmflist.add(vm);
-            vmlist.add(vm);
+            pool.shutdownNow();
         }
+    }
 
-        lastDelay = carbon_adjuster.get(); // adjust all vms' start+end times to reduce moer if possible
+    /**
+     * The state of one running cycle. Every cycle gets its own, so cycles can run at the same time.
+     */
+    private final class CycleRun
+    {
+        private final Cycle cycle;
 
-        for(int i = 0; i < vmlist.size(); i++)
-        {
-            Vm currVm = vmlist.get(i);
+        // the VMs of this cycle (vmlist is only filled in display mode)
+        private VmTable table;
 
-            //System.out.println(currVm);
+        // lists
+        private List<Cloudlet> cloudletList;
+        private List<Vm> vmlist;
 
-            vm_adjuster.accept(currVm);
+        // datacenter-related (display mode only)
+        private Datacenter[] datacenters;
+        private DatacenterBroker broker;
 
-            //System.out.println(currVm);
-            //System.out.println();
+        // results of this cycle
+        private double carbon, waste;
+        private double[] delay;
 
-            // skip pointless stuff
-            if(fast) continue;
-
-            int pesNumber=1;
-            long length = (long) (currVm.getTime()[1] - currVm.getTime()[0]) * (long) currVm.getMips();
-            long fileSize = 300;
-            long outputSize = 300;
-
-            Cloudlet cloudlet =
-                    new Cloudlet(
-                            i,
-                            length,
-                            pesNumber,
-                            fileSize,
-                            outputSize,
-                            utilizationModel,
-                            utilizationModel,
-                            utilizationModel,
-                            currVm.getTime()[0]);
-            cloudlet.setUserId(brokerId);
-
-            cloudletList.add(cloudlet);
+        // console output of this cycle, null if it is printed right away
+        private final StringBuilder out;
+        // CloudSim log of this cycle, null if it is written to the log right away
+        private final ByteArrayOutputStream log;
+        private long lastStart;
+
+        CycleRun(Cycle cycle, boolean buffered, boolean bufferedLog)
+        {
+            this.cycle = cycle; this.out = buffered ? new StringBuilder() : null; this.log = bufferedLog ? new ByteArrayOutputStream() : null;
         }
 
-        br.close();
-        System.out.println("Number of VMs included in simulation: " + vmlist.size());
-    }
+        private void print(String s)
+        {
+            if(out != null) out.append(s);
+            else System.out.print(s);
+        }
 
-    /**
-     * initialize data: CloudSim, datacenters, broker, VMs, MOER.
-     * (calls init_MOER + init_VMs + init_datacenters)
-     */
-    private static void init_data(Supplier<double[]> carbon_adjuster, Consumer<Vm> vm_adjuster) {
-        startHere();
-        vmlist = new ArrayList<>(); vmflist = new ArrayList<>();
-        cloudletList = new ArrayList<>();
-        datacenters = new Datacenter[numDCs];
-
-        // First step: Initialize the CloudSim package. It should be called
-        // before creating any entities.
-        int num_user = 1; // number of cloud users
-        Calendar calendar = Calendar.getInstance();
-
-        // Initialize the CloudSim library
-        CloudSim.init(num_user, calendar, false);
-
-        // Second step: Create Datacenters
-        //Datacenters are the resource providers in CloudSim. We need at list one of them to run a CloudSim simulation
-        init_datacenters();
-
-        // Fourth step: create vms
-        broker = createBroker();
-        try{
-            init_VMs(carbon_adjuster, vm_adjuster);
+        double[] run()
+        {
+            if(log == null) return simulate();
+            Log.setThreadOutput(log);
+            try
+            {
+                return simulate();
+            }
+            finally
+            {
+                Log.setThreadOutput(null);
+            }
         }
-        catch (Exception ex) // data initialization from .csv failed somehow
+
+        // writes the buffered CloudSim log of this cycle to the log
+        void writeLog()
         {
-            ex.printStackTrace();
+            if(log == null || log.size() == 0) return;
+            try
+            {
+                log.writeTo(Log.getOutput());
+            }
+            catch(IOException ex)
+            {
+                ex.printStackTrace();
+            }
         }
 
-        //submit vm list to the broker
-        broker.submitVmList(vmlist);
+        private double[] simulate()
+        {
+            if(!fast)
+            {
+                Log.print("\n\n\n\n\n");
+                Log.printLine("|--------------SIMULATION WITH \'" + cycle.name.toUpperCase() +"\' STARTS HERE--------------|");
+                Log.print("\n\n\n\n\n");
+            }
+
+
+            if(stream)
+            {
+                // reads, adjusts and evaluates the vms in one pass
+                simRunStream();
+                printResults(cycle.name);
+                return new double[]{carbon, waste, delay[0], delay[1]};
+            }
+
+            /* Initialize refrences, csv data, cloudSim, brokers, etc... (again bc we are starting/restarting)
+             * ALSO, run our MOER/CO2-saving algorithm after initialization of vms from input csv! (this will modify start-end times of VM runtimes)
+             */
+            init_data();
+
+            /* Re-run the cloud simulation using start-end times that were adjusted by our algorithm.
+             * Writes new cloudlet results to file
+             * Writes vms (with now adjusted times) that were simulated to file
+             */
+            if (!fast) simRunDisplay(cycle.sp, cycle.svmlp);
+            else simRunFast(); // this doesn't write cloudlet/vm info to the files but that can be easily added if needed in the future.
+            printResults(cycle.name);
+            return new double[]{carbon, waste, delay[0], delay[1]};
+        }
 
-        //submit cloudlet list to the broker
-        broker.submitCloudletList(cloudletList);
+        /**
+         * Initialize datacenter(s).
+         */
+        private void init_datacenters()
+        {
+            for(int i = 0; i < datacenters.length; i++)
+                datacenters[i] = createDatacenter("Datacenter_" + i);
+        }
 
+        /**
+         * Initialize the VMs of this cycle from the (already parsed) VM trace and run the algorithms on them (display mode).
+         * The algorithms work on a VmTable, so the shared trace is never modified and no Vm objects are needed in fast mode.
+         * Only the display mode builds Vm objects (+ cloudlets) from the adjusted table.
+         * In fast mode the algorithms run in simRunFast instead, fused with the sums (see Pipeline).
+         */
+        private void init_VMs()
+        {
+            table = new VmTable(trace, MOER, PMOER);
 
-        //bind the cloudlets to the vms.
-        if(!fast) for(int i = 0; i < vmlist.size(); i++) broker.bindCloudletToVm(cloudletList.get(i).getCloudletId(), vmlist.get(i).getId());
-        printDuration("initialize data");
-    }
+            if(!fast) delay = cycle.pipeline.apply(table); // adjust all vms' start+end times to reduce moer if possible
 
+            // skip pointless stuff
+            if(!fast)
+            {
+                //Fourth step: Create VMs
+                int brokerId = broker.getId();
+
+                UtilizationModel utilizationModel = new UtilizationModelFull();
+
+                for(int vmid = 0; vmid < table.size(); vmid++)
+                {
+                    int
+                            mips = 1000, // Million instructions per second (using default value of 1000)
+                            bw = 1000, // bandwidth (using default value of 1000)
+                            size = 10000; // idk what this size is specifically referring to
+                    String
+                            vmm = "Windows Hyper-V"; // Azure uses this virtual machine manager (hypervisor)
+
+                    Vm currVm = new Vm(
+                            vmid,
+                            brokerId,
+                            mips,
+                            table.getCores(vmid),
+                            table.getRam(vmid),
+                            bw,
+                            size,
+                            vmm,
+                            table.getAvgUtil(vmid),
+                            table.getMaxUtil(vmid),
+                            table.getP95(vmid),
+                            table.getStart(vmid),
+                            table.getEnd(vmid),
+                            table.getPower(vmid),
+                            MOER,
+                            PMOER,
+                            new CloudletSchedulerTimeShared());
+                    if(table.getSegments(vmid) != null) currVm.setSegments(table.getSegments(vmid));
+                    vmlist.add(currVm);
+
+                    int pesNumber=1;
+                    long length = (long) currVm.getRuntime() * (long) currVm.getMips();
+                    long fileSize = 300;
+                    long outputSize = 300;
+
+                    Cloudlet cloudlet =
+                            new Cloudlet(
+                                    vmid,
+                                    length,
+                                    pesNumber,
+                                    fileSize,
+                                    outputSize,
+                                    utilizationModel,
+                                    utilizationModel,
+                                    utilizationModel,
+                                    currVm.getTime()[0]);
+                    cloudlet.setUserId(brokerId);
+
+                    cloudletList.add(cloudlet);
+                }
+            }
+
+            print("Number of VMs included in simulation: " + table.size() + "\n");
+        }
 
-    //------------Below are simulation functions-----------//
+        /**
+         * initialize data: CloudSim, datacenters, broker (display mode only) and the VMs.
+         * (calls init_datacenters + init_VMs)
+         */
+        private void init_data() {
+            startHere();
+            vmlist = new ArrayList<>(fast ? 0 : trace.size());
+            cloudletList = new ArrayList<>(fast ? 0 : trace.size());
 
+            // CloudSim is only needed (and only set up) in display mode, every cycle gets its own simulation (see CloudSim#getContext)
+            if(!fast)
+            {
+                datacenters = new Datacenter[numDCs];
 
-    /**
-     * Runs one cycle of the program.
-     * One cycle includes:
-     *  initialization of the cloud simulation,
-     *  **execution of carbon+waste-saving algorithm**,
-     *  execution of CloudSim simulation,
-     *  outputting results+data to files and console.
-     *
-     * @param name the name of the simulation
-     * @param save_carbon **the Runnable referencing the carbon-saving algorithm function**
-     * @param vm_adjuster **the Consumer referencing a function that adjusts the vms as they are read from file**
-     * @param sp path to the output file to contain cloudlets' final states
-     * @param svmlp path to the output file to contain adjusted vms
-     * @return returns an array: {[carbon that was emitted (lbs CO2)], [wasted money ($)]}
-     */
-    public static double[] runCycle(String name, Supplier<double[]> save_carbon, Consumer<Vm> vm_adjuster, String sp, String svmlp)
-    {
-        Log.print("\n\n\n\n\n");
-        Log.printLine("|--------------SIMULATION WITH \'" + name.toUpperCase() +"\' STARTS HERE--------------|");
-        Log.print("\n\n\n\n\n");
+                // First step: Initialize the CloudSim package. It should be called
+                // before creating any entities.
+                int num_user = 1; // number of cloud users
+                Calendar calendar = Calendar.getInstance();
 
+                // Initialize the CloudSim library
+                CloudSim.init(num_user, calendar, false);
 
-        /* Initialize refrences, csv data, cloudSim, brokers, etc... (again bc we are starting/restarting)
-         * ALSO, run our MOER/CO2-saving algorithm after initialization of vms from input csv! (this will modify start-end times of VM runtimes)
-         */
-        init_data(save_carbon, vm_adjuster);
+                // Second step: Create Datacenters
+                //Datacenters are the resource providers in CloudSim. We need at list one of them to run a CloudSim simulation
+                init_datacenters();
 
-        /* Re-run the cloud simulation using start-end times that were adjusted by our algorithm.
-         * Writes new cloudlet results to file
-         * Writes vms (with now adjusted times) that were simulated to file
-         */
-        if (!fast) simRunDisplay(sp, svmlp);
-        else simRunFast(); // this doesn't write cloudlet/vm info to the files but that can be easily added if needed in the future.
-        printResults(name);
-        return new double[]{lastCarbon, lastWaste, lastDelay[0], lastDelay[1]};
-    }
+                broker = createBroker();
+            }
 
-    /**
-     * use when want to output more stuff
-     * */
-    private static void simRunDisplay(String cloudletFN, String vmFN)
-    {
-        startHere();
-        CloudSim.startSimulation();
+            // Fourth step: create vms
+            init_VMs();
 
+            if(!fast)
+            {
+                //submit vm list to the broker
+                broker.submitVmList(vmlist);
 
-        List<Cloudlet> newList = broker.getCloudletReceivedList();
+                //submit cloudlet list to the broker
+                broker.submitCloudletList(cloudletList);
 
-        CloudSim.stopSimulation();
-        printDuration("run disp. cloudSim");
-        try
+
+                //bind the cloudlets to the vms.
+                for(int i = 0; i < vmlist.size(); i++) broker.bindCloudletToVm(cloudletList.get(i).getCloudletId(), vmlist.get(i).getId());
+            }
+            printDuration("initialize data");
+        }
+
+        /**
+         * use when want to output more stuff
+         * */
+        private void simRunDisplay(String cloudletFN, String vmFN)
         {
-            FileOutputStream vmstream = new FileOutputStream(vmFN);
-            printVMList(vmlist, vmstream);
-            vmstream.close();
-            FileOutputStream fileOutputStream = new FileOutputStream(cloudletFN);
-            printCloudletList(newList, fileOutputStream);
-            fileOutputStream.close();
-        } catch(Exception ex)
+            startHere();
+            CloudSim.startSimulation();
+
+
+            List<Cloudlet> newList = broker.getCloudletReceivedList();
+
+            CloudSim.stopSimulation();
+            printDuration("run disp. cloudSim");
+            if(SimMain.fullOutput && CloudSim.getEventPool() != null) print(CloudSim.getEventPool() + "\n");
+            try
+            {
+                FileOutputStream vmstream = new FileOutputStream(vmFN);
+                printVMList(vmlist, vmstream);
+                vmstream.close();
+                FileOutputStream fileOutputStream = new FileOutputStream(cloudletFN);
+                double[] totals = printCloudletList(newList, fileOutputStream);
+                carbon = totals[0]; waste = totals[1];
+                fileOutputStream.close();
+            } catch(Exception ex)
+            {
+                ex.printStackTrace();
+            }
+        }
+
+        /**
+         * made a new sim function. reason: simRunDisplay is too slow
+         * much simpler and faster "version" of cloudSim that only does what we need it to, with minimal amounts of head-cracking.
+         * */
+        private void simRunFast()
         {
-            ex.printStackTrace();
+            //step 1: loop over vms (the algorithms + the sums, fused into as few passes as possible, see Pipeline).
+            startHere();
+            double[] totals = cycle.pipeline.applyAndSum(table); // compensated, see VmTable
+            carbon = totals[0]; waste = totals[1];
+            delay = Arrays.copyOfRange(totals, 2, totals.length);
+            printDuration("run faster simulation");
+            //step 2: finished -_-
         }
-    }
 
-    /**
-     * made a new sim function. reason: simRunDisplay is too slow
-     * much simpler and faster "version" of cloudSim that only does what we need it to, with minimal amounts of head-cracking.
-     * */
-    private static void simRunFast()
-    {
-        //step 1: loop over vms.
-        lastCarbon = 0; lastWaste = 0; startHere();
-        for(Vm vm : vmlist) {lastCarbon += vm.getCarbon(); lastWaste += vm.getWaste();}
-        printDuration("run faster simulation");
-        //step 2: finished -_-
+        /**
+         * Streaming version of init_data + simRunFast: the trace is read batch by batch (see VmTrace#stream),
+         * every batch goes through the algorithms and is folded into running sums right away.
+         * Nothing is kept per VM, so the memory needed doesn't depend on the length of the trace.
+         *
+         * Every batch is a table of its own, so only per-vm stages give the same adjustments as on the whole trace (see
+         * Pipeline#isPerVm, checked by #runCycles): CR, SD and RT/RA as reschedule stages, whose memos are per batch but whose
+         * decisions only depend on the vm and the MOER. Whole-table stages like CA (tracks the load of all vms), IS or RS
+         * would only see one batch at a time and are refused. Delays are averaged over all batches, which requires the last
+         * stage that moves vms to also return the number of adjusted vms (like Pipeline.Rescheduling#delays does).
+         */
+        private void simRunStream()
+        {
+            startHere();
+            CompensatedSum carbonSum = new CompensatedSum(), wasteSum = new CompensatedSum(), delaySum = new CompensatedSum();
+            long[] counts = {0, 0}; // {vms, adjusted vms}
+            boolean[] countsAdjusted = {false};
+            try
+            {
+                VmTrace.stream(vm_path, numVMs, batch -> {
+                    VmTable t = new VmTable(batch, MOER, PMOER);
+
+                    double[] totals = cycle.pipeline.applyAndSum(t);
+                    delaySum.add(totals[2] * t.size()); // avg. delay * number of vms = total delay (hrs)
+                    if(totals.length > 4) {counts[1] += (long) totals[4]; countsAdjusted[0] = true;}
+                    carbonSum.add(totals[0]); wasteSum.add(totals[1]);
+                    counts[0] += t.size();
+                });
+            }
+            catch(IOException ex)
+            {
+                throw new UncheckedIOException(ex);
+            }
+
+            carbon = carbonSum.get(); waste = wasteSum.get();
+            delay = new double[]{
+                    counts[0] == 0 ? 0 : delaySum.get() / counts[0],
+                    countsAdjusted[0] ? delaySum.get() / counts[1] : 0};
+            print("Number of VMs included in simulation: " + counts[0] + "\n");
+            printDuration("run streaming simulation");
+        }
+
+        /**
+         * Prints the final results of a simulation
+         */
+        private void printResults(String algName)
+        {
+            double[] base = baseResult;
+            print(algName + ":" +
+                    ((SimMain.fullOutput) ?
+                        "\n" +
+                        "Total carbon emitted: " + dft.format(carbon) + " lbs CO2\n" +
+                        "Total money wasted by users: $" + dft.format(waste) + "\n" +
+                        "Average postponement of runtime over all VMs: " + dft.format(delay[0]) + " hrs\n" +
+                        "Average postponement of postponed VMs: " + dft.format(delay[1]) + " hrs"
+                        :
+                        "\n" +
+                        "Average postponement of runtime over all VMs: " + dft.format(delay[0]) + " hrs\n" +
+                        "Average postponement of postponed VMs: " + dft.format(delay[1]) + " hrs")
+            );
+            if(base != null)
+                print("\n" +
+                    "Saved Carbon: " + dft.format(base[0] - carbon) + " lbs CO2\n" +
+                    "Saved Money: $" + dft.format(base[1] - waste)
+                );
+            print("\n\n\n");
+        }
+
+        private void startHere()
+        {
+            lastStart = System.currentTimeMillis();
+        }
+
+        private void printDuration(String s)
+        {
+            if(SimMain.fullOutput) print(duration(lastStart, s) + "\n");
+        }
     }
 
 
@@ -418,13 +778,14 @@ public class AlgRunner {
      *
      * @param list list of Cloudlets
      * @param ostream output stream (file/console)
+     * @return {total carbon emitted (lbs CO2), total wasted money ($)} of the cloudlets
      */
-    private static void printCloudletList(List<Cloudlet> list, OutputStream ostream)
+    private static double[] printCloudletList(List<Cloudlet> list, OutputStream ostream)
     {
-        lastCarbon = 0.0;
-        lastWaste = 0.0;
-        OutputStream prevOStream = Log.getOutput();
-        Log.setOutput(ostream);
+        double carbon = 0.0;
+        double waste = 0.0;
+        OutputStream prevOStream = Log.getThreadOutput();
+        Log.setThreadOutput(ostream);
 
         Cloudlet cloudlet;
 
@@ -456,11 +817,12 @@ public class AlgRunner {
                     dft.format(cloudlet.getFinishTime()),
                     dft.format(cloudlet.getTotalEmissions()),
                     dft.format(cloudlet.getTotalWaste()));
-            lastCarbon += cloudlet.getTotalEmissions();
-            lastWaste += cloudlet.getTotalWaste();
+            carbon += cloudlet.getTotalEmissions();
+            waste += cloudlet.getTotalWaste();
         }
 
-        Log.setOutput(prevOStream);
+        Log.setThreadOutput(prevOStream);
+        return new double[]{carbon, waste};
     }
 
     /**
@@ -470,8 +832,8 @@ public class AlgRunner {
      */
     private static void printVMList(List<Vm> list, OutputStream ostream)
     {
-        OutputStream prevOStream = Log.getOutput();
-        Log.setOutput(ostream);
+        OutputStream prevOStream = Log.getThreadOutput();
+        Log.setThreadOutput(ostream);
         Log.formatLine("%-10s, %-12s, %-12s, %-14s, %-18s, %-28s, %-28s, %-15s, %-28s",
                 "vm id",
                 "user id",
@@ -486,44 +848,14 @@ public class AlgRunner {
         {
             Log.printLine(vm.toString());
         }
-        Log.setOutput(prevOStream);
-    }
-
-    /**
-     * Prints the final results of a simulation to console
-     */
-    private static void printResults(String algName)
-    {
-        System.out.print(algName + ":" +
-                ((SimMain.fullOutput) ?
-                    "\n" +
-                    "Total carbon emitted: " + dft.format(lastCarbon) + " lbs CO2\n" +
-                    "Total money wasted by users: $" + dft.format(lastWaste) + "\n" +
-                    "Average postponement of runtime over all VMs: " + dft.format(lastDelay[0]) + " hrs\n" +
-                    "Average postponement of postponed VMs: " + dft.format(lastDelay[1]) + " hrs"
-                    :
-                    "\n" +
-                    "Average postponement of runtime over all VMs: " + dft.format(lastDelay[0]) + " hrs\n" +
-                    "Average postponement of postponed VMs: " + dft.format(lastDelay[1]) + " hrs")
-        );
-        if(baseResult != null)
-            System.out.print("\n" +
-                "Saved Carbon: " + dft.format(baseResult[0] - lastCarbon) + " lbs CO2\n" +
-                "Saved Money: $" + dft.format(baseResult[1] - lastWaste)
-            );
-        System.out.print("\n\n\n");
+        Log.setThreadOutput(prevOStream);
     }
 
 
     //-------------Below are diagnostic functions----------//
 
-    private static void startHere()
-    {
-        lastStart = System.currentTimeMillis();
-    }
-
-    private static void printDuration(String s)
+    private static String duration(long start, String s)
     {
-        if(SimMain.fullOutput) System.out.println("Took " + dft.format((double)(System.currentTimeMillis() - lastStart) / 1000) + "s to " + s);
+        return "Took " + dft.format((double)(System.currentTimeMillis() - start) / 1000) + "s to " + s;
     }
 }
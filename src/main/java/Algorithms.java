@@ -1,10 +1,9 @@
-import org.cloudbus.cloudsim.Vm;
+import org.cloudbus.cloudsim.MoerSeries;
 
 import java.text.DecimalFormat;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.function.Function;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class Algorithms {
 
@@ -12,8 +11,13 @@ public class Algorithms {
 
     // realizing that not all users will accept the suggestions, we add an 'acceptance rate'
     /** note to dev: setting all to 1 for consistency when finding max possible emissions*/
-    private final double RT_acceptance = 1, RA_acceptance = 1;
-    private final double shutdown_acceptance = 1, core_reduction_acceptance = 1;
+    private double RT_acceptance = 1, RA_acceptance = 1;
+    private double shutdown_acceptance = 1, core_reduction_acceptance = 1;
+    private double CA_acceptance = 1, IS_acceptance = 1;
+
+    // source of the acceptance decisions. null = ThreadLocalRandom (not reproducible),
+    // otherwise a seeded generator that is only used by one cycle (see MonteCarlo)
+    private final SplittableRandom random;
 
     // adjustable moer threshold
     private int moer_thresh = 810;
@@ -22,18 +26,29 @@ public class Algorithms {
 
     private double u_idle = 0.01;
 
+    // cores available per 5 min. interval for CA (all datacenters together)
+    private int capacity = AlgRunner.CAPACITY;
+    // max number of windows CA tries per vm before it leaves the vm where it is
+    private static final int CA_MAX_TRIES = 32;
+
     // contains all possible core counts of vms
-    private final int[] CC_VALS = new int[]{2, 4, 8, 12, 24, 30};
+    private static final int[] CC_VALS = new int[]{2, 4, 8, 12, 24, 30};
+
+    // the sizes RS can move a vm to
+    private SkuCatalog catalog = SkuCatalog.defaults();
 
     // stores the threshold for the max p95.
     // it is assumed that once the cpu utilization exceeds this percentage, the vm will experience some kind of performance degradation or lag.
     private double p95Thresh = 0.8, wasteThresh = 5;
 
-    private static long lastStart;
+    // marks a decision that wasn't computed yet (see runRT/runRA)
+    private static final int UNKNOWN = Integer.MIN_VALUE;
+
     private static final DecimalFormat dft = new DecimalFormat("##############0.########");
     
     public Algorithms(){
-        System.out.println(
+        this.random = null;
+        if(SimMain.fullOutput) System.out.println(
                 "Params/assumptions being used: \n" +
                         "\tRT: \n" +
                         "\t\t- moer threshold: " + this.moer_thresh + "\n" +
@@ -57,13 +72,34 @@ public class Algorithms {
      */
     public Algorithms(Integer moer_thresh, Integer confidence_thresh, Double p95Thresh, Double wasteThresh, Double u_idle)
     {
+        this(moer_thresh, confidence_thresh, p95Thresh, wasteThresh, u_idle, null, null);
+    }
+
+    /**
+     * Allows for adjusted behavior + partial acceptance of the suggestions.
+     *
+     * Acceptance decisions are drawn from the given generator, which makes a cycle reproducible.
+     * The generator isn't thread-safe, so an instance created with a generator must only be used by one cycle at a time.
+     *
+     * @param acceptance {RT, RA, core reduction, shutdown} acceptance rates in [0, 1], null = all 1
+     * @param random source of the acceptance decisions, null = ThreadLocalRandom
+     */
+    public Algorithms(Integer moer_thresh, Integer confidence_thresh, Double p95Thresh, Double wasteThresh, Double u_idle, double[] acceptance, SplittableRandom random)
+    {
+        if(acceptance != null)
+        {
+            if(acceptance.length != 4) throw new IllegalArgumentException("expected 4 acceptance rates, got " + acceptance.length);
+            this.RT_acceptance = acceptance[0]; this.RA_acceptance = acceptance[1];
+            this.core_reduction_acceptance = acceptance[2]; this.shutdown_acceptance = acceptance[3];
+        }
+        this.random = random;
         this.moer_thresh = (moer_thresh == null) ? this.moer_thresh: moer_thresh;
         this.confidence_thresh = (confidence_thresh == null) ? this.confidence_thresh : confidence_thresh;
         this.p95Thresh = (p95Thresh == null) ? this.p95Thresh: p95Thresh;
         this.wasteThresh = (wasteThresh == null) ? this.wasteThresh: wasteThresh;
         this.u_idle = (u_idle == null) ? this.u_idle: u_idle;
 
-        System.out.println(
+        if(SimMain.fullOutput) System.out.println(
                 "Params being used: \n" +
                         "\tRT: \n" +
                         "\t\t- moer threshold: " + this.moer_thresh + "\n" +
@@ -86,243 +122,500 @@ public class Algorithms {
      * This algorithm will adjust the start and end times of each vm such that they are moer-efficient (running at time with lower MOER).
      *
      * @todo may develop a hybrid algorithm between RT & RA to find a compromise between runtime and moer-efficiency (later).
-     * @return the average delay of vms (over all vms including vms that were not adjusted) in hrs
+     * @param vms the vms of the current cycle
+     * @return the average delay of vms (over all vms including vms that were not adjusted) in hrs,
+     *         the average delay of the adjusted vms in hrs and the number of adjusted vms
      */
-    public double[] runRT()
+    public double[] runRT(VmTable vms)
     {
-        startHere();
-
-        class mwindow
-        {
-            // bounds of window
-            // these times are in INDEXES (index = 5 min).
-            final int start, end, length;
+        long startTime = startHere();
+        Pipeline.Rescheduling rt = rescheduleRT(vms);
+        for(int f = 0; f < vms.numFlexible(); f++) rt.accept(vms, vms.flexibleAt(f));
+        printDuration("run RT", startTime);
+        return rt.delays();
+    }
 
-            // avg moer over window
-            final double avgPMOER;
+    /**
+     * RT one vm at a time (see runRT), e.g. as a stage of a Pipeline. Vms that aren't flexible are left alone.
+     *
+     * @param vms the vms of the current cycle
+     * @return RT for the vms of the table (keeps its own memo, so it's only used by one cycle)
+     */
+    public Pipeline.Rescheduling rescheduleRT(VmTable vms)
+    {
+        // below-threshold windows, shared by all vms (and all cycles with the same threshold)
+        ThresholdWindowIndex recWindows = ThresholdWindowIndex.of(vms.getPMOER(), this.moer_thresh);
+        LongIntMap decisions = new LongIntMap(1 << 12); // (vstart, runlength) -> window, -1 = none
 
-            mwindow(int start, int end, double avg){this.start = start; this.end = end; this.avgPMOER = avg; length = end - start;}
-        }
+        return new Rescheduler(vms, RT_acceptance)
+        {
+            @Override
+            int newStart(int vm, int vstart, int runlength)
+            {
+                // search for a suitable time window:
+                // - not before the time that the vm runs (we don't want to consider windows that have already passed)
+                // - doesn't exceed how far the forecast can predict at that time
+                //   (it is not possible to predict 24hrs/288index ahead of time with our current model).
+                // - can fit the runtime
+                // - relocating there does save moer
+                // the window only depends on (vstart, runlength), so every such class of vms is only searched once
+                long key = LongIntMap.key(vstart, runlength);
+                int w = decisions.get(key, UNKNOWN);
+                if(w == UNKNOWN)
+                {
+                    w = recWindows.findFirst(recWindows.firstStartingAt(vstart), recWindows.firstEndingAfter(vstart + day),
+                            runlength, vms.getAveragePMOER(vm));
+                    decisions.put(key, w);
+                }
+                // TODO: change so that vm is moved to center of window
+                return w < 0 ? -1 : recWindows.getStart(w);
+            }
+        };
+    }
 
-        List<mwindow> recWindows = new ArrayList<>();
+    /**
+     * Here, we apply our second algorithm, Rescheduling by Averages (RA).
+     * @param vms the vms of the current cycle
+     * @return the average postponement of each vm (including vms that were not adjusted) in hrs,
+     *         the average postponement of the adjusted vms in hrs and the number of adjusted vms.
+     */
+    public double[] runRA(VmTable vms)
+    {
+        long startTime = startHere();
+        Pipeline.Rescheduling ra = rescheduleRA(vms);
+        for(int f = 0; f < vms.numFlexible(); f++) ra.accept(vms, vms.flexibleAt(f));
+        printDuration("run RA", startTime);
+        return ra.delays();
+    }
 
-        int sign, wstart = 0; double wavg = 0.0;
-        if (AlgRunner.PMOER.get(0) - this.moer_thresh >= 0) sign = 1;
-        else sign = -1;
-        wavg += AlgRunner.PMOER.get(0);
+    /**
+     * RA one vm at a time (see runRA), e.g. as a stage of a Pipeline. Vms that aren't flexible are left alone.
+     *
+     * @param vms the vms of the current cycle
+     * @return RA for the vms of the table (keeps its own memo, so it's only used by one cycle)
+     */
+    public Pipeline.Rescheduling rescheduleRA(VmTable vms)
+    {
+        MoerSeries PMOER = vms.getPMOER();
+        LongIntMap decisions = new LongIntMap(1 << 12); // (vstart, runlength) -> new start, -1 = stays
 
-        // find possible windows
-        for(int i = 1; i < AlgRunner.PMOER.size(); i++)
+        return new Rescheduler(vms, RA_acceptance)
         {
-            if (AlgRunner.PMOER.get(i) - this.moer_thresh >= 0 && sign == -1) // crossed threshold (below -> above)
-            {
-                wavg /= i - wstart;
-                sign = 1;
-                recWindows.add(new mwindow(wstart, i, wavg)); // add window to possible windows to recommend
-            }
-            else if (AlgRunner.PMOER.get(i) - this.moer_thresh < 0 && sign == 1) // crossed threshold (above -> below)
+            private MovingAverageIndex[] indexes = new MovingAverageIndex[VmTrace.FLEX_MAX / 300 + 1]; // by runlength
+
+            @Override
+            int newStart(int vm, int vstart, int runlength)
             {
-                wstart = i;
-                wavg = 0;
-                sign = -1;
+                // find and save to window with both:
+                // - the same time length as the vm runtime
+                // - the minimum average MOER (a local minimum that is below the vm's avg by more than the confidence threshold)
+                // the windows of each runlength are precomputed, see MovingAverageIndex
+                // the new start only depends on (vstart, runlength), so every such class of vms is only searched once
+                long key = LongIntMap.key(vstart, runlength);
+                int ni = decisions.get(key, UNKNOWN);
+                if(ni == UNKNOWN)
+                {
+                    if(runlength >= indexes.length) indexes = Arrays.copyOf(indexes, Math.max(runlength + 1, indexes.length * 2));
+                    if(indexes[runlength] == null) indexes[runlength] = MovingAverageIndex.of(PMOER, runlength, day);
+                    ni = indexes[runlength].newStart(vstart, vms.getAveragePMOER(vm) - confidence_thresh);
+                    decisions.put(key, ni);
+                }
+                return ni;
             }
-            // we add at end of the loop instead of start
-            // this is bc the moer value represents the avg moer for the *next* 5 min.
-            wavg += AlgRunner.PMOER.get(i);
-        }
+        };
+    }
 
+    /**
+     * Moves flexible vms (one at a time) to the start picked by #newStart and keeps track of the delays, shared by RT and RA.
+     */
+    private abstract class Rescheduler implements Pipeline.Rescheduling
+    {
+        private final VmTable vms;
+        private final double acceptance;
+        private double sumDelay = 0.0;
+        private int numAcc = 0;
 
-        double sumDelay = 0.0;
-        int numAcc = 0;
-        // simulate the adjustments of the vm start/end times
-        for(Vm vm : AlgRunner.vmflist)
+        Rescheduler(VmTable vms, double acceptance) {this.vms = vms; this.acceptance = acceptance;}
+
+        /**
+         * @return the new start of the vm (in 5 min. intervals), -1 if it stays
+         */
+        abstract int newStart(int vm, int vstart, int runlength);
+
+        @Override
+        public void accept(VmTable t, int vm)
         {
-            // not all users will accept the suggestion. this will be simulated with 'acceptance'.
-            if(Math.random() > RT_acceptance) continue;
+            if(!vms.isFlexible(vm)) return;
 
+            // not all users will accept the suggestion. this will be simulated with 'acceptance'.
+            if(declines(acceptance)) return;
 
-            int vstart = vm.getTime()[0] / 300, vend = vm.getTime()[1] / 300;
+            int vstart = vms.getStart(vm) / 300, vend = vms.getEnd(vm) / 300;
             int runlength = vend - vstart;
+            int ni = newStart(vm, vstart, runlength);
+            if(ni < 0) return;
 
-            // use binary search to ensure that we start with a window that is not before the time that the vm runs.
-            // (we don't want to consider windows that have already passed)
-            int i = Collections.binarySearch(recWindows, new mwindow(vstart, vend, 0.0), (o1, o2) -> {
-                if (o1.start < o2.start) return -1;
-                else if (o1.start > o2.start) return 1;
-                return 0;
-            });
-            if(i < 0)
-                i = -i - 1;
-
-            // search for a suitable time window
-            for(; i < recWindows.size() && recWindows.get(i).start < vstart + day; i++)
-            {
-                mwindow currWindow = recWindows.get(i);
+            // Adjust VM start & end!
+            int nstart = ni * 300, nend = (ni + runlength) * 300;
+            sumDelay += nstart - vms.getStart(vm);
+            numAcc++;
+            vms.setTime(vm, nstart, nend);
+        }
 
-                // Ensure that window doesn't exceed how far the forecast can predict at that time.
-                // (it is not possible to predict 24hrs/288index ahead of time with our current model).
-                if (currWindow.end > vstart + day) break;
+        @Override
+        public double[] delays()
+        {
+            double averageDelay = sumDelay / vms.size(); // in seconds
+            return new double[]{averageDelay / 3600, sumDelay / numAcc / 3600, numAcc}; // in hrs (+ number of adjusted vms)
+        }
+    }
 
-                // Ensure that window can fit the runtime.
-                if (currWindow.length < runlength) continue;
 
-                // Ensure that relocating here does save moer.
-                if(currWindow.avgPMOER >= vm.getAveragePMOER()) continue;
+    /**
+     * Here, we apply capacity-aware rescheduling (CA).
+     * Like RA, a vm may be moved to a window of the same runlength within a day that has a lower predicted MOER. Unlike RT and RA,
+     * the cores reserved in every 5 min. interval are tracked (see SlotLoadTree), and a vm is only moved to a window where every
+     * interval still has room for its cores. The vms that save the most carbon are placed first, each one goes to the cheapest
+     * window with room (see WindowMinIndex#cheapestFitting) or stays where it is.
+     *
+     * The capacity of an interval is the capacity of the datacenters, or its load before rescheduling if that is higher
+     * (the trace doesn't fit into the simulated datacenters at all times), so no interval ends up more loaded than it was
+     * or than the datacenters allow.
+     *
+     * @param vms the vms of the current cycle
+     * @return the average postponement of each vm (including vms that were not adjusted) in hrs,
+     *         the average postponement of the adjusted vms in hrs and the number of adjusted vms.
+     */
+    public double[] runCA(VmTable vms)
+    {
+        long startTime = startHere();
+        MoerSeries PMOER = vms.getPMOER();
+        int slots = PMOER.size();
+
+        // the tree holds load - capacity of every interval, a vm fits into a window if max + cores <= 0
+        long[] over = vms.coresPerSlot(slots);
+        for(int i = 0; i < slots; i++) over[i] = Math.min(0, over[i] - this.capacity);
+        SlotLoadTree tree = new SlotLoadTree(over);
+
+        // candidates: vms that can save carbon at all, keyed by (saving, f) so that sorting puts the largest saving last
+        WindowMinIndex[] indexes = new WindowMinIndex[VmTrace.FLEX_MAX / 300 + 1]; // by runlength
+        LongIntMap cheapest = new LongIntMap(1 << 12); // (vstart, runlength) -> cheapest window in range, -1 = none
+        long[] order = new long[vms.numFlexible()];
+        int m = 0;
+        for(int f = 0; f < vms.numFlexible(); f++)
+        {
+            int vm = vms.flexibleAt(f);
+            if(declines(this.CA_acceptance)) continue;
+
+            int vstart = vms.getStart(vm) / 300, vend = vms.getEnd(vm) / 300, runlength = vend - vstart;
+            if(runlength <= 0 || vend > slots) continue;
+            if(runlength >= indexes.length) indexes = Arrays.copyOf(indexes, Math.max(runlength + 1, indexes.length * 2));
+            if(indexes[runlength] == null) indexes[runlength] = WindowMinIndex.of(PMOER, runlength);
+            WindowMinIndex index = indexes[runlength];
+
+            long key = LongIntMap.key(vstart, runlength);
+            int k = cheapest.get(key, UNKNOWN);
+            if(k == UNKNOWN)
+            {
+                k = index.argmin(vstart + 1, Math.min(vstart + this.day, slots) - runlength + 1);
+                if(k >= 0 && index.sum(k) >= index.sum(vstart)) k = -1;
+                cheapest.put(key, k);
+            }
+            if(k < 0) continue;
 
-                // TODO: change so that vm is moved to center of window
-                // Adjust VM start & end!
-                sumDelay += currWindow.start * 300 - vm.getTime()[0];
-                numAcc++;
-                vm.setTime(new int[]{currWindow.start * 300, (currWindow.start + runlength) * 300});
-                break;
+            float saving = (float) (vms.getEnergy(vm) * (index.sum(vstart) - index.sum(k)) / runlength); // lbs CO2 (predicted)
+            order[m++] = ((long) Float.floatToIntBits(saving) << 32) | f;
+        }
+        Arrays.sort(order, 0, m);
+
+        double sumDelay = 0.0;
+        int numAcc = 0;
+        for(int i = m - 1; i >= 0; i--)
+        {
+            int vm = vms.flexibleAt((int) order[i]);
+            int vstart = vms.getStart(vm) / 300, vend = vms.getEnd(vm) / 300, runlength = vend - vstart, cores = vms.getCores(vm);
+            WindowMinIndex index = indexes[runlength];
+
+            // every window the vm could move to ends after vend, so if no interval after vend has room, none of them fits
+            // (the common case once the datacenters are full)
+            int from = vstart + 1, to = Math.min(vstart + this.day, slots) - runlength + 1;
+            if(tree.min(vend, to + runlength - 1) + cores > 0) continue;
+
+            // the vm's own cores don't count against its new window
+            tree.add(vstart, vend, -cores);
+            int k = index.cheapestFitting(from, to, index.sum(vstart), s -> tree.max(s, s + runlength) + cores <= 0, CA_MAX_TRIES);
+            if(k < 0)
+            {
+                tree.add(vstart, vend, cores);
+                continue;
             }
+            tree.add(k, k + runlength, cores);
+
+            int nstart = k * 300, nend = (k + runlength) * 300;
+            sumDelay += nstart - vms.getStart(vm);
+            numAcc++;
+            vms.setTime(vm, nstart, nend);
         }
 
-        printDuration("run RT");
-        double averageDelay = sumDelay / AlgRunner.vmlist.size(); // in seconds
-        return new double[]{averageDelay / 3600, sumDelay / numAcc / 3600}; // in hrs
+        printDuration("run CA", startTime);
+        double averageDelay = sumDelay / vms.size(); // in seconds
+        return new double[]{averageDelay / 3600, sumDelay / numAcc / 3600, numAcc}; // in hrs (+ number of adjusted vms)
     }
 
     /**
-     * Here, we apply our second algorithm, Rescheduling by Averages (RA).
-     * @return the average postponement of each vm (including vms that were not adjusted) in hrs.
+     * Here, we apply interruptible shifting (IS): a vm may be suspended and resumed, so instead of moving it as one block it runs
+     * in the runlength cheapest intervals (lowest predicted MOER) of the next day, split into as many segments as that takes
+     * (see VmTable#setSegments). Every flexible vm is treated as interruptible (batch-like).
+     *
+     * The vms are visited in order of their start, so the day ahead of them is a horizon that only moves forward. It is kept in
+     * one order-statistics structure (see CheapestSlotIndex) that gives the sum of the k cheapest intervals in O(log V) instead
+     * of sorting the day for every vm. The segments only depend on (vstart, runlength), so every such class of vms is only
+     * selected once.
+     *
+     * @param vms the vms of the current cycle
+     * @return the average delay of the end of each vm (including vms that were not adjusted) in hrs,
+     *         the average delay of the end of the adjusted vms in hrs and the number of adjusted vms.
      */
-    public double[] runRA()
+    public double[] runIS(VmTable vms)
     {
-        startHere();
-        ArrayList<Integer> prefPMOER = new ArrayList<>(); prefPMOER.add(AlgRunner.PMOER.get(0));
-        for(int i = 1; i < AlgRunner.PMOER.size(); i++)
-            prefPMOER.add(prefPMOER.get(i - 1) + AlgRunner.PMOER.get(i));
+        long startTime = startHere();
+        MoerSeries PMOER = vms.getPMOER();
+        int slots = PMOER.size();
+
+        // (vstart, f), sorted by start
+        long[] order = new long[vms.numFlexible()];
+        int m = 0;
+        for(int f = 0; f < vms.numFlexible(); f++)
+        {
+            int vm = vms.flexibleAt(f);
+            if(declines(this.IS_acceptance)) continue;
+
+            int vstart = vms.getStart(vm) / 300, vend = vms.getEnd(vm) / 300;
+            if(vend <= vstart || vend > slots) continue;
+            order[m++] = LongIntMap.key(vstart, f);
+        }
+        Arrays.sort(order, 0, m);
 
-        final Function<Integer[], Integer> rsum = (Integer[] i) -> (prefPMOER.get(i[1]) - prefPMOER.get(i[0]));
+        CheapestSlotIndex horizon = new CheapestSlotIndex(PMOER);
+        LongIntMap decisions = new LongIntMap(1 << 12); // (vstart, runlength) -> index into selected, -1 = stays
+        int[][] selected = new int[16][];
+        int numSelected = 0;
 
         double sumDelay = 0.0;
         int numAcc = 0;
-        for(Vm vm : AlgRunner.vmflist)
+        for(int i = 0; i < m; i++)
         {
-            // account for the chance that user declines suggestion here
-            if(Math.random() > this.RA_acceptance) continue;
-
+            int vm = vms.flexibleAt((int) order[i]);
+            int vstart = vms.getStart(vm) / 300, vend = vms.getEnd(vm) / 300, runlength = vend - vstart;
 
-            int vend = vm.getTime()[1] / 300,  vstart = vm.getTime()[0] / 300, runlength = vend - vstart;
-
-            // find and save to window with both:
-            // - the same time length as the vm runtime
-            // - the minimum average MOER
-            int ni = vstart, nj = vend; double origMOER = vm.getAveragePMOER();
-            for(int i = vstart + 1; i + runlength < Math.min(vstart + this.day, AlgRunner.PMOER.size()) - 1; i++)
+            long key = LongIntMap.key(vstart, runlength);
+            int d = decisions.get(key, UNKNOWN);
+            if(d == UNKNOWN)
             {
-                int j = i + runlength;
-                double
-                        wavg = (double) rsum.apply(new Integer[]{i, j}) / runlength,
-                        pwavg = (double) rsum.apply(new Integer[]{i - 1, j - 1}) / runlength,
-                        navg = (double) rsum.apply(new Integer[]{i + 1, j + 1}) / runlength;
-
-                if(wavg <= pwavg && wavg <= navg && origMOER - this.confidence_thresh > wavg)
+                d = -1;
+                horizon.slideTo(vstart, Math.min(vstart + this.day, slots));
+                // only worth it if the cheapest intervals are cheaper than the current window
+                if(runlength < horizon.size() && horizon.sumOfCheapest(runlength) < PMOER.sum(vstart, vend))
                 {
-                    ni = i; nj = j;
-                    break;
+                    if(numSelected == selected.length) selected = Arrays.copyOf(selected, 2 * numSelected);
+                    selected[numSelected] = horizon.select(runlength);
+                    d = numSelected++;
                 }
+                decisions.put(key, d);
             }
+            if(d < 0) continue;
 
-            //if there was no change:
-            if(ni == vstart && nj == vend) continue;
-
-            // modify the start and end times of the vm according to the window found in loop above^
-            int nstart = ni * 300, nend = nj * 300;
-            sumDelay += nstart - vm.getTime()[0];
+            int[] runs = selected[d];
+            sumDelay += runs[runs.length - 1] * 300 - vms.getEnd(vm);
             numAcc++;
-            vm.setTime(new int[]{nstart, nend});
+            vms.setSegments(vm, runs); // shared by the vms of the class, never modified
         }
 
-        printDuration("run RA");
-        double averageDelay = sumDelay / AlgRunner.vmlist.size(); // in seconds
-        return new double[]{averageDelay / 3600, sumDelay / numAcc / 3600}; // in hrs
+        printDuration("run IS", startTime);
+        double averageDelay = sumDelay / vms.size(); // in seconds
+        return new double[]{averageDelay / 3600, sumDelay / numAcc / 3600, numAcc}; // in hrs (+ number of adjusted vms)
     }
 
+    /**
+     * Sets the cores available per 5 min. interval for CA (default: the capacity of the simulated datacenters, AlgRunner#CAPACITY).
+     */
+    public void setCapacity(int capacity)
+    {
+        this.capacity = capacity;
+    }
+
+    public int getCapacity() {return capacity;}
+
+    /**
+     * Sets the SKUs RS can move a vm to (default: SkuCatalog#defaults).
+     */
+    public void setCatalog(SkuCatalog catalog)
+    {
+        this.catalog = catalog;
+    }
+    public int getDay() {return day;}
+
 
     /**---------------------------------------------- VM BASED ALGORITHMS START HERE -------------------------------------------------*/
 
 
     /**
      * Here, we apply core-reduction on *one* given VM.
-     * @param vm the data of the VM to be adjusted.
+     * @param vms the vms of the current cycle
+     * @param vm the id of the VM to be adjusted.
      */
-    public void runCR(Vm vm)
+    public void runCR(VmTable vms, int vm)
     {
-        int cpuCores = vm.getNumberOfPes();
-        double p95 = vm.getP95();
-        double max_util = vm.getMax_util(), avg_util = vm.getAvg_util();
+        int cpuCores = vms.getCores(vm);
+        double p95 = vms.getP95(vm);
+        double max_util = vms.getMaxUtil(vm), avg_util = vms.getAvgUtil(vm);
 
         // filter un-reducable vms
         if(p95 >= this.p95Thresh) return;
 
         // filter vms with little effect
-        if(vm.getWaste() <= this.wasteThresh) return;
+        if(vms.getWaste(vm) <= this.wasteThresh) return;
+
+        int newCpuCores = reducedCores(cpuCores, p95, max_util, this.p95Thresh);
+        if(newCpuCores >= cpuCores || declines(this.core_reduction_acceptance)) return;
 
+        vms.setCores(vm, newCpuCores);
+        vms.setP95(vm, p95 * cpuCores / newCpuCores);
+        vms.setMaxUtil(vm, max_util * cpuCores / newCpuCores);
+        vms.setAvgUtil(vm, avg_util * cpuCores / newCpuCores);
+        vms.updateLinRegPower(vm);
+    }
+
+    /**
+     * The core count CR reduces a vm to: the smallest one that keeps its p95 below the threshold and its max. utilization <= 1.
+     * (p95 and utilizations scale with cores / new cores)
+     *
+     * @return the new core count, cpuCores if the vm can't be reduced
+     */
+    static int reducedCores(int cpuCores, double p95, double max_util, double p95Thresh)
+    {
         /*
         Code below is subject to change bc users might have more options for number of cores other than those listed in the array 'CC_VALS'
         (e.g. core counts that are 1, 3, 5, 6, 7, etc.)
 
         Current code assumes that the vm user can only change their core count to one count listed in 'CC_VALS'.
          */
-        int newCpuCores = cpuCores; double new_p95 = p95, new_max_util = max_util, new_avg_util = avg_util;
-        for(int i = 0; i < this.CC_VALS.length; i++)
+        for(int i = 0; i < CC_VALS.length; i++)
         {
-            if(this.CC_VALS[i] > cpuCores) break;
-            new_p95 = p95 * cpuCores / this.CC_VALS[i];
-            new_max_util = max_util * cpuCores / this.CC_VALS[i];
-            new_avg_util = avg_util * cpuCores / this.CC_VALS[i];
-            if(new_p95 < this.p95Thresh && new_max_util <= 1)
-            {
-                newCpuCores = this.CC_VALS[i];
-                break;
-            }
+            if(CC_VALS[i] > cpuCores) break;
+            if(p95 * cpuCores / CC_VALS[i] < p95Thresh && max_util * cpuCores / CC_VALS[i] <= 1) return CC_VALS[i];
         }
+        return cpuCores;
+    }
 
-        if(newCpuCores >= cpuCores || Math.random() > this.core_reduction_acceptance) return;
+    /**
+     * @return the core counts CR can reduce a vm to (ascending, must not be modified)
+     */
+    static int[] coreCounts() {return CC_VALS;}
 
-        vm.setNumberOfPes(newCpuCores);
-        vm.setP95(new_p95);
-        vm.setMax_util(new_max_util);
-        vm.setAvg_util(new_avg_util);
-        vm.updateLinRegPower();
+    /**
+     * Here, we apply right-sizing (RS): like CR, but every vm moves to the cheapest SKU of the catalog it fits on (see SkuCatalog)
+     * instead of the smallest core count. Same filters as CR, the SKU has to keep the p95 below the threshold, the max. utilization
+     * <= 1 and at least the RAM of the vm, and has to be cheaper than the size the vm has now.
+     * With the default catalog, RS moves the same vms to the same core counts as CR.
+     *
+     * The SKUs of all vms are chosen at once, in parallel (see RightSizer). They are applied in the order of the vms, so
+     * the acceptance decisions (same rate as CR) are drawn in the same order as in the per-vm algorithms.
+     *
+     * @param vms the vms of the current cycle
+     */
+    public void runRS(VmTable vms)
+    {
+        long startTime = startHere();
+        int[] chosen = RightSizer.choose(vms, catalog, this.p95Thresh, this.wasteThresh);
+        for(int vm = 0; vm < vms.size(); vm++)
+        {
+            int sku = chosen[vm];
+            if(sku < 0 || declines(this.core_reduction_acceptance)) continue;
+
+            int cpuCores = vms.getCores(vm), newCpuCores = catalog.getCores(sku);
+            double avg_util = vms.getAvgUtil(vm) * cpuCores / newCpuCores;
+            vms.setCores(vm, newCpuCores);
+            vms.setRam(vm, catalog.getRam(sku));
+            vms.setP95(vm, vms.getP95(vm) * cpuCores / newCpuCores);
+            vms.setMaxUtil(vm, vms.getMaxUtil(vm) * cpuCores / newCpuCores);
+            vms.setAvgUtil(vm, avg_util);
+            vms.setPower(vm, catalog.power(sku, avg_util));
+        }
+        printDuration("run RS", startTime);
     }
 
     /**
      * Here, we apply the shutdown strategy on *one* given VM.
-     * @param vm the VM to be adjusted
+     * @param vms the vms of the current cycle
+     * @param vm the id of the VM to be adjusted
      */
-    public void runSD(Vm vm)
+    public void runSD(VmTable vms, int vm)
     {
-        double u_max = vm.getMax_util(), u_avg = vm.getAvg_util();
-        int t_created = vm.getTime()[0], t_deleted = vm.getTime()[1], t_full = t_deleted - t_created;
+        double u_max = vms.getMaxUtil(vm), u_avg = vms.getAvgUtil(vm);
+        int t_created = vms.getStart(vm), t_deleted = vms.getEnd(vm), t_full = t_deleted - t_created;
 
         // check criteria
-        if((u_max - this.u_idle) / (u_avg - this.u_idle) <= 10) return;
+        if(!shutsDown(u_max, u_avg, this.u_idle)) return;
 
         // not all users will accept the recommendation.
-        if(Math.random() > this.shutdown_acceptance) return;
+        if(declines(this.shutdown_acceptance)) return;
 
         //simulate shutting down the vm by reducing the runtime length here.
-        int t_max = (int) (t_full * (u_avg - this.u_idle) / (u_max - this.u_idle));
-        int t_new_deleted = t_created + t_max;
-        vm.setAvg_util(u_max);
-        vm.setP95(u_max);
-        vm.setTime(new int[]{t_created, t_new_deleted});
-        vm.updateLinRegPower();
+        int t_new_deleted = t_created + shutdownRuntime(t_full, u_max, u_avg, this.u_idle);
+        vms.setAvgUtil(vm, u_max);
+        vms.setP95(vm, u_max);
+        vms.setTime(vm, t_created, t_new_deleted);
+        vms.updateLinRegPower(vm);
+    }
+
+    /**
+     * @return true if SD shuts a vm with these utilizations down early (its max. utilization is far above its average one)
+     */
+    static boolean shutsDown(double u_max, double u_avg, double u_idle)
+    {
+        return !((u_max - u_idle) / (u_avg - u_idle) <= 10);
+    }
+
+    /**
+     * @return the runtime (sec) SD shortens a vm to, the time it would take at its max. utilization
+     */
+    static int shutdownRuntime(int t_full, double u_max, double u_avg, double u_idle)
+    {
+        return (int) (t_full * (u_avg - u_idle) / (u_max - u_idle));
+    }
+
+
+    /**
+     * @return true if the acceptance decisions are drawn from a seeded generator (then they depend on the order of the vms)
+     */
+    public boolean isSeeded() {return random != null;}
+
+    /**
+     * Simulates whether a user declines a suggestion.
+     * With an acceptance rate of 1 nobody declines, so no random number is drawn at all.
+     *
+     * @param acceptance the acceptance rate
+     * @return true if the suggestion is declined
+     */
+    private boolean declines(double acceptance)
+    {
+        if(acceptance >= 1) return false;
+        double r = (random != null) ? random.nextDouble() : ThreadLocalRandom.current().nextDouble();
+        return r > acceptance;
     }
 
 
     /**-------------Below are diagnostic functions----------*/
 
-    private static void startHere()
+    // timings are kept in locals (not in a field) b/c cycles can run concurrently
+    private static long startHere()
     {
-        lastStart = System.nanoTime();
+        return System.nanoTime();
     }
 
-    private static void printDuration(String s)
+    private static void printDuration(String s, long start)
     {
-        if(SimMain.fullOutput) System.out.println("Took " + dft.format((double)(System.nanoTime() - lastStart) / 1e9) + "s to " + s);
+        if(SimMain.fullOutput) System.out.println("Took " + dft.format((double)(System.nanoTime() - start) / 1e9) + "s to " + s);
     }
 }
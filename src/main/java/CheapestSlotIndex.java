@@ -0,0 +1,131 @@
+import org.cloudbus.cloudsim.MoerSeries;
+
+import java.util.Arrays;
+
+/**
+ * The PMOER values of a sliding horizon of 5 min. intervals [from, to), as an order-statistics structure: two Fenwick trees
+ * over the value range (count and sum of the intervals with each value). Gives the k-th smallest value and the sum of the
+ * k smallest values of the horizon in O(log V) (V = range of the PMOER values, ~1100), instead of sorting the horizon per vm.
+ *
+ * The horizon only moves forward, so sliding it over the whole series takes O(n log V) in total.
+ * Used by interruptible shifting (see Algorithms#runIS), one instance per run (not thread-safe).
+ */
+final class CheapestSlotIndex {
+
+    private final MoerSeries PMOER;
+
+    // smallest value of the series, values are stored at value - min + 1 (Fenwick trees are 1-based)
+    private final int min;
+
+    // Fenwick trees: intervals / sum of the values per value
+    private final int[] count;
+    private final long[] sum;
+
+    // highest power of 2 <= size of the trees, start of the descent in #kth
+    private final int top;
+
+    // current horizon
+    private int from, to;
+
+    CheapestSlotIndex(MoerSeries PMOER)
+    {
+        this.PMOER = PMOER;
+        int lo = Integer.MAX_VALUE, hi = Integer.MIN_VALUE;
+        for(int i = 0; i < PMOER.size(); i++) {lo = Math.min(lo, PMOER.get(i)); hi = Math.max(hi, PMOER.get(i));}
+        this.min = PMOER.size() > 0 ? lo : 0;
+        int values = PMOER.size() > 0 ? hi - lo + 1 : 1;
+        this.count = new int[values + 1];
+        this.sum = new long[values + 1];
+        this.top = Integer.highestOneBit(values);
+    }
+
+    /**
+     * Moves the horizon to [from, to). Both ends must not move backwards.
+     */
+    void slideTo(int from, int to)
+    {
+        if(from < this.from || to < this.to) throw new IllegalArgumentException("the horizon can't move backwards: [" +
+                this.from + ", " + this.to + ") -> [" + from + ", " + to + ")");
+        if(from >= this.to)
+        {
+            // nothing stays, start over
+            Arrays.fill(count, 0); Arrays.fill(sum, 0);
+            this.from = this.to = from;
+        }
+        for(; this.to < to; this.to++) update(this.to, 1);
+        for(; this.from < from; this.from++) update(this.from, -1);
+    }
+
+    /**
+     * @return number of intervals in the horizon
+     */
+    int size() {return to - from;}
+
+    /**
+     * @param k 1 .. size()
+     * @return the k-th smallest value of the horizon
+     */
+    int kth(int k)
+    {
+        // descend to the largest position whose prefix count is below k, the next position holds the k-th value
+        int pos = 0;
+        for(int step = top; step > 0; step >>= 1)
+            if(pos + step < count.length && count[pos + step] < k) {pos += step; k -= count[pos];}
+        return pos + min; // (pos + 1) - 1 + min
+    }
+
+    /**
+     * @param k 0 .. size()
+     * @return the sum of the k smallest values of the horizon
+     */
+    long sumOfCheapest(int k)
+    {
+        if(k <= 0) return 0;
+        int pos = 0, left = k;
+        long s = 0;
+        for(int step = top; step > 0; step >>= 1)
+            if(pos + step < count.length && count[pos + step] < left) {pos += step; left -= count[pos]; s += sum[pos];}
+        return s + (long) left * (pos + min); // the rest all have the k-th value
+    }
+
+    /**
+     * Selects the k cheapest intervals of the horizon (the earliest ones among equal values).
+     *
+     * @param k 1 .. size()
+     * @return the selected intervals as runs {from0, to0, from1, to1, ...}, each one [from, to), ascending
+     */
+    int[] select(int k)
+    {
+        int kth = kth(k);
+
+        // all intervals below the k-th value are taken, the rest are the earliest ones with the k-th value
+        int ties = k - countBelow(kth);
+        int[] runs = new int[2 * k];
+        int n = 0;
+        boolean open = false;
+        for(int i = from; i < to; i++)
+        {
+            int v = PMOER.get(i);
+            boolean take = v < kth || (v == kth && ties > 0);
+            if(v == kth && take) ties--;
+            if(take && !open) {runs[n++] = i; open = true;}
+            else if(!take && open) {runs[n++] = i; open = false;}
+        }
+        if(open) runs[n++] = to;
+        return Arrays.copyOf(runs, n);
+    }
+
+    // number of intervals in the horizon whose value is below v
+    private int countBelow(int v)
+    {
+        int c = 0;
+        for(int i = v - min; i > 0; i -= i & -i) c += count[i];
+        return c;
+    }
+
+    private void update(int slot, int delta)
+    {
+        int v = PMOER.get(slot);
+        for(int i = v - min + 1; i < count.length; i += i & -i) {count[i] += delta; sum[i] += (long) delta * v;}
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * A running sum of doubles with Neumaier (improved Kahan) compensation.
+ *
+ * The rounding error of every addition is collected separately and added back at the end, so adding up millions of
+ * small carbon/waste values doesn't lose precision like a plain double accumulator does.
+ */
+final class CompensatedSum {
+
+    private double sum, compensation;
+
+    /**
+     * Adds a value.
+     *
+     * @param v the value
+     */
+    void add(double v)
+    {
+        double t = sum + v;
+        if(Math.abs(sum) >= Math.abs(v)) compensation += (sum - t) + v; // low-order digits of v were lost
+        else compensation += (v - t) + sum; // low-order digits of sum were lost
+        sum = t;
+    }
+
+    /**
+     * Adds another (partial) sum.
+     *
+     * @param other the other sum
+     */
+    void add(CompensatedSum other)
+    {
+        add(other.sum);
+        compensation += other.compensation;
+    }
+
+    /**
+     * @return the compensated sum
+     */
+    double get() {return sum + compensation;}
+}
@@ -0,0 +1,239 @@
+import org.cloudbus.cloudsim.MoerSeries;
+
+import java.text.DecimalFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Global view on time-shifting within the capacity of the datacenters: a lower bound on the predicted carbon of the
+ * flexible vms, and the optimality gap of the greedy algorithms (RT, RA, CA) against it.
+ *
+ * Choosing one window per vm under per-interval capacities isn't a flow problem (a vm occupies a whole window, not a single
+ * interval), so the bound is computed in two steps:
+ *  1. A min-cost flow (see MinCostFlow) moves the core-intervals of classes of vms (start hour, energy bucket) into the hours
+ *     they can reach within a day, at the average PMOER of the hour and within the room of the hour. Its potentials tell how
+ *     much one more core-interval of room would save in every hour, the price of the hour.
+ *  2. At these prices every vm takes the window that is cheapest for it (its predicted carbon + the price of the cores it
+ *     occupies), and the price of all the room is subtracted again (Lagrangian relaxation of the capacity).
+ * Step 2 is exact per vm and by weak duality a lower bound for any prices >= 0, so the grouping of step 1 only decides how
+ * tight the bound is, not whether it holds. Without prices it's every vm in its best window (the optimum if capacity doesn't
+ * matter), the larger of both is the bound. So the gap against it is an upper bound on the real gap.
+ *
+ * The flow has one node per class and hour and one arc per class and reachable hour (25 for a day), its size doesn't depend
+ * on the number of vms; step 2 takes one pass over the reachable windows of every vm.
+ */
+public final class FlowOptimizer {
+
+    private static final DecimalFormat dft = new DecimalFormat("##############0.###");
+
+    // intervals per hour
+    private static final int HOUR = 12;
+
+    // ratio between the energy buckets of the classes
+    private static final double ENERGY_RATIO = 1.5;
+
+    // costs of the flow are rounded to multiples of (max cost / COST_LEVELS)
+    private static final int COST_LEVELS = 10_000_000;
+
+    private FlowOptimizer() {}
+
+    /**
+     * The lower bound and the size of the flow problem its prices were computed with.
+     */
+    public static final class Bound
+    {
+        // lbs CO2 (predicted), flexible vms only: the bound, and every vm in its best window (ignoring capacity)
+        public final double lowerBound, unconstrained;
+        public final int classes, arcs;
+        public final double seconds;
+
+        // capacity of every interval, the original load or the capacity of the datacenters, whichever is higher
+        private final long[] capacity;
+
+        Bound(double lowerBound, double unconstrained, int classes, int arcs, double seconds, long[] capacity)
+        {
+            this.lowerBound = lowerBound; this.unconstrained = unconstrained;
+            this.classes = classes; this.arcs = arcs; this.seconds = seconds; this.capacity = capacity;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "lower bound " + dft.format(lowerBound) + " lbs CO2 (ignoring capacity " + dft.format(unconstrained) + ", " +
+                    classes + " classes, " + arcs + " arcs, took " + dft.format(seconds) + "s)";
+        }
+    }
+
+    /**
+     * Computes the lower bound for the vms as read.
+     *
+     * @param vms the vms (without any algorithm applied)
+     * @param capacity cores available per 5 min. interval
+     * @param day how far ahead (in 5 min. intervals) a vm may be moved
+     * @return the bound
+     */
+    public static Bound lowerBound(VmTable vms, int capacity, int day)
+    {
+        long startTime = System.nanoTime();
+        MoerSeries PMOER = vms.getPMOER();
+        int slots = PMOER.size(), hours = (slots + HOUR - 1) / HOUR;
+
+        // capacity of every interval (never below its original load, like CA), and the room left for the flexible vms
+        long[] load = vms.coresPerSlot(slots), cap = new long[slots], free = new long[slots];
+        for(int i = 0; i < slots; i++) {cap[i] = Math.max(capacity, load[i]); free[i] = cap[i] - load[i];}
+
+        // classes: (start hour, energy bucket) -> {supply (core-intervals), energy (MWh), max core-intervals per hour}
+        Map<Long, double[]> classes = new LinkedHashMap<>();
+        for(int f = 0; f < vms.numFlexible(); f++)
+        {
+            int vm = vms.flexibleAt(f);
+            int vstart = vms.getStart(vm) / 300, vend = vms.getEnd(vm) / 300, runlength = vend - vstart, cores = vms.getCores(vm);
+            if(!movable(vstart, vend, slots)) continue; // stays part of the load
+            for(int i = vstart; i < vend; i++) free[i] += cores;
+
+            double energy = energy(vms, vm, runlength), perCore = energy / cores / runlength;
+            int bucket = perCore > 0 ? (int) Math.floor(Math.log(perCore) / Math.log(ENERGY_RATIO)) : Integer.MIN_VALUE;
+            double[] c = classes.computeIfAbsent(LongIntMap.key(vstart / HOUR, bucket), k -> new double[3]);
+            c[0] += (double) cores * runlength;
+            c[1] += energy;
+            c[2] += (double) cores * Math.min(runlength, HOUR); // a vm can't spend more than an hour in one hour
+        }
+
+        // 1. prices of the hours
+        double[] avgPMOER = new double[hours];
+        for(int b = 0; b < hours; b++)
+        {
+            int from = b * HOUR, to = Math.min(slots, (b + 1) * HOUR);
+            avgPMOER[b] = (double) PMOER.sum(from, to) / (to - from);
+        }
+        double maxCost = 0;
+        for(double[] c : classes.values()) for(double p : avgPMOER) maxCost = Math.max(maxCost, c[1] / c[0] * p);
+        double unit = maxCost > 0 ? maxCost / COST_LEVELS : 1; // lbs CO2 per cost unit
+
+        // nodes: classes, hours, sink (takes everything the hours take in, up to their room)
+        MinCostFlow flow = new MinCostFlow(classes.size() + hours + 1);
+        int hour0 = classes.size(), t = hour0 + hours;
+        long supply = 0;
+        int node = 0;
+        for(Map.Entry<Long, double[]> e : classes.entrySet())
+        {
+            int h = (int) (e.getKey() >> 32);
+            double[] c = e.getValue();
+            flow.setSupply(node, (long) c[0]);
+            supply += (long) c[0];
+            int last = Math.min(hours - 1, (h * HOUR + HOUR - 1 + day - 1) / HOUR);
+            for(int b = h; b <= last; b++) flow.addArc(node, hour0 + b, (long) c[2], Math.round(c[1] / c[0] * avgPMOER[b] / unit));
+            node++;
+        }
+        for(int b = 0; b < hours; b++)
+        {
+            long room = 0;
+            for(int i = b * HOUR; i < Math.min(slots, (b + 1) * HOUR); i++) room += free[i];
+            flow.addArc(hour0 + b, t, room, 0);
+        }
+        flow.setSupply(t, -supply);
+        flow.solve();
+
+        // the arc of a full hour into the sink has a negative reduced cost, that's what one more core-interval in the hour would save
+        double[] price = new double[slots];
+        for(int i = 0; i < slots; i++) price[i] = Math.max(0, flow.potential(t) - flow.potential(hour0 + i / HOUR)) * unit;
+
+        // 2. Lagrangian bounds
+        double bound = lagrangian(vms, price, free, day), unconstrained = lagrangian(vms, new double[slots], free, day);
+        return new Bound(Math.max(bound, unconstrained), unconstrained, classes.size(), flow.numArcs(),
+                (System.nanoTime() - startTime) / 1e9, cap);
+    }
+
+    // every vm in its cheapest window at the given prices (lbs CO2 per core-interval), minus the price of the room
+    private static double lagrangian(VmTable vms, double[] price, long[] free, int day)
+    {
+        MoerSeries PMOER = vms.getPMOER();
+        int slots = PMOER.size();
+        double[] pricePrefix = new double[slots + 1];
+        for(int i = 0; i < slots; i++) pricePrefix[i + 1] = pricePrefix[i] + price[i];
+
+        CompensatedSum sum = new CompensatedSum();
+        for(int f = 0; f < vms.numFlexible(); f++)
+        {
+            int vm = vms.flexibleAt(f);
+            int vstart = vms.getStart(vm) / 300, vend = vms.getEnd(vm) / 300, runlength = vend - vstart, cores = vms.getCores(vm);
+            if(!movable(vstart, vend, slots)) continue;
+
+            // the vm may stay or move to any window within a day
+            double perSum = energy(vms, vm, runlength) / runlength; // lbs CO2 per unit of PMOER sum
+            double best = Double.POSITIVE_INFINITY;
+            for(int k = vstart; k <= Math.min(vstart + day, slots) - runlength; k++)
+                best = Math.min(best, perSum * PMOER.sum(k, k + runlength) + cores * (pricePrefix[k + runlength] - pricePrefix[k]));
+            sum.add(best);
+        }
+        for(int i = 0; i < slots; i++) sum.add(-price[i] * free[i]);
+        return sum.get();
+    }
+
+    // vms that end after the MOER data can't be evaluated, they are left out of the bound and the gaps
+    private static boolean movable(int vstart, int vend, int slots)
+    {
+        return vend > vstart && vend <= slots;
+    }
+
+    // a moved vm runs for exactly runlength intervals, which may take a bit less energy than where it is now
+    private static double energy(VmTable vms, int vm, int runlength)
+    {
+        return Math.min(vms.getEnergy(vm), vms.getPower(vm) * runlength * 300 / (1_000_000 * 3600.0));
+    }
+
+    /**
+     * @return the predicted carbon (lbs CO2) of the flexible vms, as scheduled in the table
+     */
+    public static double flexibleCarbon(VmTable vms)
+    {
+        int slots = vms.getPMOER().size();
+        CompensatedSum sum = new CompensatedSum();
+        for(int f = 0; f < vms.numFlexible(); f++)
+        {
+            int vm = vms.flexibleAt(f);
+            if(movable(vms.getStart(vm) / 300, vms.getEnd(vm) / 300, slots)) sum.add(vms.getEnergy(vm) * vms.getAveragePMOER(vm));
+        }
+        return sum.get();
+    }
+
+    /**
+     * @return by how many cores the schedule in the table exceeds the capacity of the bound (max over all intervals, 0 = fits)
+     */
+    public static long overload(VmTable vms, Bound bound)
+    {
+        long[] load = vms.coresPerSlot(bound.capacity.length);
+        long over = 0;
+        for(int i = 0; i < load.length; i++) over = Math.max(over, load[i] - bound.capacity[i]);
+        return over;
+    }
+
+    /**
+     * Computes the lower bound and prints the gap of the greedy algorithms (and of doing nothing) against it.
+     *
+     * @param runner the runner holding the trace (must not be in streaming mode)
+     * @param algos the algorithms (with their parameters and capacity)
+     */
+    public static void report(AlgRunner runner, Algorithms algos)
+    {
+        Bound bound = lowerBound(runner.newTable(), algos.getCapacity(), algos.getDay());
+        System.out.println("Capacity " + algos.getCapacity() + " cores, " + bound);
+
+        Map<String, Function<VmTable, double[]>> greedy = new LinkedHashMap<>();
+        greedy.put("No Algorithm", t -> null);
+        greedy.put("RT", algos::runRT);
+        greedy.put("RA", algos::runRA);
+        greedy.put("CA", algos::runCA);
+        for(Map.Entry<String, Function<VmTable, double[]>> e : greedy.entrySet())
+        {
+            VmTable t = runner.newTable();
+            e.getValue().apply(t);
+            double carbon = flexibleCarbon(t);
+            long over = overload(t, bound);
+            System.out.println("\t" + e.getKey() + ": " + dft.format(carbon) + " lbs CO2 (predicted), gap " +
+                    dft.format((carbon - bound.lowerBound) / bound.lowerBound * 100) + "%" +
+                    (over > 0 ? ", exceeds the capacity by up to " + over + " cores" : ""));
+        }
+    }
+}
@@ -0,0 +1,296 @@
+import org.cloudbus.cloudsim.Vm;
+
+import java.util.Arrays;
+
+/**
+ * Parameter sweeps of CR and SD that only re-evaluate the vms whose decision changes from one point to the next,
+ * instead of running a whole cycle per point (see ParamSweep#run).
+ *
+ * The vms are sorted once by the values their decision flips at:
+ *  - CR: waste (vs. wasteThresh) and p95 * cores / c for every core count c it could be reduced to (vs. p95Thresh).
+ *  - SD: (10 * u_avg - u_max) / 9 and u_avg, where (u_max - u_idle) / (u_avg - u_idle) crosses 10 (vs. u_idle).
+ * Moving a threshold from one point to the next only visits the vms with a flip value in between, decides them again with
+ * the algorithm's own rule (see Algorithms#reducedCores, Algorithms#shutsDown) and updates the totals by their change.
+ * A dense sweep takes O(vms log vms + crossings) instead of O(points * vms).
+ *
+ * SD shortens a vm by an amount that depends on u_idle, so the vms it shuts down are evaluated again at every point
+ * (only those, the rest of the vms isn't touched). RT picks a window that depends on the threshold in no monotone way,
+ * sweeps with RT (and combinations) still run one cycle per point.
+ *
+ * Sums are compensated (see CompensatedSum), so the results match the cycles up to rounding.
+ * Only valid without partial acceptance (the sweeps use an acceptance rate of 1).
+ */
+final class IncrementalSweep {
+
+    // a vm is visited again if its flip value lies within this (relative) margin of the moved range, b/c the flip values are rounded
+    private static final double MARGIN = 1e-9;
+
+    // runs of this many indexes are sorted by insertion before merging (see #sortBy)
+    private static final int RUN = 32;
+
+    // the vms without any algorithm applied (never modified)
+    private final VmTable vms;
+    private final double baseCarbon, baseWaste;
+
+    IncrementalSweep(VmTable vms)
+    {
+        this.vms = vms;
+        double[] base = vms.sumCarbonAndWaste();
+        this.baseCarbon = base[0]; this.baseWaste = base[1];
+    }
+
+    /**
+     * @return true if the combination can be swept incrementally (CR or SD on their own)
+     */
+    static boolean handles(ParamSweep.Combination comb)
+    {
+        return !comb.rt && !comb.ra && !comb.ca && !comb.is && !comb.rs && comb.cr != comb.sd;
+    }
+
+    //------------CR------------//
+
+    /**
+     * Sweeps CR over all combinations of the thresholds.
+     *
+     * @return {carbon, waste, 0, 0} per point, indexed [p95Thresh][wasteThresh] (in the given order)
+     */
+    double[][][] cr(double[] p95Thresh, double[] wasteThresh)
+    {
+        int n = vms.size();
+
+        // eligible while waste > wasteThresh
+        double[] waste = new double[n];
+        for(int vm = 0; vm < n; vm++) waste[vm] = vms.getWaste(vm);
+        int[] byWaste = sortBy(waste, n);
+
+        // flip values of p95Thresh: the vm may be reduced to c once p95Thresh > p95 * cores / c
+        int[] cc = Algorithms.coreCounts();
+        int events = 0;
+        double[] flip = new double[n * cc.length];
+        int[] flipVm = new int[flip.length];
+        for(int vm = 0; vm < n; vm++)
+        {
+            int cores = vms.getCores(vm);
+            for(int c : cc)
+            {
+                if(c >= cores) break;
+                if(vms.getMaxUtil(vm) * cores / c > 1) continue; // never allowed
+                flip[events] = vms.getP95(vm) * cores / c; flipVm[events] = vm; events++;
+            }
+        }
+        int[] byFlip = sortBy(flip, events);
+        double[] flipSorted = new double[events];
+        for(int i = 0; i < events; i++) flipSorted[i] = flip[byFlip[i]];
+        double[] wasteSorted = new double[n];
+        for(int i = 0; i < n; i++) wasteSorted[i] = waste[byWaste[i]];
+
+        int[] pOrder = sortBy(p95Thresh, p95Thresh.length), wOrder = sortBy(wasteThresh, wasteThresh.length);
+        double[][][] results = new double[p95Thresh.length][wasteThresh.length][];
+
+        // state at the first point: core count of every vm at the current p95Thresh (also of the vms that aren't eligible)
+        int[] newCores = new int[n];
+        boolean[] eligible = new boolean[n];
+        double p = p95Thresh[pOrder[0]], w = wasteThresh[wOrder[0]];
+        CompensatedSum carbon = new CompensatedSum(), wasted = new CompensatedSum();
+        for(int vm = 0; vm < n; vm++)
+        {
+            newCores[vm] = crCores(vm, p);
+            eligible[vm] = waste[vm] > w;
+            if(eligible[vm]) addCR(vm, newCores[vm], 1, carbon, wasted);
+        }
+
+        // wasteThresh ascending, p95Thresh back and forth (so every step only moves one threshold to the next value)
+        for(int wi = 0; wi < wOrder.length; wi++)
+        {
+            double nw = wasteThresh[wOrder[wi]];
+            // vms with w < waste <= nw aren't eligible anymore
+            for(int i = upperBound(wasteSorted, w), to = upperBound(wasteSorted, nw); i < to; i++)
+            {
+                int vm = byWaste[i];
+                addCR(vm, newCores[vm], -1, carbon, wasted);
+                eligible[vm] = false;
+            }
+            w = nw;
+
+            for(int k = 0; k < pOrder.length; k++)
+            {
+                int pi = pOrder[wi % 2 == 0 ? k : pOrder.length - 1 - k];
+                double np = p95Thresh[pi];
+                for(int i = lowerBound(flipSorted, lower(Math.min(p, np))), to = upperBound(flipSorted, upper(Math.max(p, np))); i < to; i++)
+                {
+                    int vm = flipVm[byFlip[i]], c = crCores(vm, np);
+                    if(c == newCores[vm]) continue;
+                    if(eligible[vm]) {addCR(vm, newCores[vm], -1, carbon, wasted); addCR(vm, c, 1, carbon, wasted);}
+                    newCores[vm] = c;
+                }
+                p = np;
+                results[pi][wOrder[wi]] = new double[]{baseCarbon + carbon.get(), baseWaste + wasted.get(), 0, 0};
+            }
+        }
+        return results;
+    }
+
+    // the core count CR gives the vm at the threshold (eligibility aside), like Algorithms#runCR
+    private int crCores(int vm, double p95Thresh)
+    {
+        if(vms.getP95(vm) >= p95Thresh) return vms.getCores(vm);
+        return Algorithms.reducedCores(vms.getCores(vm), vms.getP95(vm), vms.getMaxUtil(vm), p95Thresh);
+    }
+
+    // adds sign * (change of carbon and waste when CR reduces the vm to c cores)
+    private void addCR(int vm, int c, int sign, CompensatedSum carbon, CompensatedSum wasted)
+    {
+        int cores = vms.getCores(vm);
+        if(c == cores) return;
+        double avg_util = vms.getAvgUtil(vm) * cores / c; // same as runCR
+        double power = Vm.linRegPower(c, vms.getRam(vm), avg_util);
+        int time = vms.getRuntime(vm);
+        carbon.add(sign * (vms.getAverageMOER(vm) * VmTable.energy(power, time) - vms.getCarbon(vm)));
+        wasted.add(sign * (VmTable.waste(c, vms.getRam(vm), time, avg_util) - vms.getWaste(vm)));
+    }
+
+    //------------SD------------//
+
+    /**
+     * Sweeps SD over u_idle.
+     *
+     * @return {carbon, waste, 0, 0} per point (in the given order)
+     */
+    double[][] sd(double[] u_idle)
+    {
+        int n = vms.size();
+
+        // the decision can only flip where (u_max - u_idle) / (u_avg - u_idle) crosses 10 or its denominator changes sign
+        double[] flip = new double[n], pole = new double[n];
+        for(int vm = 0; vm < n; vm++)
+        {
+            flip[vm] = (10 * vms.getAvgUtil(vm) - vms.getMaxUtil(vm)) / 9;
+            pole[vm] = vms.getAvgUtil(vm);
+        }
+        int[] byFlip = sortBy(flip, n), byPole = sortBy(pole, n);
+        double[] flipSorted = new double[n], poleSorted = new double[n];
+        for(int i = 0; i < n; i++) {flipSorted[i] = flip[byFlip[i]]; poleSorted[i] = pole[byPole[i]];}
+
+        // vms SD shuts down at the current u_idle (list + position in it, -1 = not in it)
+        int[] down = new int[n], pos = new int[n];
+        int size = 0;
+        Arrays.fill(pos, -1);
+
+        int[] order = sortBy(u_idle, u_idle.length);
+        double[][] results = new double[u_idle.length][];
+        double u = u_idle[order[0]];
+        for(int vm = 0; vm < n; vm++)
+            if(sdApplies(vm, u)) {pos[vm] = size; down[size++] = vm;}
+
+        for(int k = 0; k < order.length; k++)
+        {
+            double nu = u_idle[order[k]];
+            double lo = lower(Math.min(u, nu)), hi = upper(Math.max(u, nu));
+            int[][] by = {byFlip, byPole};
+            double[][] sorted = {flipSorted, poleSorted};
+            for(int b = 0; b < by.length; b++)
+            {
+                for(int i = lowerBound(sorted[b], lo), to = upperBound(sorted[b], hi); i < to; i++)
+                {
+                    int vm = by[b][i];
+                    boolean applies = sdApplies(vm, nu);
+                    if(applies && pos[vm] < 0) {pos[vm] = size; down[size++] = vm;}
+                    else if(!applies && pos[vm] >= 0)
+                    {
+                        int last = down[--size];
+                        down[pos[vm]] = last; pos[last] = pos[vm]; pos[vm] = -1;
+                    }
+                }
+            }
+            u = nu;
+
+            // the shortened runtimes depend on u_idle, so the vms that are shut down are evaluated again
+            CompensatedSum carbon = new CompensatedSum(), wasted = new CompensatedSum();
+            for(int i = 0; i < size; i++) addSD(down[i], u, carbon, wasted);
+            results[order[k]] = new double[]{baseCarbon + carbon.get(), baseWaste + wasted.get(), 0, 0};
+        }
+        return results;
+    }
+
+    private boolean sdApplies(int vm, double u_idle)
+    {
+        return Algorithms.shutsDown(vms.getMaxUtil(vm), vms.getAvgUtil(vm), u_idle);
+    }
+
+    // adds the change of carbon and waste when SD shuts the vm down early, like Algorithms#runSD
+    private void addSD(int vm, double u_idle, CompensatedSum carbon, CompensatedSum wasted)
+    {
+        double u_max = vms.getMaxUtil(vm);
+        int start = vms.getStart(vm);
+        int time = Algorithms.shutdownRuntime(vms.getEnd(vm) - start, u_max, vms.getAvgUtil(vm), u_idle);
+        double power = Vm.linRegPower(vms.getCores(vm), vms.getRam(vm), u_max);
+        carbon.add(vms.getMOER().average(start, start + time) * VmTable.energy(power, time) - vms.getCarbon(vm));
+        wasted.add(VmTable.waste(vms.getCores(vm), vms.getRam(vm), time, u_max) - vms.getWaste(vm));
+    }
+
+    //------------Below are helpers-----------//
+
+    // indexes [0, n) sorted by key (stable, in the order of Double#compare), a merge sort on primitive arrays (no boxing)
+    static int[] sortBy(double[] key, int n)
+    {
+        // the bits of a double as a long that sorts the same way (negative values have their other bits flipped)
+        long[] keys = new long[n], keysTmp = new long[n];
+        int[] idx = new int[n], idxTmp = new int[n];
+        for(int i = 0; i < n; i++)
+        {
+            long bits = Double.doubleToLongBits(key[i]);
+            keys[i] = bits ^ ((bits >> 63) & Long.MAX_VALUE);
+            idx[i] = i;
+        }
+
+        // insertion sort of short runs, then merge runs of twice the width until one is left
+        for(int lo = 0; lo < n; lo += RUN)
+        {
+            for(int i = lo + 1, hi = Math.min(lo + RUN, n); i < hi; i++)
+            {
+                long k = keys[i];
+                int v = idx[i], j = i - 1;
+                for(; j >= lo && keys[j] > k; j--) {keys[j + 1] = keys[j]; idx[j + 1] = idx[j];}
+                keys[j + 1] = k; idx[j + 1] = v;
+            }
+        }
+        for(long width = RUN; width < n; width *= 2)
+        {
+            for(long start = 0; start < n; start += 2 * width)
+            {
+                int mid = (int) Math.min(start + width, n), hi = (int) Math.min(start + 2 * width, n), i = (int) start, j = mid, o = i;
+                while(i < mid && j < hi)
+                {
+                    // ties take the left run first (stable)
+                    if(keys[j] < keys[i]) {keysTmp[o] = keys[j]; idxTmp[o++] = idx[j++];}
+                    else {keysTmp[o] = keys[i]; idxTmp[o++] = idx[i++];}
+                }
+                System.arraycopy(keys, i, keysTmp, o, mid - i); System.arraycopy(idx, i, idxTmp, o, mid - i);
+                o += mid - i;
+                System.arraycopy(keys, j, keysTmp, o, hi - j); System.arraycopy(idx, j, idxTmp, o, hi - j);
+            }
+            long[] k = keys; keys = keysTmp; keysTmp = k;
+            int[] v = idx; idx = idxTmp; idxTmp = v;
+        }
+        return idx;
+    }
+
+    private static double lower(double v) {return v - MARGIN * (1 + Math.abs(v));}
+    private static double upper(double v) {return v + MARGIN * (1 + Math.abs(v));}
+
+    // first index with sorted[i] >= v
+    private static int lowerBound(double[] sorted, double v)
+    {
+        int lo = 0, hi = sorted.length;
+        while(lo < hi) {int mid = (lo + hi) >>> 1; if(sorted[mid] < v) lo = mid + 1; else hi = mid;}
+        return lo;
+    }
+
+    // first index with sorted[i] > v
+    private static int upperBound(double[] sorted, double v)
+    {
+        int lo = 0, hi = sorted.length;
+        while(lo < hi) {int mid = (lo + hi) >>> 1; if(sorted[mid] <= v) lo = mid + 1; else hi = mid;}
+        return lo;
+    }
+}
@@ -0,0 +1,88 @@
+import java.util.Arrays;
+
+/**
+ * A hash map from long to int without boxing (open addressing, linear probing).
+ *
+ * Used to memoize per-vm decisions that only depend on a few ints packed into one long (see #key).
+ * Not thread-safe; meant to live inside one algorithm run.
+ */
+final class LongIntMap {
+
+    // marks an empty slot, this key can't be stored
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] keys;
+    private int[] values;
+    private int size, mask;
+
+    /**
+     * @param expected expected number of entries (the map grows if there are more)
+     */
+    LongIntMap(int expected)
+    {
+        int cap = 16;
+        while(cap < expected * 2) cap <<= 1;
+        alloc(cap);
+    }
+
+    /**
+     * Packs two ints into one key.
+     */
+    static long key(int a, int b)
+    {
+        return ((long) a << 32) | (b & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @param key the key
+     * @param missing value to return if the key isn't in the map
+     * @return the value of the key, or missing
+     */
+    int get(long key, int missing)
+    {
+        for(int i = slot(key); ; i = (i + 1) & mask)
+        {
+            if(keys[i] == key) return values[i];
+            if(keys[i] == EMPTY) return missing;
+        }
+    }
+
+    /**
+     * @param key the key (must not be Long.MIN_VALUE)
+     * @param value the value
+     */
+    void put(long key, int value)
+    {
+        if(key == EMPTY) throw new IllegalArgumentException("key " + key + " can't be stored");
+        int i = slot(key);
+        for(; keys[i] != EMPTY; i = (i + 1) & mask)
+            if(keys[i] == key) {values[i] = value; return;}
+        keys[i] = key; values[i] = value;
+        if(++size * 2 > keys.length) rehash();
+    }
+
+    int size() {return size;}
+
+    private int slot(long key)
+    {
+        long h = key * 0x9E3779B97F4A7C15L; // fibonacci hashing, the high bits are well mixed
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void alloc(int cap)
+    {
+        keys = new long[cap];
+        values = new int[cap];
+        Arrays.fill(keys, EMPTY);
+        mask = cap - 1;
+    }
+
+    private void rehash()
+    {
+        long[] oldKeys = keys; int[] oldValues = values;
+        alloc(oldKeys.length * 2);
+        size = 0;
+        for(int i = 0; i < oldKeys.length; i++)
+            if(oldKeys[i] != EMPTY) put(oldKeys[i], oldValues[i]);
+    }
+}
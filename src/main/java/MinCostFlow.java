@@ -0,0 +1,348 @@
+import java.util.Arrays;
+
+/**
+ * Min-cost flow with integer supplies, capacities and costs, solved with the primal network simplex.
+ *
+ * The basis is a spanning tree stored as parent/pred arrays plus a thread (preorder) list with subtree sizes and last
+ * successors, so a pivot only touches the cycle and the subtree that moves. The entering arc is picked by block search
+ * (the best arc of the next block of about sqrt(arcs) arcs with a negative reduced cost). This is what makes large
+ * transportation problems (see FlowOptimizer) fast: the number of pivots grows with the nodes, not with the costs.
+ *
+ * Arcs are stored in arrays, nothing is boxed. Instances are meant to be solved once.
+ */
+final class MinCostFlow {
+
+    private static final long INF = Long.MAX_VALUE / 4;
+
+    // arc states: in the tree, or at their lower/upper bound (the sign makes the reduced cost of a good entering arc negative)
+    private static final int TREE = 0, LOWER = 1, UPPER = -1;
+    // direction of the pred arc of a node: node -> parent or parent -> node
+    private static final int UP = 1, DOWN = -1;
+
+    private final int nodes;
+    private final long[] supply;
+
+    // real arcs first, then one artificial arc per node (to/from the root)
+    private int arcs;
+    private int[] source = new int[16], target = new int[16];
+    private long[] cap = new long[16], cost = new long[16];
+
+    // spanning tree (node index nodes = artificial root)
+    private long[] flow, pi;
+    private int[] state, parent, pred, predDir, thread, revThread, succNum, lastSucc;
+
+    // current pivot
+    private int inArc, join, uIn, vIn, uOut, nextArc, blockSize;
+    private long delta;
+
+    MinCostFlow(int nodes)
+    {
+        this.nodes = nodes;
+        this.supply = new long[nodes + 1];
+    }
+
+    int numArcs() {return arcs;}
+
+    /**
+     * @param node the node
+     * @param units units the node sends (negative: receives)
+     */
+    void setSupply(int node, long units) {supply[node] = units;}
+
+    /**
+     * Adds an arc.
+     *
+     * @return the id of the arc (see #flow)
+     */
+    int addArc(int from, int to, long capacity, long cost)
+    {
+        if(arcs == source.length)
+        {
+            int n = arcs * 2;
+            source = Arrays.copyOf(source, n); target = Arrays.copyOf(target, n);
+            cap = Arrays.copyOf(cap, n); this.cost = Arrays.copyOf(this.cost, n);
+        }
+        source[arcs] = from; target[arcs] = to; cap[arcs] = capacity; this.cost[arcs] = cost;
+        return arcs++;
+    }
+
+    /**
+     * @return the flow on an arc (after #solve)
+     */
+    long flow(int arc) {return flow[arc];}
+
+    /**
+     * @return the potential of a node (after #solve): arcs with flow have cost + potential(from) - potential(to) = 0
+     */
+    long potential(int node) {return pi[node];}
+
+    /**
+     * Finds a flow that meets all supplies at minimum cost. The supplies must add up to 0.
+     *
+     * @return the cost of the flow
+     * @throws IllegalStateException if there is no such flow
+     */
+    long solve()
+    {
+        init();
+        while(findEnteringArc())
+        {
+            findJoinNode();
+            boolean change = findLeavingArc();
+            if(delta >= INF) throw new IllegalStateException("unbounded (negative cycle of infinite capacity)");
+            changeFlow(change);
+            if(change)
+            {
+                updateTreeStructure();
+                updatePotential();
+            }
+        }
+        for(int e = arcs; e < arcs + nodes; e++)
+            if(flow[e] > 0) throw new IllegalStateException("the supplies can't be met");
+        long total = 0;
+        for(int e = 0; e < arcs; e++) total += flow[e] * cost[e];
+        return total;
+    }
+
+    private void init()
+    {
+        long sum = 0, maxCost = 0;
+        for(int u = 0; u < nodes; u++) sum += supply[u];
+        if(sum != 0) throw new IllegalArgumentException("the supplies add up to " + sum + ", not 0");
+        for(int e = 0; e < arcs; e++) maxCost = Math.max(maxCost, Math.abs(cost[e]));
+
+        int all = arcs + nodes, root = nodes;
+        source = Arrays.copyOf(source, all); target = Arrays.copyOf(target, all);
+        cap = Arrays.copyOf(cap, all); cost = Arrays.copyOf(cost, all);
+        flow = new long[all]; state = new int[all];
+        Arrays.fill(state, 0, arcs, LOWER);
+        pi = new long[nodes + 1];
+        parent = new int[nodes + 1]; pred = new int[nodes + 1]; predDir = new int[nodes + 1];
+        thread = new int[nodes + 1]; revThread = new int[nodes + 1];
+        succNum = new int[nodes + 1]; lastSucc = new int[nodes + 1];
+        blockSize = Math.max(10, (int) Math.sqrt(arcs));
+        nextArc = 0;
+
+        // start with artificial arcs only: expensive enough that every real path is cheaper
+        long artCost = (maxCost + 1) * (nodes + 1);
+        parent[root] = -1; pred[root] = -1;
+        thread[root] = 0; revThread[0] = root;
+        succNum[root] = nodes + 1; lastSucc[root] = root - 1;
+        for(int u = 0, e = arcs; u < nodes; u++, e++)
+        {
+            parent[u] = root; pred[u] = e;
+            thread[u] = u + 1; revThread[u + 1] = u;
+            succNum[u] = 1; lastSucc[u] = u;
+            cap[e] = INF; state[e] = TREE;
+            if(supply[u] >= 0)
+            {
+                predDir[u] = UP; pi[u] = 0;
+                source[e] = u; target[e] = root; flow[e] = supply[u]; cost[e] = 0;
+            }
+            else
+            {
+                predDir[u] = DOWN; pi[u] = artCost;
+                source[e] = root; target[e] = u; flow[e] = -supply[u]; cost[e] = artCost;
+            }
+        }
+    }
+
+    // block search: the arc with the most negative reduced cost among the next block that has one
+    private boolean findEnteringArc()
+    {
+        long min = 0;
+        int cnt = blockSize, e;
+        for(e = nextArc; e < arcs; e++)
+        {
+            long c = state[e] * (cost[e] + pi[source[e]] - pi[target[e]]);
+            if(c < min) {min = c; inArc = e;}
+            if(--cnt == 0)
+            {
+                if(min < 0) {nextArc = e; return true;}
+                cnt = blockSize;
+            }
+        }
+        for(e = 0; e < nextArc; e++)
+        {
+            long c = state[e] * (cost[e] + pi[source[e]] - pi[target[e]]);
+            if(c < min) {min = c; inArc = e;}
+            if(--cnt == 0)
+            {
+                if(min < 0) {nextArc = e; return true;}
+                cnt = blockSize;
+            }
+        }
+        if(min >= 0) return false;
+        nextArc = e;
+        return true;
+    }
+
+    private void findJoinNode()
+    {
+        int u = source[inArc], v = target[inArc];
+        while(u != v)
+        {
+            if(succNum[u] < succNum[v]) u = parent[u];
+            else v = parent[v];
+        }
+        join = u;
+    }
+
+    // the arc of the cycle that limits the flow change (delta), false if that's the entering arc itself
+    private boolean findLeavingArc()
+    {
+        int first, second;
+        if(state[inArc] == LOWER) {first = source[inArc]; second = target[inArc];}
+        else {first = target[inArc]; second = source[inArc];}
+        delta = cap[inArc];
+        int result = 0;
+        for(int u = first; u != join; u = parent[u])
+        {
+            int e = pred[u];
+            long d = flow[e];
+            if(predDir[u] == DOWN) d = cap[e] >= INF ? INF : cap[e] - d;
+            if(d < delta) {delta = d; uOut = u; result = 1;}
+        }
+        for(int u = second; u != join; u = parent[u])
+        {
+            int e = pred[u];
+            long d = flow[e];
+            if(predDir[u] == UP) d = cap[e] >= INF ? INF : cap[e] - d;
+            if(d <= delta) {delta = d; uOut = u; result = 2;}
+        }
+        if(result == 1) {uIn = first; vIn = second;}
+        else {uIn = second; vIn = first;}
+        return result != 0;
+    }
+
+    private void changeFlow(boolean change)
+    {
+        if(delta > 0)
+        {
+            long val = state[inArc] * delta;
+            flow[inArc] += val;
+            for(int u = source[inArc]; u != join; u = parent[u]) flow[pred[u]] -= predDir[u] * val;
+            for(int u = target[inArc]; u != join; u = parent[u]) flow[pred[u]] += predDir[u] * val;
+        }
+        if(change)
+        {
+            state[inArc] = TREE;
+            state[pred[uOut]] = flow[pred[uOut]] == 0 ? LOWER : UPPER;
+        }
+        else state[inArc] = -state[inArc];
+    }
+
+    // moves the subtree of uOut below vIn (the stem from uIn up to uOut is reversed)
+    private void updateTreeStructure()
+    {
+        int oldRevThread = revThread[uOut], oldSuccNum = succNum[uOut], oldLastSucc = lastSucc[uOut];
+        int vOut = parent[uOut];
+
+        if(uIn == uOut)
+        {
+            parent[uIn] = vIn;
+            pred[uIn] = inArc;
+            predDir[uIn] = uIn == source[inArc] ? UP : DOWN;
+
+            if(thread[vIn] != uOut)
+            {
+                int after = thread[oldLastSucc];
+                thread[oldRevThread] = after;
+                revThread[after] = oldRevThread;
+                after = thread[vIn];
+                thread[vIn] = uOut;
+                revThread[uOut] = vIn;
+                thread[oldLastSucc] = after;
+                revThread[after] = oldLastSucc;
+            }
+        }
+        else
+        {
+            // if oldRevThread is vIn, join and vOut coincide
+            int threadContinue = oldRevThread == vIn ? thread[oldLastSucc] : thread[vIn];
+
+            // update thread and parent along the stem
+            int stem = uIn, parStem = vIn, nextStem;
+            int last = lastSucc[uIn], before, after = thread[last];
+            thread[vIn] = uIn;
+            int[] dirty = new int[8];
+            int nd = 0;
+            dirty[nd++] = vIn;
+            while(stem != uOut)
+            {
+                // insert the next stem node into the thread list
+                nextStem = parent[stem];
+                thread[last] = nextStem;
+                if(nd == dirty.length) dirty = Arrays.copyOf(dirty, nd * 2);
+                dirty[nd++] = last;
+
+                // remove the subtree of stem from the thread list
+                before = revThread[stem];
+                thread[before] = after;
+                revThread[after] = before;
+
+                // change the parent and shift the stem
+                parent[stem] = parStem;
+                parStem = stem;
+                stem = nextStem;
+
+                last = lastSucc[stem] == lastSucc[parStem] ? revThread[parStem] : lastSucc[stem];
+                after = thread[last];
+            }
+            parent[uOut] = parStem;
+            thread[last] = threadContinue;
+            revThread[threadContinue] = last;
+            lastSucc[uOut] = last;
+
+            // remove the subtree of uOut from the thread list (unless oldRevThread is vIn)
+            if(oldRevThread != vIn)
+            {
+                thread[oldRevThread] = after;
+                revThread[after] = oldRevThread;
+            }
+
+            for(int i = 0; i < nd; i++) revThread[thread[dirty[i]]] = dirty[i];
+
+            // pred, predDir, lastSucc and succNum of the stem, from uOut down to uIn
+            int tmpSc = 0, tmpLs = lastSucc[uOut];
+            for(int u = uOut, p = parent[u]; u != uIn; u = p, p = parent[u])
+            {
+                pred[u] = pred[p];
+                predDir[u] = -predDir[p];
+                tmpSc += succNum[u] - succNum[p];
+                succNum[u] = tmpSc;
+                lastSucc[p] = tmpLs;
+            }
+            pred[uIn] = inArc;
+            predDir[uIn] = uIn == source[inArc] ? UP : DOWN;
+            succNum[uIn] = oldSuccNum;
+        }
+
+        // lastSucc from vIn towards the root
+        int upLimitOut = lastSucc[join] == vIn ? join : -1;
+        int lastSuccOut = lastSucc[uOut];
+        for(int u = vIn; u != -1 && lastSucc[u] == vIn; u = parent[u]) lastSucc[u] = lastSuccOut;
+
+        // lastSucc from vOut towards the root
+        if(join != oldRevThread && vIn != oldRevThread)
+        {
+            for(int u = vOut; u != upLimitOut && lastSucc[u] == oldLastSucc; u = parent[u]) lastSucc[u] = oldRevThread;
+        }
+        else if(lastSuccOut != oldLastSucc)
+        {
+            for(int u = vOut; u != upLimitOut && lastSucc[u] == oldLastSucc; u = parent[u]) lastSucc[u] = lastSuccOut;
+        }
+
+        // succNum from vIn / vOut to join
+        for(int u = vIn; u != join; u = parent[u]) succNum[u] += oldSuccNum;
+        for(int u = vOut; u != join; u = parent[u]) succNum[u] -= oldSuccNum;
+    }
+
+    // the entering arc is a tree arc now: shift the potentials of the moved subtree so that its reduced cost is 0
+    private void updatePotential()
+    {
+        long sigma = pi[vIn] - pi[uIn] - predDir[uIn] * cost[inArc];
+        int end = thread[lastSucc[uIn]];
+        for(int u = uIn; u != end; u = thread[u]) pi[u] += sigma;
+    }
+}
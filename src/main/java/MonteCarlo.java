@@ -0,0 +1,106 @@
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Monte-Carlo runs for partial acceptance of the suggestions (acceptance rates < 1).
+ *
+ * Every replica is one cycle with its own SplittableRandom, split off a master generator in replica order.
+ * A replica therefore always makes the same decisions, no matter how many threads there are or in which order the replicas run,
+ * and the whole experiment is reproducible from its seed.
+ * The replicas run in parallel (see AlgRunner#runCycles) and all of them share the trace; only the columns a replica changes are copied (see VmTable).
+ */
+public final class MonteCarlo {
+
+    private static final DecimalFormat dft = new DecimalFormat("##############0.###");
+
+    // z value of a two-sided 95% confidence interval (normal approximation)
+    private static final double Z_95 = 1.96;
+
+    private static final String[] METRICS = {"carbon (lbs CO2)", "waste ($)", "avg. delay (hrs)", "avg. delay of postponed vms (hrs)"};
+
+    private MonteCarlo() {}
+
+    /**
+     * Mean and 95% confidence interval of each metric over all replicas.
+     */
+    public static final class Summary
+    {
+        public final String algorithms;
+        public final int replicas;
+
+        // per metric: {carbon, waste, avg. delay, avg. delay of postponed vms}
+        private final double[] mean, halfWidth;
+
+        Summary(String algorithms, List<double[]> results)
+        {
+            this.algorithms = algorithms;
+            this.replicas = results.size();
+            this.mean = new double[METRICS.length];
+            this.halfWidth = new double[METRICS.length];
+            for(int m = 0; m < METRICS.length; m++)
+            {
+                // Welford's algorithm
+                double avg = 0, m2 = 0;
+                for(int i = 0; i < replicas; i++)
+                {
+                    double x = results.get(i)[m], d = x - avg;
+                    avg += d / (i + 1);
+                    m2 += d * (x - avg);
+                }
+                mean[m] = avg;
+                halfWidth[m] = replicas > 1 ? Z_95 * Math.sqrt(m2 / (replicas - 1) / replicas) : Double.NaN;
+            }
+        }
+
+        public double getMean(int metric) {return mean[metric];}
+        public double getHalfWidth(int metric) {return halfWidth[metric];}
+
+        @Override
+        public String toString()
+        {
+            StringBuilder sb = new StringBuilder(algorithms + " (" + replicas + " replicas, mean +- 95% CI):");
+            for(int m = 0; m < METRICS.length; m++)
+                sb.append("\n\t").append(METRICS[m]).append(": ").append(dft.format(mean[m])).append(" +- ").append(dft.format(halfWidth[m]));
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Runs seeded replicas of one combination of algorithms.
+     *
+     * @param runner the runner holding the trace (must be in fast mode)
+     * @param algorithms the algorithms to apply, e.g. 'RT+CR' (see ParamSweep#run)
+     * @param params the algorithm parameters {moer_thresh, confidence_thresh, p95Thresh, wasteThresh, u_idle}, null = defaults
+     * @param acceptance {RT, RA, core reduction, shutdown} acceptance rates
+     * @param replicas number of replicas
+     * @param seed seed of the master generator
+     * @return mean and confidence interval of carbon, waste and delay
+     */
+    public static Summary run(AlgRunner runner, String algorithms, Number[] params, double[] acceptance, int replicas, long seed)
+    {
+        if(!runner.isFast()) throw new IllegalStateException("Monte-Carlo runs need the fast mode");
+        if(replicas < 1) throw new IllegalArgumentException("need at least one replica");
+        if(params == null) params = new Number[5];
+        for(double a : acceptance)
+            if(a < 0 || a > 1) throw new IllegalArgumentException("acceptance rates must be in [0, 1]");
+
+        ParamSweep.Combination comb = ParamSweep.Combination.parse(algorithms);
+        SplittableRandom master = new SplittableRandom(seed);
+        List<AlgRunner.Cycle> cycles = new ArrayList<>(replicas);
+        for(int r = 0; r < replicas; r++)
+        {
+            // one generator (and Algorithms instance) per replica, b/c SplittableRandom isn't thread-safe
+            Algorithms algos = new Algorithms(
+                    params[0] == null ? null : params[0].intValue(),
+                    params[1] == null ? null : params[1].intValue(),
+                    params[2] == null ? null : params[2].doubleValue(),
+                    params[3] == null ? null : params[3].doubleValue(),
+                    params[4] == null ? null : params[4].doubleValue(),
+                    acceptance, master.split());
+            cycles.add(comb.cycle(algos));
+        }
+        return new Summary(comb.name, runner.runCycles(cycles, false));
+    }
+}
@@ -0,0 +1,146 @@
+import org.cloudbus.cloudsim.MoerSeries;
+
+import java.util.Arrays;
+
+/**
+ * The candidate windows of Rescheduling by Averages (RA) for one runlength.
+ *
+ * RA moves a vm to the first window (of the vm's runlength) within a day whose predicted MOER sum is a local minimum
+ * (not larger than the windows one interval earlier/later) and whose average is cheap enough. Both only depend on the
+ * runlength, so this index precomputes, once per runlength:
+ *  - the window sums W[k] = PMOER[k] + ... + PMOER[k + runlength - 1] (from the prefix sums of the series),
+ *  - the local minima of W (positions + sums) with a segment tree of their min sum,
+ *  - the min over every day-long range of candidate windows (sliding window minimum with a monotonic deque).
+ * A vm whose range holds no cheap enough local minimum is rejected in O(1), otherwise the window is found by
+ * descending the tree in O(log n).
+ *
+ * Use #of to share an index between all vms, cycles and sweeps with the same runlength.
+ */
+final class MovingAverageIndex {
+
+    private final int runlength, day;
+
+    // number of windows (k = 0 .. n - 1)
+    private final int n;
+
+    // local minima of the window sums: positions (ascending) and sums
+    private final int[] minPos;
+    private final long[] minSum;
+
+    // min of the local minima sums over the candidate range [k, min(k + span, n - 1)) of a vm (see #candidates), Long.MAX_VALUE if there are none
+    private final long[] rangeMin;
+    private final int span;
+
+    // segment tree over the local minima (leaves at [leaves, 2 * leaves)), empty leaves hold Long.MAX_VALUE
+    private final int leaves;
+    private final long[] treeMin;
+
+    private MovingAverageIndex(MoerSeries PMOER, int runlength, int day)
+    {
+        this.runlength = runlength;
+        this.day = day;
+        this.n = Math.max(0, PMOER.size() - runlength + 1);
+
+        // local minima (the first and the last window have only one neighbour, they are never candidates)
+        long[] masked = new long[n];
+        int[] pos = new int[n];
+        long[] sums = new long[n];
+        int m = 0;
+        Arrays.fill(masked, Long.MAX_VALUE);
+        for(int k = 1; k + 1 < n; k++)
+        {
+            long w = PMOER.sum(k, k + runlength);
+            if(w <= PMOER.sum(k - 1, k - 1 + runlength) && w <= PMOER.sum(k + 1, k + 1 + runlength))
+            {
+                masked[k] = w;
+                pos[m] = k; sums[m] = w; m++;
+            }
+        }
+        this.minPos = Arrays.copyOf(pos, m);
+        this.minSum = Arrays.copyOf(sums, m);
+
+        // sliding window minimum over [k, k + span), right to left:
+        // the deque holds positions in the current range with increasing sums, the front is the min
+        this.span = day - runlength - 2;
+        this.rangeMin = new long[n];
+        Arrays.fill(rangeMin, Long.MAX_VALUE);
+        if(span > 0)
+        {
+            int[] deque = new int[n];
+            int head = 0, tail = 0;
+            for(int k = n - 2; k >= 0; k--)
+            {
+                while(tail > head && masked[deque[tail - 1]] >= masked[k]) tail--;
+                deque[tail++] = k;
+                while(deque[head] >= k + span) head++;
+                rangeMin[k] = masked[deque[head]];
+            }
+        }
+
+        int l = 1;
+        while(l < Math.max(m, 1)) l <<= 1;
+        this.leaves = l;
+        this.treeMin = new long[2 * l];
+        Arrays.fill(treeMin, Long.MAX_VALUE);
+        System.arraycopy(minSum, 0, treeMin, l, m);
+        for(int v = l - 1; v >= 1; v--) treeMin[v] = Math.min(treeMin[2 * v], treeMin[2 * v + 1]);
+    }
+
+    /**
+     * Gets the index for a PMOER series, runlength and day length, built on first use and cached in the series.
+     *
+     * @param PMOER predicted MOER
+     * @param runlength runlength of the vms (in 5 min. intervals)
+     * @param day how far ahead (in 5 min. intervals) a vm may be moved
+     * @return the index
+     */
+    static MovingAverageIndex of(MoerSeries PMOER, int runlength, int day)
+    {
+        return PMOER.derived(Arrays.asList(MovingAverageIndex.class, runlength, day), p -> new MovingAverageIndex(p, runlength, day));
+    }
+
+    /**
+     * Finds the new start of a vm: the first window (k - 1, k - 1 + runlength] that RA would move the vm to.
+     *
+     * The candidate windows of a vm starting at vstart are k in [vstart + 2, min(vstart + day, size) - runlength),
+     * which is exactly where RA always looked (its loop variable i is k - 1).
+     *
+     * @param vstart start of the vm (5 min. interval)
+     * @param maxAvg the average PMOER of the window must be below this
+     * @return the new start (5 min. interval), -1 if the vm stays where it is
+     */
+    int newStart(int vstart, double maxAvg)
+    {
+        int from = vstart + 2, to = Math.min(vstart + day - runlength, n - 1);
+        if(from >= to) return -1;
+
+        // O(1) rejection: no local minimum in the range is cheap enough
+        if(!(maxAvg > (double) rangeMin[from] / runlength)) return -1;
+
+        int i = find(1, 0, leaves, lowerBound(from), lowerBound(to), maxAvg);
+        return i < 0 ? -1 : minPos[i] - 1;
+    }
+
+    // first local minimum in [lo, hi) (indexes into minPos) whose average is below maxAvg, -1 if there is none
+    private int find(int v, int nodeLo, int nodeHi, int lo, int hi, double maxAvg)
+    {
+        if(nodeHi <= lo || nodeLo >= hi || !(maxAvg > (double) treeMin[v] / runlength)) return -1;
+        if(nodeHi - nodeLo == 1) return nodeLo;
+        int mid = (nodeLo + nodeHi) >>> 1;
+        int i = find(2 * v, nodeLo, mid, lo, hi, maxAvg);
+        return i >= 0 ? i : find(2 * v + 1, mid, nodeHi, lo, hi, maxAvg);
+    }
+
+    // index of the first local minimum at or after position k
+    private int lowerBound(int k)
+    {
+        int lo = 0, hi = minPos.length;
+        while(lo < hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            if(minPos[mid] < k) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,312 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Reads a csv file in parallel.
+ *
+ * The file is split into byte ranges whose boundaries are moved to the next line break, so every range holds whole rows.
+ * The ranges are memory-mapped and parsed concurrently (one ChunkParser per range) and handed back in file order,
+ * so the caller can merge them (or process them one by one, see #stream) as if the file was read from top to bottom.
+ * Fields are parsed straight from the mapped bytes (see Row#getDouble), no Strings are created per row.
+ */
+final class ParallelCsvReader {
+
+    // target size of one range (bytes)
+    private static final long CHUNK_BYTES = 8 << 20;
+
+    private ParallelCsvReader() {}
+
+    /**
+     * Collects the rows of one byte range. Each range gets its own instance, so implementations don't have to be thread-safe.
+     */
+    static abstract class ChunkParser
+    {
+        /**
+         * Handles one (non-blank) row.
+         *
+         * @param row the row, only valid during this call
+         */
+        abstract void row(Row row);
+
+        /**
+         * Gets how many rows this parser kept (used to stop reading once the caller has enough rows).
+         *
+         * @return number of kept rows
+         */
+        abstract int size();
+    }
+
+    /**
+     * One row of the csv file. Fields are referenced by their byte range in the mapped chunk.
+     */
+    static final class Row
+    {
+        private ByteBuffer buf;
+        private int[] from = new int[16], to = new int[16];
+        private int numFields;
+
+        /**
+         * @return number of fields in this row
+         */
+        int numFields() {return numFields;}
+
+        /**
+         * Checks if the row has an empty field or less than the given number of fields.
+         *
+         * @param expected number of fields the row should have
+         * @return true if a value is missing
+         */
+        boolean isMissingValue(int expected)
+        {
+            if(numFields < expected) return true;
+            for(int f = 0; f < numFields; f++) if(from[f] == to[f]) return true;
+            return false;
+        }
+
+        /**
+         * Parses a field as a double, gives the same result as Double#parseDouble.
+         *
+         * @param f index of the field
+         * @return the value
+         * @throws NumberFormatException if the field is missing or not a number
+         */
+        double getDouble(int f)
+        {
+            if(f >= numFields) throw new NumberFormatException("row has no field " + f);
+            return parseDouble(buf, from[f], to[f]);
+        }
+
+        private void add(int begin, int end)
+        {
+            if(numFields == from.length)
+            {
+                from = Arrays.copyOf(from, numFields * 2);
+                to = Arrays.copyOf(to, numFields * 2);
+            }
+            from[numFields] = begin; to[numFields] = end; numFields++;
+        }
+    }
+
+    /**
+     * Reads a csv file in parallel.
+     *
+     * @param path path to the csv file
+     * @param skipHeader true if the first line is a header
+     * @param parsers creates one parser per byte range
+     * @param limit stop starting new ranges once the finished ranges (in file order) hold this many rows
+     * @return the parsers of all ranges that were read, in file order
+     * @throws IOException b/c reading from file...
+     */
+    static <P extends ChunkParser> List<P> read(String path, boolean skipHeader, Supplier<P> parsers, int limit) throws IOException
+    {
+        List<P> result = new ArrayList<>();
+        stream(path, skipHeader, parsers, limit, result::add);
+        return result;
+    }
+
+    /**
+     * Reads a csv file in parallel and hands every parsed range to the sink as soon as it (and all ranges before it) are done.
+     * Only a few ranges (2 per thread) are parsed ahead of the sink, so the memory needed doesn't depend on the size of the file.
+     *
+     * @param path path to the csv file
+     * @param skipHeader true if the first line is a header
+     * @param parsers creates one parser per byte range
+     * @param limit stop once the ranges handed to the sink hold this many rows
+     * @param sink receives the parser of every range, in file order (always called from the calling thread)
+     * @throws IOException b/c reading from file...
+     */
+    static <P extends ChunkParser> void stream(String path, boolean skipHeader, Supplier<P> parsers, long limit, Consumer<P> sink) throws IOException
+    {
+        try(FileChannel ch = FileChannel.open(Paths.get(path), StandardOpenOption.READ))
+        {
+            long size = ch.size();
+            long begin = skipHeader ? nextLine(ch, 0) : 0;
+
+            // split into ranges that end right after a line break
+            List<long[]> ranges = new ArrayList<>();
+            while(begin < size)
+            {
+                long end = (size - begin <= CHUNK_BYTES) ? size : nextLine(ch, begin + CHUNK_BYTES);
+                ranges.add(new long[]{begin, end});
+                begin = end;
+            }
+
+            int threads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), ranges.size()));
+            ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "csv-reader");
+                t.setDaemon(true);
+                return t;
+            });
+            try
+            {
+                // keep at most 2 ranges per thread in flight, collect them in file order
+                ArrayDeque<Future<P>> inFlight = new ArrayDeque<>();
+                int next = 0;
+                long rows = 0;
+                while(rows < limit && (next < ranges.size() || !inFlight.isEmpty()))
+                {
+                    while(next < ranges.size() && inFlight.size() < 2 * threads)
+                    {
+                        long[] range = ranges.get(next++);
+                        inFlight.add(pool.submit(() -> parse(ch.map(FileChannel.MapMode.READ_ONLY, range[0], range[1] - range[0]), parsers.get())));
+                    }
+                    P p = inFlight.poll().get();
+                    rows += p.size();
+                    sink.accept(p);
+                }
+                for(Future<P> f : inFlight) f.cancel(false);
+            }
+            catch(InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while reading " + path, ex);
+            }
+            catch(ExecutionException ex)
+            {
+                Throwable cause = ex.getCause();
+                if(cause instanceof IOException) throw (IOException) cause;
+                if(cause instanceof RuntimeException) throw (RuntimeException) cause;
+                throw new IOException(cause);
+            }
+            finally
+            {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Splits a mapped range into rows and feeds them to the parser.
+     */
+    private static <P extends ChunkParser> P parse(MappedByteBuffer buf, P parser)
+    {
+        Row row = new Row();
+        row.buf = buf;
+        int n = buf.limit(), lineStart = 0;
+        while(lineStart < n)
+        {
+            row.numFields = 0;
+            int i = lineStart, fieldStart = lineStart;
+            byte b = 0;
+            for(; i < n && (b = buf.get(i)) != '\n'; i++)
+                if(b == ',') {row.add(fieldStart, i); fieldStart = i + 1;}
+
+            int lineEnd = i;
+            if(lineEnd > lineStart && buf.get(lineEnd - 1) == '\r') lineEnd--;
+            row.add(fieldStart, Math.max(fieldStart, lineEnd));
+
+            // skip blank lines
+            if(!(row.numFields == 1 && row.from[0] == row.to[0])) parser.row(row);
+            lineStart = i + 1;
+        }
+        return parser;
+    }
+
+    /**
+     * Finds the position right after the next line break at or after pos (or the end of the file).
+     */
+    private static long nextLine(FileChannel ch, long pos) throws IOException
+    {
+        ByteBuffer buf = ByteBuffer.allocate(4096);
+        long size = ch.size();
+        while(pos < size)
+        {
+            buf.clear();
+            int read = ch.read(buf, pos);
+            if(read <= 0) break;
+            for(int i = 0; i < read; i++)
+                if(buf.get(i) == '\n') return pos + i + 1;
+            pos += read;
+        }
+        return size;
+    }
+
+    // exact powers of ten (every one of them is representable as a double)
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    /**
+     * Parses a decimal number from bytes [from, to) without allocating.
+     *
+     * Numbers with at most 15 significant digits and a decimal exponent within +-22 (which covers the traces) are
+     * computed as mantissa * 10^exp or mantissa / 10^-exp. Both operands are exact doubles there, so the single
+     * rounding step gives exactly the same result as Double#parseDouble. Anything else is passed on to Double#parseDouble.
+     *
+     * @return the value
+     * @throws NumberFormatException if the bytes are not a number
+     */
+    static double parseDouble(ByteBuffer buf, int from, int to)
+    {
+        int i = from;
+        boolean negative = false;
+        if(i < to && (buf.get(i) == '-' || buf.get(i) == '+')) negative = buf.get(i++) == '-';
+
+        long mantissa = 0;
+        int digits = 0, exp10 = 0;
+        boolean anyDigit = false, dot = false;
+        for(; i < to; i++)
+        {
+            byte b = buf.get(i);
+            if(b >= '0' && b <= '9')
+            {
+                anyDigit = true;
+                if(mantissa == 0 && b == '0') {if(dot) exp10--; continue;} // leading zeros are not significant
+                if(++digits > 15) return slowParse(buf, from, to);
+                mantissa = mantissa * 10 + (b - '0');
+                if(dot) exp10--;
+            }
+            else if(b == '.' && !dot) dot = true;
+            else break;
+        }
+        if(!anyDigit) return slowParse(buf, from, to);
+
+        if(i < to)
+        {
+            byte b = buf.get(i);
+            if(b != 'e' && b != 'E') return slowParse(buf, from, to);
+            i++;
+            boolean negExp = false;
+            if(i < to && (buf.get(i) == '-' || buf.get(i) == '+')) negExp = buf.get(i++) == '-';
+            if(i == to) return slowParse(buf, from, to);
+            int e = 0;
+            for(; i < to; i++)
+            {
+                b = buf.get(i);
+                if(b < '0' || b > '9' || e > 1000) return slowParse(buf, from, to);
+                e = e * 10 + (b - '0');
+            }
+            exp10 += negExp ? -e : e;
+        }
+
+        double value;
+        if(mantissa == 0) value = 0.0;
+        else if(exp10 >= 0 && exp10 < POW10.length) value = mantissa * POW10[exp10];
+        else if(exp10 < 0 && -exp10 < POW10.length) value = mantissa / POW10[-exp10];
+        else return slowParse(buf, from, to);
+        return negative ? -value : value;
+    }
+
+    // the rare case: copy the bytes and let the JDK do it
+    private static double slowParse(ByteBuffer buf, int from, int to)
+    {
+        byte[] bytes = new byte[to - from];
+        for(int i = from; i < to; i++) bytes[i - from] = buf.get(i);
+        return Double.parseDouble(new String(bytes, StandardCharsets.ISO_8859_1));
+    }
+}
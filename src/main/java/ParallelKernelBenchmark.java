@@ -0,0 +1,122 @@
+import org.cloudbus.cloudsim.*;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.provisioners.BwProvisionerSimple;
+import org.cloudbus.cloudsim.provisioners.PeProvisionerSimple;
+import org.cloudbus.cloudsim.provisioners.RamProvisionerSimple;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Benchmark of the parallel CloudSim kernel (see CloudSim#setParallelism): runs the same simulation with N datacenters
+ * on one thread and on several threads, checks that the results are the same and prints the speedup.
+ * Every datacenter gets the same VMs and cloudlets, so their updates happen at the same times and run in parallel.
+ *
+ * usage: ParallelKernelBenchmark [datacenters] [vms per datacenter] [cloudlets per vm] [threads]
+ *  (defaults: 8 40 25 number of processors)
+ */
+public class ParallelKernelBenchmark {
+
+    private static final int PES_PER_HOST = 8, MIPS = 1000;
+
+    public static void main(String[] args)
+    {
+        int dcs = (args.length > 0) ? Integer.parseInt(args[0]) : 8;
+        int vms = (args.length > 1) ? Integer.parseInt(args[1]) : 40;
+        int cloudlets = (args.length > 2) ? Integer.parseInt(args[2]) : 25;
+        int threads = (args.length > 3) ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        Log.disable();
+
+        // warm up (JIT)
+        run(dcs, vms, cloudlets, 1);
+        run(dcs, vms, cloudlets, threads);
+
+        long start = System.nanoTime();
+        String sequential = run(dcs, vms, cloudlets, 1);
+        double seqTime = (System.nanoTime() - start) / 1e9;
+
+        start = System.nanoTime();
+        String parallel = run(dcs, vms, cloudlets, threads);
+        double parTime = (System.nanoTime() - start) / 1e9;
+
+        System.out.println(dcs + " datacenters, " + dcs * vms + " VMs, " + dcs * vms * cloudlets + " cloudlets");
+        System.out.println("sequential: " + seqTime + "s, " + threads + " threads: " + parTime + "s, speedup " +
+                String.format("%.2f", seqTime / parTime) + ", identical results: " + sequential.equals(parallel));
+    }
+
+    /**
+     * Runs the simulation.
+     *
+     * @return the results of the cloudlets (in the order they were received)
+     */
+    private static String run(int dcs, int vms, int cloudlets, int threads)
+    {
+        CloudSim.setParallelism(threads);
+        CloudSim.init(1, Calendar.getInstance(), false);
+
+        // each datacenter fits exactly vms VMs, so the broker fills them one after the other
+        for(int i = 0; i < dcs; i++) createDatacenter("Datacenter_" + i, (vms + PES_PER_HOST - 1) / PES_PER_HOST);
+
+        DatacenterBroker broker;
+        try
+        {
+            broker = new DatacenterBroker("Broker");
+        }
+        catch(Exception ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+
+        List<Vm> vmlist = new ArrayList<>();
+        List<Cloudlet> cloudletList = new ArrayList<>();
+        UtilizationModel utilizationModel = new UtilizationModelFull();
+        for(int vmid = 0; vmid < dcs * vms; vmid++)
+        {
+            vmlist.add(new Vm(vmid, broker.getId(), MIPS, 1, 512, 1000, 10000, "Xen", new CloudletSchedulerTimeShared()));
+            for(int j = 0; j < cloudlets; j++)
+            {
+                // the same lengths in every datacenter
+                long length = 100_000L * (1 + (vmid % vms + j) % 17);
+                Cloudlet cloudlet = new Cloudlet(vmid * cloudlets + j, length, 1, 300, 300, utilizationModel, utilizationModel, utilizationModel);
+                cloudlet.setUserId(broker.getId());
+                cloudlet.setVmId(vmid);
+                cloudletList.add(cloudlet);
+            }
+        }
+        broker.submitVmList(vmlist);
+        broker.submitCloudletList(cloudletList);
+
+        CloudSim.startSimulation();
+        CloudSim.stopSimulation();
+
+        StringBuilder res = new StringBuilder();
+        for(Cloudlet c : broker.getCloudletReceivedList())
+            res.append(c.getCloudletId()).append(',').append(c.getResourceId()).append(',')
+                    .append(c.getExecStartTime()).append(',').append(c.getFinishTime()).append('\n');
+        return res.toString();
+    }
+
+    private static Datacenter createDatacenter(String name, int hosts)
+    {
+        List<Host> hostList = new ArrayList<>();
+        for(int h = 0; h < hosts; h++)
+        {
+            List<Pe> peList = new ArrayList<>();
+            for(int p = 0; p < PES_PER_HOST; p++) peList.add(new Pe(p, new PeProvisionerSimple(MIPS)));
+            hostList.add(new Host(h, new RamProvisionerSimple(PES_PER_HOST * 512), new BwProvisionerSimple(PES_PER_HOST * 1000),
+                    1_000_000, peList, new VmSchedulerTimeShared(peList)));
+        }
+        DatacenterCharacteristics characteristics = new DatacenterCharacteristics("x86", "Linux", "Xen", hostList,
+                10.0, 3.0, 0.05, 0.001, 0.0);
+        try
+        {
+            return new Datacenter(name, characteristics, new VmAllocationPolicySimple(hostList), new LinkedList<Storage>(), 0);
+        }
+        catch(Exception ex)
+        {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,357 @@
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Parameter sweep over the algorithm parameters (moer_thresh, confidence_thresh, p95Thresh, wasteThresh, u_idle).
+ *
+ * Every combination of the given grids is one point. All points are evaluated in parallel against the trace that is
+ * already loaded by the AlgRunner (see AlgRunner#runCycles), so nothing is re-read and CloudSim isn't involved.
+ * Grids of parameters that the chosen algorithms don't use are collapsed to their first value, so they don't multiply the number of points.
+ */
+public final class ParamSweep {
+
+    private static final DecimalFormat dft = new DecimalFormat("##############0.###");
+
+    // grids (the first value is also used for parameters that are not swept)
+    private int[] moer_thresh = {810}, confidence_thresh = {50};
+    private double[] p95Thresh = {0.8}, wasteThresh = {5}, u_idle = {0.01};
+
+    public ParamSweep moerThresh(int... values) {moer_thresh = check(values); return this;}
+    public ParamSweep confidenceThresh(int... values) {confidence_thresh = check(values); return this;}
+    public ParamSweep p95Thresh(double... values) {p95Thresh = check(values); return this;}
+    public ParamSweep wasteThresh(double... values) {wasteThresh = check(values); return this;}
+    public ParamSweep uIdle(double... values) {u_idle = check(values); return this;}
+
+    /**
+     * One evaluated point of the sweep.
+     */
+    public static final class Point
+    {
+        public final String algorithms;
+        public final int moer_thresh, confidence_thresh;
+        public final double p95Thresh, wasteThresh, u_idle;
+
+        // {carbon (lbs CO2), waste ($), avg. delay (hrs), avg. delay of postponed vms (hrs)}, set once evaluated
+        private double[] result;
+
+        Point(String algorithms, int moer_thresh, int confidence_thresh, double p95Thresh, double wasteThresh, double u_idle)
+        {
+            this.algorithms = algorithms; this.moer_thresh = moer_thresh; this.confidence_thresh = confidence_thresh;
+            this.p95Thresh = p95Thresh; this.wasteThresh = wasteThresh; this.u_idle = u_idle;
+        }
+
+        public double getCarbon() {return result[0];}
+        public double getWaste() {return result[1];}
+        public double getDelay() {return result[2];}
+        public double getPostponedDelay() {return result[3];}
+
+        void setResult(double[] result) {this.result = result;}
+        boolean isEvaluated() {return result != null;}
+
+        @Override
+        public String toString()
+        {
+            return algorithms + " (moer_thresh=" + moer_thresh + ", confidence_thresh=" + confidence_thresh + ", p95Thresh=" + p95Thresh +
+                    ", wasteThresh=" + wasteThresh + ", u_idle=" + u_idle + "): carbon " + dft.format(getCarbon()) + " lbs CO2, waste $" +
+                    dft.format(getWaste()) + ", avg. delay " + dft.format(getDelay()) + " hrs";
+        }
+    }
+
+    /**
+     * Evaluates all points of the sweep for one combination of algorithms.
+     *
+     * @param runner the runner holding the trace (must be in fast mode)
+     * @param algorithms the algorithms to apply, e.g. 'RT', 'RA+CR', 'SD' or the chain 'SD>CR>RA' (see Combination#parse)
+     * @return the evaluated points
+     */
+    public List<Point> run(AlgRunner runner, String algorithms)
+    {
+        if(!runner.isFast()) throw new IllegalStateException("parameter sweeps need the fast mode");
+
+        Combination comb = Combination.parse(algorithms);
+        double[] pt = p95Grid(comb), wt = wasteGrid(comb), ui = uIdleGrid(comb);
+        List<Point> points = points(comb);
+
+        // CR or SD on their own only re-evaluate the vms whose decision changes from point to point
+        if(IncrementalSweep.handles(comb) && !runner.isStream())
+        {
+            IncrementalSweep inc = new IncrementalSweep(runner.newTable());
+            if(comb.cr)
+            {
+                double[][][] results = inc.cr(pt, wt);
+                int i = 0;
+                for(int p = 0; p < pt.length; p++) for(int w = 0; w < wt.length; w++) points.get(i++).result = results[p][w];
+            }
+            else
+            {
+                double[][] results = inc.sd(ui);
+                for(int i = 0; i < ui.length; i++) points.get(i).result = results[i];
+            }
+            return points;
+        }
+
+        List<AlgRunner.Cycle> cycles = new ArrayList<>();
+        for(Point p : points) cycles.add(comb.cycle(new Algorithms(p.moer_thresh, p.confidence_thresh, p.p95Thresh, p.wasteThresh, p.u_idle)));
+        List<double[]> results = runner.runCycles(cycles, false);
+        for(int i = 0; i < points.size(); i++) points.get(i).result = results.get(i);
+        return points;
+    }
+
+    //------------Below are the grids of one combination (only the parameters the algorithms use are swept)-----------//
+
+    /**
+     * @return all points of the grids, ordered by moer_thresh, confidence_thresh, p95Thresh, wasteThresh, u_idle (the last one varies fastest)
+     */
+    List<Point> points(Combination comb)
+    {
+        List<Point> points = new ArrayList<>();
+        for(int m : moerGrid(comb)) for(int c : confidenceGrid(comb)) for(double p : p95Grid(comb)) for(double w : wasteGrid(comb)) for(double u : uIdleGrid(comb))
+            points.add(new Point(comb.name, m, c, p, w, u));
+        return points;
+    }
+
+    int[] moerGrid(Combination comb) {return comb.rt ? moer_thresh : first(moer_thresh);}
+    int[] confidenceGrid(Combination comb) {return comb.ra ? confidence_thresh : first(confidence_thresh);}
+    double[] p95Grid(Combination comb) {return comb.cr || comb.rs ? p95Thresh : first(p95Thresh);}
+    double[] wasteGrid(Combination comb) {return comb.cr || comb.rs ? wasteThresh : first(wasteThresh);}
+    double[] uIdleGrid(Combination comb) {return comb.sd ? u_idle : first(u_idle);}
+
+    /**
+     * A combination of algorithms, e.g. 'RT+CR' or 'SD>CR>RA' (at most one of RT/RA/CA/IS, CR or RS, SD can't run after IS).
+     */
+    static final class Combination
+    {
+        final String name;
+        final boolean rt, ra, ca, is, cr, rs, sd;
+
+        // the algorithms in the order they run (a chain like 'SD>CR>RA'), null = the fixed order of a combination like 'RT+CR'
+        private final List<String> chain;
+
+        private Combination(String name, boolean rt, boolean ra, boolean ca, boolean is, boolean cr, boolean rs, boolean sd, List<String> chain)
+        {
+            this.name = name; this.rt = rt; this.ra = ra; this.ca = ca; this.is = is; this.cr = cr; this.rs = rs; this.sd = sd; this.chain = chain;
+        }
+
+        /**
+         * @param algorithms a combination like 'RT+CR' (RT/RA/CA/IS first, then CR/RS, then SD) or a chain like 'SD>CR>RA' (in that order)
+         */
+        static Combination parse(String algorithms)
+        {
+            boolean ordered = algorithms.contains(">");
+            List<String> algs = Arrays.asList(algorithms.toUpperCase(Locale.ROOT).split(ordered ? ">" : "\\+"));
+            for(String a : algs)
+                if(!Arrays.asList("RT", "RA", "CA", "IS", "CR", "RS", "SD").contains(a)) throw new IllegalArgumentException("unknown algorithm: " + a);
+            if(algs.size() != new HashSet<>(algs).size()) throw new IllegalArgumentException("an algorithm can only be used once: " + algorithms);
+            boolean rt = algs.contains("RT"), ra = algs.contains("RA"), ca = algs.contains("CA"), is = algs.contains("IS");
+            if((rt ? 1 : 0) + (ra ? 1 : 0) + (ca ? 1 : 0) + (is ? 1 : 0) > 1) throw new IllegalArgumentException("only one of RT, RA, CA and IS can be used");
+            // both resize the vms, RS is CR over a catalog of sizes
+            if(algs.contains("CR") && algs.contains("RS")) throw new IllegalArgumentException("only one of CR and RS can be used");
+            // SD shortens the runtime from start to end, which doesn't work with the segments of IS (unless SD runs first)
+            if(is && algs.contains("SD") && (!ordered || algs.indexOf("SD") > algs.indexOf("IS")))
+                throw new IllegalArgumentException("SD can't run after IS");
+            return new Combination(String.join(ordered ? ">" : "+", algs), rt, ra, ca, is, algs.contains("CR"), algs.contains("RS"),
+                    algs.contains("SD"), ordered ? algs : null);
+        }
+
+        /**
+         * Creates a (fast mode) cycle that applies this combination.
+         *
+         * @param algos the algorithms (with their parameters)
+         * @return the cycle
+         */
+        AlgRunner.Cycle cycle(Algorithms algos)
+        {
+            if(chain != null) return new AlgRunner.Cycle(name, inOrder(pipeline(algos), algos), null, null);
+
+            Function<VmTable, double[]> save_carbon = rt ? algos::runRT : ra ? algos::runRA : ca ? algos::runCA : is ? algos::runIS : t -> new double[]{0, 0};
+            Pipeline p = new Pipeline().table(save_carbon);
+            // RS chooses the sizes of all vms at once, so it's a stage of its own between the two
+            if(rs)
+            {
+                p.batch(algos::runRS);
+                if(sd) p.each(algos::runSD);
+                return new AlgRunner.Cycle(name, inOrder(p, algos), null, null);
+            }
+            ObjIntConsumer<VmTable> vm_adjuster;
+            if(cr && sd) vm_adjuster = (t, vm) -> {algos.runCR(t, vm); algos.runSD(t, vm);};
+            else if(cr) vm_adjuster = algos::runCR;
+            else if(sd) vm_adjuster = algos::runSD;
+            else vm_adjuster = (t, vm) -> {};
+            return new AlgRunner.Cycle(name, inOrder(p.each(vm_adjuster), algos), null, null);
+        }
+
+        // a seeded run (see MonteCarlo) draws the acceptance decisions in the order of the vms
+        private Pipeline inOrder(Pipeline p, Algorithms algos)
+        {
+            return algos.isSeeded() ? p.inOrder() : p;
+        }
+
+        /**
+         * @return true if one of RT/RA/CA/IS is used
+         */
+        boolean moves() {return rt || ra || ca || is;}
+
+        /**
+         * @return true if no other algorithm runs before the one that moves the vms (see #moving), always true for 'RT+CR' etc.
+         */
+        boolean movesFirst()
+        {
+            return chain == null || !moves() || Arrays.asList("RT", "RA", "CA", "IS").contains(chain.get(0));
+        }
+
+        /**
+         * @return the algorithm that moves the vms on its own (an empty pipeline if there is none)
+         */
+        Pipeline moving(Algorithms algos)
+        {
+            Pipeline p = new Pipeline();
+            if(rt) p.table(algos::runRT);
+            else if(ra) p.table(algos::runRA);
+            else if(ca) p.table(algos::runCA);
+            else if(is) p.table(algos::runIS);
+            return p;
+        }
+
+        /**
+         * @return the algorithms that resize or shut down the vms (CR/RS/SD) in the order they run, without the one that moves them
+         */
+        Pipeline adjusting(Algorithms algos)
+        {
+            Pipeline p = new Pipeline();
+            for(String a : chain != null ? chain : Arrays.asList("CR", "RS", "SD"))
+            {
+                if(a.equals("CR") && cr) p.each(algos::runCR);
+                else if(a.equals("RS") && rs) p.batch(algos::runRS);
+                else if(a.equals("SD") && sd) p.each(algos::runSD);
+            }
+            return inOrder(p, algos);
+        }
+
+        // the chain as a pipeline, RT and RA run per vm so that they are fused with the stages around them
+        private Pipeline pipeline(Algorithms algos)
+        {
+            Pipeline p = new Pipeline();
+            for(String a : chain)
+            {
+                switch(a)
+                {
+                    case "RT": p.reschedule(algos::rescheduleRT); break;
+                    case "RA": p.reschedule(algos::rescheduleRA); break;
+                    case "CA": p.table(algos::runCA); break;
+                    case "IS": p.table(algos::runIS); break;
+                    case "CR": p.each(algos::runCR); break;
+                    case "RS": p.batch(algos::runRS); break;
+                    default: p.each(algos::runSD); break;
+                }
+            }
+            return p;
+        }
+    }
+
+    /**
+     * Gets the point with the least carbon.
+     *
+     * @param points evaluated points
+     * @return the point with the least carbon (the first one on ties), or null if there are no points
+     */
+    public static Point best(List<Point> points)
+    {
+        Point best = null;
+        for(Point p : points) if(best == null || p.getCarbon() < best.getCarbon()) best = p;
+        return best;
+    }
+
+    /**
+     * Writes the evaluated points to a csv file (one row per point).
+     *
+     * @param points evaluated points
+     * @param path path to the csv file
+     * @throws IOException b/c writing to file...
+     */
+    public static void writeCsv(List<Point> points, String path) throws IOException
+    {
+        try(PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(path), StandardCharsets.UTF_8)))
+        {
+            out.println(CSV_HEADER);
+            for(Point p : points) out.println(csvRow(p));
+        }
+    }
+
+    // columns of the csv files (also used by ParetoExplorer#writeCsv)
+    static final String CSV_HEADER = "algorithms,moer_thresh,confidence_thresh,p95Thresh,wasteThresh,u_idle,carbon (lbs CO2),waste ($),avg. delay (hrs),avg. delay of postponed vms (hrs)";
+
+    static String csvRow(Point p)
+    {
+        return p.algorithms + "," + p.moer_thresh + "," + p.confidence_thresh + "," + p.p95Thresh + "," + p.wasteThresh + "," + p.u_idle + "," +
+                p.getCarbon() + "," + p.getWaste() + "," + p.getDelay() + "," + p.getPostponedDelay();
+    }
+
+    //------------Below are grid helpers-----------//
+
+    /**
+     * Parses a grid, either a list ('700,750,810') or a range ('from:to:step', both ends inclusive).
+     *
+     * @param s the grid
+     * @return the values
+     */
+    public static double[] parseGrid(String s)
+    {
+        String[] range = s.split(":");
+        if(range.length == 3) return range(Double.parseDouble(range[0]), Double.parseDouble(range[1]), Double.parseDouble(range[2]));
+        if(range.length != 1) throw new IllegalArgumentException("not a grid: " + s);
+        return check(Arrays.stream(s.split(",")).mapToDouble(Double::parseDouble).toArray());
+    }
+
+    /**
+     * Parses an integer grid (see #parseGrid).
+     */
+    public static int[] parseIntGrid(String s)
+    {
+        double[] d = parseGrid(s);
+        int[] v = new int[d.length];
+        for(int i = 0; i < d.length; i++)
+        {
+            v[i] = (int) Math.round(d[i]);
+            if(v[i] != d[i]) throw new IllegalArgumentException("not an integer grid: " + s);
+        }
+        return v;
+    }
+
+    /**
+     * Gets the values from, from + step, ... up to to (inclusive, with some tolerance for rounding errors).
+     */
+    public static double[] range(double from, double to, double step)
+    {
+        if(!(step > 0) || to < from) throw new IllegalArgumentException("invalid range: " + from + ":" + to + ":" + step);
+        int n = (int) Math.floor((to - from) / step + 1e-9) + 1;
+        double[] v = new double[n];
+        for(int i = 0; i < n; i++) v[i] = from + i * step; // not accumulated, so errors don't add up
+        return v;
+    }
+
+    private static int[] first(int[] v) {return new int[]{v[0]};}
+    private static double[] first(double[] v) {return new double[]{v[0]};}
+
+    private static int[] check(int[] v)
+    {
+        if(v.length == 0) throw new IllegalArgumentException("empty grid");
+        return v.clone();
+    }
+
+    private static double[] check(double[] v)
+    {
+        if(v.length == 0) throw new IllegalArgumentException("empty grid");
+        return v.clone();
+    }
+}
@@ -0,0 +1,355 @@
+import org.cloudbus.cloudsim.Vm;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Explores carbon vs. waste vs. delay over the parameters of the algorithms and their combinations (grids as in ParamSweep)
+ * and keeps the Pareto-optimal points: the points no other point is at least as good as in all three.
+ *
+ * The points of a combination are grouped into cells by the parameter of the algorithm that moves the vms (RT: moer_thresh,
+ * RA: confidence_thresh, CA/IS/none: one cell). That algorithm runs first and doesn't depend on the other parameters, so it
+ * runs once per cell and its delay is the delay of every point of the cell. Before the rest of a cell (CR/RS/SD over their
+ * grids) is evaluated, it's bounded: no vm can end up with less carbon (or waste) than its best option over all the sizes and
+ * shutdowns the cell's grids allow. If a point of the front is at least as good as (carbon bound, waste bound, delay), every
+ * point of the cell is dominated and the cell is skipped. Otherwise CR or SD on their own are swept incrementally on top of
+ * the moved vms (see IncrementalSweep), other combinations are evaluated point by point on snapshots of them (see VmTable#snapshot).
+ *
+ * Cells that don't move vms (delay 0) are evaluated first, so the front has its zero-delay points before the first bound is
+ * checked. Chains that resize or shut down vms before moving them (e.g. 'SD>RA') are evaluated point by point without bounds.
+ * The cells are moved and the points evaluated in parallel.
+ */
+public final class ParetoExplorer {
+
+    // vms per block of the bounds (summed up like VmTable#sumCarbonAndWaste, so the bound is reproducible)
+    private static final int BLOCK = 1 << 14;
+
+    private final ParamSweep grids;
+    private SkuCatalog catalog = SkuCatalog.defaults();
+
+    // what the last run of #explore did
+    private int numCells, prunedCells, evaluatedPoints, prunedPoints;
+
+    /**
+     * @param grids the parameters to explore (only the ones a combination uses are explored for it)
+     */
+    public ParetoExplorer(ParamSweep grids)
+    {
+        this.grids = grids;
+    }
+
+    /**
+     * Sets the SKUs RS can move a vm to (default: SkuCatalog#defaults).
+     */
+    public ParetoExplorer catalog(SkuCatalog catalog)
+    {
+        this.catalog = catalog;
+        return this;
+    }
+
+    /**
+     * Explores the combinations in one region. For several regions, explore the runner of every region one after another
+     * (they can share the trace, see AlgRunner#forRegion).
+     *
+     * @param runner the runner holding the trace and the MOER data of the region (fast mode, not streaming)
+     * @param algorithms the combinations, e.g. 'RT', 'RA+CR' or 'SD>CR>RA' (see ParamSweep#run)
+     * @return the Pareto-optimal points, by carbon
+     */
+    public List<ParamSweep.Point> explore(AlgRunner runner, List<String> algorithms)
+    {
+        if(!runner.isFast() || runner.isStream()) throw new IllegalStateException("exploring needs the fast mode (not streaming)");
+        numCells = prunedCells = evaluatedPoints = prunedPoints = 0;
+
+        List<Cell> cells = new ArrayList<>();
+        for(String a : algorithms)
+        {
+            ParamSweep.Combination comb = ParamSweep.Combination.parse(a);
+            List<ParamSweep.Point> points = grids.points(comb);
+            // ordered by the parameters of the moving algorithm first, so the points of a cell are consecutive
+            int perCell = grids.p95Grid(comb).length * grids.wasteGrid(comb).length * grids.uIdleGrid(comb).length;
+            for(int i = 0; i < points.size(); i += perCell) cells.add(new Cell(comb, points.subList(i, i + perCell)));
+        }
+        cells.sort(Comparator.comparing(c -> c.comb.moves())); // stable
+        numCells = cells.size();
+
+        List<ParamSweep.Point> front = new ArrayList<>();
+        int batch = ForkJoinPool.commonPool().getParallelism();
+        for(int i = 0; i < cells.size(); i += batch)
+        {
+            List<Cell> part = cells.subList(i, Math.min(cells.size(), i + batch));
+
+            // move the vms of the cells in parallel, then bound and evaluate one cell after another (each one in parallel)
+            List<Callable<Void>> moves = new ArrayList<>();
+            for(Cell c : part) if(c.comb.movesFirst()) moves.add(() -> {c.move(runner); return null;});
+            invokeAll(moves);
+            for(Cell c : part)
+            {
+                if(!c.comb.movesFirst()) evaluateCycles(runner, c);
+                else if(!prune(c, front)) evaluate(c);
+                for(ParamSweep.Point p : c.points) if(p.isEvaluated()) addToFront(front, p);
+                c.moved = null;
+            }
+        }
+        front.sort(Comparator.comparingDouble(ParamSweep.Point::getCarbon));
+        return front;
+    }
+
+    /**
+     * Picks the parameters of a region: the point of its front with the least carbon that doesn't delay the vms too much.
+     *
+     * @param front the Pareto-optimal points
+     * @param maxDelay max. avg. delay over all vms (hrs)
+     * @return the point, or null if every point delays the vms more
+     */
+    public static ParamSweep.Point pick(List<ParamSweep.Point> front, double maxDelay)
+    {
+        ParamSweep.Point best = null;
+        for(ParamSweep.Point p : front) if(p.getDelay() <= maxDelay && (best == null || p.getCarbon() < best.getCarbon())) best = p;
+        return best;
+    }
+
+    /**
+     * @return what the last run of #explore did, e.g. '12 of 20 cells pruned (240 of 400 points)'
+     */
+    public String summary()
+    {
+        return prunedCells + " of " + numCells + " cells pruned (" + prunedPoints + " of " + (prunedPoints + evaluatedPoints) + " points)";
+    }
+
+    /**
+     * Writes the fronts of the regions to a csv file (one row per point, like ParamSweep#writeCsv with the region in front).
+     *
+     * @param fronts the Pareto-optimal points by region
+     * @param path path to the csv file
+     * @throws IOException b/c writing to file...
+     */
+    public static void writeCsv(Map<String, List<ParamSweep.Point>> fronts, String path) throws IOException
+    {
+        try(PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(path), StandardCharsets.UTF_8)))
+        {
+            out.println("region," + ParamSweep.CSV_HEADER);
+            for(Map.Entry<String, List<ParamSweep.Point>> e : fronts.entrySet())
+                for(ParamSweep.Point p : e.getValue()) out.println(e.getKey() + "," + ParamSweep.csvRow(p));
+        }
+    }
+
+    //------------Below are the cells-----------//
+
+    /**
+     * The points of one combination with the same parameter of the moving algorithm.
+     */
+    private final class Cell
+    {
+        final ParamSweep.Combination comb;
+        final List<ParamSweep.Point> points;
+
+        // the vms after the moving algorithm and its delays (see Algorithms#runRT), set by #move until the cell is done
+        VmTable moved;
+        double[] delays;
+
+        Cell(ParamSweep.Combination comb, List<ParamSweep.Point> points)
+        {
+            this.comb = comb; this.points = points;
+        }
+
+        Algorithms algos(ParamSweep.Point p)
+        {
+            Algorithms algos = new Algorithms(p.moer_thresh, p.confidence_thresh, p.p95Thresh, p.wasteThresh, p.u_idle);
+            algos.setCatalog(catalog);
+            return algos;
+        }
+
+        void move(AlgRunner runner)
+        {
+            moved = runner.newTable();
+            delays = comb.moving(algos(points.get(0))).apply(moved);
+        }
+
+        double[] result(double carbon, double waste)
+        {
+            return new double[]{carbon, waste, delays[0], delays[1]};
+        }
+    }
+
+    // skips the cell if the front dominates its bound
+    private boolean prune(Cell c, List<ParamSweep.Point> front)
+    {
+        if(c.points.size() == 1) return false; // the bound wouldn't be cheaper than the point
+        double[] bound = bound(c);
+        if(!covers(front, bound[0], bound[1], c.delays[0])) return false;
+        prunedCells++;
+        prunedPoints += c.points.size();
+        return true;
+    }
+
+    private void evaluate(Cell c)
+    {
+        ParamSweep.Combination comb = c.comb;
+        evaluatedPoints += c.points.size();
+
+        // CR or SD on their own: one incremental sweep on top of the moved vms
+        if(!comb.rs && comb.cr != comb.sd)
+        {
+            IncrementalSweep inc = new IncrementalSweep(c.moved);
+            if(comb.cr)
+            {
+                double[] pt = grids.p95Grid(comb), wt = grids.wasteGrid(comb);
+                double[][][] results = inc.cr(pt, wt);
+                int i = 0;
+                for(int p = 0; p < pt.length; p++) for(int w = 0; w < wt.length; w++) {double[] r = results[p][w]; c.points.get(i++).setResult(c.result(r[0], r[1]));}
+            }
+            else
+            {
+                double[][] results = inc.sd(grids.uIdleGrid(comb));
+                for(int i = 0; i < results.length; i++) c.points.get(i).setResult(c.result(results[i][0], results[i][1]));
+            }
+            return;
+        }
+
+        // point by point, each one on its own snapshot (taken up front, taking one changes the moved table)
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for(ParamSweep.Point p : c.points)
+        {
+            VmTable snapshot = c.moved.snapshot();
+            tasks.add(() -> {
+                double[] r = comb.adjusting(c.algos(p)).applyAndSum(snapshot);
+                p.setResult(c.result(r[0], r[1]));
+                return null;
+            });
+        }
+        invokeAll(tasks);
+    }
+
+    // the whole combination point by point, e.g. for 'SD>RA'
+    private void evaluateCycles(AlgRunner runner, Cell c)
+    {
+        List<AlgRunner.Cycle> cycles = new ArrayList<>();
+        for(ParamSweep.Point p : c.points) cycles.add(c.comb.cycle(c.algos(p)));
+        List<double[]> results = runner.runCycles(cycles, false);
+        for(int i = 0; i < c.points.size(); i++) c.points.get(i).setResult(results.get(i));
+        evaluatedPoints += c.points.size();
+    }
+
+    //------------Below is the bound of a cell-----------//
+
+    /**
+     * The least carbon and waste any point of the cell can have: every vm of the moved table with its best option over all the
+     * sizes CR/RS may give it (ignoring the thresholds) and all the shutdowns SD may do at the u_idle of the grid (before or
+     * after the resize), carbon and waste minimized on their own.
+     *
+     * @return {carbon (lbs CO2), waste ($)}
+     */
+    private double[] bound(Cell c)
+    {
+        VmTable t = c.moved;
+        double[] u_idle = c.comb.sd ? grids.uIdleGrid(c.comb) : new double[0];
+        int blocks = (t.size() + BLOCK - 1) / BLOCK;
+        List<Callable<CompensatedSum[]>> tasks = new ArrayList<>();
+        for(int b = 0; b < blocks; b++)
+        {
+            int from = b * BLOCK, to = Math.min(t.size(), from + BLOCK);
+            tasks.add(() -> boundBlock(t, c.comb, u_idle, from, to));
+        }
+        CompensatedSum carbon = new CompensatedSum(), waste = new CompensatedSum();
+        for(CompensatedSum[] s : invokeAll(tasks)) {carbon.add(s[0]); waste.add(s[1]);}
+        return new double[]{carbon.get(), waste.get()};
+    }
+
+    private CompensatedSum[] boundBlock(VmTable t, ParamSweep.Combination comb, double[] u_idle, int from, int to)
+    {
+        int[] cc = Algorithms.coreCounts();
+        int sizes = comb.rs ? catalog.size() : comb.cr ? cc.length : 0;
+        CompensatedSum carbon = new CompensatedSum(), waste = new CompensatedSum();
+        for(int vm = from; vm < to; vm++)
+        {
+            int cores = t.getCores(vm), ram = t.getRam(vm), time = t.getRuntime(vm);
+            double moer = t.getAverageMOER(vm), max = t.getMaxUtil(vm), avg = t.getAvgUtil(vm);
+            double price = comb.rs ? catalog.priceOf(cores, ram) : 0;
+            double bestCarbon = moer * VmTable.energy(t.getPower(vm), time), bestWaste = VmTable.waste(cores, ram, time, avg);
+
+            // k = -1: the size the vm has
+            for(int k = -1; k < sizes; k++)
+            {
+                int c = cores, r = ram;
+                if(k >= 0)
+                {
+                    c = comb.rs ? catalog.getCores(k) : cc[k];
+                    if(comb.rs && (catalog.getRam(k) < ram || catalog.getPrice(k) >= price)) continue;
+                    if(comb.rs) r = catalog.getRam(k);
+                    else if(c >= cores) continue;
+                    if(max * cores / c > 1) continue;
+                }
+                double a = avg * cores / c, m = max * cores / c;
+                if(k >= 0)
+                {
+                    double power = comb.rs ? catalog.power(k, a) : Vm.linRegPower(c, r, a);
+                    bestCarbon = Math.min(bestCarbon, moer * VmTable.energy(power, time));
+                    bestWaste = Math.min(bestWaste, VmTable.waste(c, r, time, a));
+                }
+
+                // SD decides on the utilizations before or after the resize, the vm ends up at m either way
+                if(u_idle.length == 0) continue;
+                double power = Vm.linRegPower(c, r, m);
+                if(comb.rs && k >= 0) power = Math.min(power, catalog.power(k, m)); // RS after SD
+                int start = t.getStart(vm), full = t.getEnd(vm) - start;
+                for(double u : u_idle)
+                {
+                    for(int s = 0; s < 2; s++)
+                    {
+                        double um = s == 0 ? max : m, ua = s == 0 ? avg : a;
+                        if(!Algorithms.shutsDown(um, ua, u)) continue;
+                        int shortened = Algorithms.shutdownRuntime(full, um, ua, u);
+                        bestCarbon = Math.min(bestCarbon, t.getMOER().average(start, start + shortened) * VmTable.energy(power, shortened));
+                        bestWaste = Math.min(bestWaste, VmTable.waste(c, r, shortened, m));
+                    }
+                }
+            }
+            carbon.add(bestCarbon);
+            waste.add(bestWaste);
+        }
+        return new CompensatedSum[]{carbon, waste};
+    }
+
+    //------------Below are helpers-----------//
+
+    // true if a point of the front is at least as good as the given values in all three
+    private static boolean covers(List<ParamSweep.Point> front, double carbon, double waste, double delay)
+    {
+        for(ParamSweep.Point p : front)
+            if(p.getCarbon() <= carbon && p.getWaste() <= waste && p.getDelay() <= delay) return true;
+        return false;
+    }
+
+    private static void addToFront(List<ParamSweep.Point> front, ParamSweep.Point p)
+    {
+        if(covers(front, p.getCarbon(), p.getWaste(), p.getDelay())) return;
+        front.removeIf(q -> p.getCarbon() <= q.getCarbon() && p.getWaste() <= q.getWaste() && p.getDelay() <= q.getDelay());
+        front.add(p);
+    }
+
+    // runs the tasks on the common pool, results in the order of the tasks
+    private static <T> List<T> invokeAll(List<Callable<T>> tasks)
+    {
+        List<T> results = new ArrayList<>();
+        try
+        {
+            for(Future<T> f : ForkJoinPool.commonPool().invokeAll(tasks)) results.add(f.get());
+        }
+        catch(InterruptedException | ExecutionException ex)
+        {
+            throw new IllegalStateException("exploring failed", ex);
+        }
+        return results;
+    }
+}
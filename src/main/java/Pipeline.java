@@ -0,0 +1,177 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * The algorithms of one cycle as a chain of stages, e.g. SD -> CR -> RA.
+ *
+ * A stage either works on the whole table at once (#table, e.g. runCA, which needs to see all vms) or on one vm at a time
+ * (#each, #reschedule, e.g. runCR or the per-vm form of RT/RA). Consecutive per-vm stages are fused into one pass over the vms,
+ * and the last pass also sums up carbon and waste (see VmTable#applyAndSum), so a chain of per-vm stages touches every vm
+ * once instead of once per stage + once for the sums. A whole-table stage ends the pass before it.
+ *
+ * A pass of #each stages runs on the fork-join pool (blocks of vms at a time, see VmTable#applyAndSum), so the stages must
+ * not depend on the order of the vms. Stages that do, e.g. because they draw from a seeded generator (see MonteCarlo), are
+ * kept in the order of the vms with #inOrder. A pass with a #reschedule stage always runs in order, as RT/RA keep memos.
+ * The sums are the same either way. A pipeline can be run on any number of tables (one after another).
+ */
+public final class Pipeline {
+
+    /**
+     * A per-vm stage that moves vms in time and tells the delays afterwards (like the whole-table algorithms return them).
+     */
+    public interface Rescheduling extends ObjIntConsumer<VmTable>
+    {
+        /**
+         * @return the average delay of all vms in hrs, the average delay of the moved vms in hrs and the number of moved vms
+         */
+        double[] delays();
+    }
+
+    // one of the three is set per stage
+    private static final class Stage
+    {
+        final Function<VmTable, double[]> table;
+        final ObjIntConsumer<VmTable> each;
+        final Function<VmTable, ? extends Rescheduling> reschedule;
+
+        Stage(Function<VmTable, double[]> table, ObjIntConsumer<VmTable> each, Function<VmTable, ? extends Rescheduling> reschedule)
+        {
+            this.table = table; this.each = each; this.reschedule = reschedule;
+        }
+    }
+
+    private final List<Stage> stages = new ArrayList<>();
+    // true = per-vm stages run one after another in the order of the vms
+    private boolean ordered;
+
+    /**
+     * Appends a stage that works on the whole table (ends the current pass over the vms).
+     *
+     * @param stage the algorithm, returns the delays like Algorithms#runRT
+     */
+    public Pipeline table(Function<VmTable, double[]> stage)
+    {
+        stages.add(new Stage(stage, null, null));
+        return this;
+    }
+
+    /**
+     * Appends a stage that works on the whole table but doesn't move vms in time, e.g. Algorithms#runRS (ends the current pass
+     * over the vms, keeps the delays of the stages before it).
+     */
+    public Pipeline batch(Consumer<VmTable> stage)
+    {
+        stages.add(new Stage(t -> {stage.accept(t); return null;}, null, null));
+        return this;
+    }
+
+    /**
+     * Appends a stage that adjusts one vm at a time (given the table and the vm id) and may only change that vm.
+     */
+    public Pipeline each(ObjIntConsumer<VmTable> stage)
+    {
+        stages.add(new Stage(null, stage, null));
+        return this;
+    }
+
+    /**
+     * Appends a per-vm stage that moves vms in time, created for every table it runs on (e.g. Algorithms#rescheduleRA).
+     */
+    public Pipeline reschedule(Function<VmTable, ? extends Rescheduling> stage)
+    {
+        stages.add(new Stage(null, null, stage));
+        return this;
+    }
+
+    /**
+     * Runs the per-vm stages one after another in the order of the vms instead of in parallel, e.g. because they draw
+     * from a seeded generator.
+     */
+    public Pipeline inOrder()
+    {
+        ordered = true;
+        return this;
+    }
+
+    /**
+     * @return true if every stage works on one vm at a time (#each, #reschedule), so that the pipeline gives the same result
+     *         on a table as on the parts of it one after another (e.g. the batches of the streaming mode, see AlgRunner)
+     */
+    public boolean isPerVm()
+    {
+        for(Stage s : stages) if(s.table != null) return false;
+        return true;
+    }
+
+    /**
+     * Applies all stages to the table.
+     *
+     * @return the delays of the last stage that moves vms, {0, 0} if there is none
+     */
+    public double[] apply(VmTable vms)
+    {
+        return run(vms, false);
+    }
+
+    /**
+     * Applies all stages to the table and sums up the carbon and waste of the result (fused into the last pass over the vms).
+     *
+     * @return {carbon (lbs CO2), waste ($), delays (see #apply)...}
+     */
+    public double[] applyAndSum(VmTable vms)
+    {
+        return run(vms, true);
+    }
+
+    private double[] run(VmTable vms, boolean sum)
+    {
+        double[] delays = {0, 0}, totals = null;
+        for(int i = 0; i < stages.size(); )
+        {
+            Stage s = stages.get(i);
+            if(s.table != null)
+            {
+                double[] d = s.table.apply(vms);
+                if(d != null) delays = d; // null = a batch stage
+                i++;
+                continue;
+            }
+
+            // fuse the per-vm stages up to the next whole-table stage
+            List<ObjIntConsumer<VmTable>> pass = new ArrayList<>();
+            Rescheduling last = null;
+            for(; i < stages.size() && stages.get(i).table == null; i++)
+            {
+                Stage e = stages.get(i);
+                if(e.each != null) pass.add(e.each);
+                else pass.add(last = e.reschedule.apply(vms));
+            }
+            ObjIntConsumer<VmTable> all = fuse(pass);
+            boolean parallel = !ordered && last == null;
+
+            if(sum && i == stages.size()) totals = vms.applyAndSum(all, parallel);
+            else if(parallel) IntStream.range(0, vms.size()).parallel().forEach(vm -> all.accept(vms, vm));
+            else for(int vm = 0; vm < vms.size(); vm++) all.accept(vms, vm);
+            if(last != null) delays = last.delays();
+        }
+        if(!sum) return delays;
+        if(totals == null) totals = vms.sumCarbonAndWaste(); // the last stage works on the whole table
+
+        double[] out = new double[2 + delays.length];
+        out[0] = totals[0]; out[1] = totals[1];
+        System.arraycopy(delays, 0, out, 2, delays.length);
+        return out;
+    }
+
+    // one stage that applies the given ones to a vm, one after another
+    private static ObjIntConsumer<VmTable> fuse(List<ObjIntConsumer<VmTable>> pass)
+    {
+        if(pass.size() == 1) return pass.get(0);
+        List<ObjIntConsumer<VmTable>> fused = new ArrayList<>(pass);
+        return (t, vm) -> {for(ObjIntConsumer<VmTable> f : fused) f.accept(t, vm);};
+    }
+}
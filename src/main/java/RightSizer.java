@@ -0,0 +1,103 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Chooses the SKUs of right-sizing (see Algorithms#runRS) for all vms at once: the cheapest SKU of the catalog every vm fits on.
+ *
+ * The vms are split into blocks of BLOCK vms that are evaluated in parallel (fork/join). A block first gathers the vms that
+ * pass the filters and what the constraints need into flat arrays (p95 * cores, max. utilization * cores, RAM, current price),
+ * then walks the SKUs from the cheapest one and tests all vms of the block that don't have a SKU yet in one tight loop over
+ * those arrays (no table lookups, so the JIT can unroll and vectorize it). The walk ends once every vm of the block has a SKU
+ * or the SKUs get at least as expensive as the most expensive vm of the block.
+ *
+ * Only reads the table, so the result doesn't depend on the number of threads.
+ */
+final class RightSizer {
+
+    // vms per block (the arrays of a block stay in L1/L2)
+    private static final int BLOCK = 1 << 12;
+
+    private RightSizer() {}
+
+    /**
+     * @return the index of the chosen SKU per vm, -1 = the vm stays as it is
+     */
+    static int[] choose(VmTable vms, SkuCatalog skus, double p95Thresh, double wasteThresh)
+    {
+        int[] chosen = new int[vms.size()];
+        int blocks = (vms.size() + BLOCK - 1) / BLOCK;
+        if(blocks > 0) ForkJoinPool.commonPool().invoke(new BlockTask(vms, skus, p95Thresh, wasteThresh, chosen, 0, blocks));
+        return chosen;
+    }
+
+    // evaluates the vms [from, to)
+    private static void evaluate(VmTable vms, SkuCatalog skus, double p95Thresh, double wasteThresh, int[] chosen, int from, int to)
+    {
+        int m = 0;
+        int[] ids = new int[to - from], ram = new int[to - from], sku = new int[to - from];
+        double[] p95Cores = new double[to - from], maxCores = new double[to - from], price = new double[to - from];
+        double maxPrice = 0;
+        for(int vm = from; vm < to; vm++)
+        {
+            chosen[vm] = -1;
+            // same filters as CR
+            if(vms.getP95(vm) >= p95Thresh || vms.getWaste(vm) <= wasteThresh) continue;
+            int cores = vms.getCores(vm);
+            ids[m] = vm; ram[m] = vms.getRam(vm); sku[m] = -1;
+            p95Cores[m] = vms.getP95(vm) * cores; maxCores[m] = vms.getMaxUtil(vm) * cores;
+            price[m] = skus.priceOf(cores, ram[m]);
+            maxPrice = Math.max(maxPrice, price[m]);
+            m++;
+        }
+
+        int open = m;
+        for(int s = 0; s < skus.size() && open > 0; s++)
+        {
+            double p = skus.getPrice(s);
+            if(p >= maxPrice) break; // no vm gets cheaper anymore
+            int c = skus.getCores(s), r = skus.getRam(s);
+            open = 0;
+            for(int j = 0; j < m; j++)
+            {
+                if(sku[j] >= 0) continue;
+                // divided like in Algorithms#reducedCores, so the same sizes pass
+                if(p95Cores[j] / c < p95Thresh & maxCores[j] / c <= 1 & ram[j] <= r & p < price[j]) sku[j] = s;
+                else open++;
+            }
+        }
+        for(int j = 0; j < m; j++) chosen[ids[j]] = sku[j];
+    }
+
+    /**
+     * Evaluates the blocks [from, to).
+     */
+    private static final class BlockTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final VmTable vms;
+        private final SkuCatalog skus;
+        private final double p95Thresh, wasteThresh;
+        private final int[] chosen;
+        private final int from, to;
+
+        BlockTask(VmTable vms, SkuCatalog skus, double p95Thresh, double wasteThresh, int[] chosen, int from, int to)
+        {
+            this.vms = vms; this.skus = skus; this.p95Thresh = p95Thresh; this.wasteThresh = wasteThresh;
+            this.chosen = chosen; this.from = from; this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if(to - from == 1)
+            {
+                evaluate(vms, skus, p95Thresh, wasteThresh, chosen, from * BLOCK, Math.min(vms.size(), to * BLOCK));
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new BlockTask(vms, skus, p95Thresh, wasteThresh, chosen, from, mid),
+                    new BlockTask(vms, skus, p95Thresh, wasteThresh, chosen, mid, to));
+        }
+    }
+}
@@ -7,7 +7,10 @@
     carbon/carbon emissions (lbs CO2): carbon emitted due to execution of all Cloudlets (from 1 simulation).
     RT: Approach Using Intersections
     RA: Approach Using Moving Averages
+    CA: Capacity-Aware Rescheduling
+    IS: Interruptible Shifting
     CR: Core Reduction Strategy
+    RS: Right-Sizing (CR over a catalog of VM sizes, see SkuCatalog)
     SD: Shutdown Strategy
     moer-based algorithm: algorithm that uses moer to decide what to do
     vm-based algorithm: algorithm that uses characteristics of vm to decide what to do
@@ -20,9 +23,16 @@
  */
 
 import org.cloudbus.cloudsim.*;
+import org.cloudbus.cloudsim.core.CloudSim;
 
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 
 public class SimMain {
@@ -33,14 +43,20 @@ public class SimMain {
     // input paths
     private static final String vm_path = "cloudsim_vm_data_all.csv",
             moer_path = "cloudsim_CASIO_NORTH_FULL.csv";
+    // MOER data of all regions (for the Pareto fronts)
+    private static final String[] region_paths = {moer_path, "cloudsim_ERCOT_AUSTIN_FULL_MOER.csv", "cloudsim_FR_FULL_MOER.csv",
+            "cloudsim_PJM_CHICAGO_FULL.csv", "cloudsim_PJM_DC_FULL.csv", "CASIO_NORTH_2019_APRIL.csv"};
     // output paths
     private static final String
     sim = "sim.csv",
 
     sim_RT = "sim_RT.csv",
     sim_RA = "sim_RA.csv",
+    sim_CA = "sim_CA.csv",
+    sim_IS = "sim_IS.csv",
 
     sim_CR = "sim_CR.csv",
+    sim_RS = "sim_RS.csv",
     sim_SD = "sim_SD.csv",
 
     sim_RT_CR = "sim_RT_CR.csv",
@@ -55,22 +71,38 @@ public class SimMain {
 
     svm_SD = "svm_SD.csv",
     svm_CR = "svm_CR.csv",
+    svm_RS = "svm_RS.csv",
 
     svm_RT = "svm_RT.csv",
     svm_RA = "svm_RA.csv",
+    svm_CA = "svm_CA.csv",
+    svm_IS = "svm_IS.csv",
 
     svm_RT_CR = "svm_RT_CR.csv",
     svm_RT_SD = "svm_RT_SD.csv",
 
     svm_RA_CR = "svm_RA_CR.csv",
-    svm_RA_SD = "svm_RA_SD.csv";
+    svm_RA_SD = "svm_RA_SD.csv",
+
+    // results of the parameter sweeps in adjustment mode
+    sweep_out = "sweep.csv",
+    // Pareto-optimal points of every region
+    pareto_out = "pareto.csv";
 
     // each of the following are updated once
     // these contain the carbon and waste produced by their corresponding simulation, indicated by their name.
-    private static double[] noAlg_dat, shutdown_dat, core_reduction_dat, RT_dat, RA_dat, RT_CR_dat, RA_CR_dat, RT_SD_dat, RA_SD_dat;
+    private static double[] noAlg_dat, shutdown_dat, core_reduction_dat, RT_dat, RA_dat, RT_CR_dat, RA_CR_dat, RT_SD_dat, RA_SD_dat, CA_dat, IS_dat, RS_dat;
 
     private static final int numVMs = 2_700_000;
     private static final boolean fast = !!!!!!(!!true) & false | !!true;
+    // evaluate the trace batch by batch instead of loading it (for traces that don't fit into memory, needs fast)
+    private static final boolean stream = false;
+    // recycle CloudSim's events in display mode instead of allocating one per send/hold (see CloudSim#setEventPooling)
+    private static final boolean poolEvents = false;
+    // threads of CloudSim's kernel in display mode, the datacenters run in parallel with more than one (see CloudSim#setParallelism)
+    private static final int kernelThreads = 1;
+    // cycles simulated at the same time in display mode, each one needs the memory of a whole simulation (see AlgRunner#setDisplayThreads)
+    private static final int displayThreads = 1;
 
     public static void main(String[] args) throws IOException {
         FileOutputStream logStream;
@@ -86,15 +118,20 @@ public class SimMain {
                 "- VM data from Microsoft Azure (" + vm_path + ")\n\t- " +
                 "MOER data from WattTime.com (" + moer_path + ")\n\n\n");
 
-        new AlgRunner(vm_path, moer_path, numVMs, fast);
+        CloudSim.setEventPooling(poolEvents);
+        CloudSim.setParallelism(kernelThreads);
+        AlgRunner runner = new AlgRunner(vm_path, moer_path, numVMs, fast, stream);
+        runner.setDisplayThreads(displayThreads);
 
         // without any change (original run)
-        noAlg_dat = AlgRunner.runCycle("No Algorithm (do nothing)", () -> new double[]{0, 0}, (Vm vm_dat) -> {
-        }, sim, svm);
-        AlgRunner.setBaseResult(noAlg_dat);
+        noAlg_dat = runner.runCycle("No Algorithm (do nothing)", new Pipeline(), sim, svm);
+        runner.setBaseResult(noAlg_dat);
 
         System.out.println("Press 's' to simulate using default algorithm parameters\n" +
-                            "Otherwise, press 'a' to enter adjustment mode. In adjustment mode, you can fine calibrate the parameters for optimal savings.");
+                            "Otherwise, press 'a' to enter adjustment mode. In adjustment mode, you can fine calibrate the parameters for optimal savings.\n" +
+                            "Press 'm' to simulate partial acceptance of the suggestions (Monte-Carlo).\n" +
+                            "Press 'o' to compare the algorithms against a lower bound within the capacity of the datacenters (min-cost flow).\n" +
+                            "Press 'p' to explore the trade-off between carbon, waste and delay and pick the parameters per region (Pareto front).");
 
         Scanner scan = new Scanner(System.in);
 
@@ -102,18 +139,62 @@ public class SimMain {
         if(mode == 's') {
             Algorithms algos = new Algorithms();
 
-            runFull(algos);
+            runFull(runner, algos);
+        }
+        else if(mode == 'm')
+        {
+            fullOutput = false;
+            System.out.print("Enter the number of replicas, a seed and the acceptance rates of RT, RA, CR and SD (e.g. '100 42 0.5 0.5 0.8 0.8'): ");
+            int replicas = scan.nextInt();
+            long seed = scan.nextLong();
+            double[] acceptance = {scan.nextDouble(), scan.nextDouble(), scan.nextDouble(), scan.nextDouble()};
+            for(String alg : new String[]{"RT", "RA", "CR", "SD", "RT+CR", "RA+CR", "RT+SD", "RA+SD"})
+                System.out.println(MonteCarlo.run(runner, alg, null, acceptance, replicas, seed) + "\n");
+        }
+        else if(mode == 'o')
+        {
+            fullOutput = false;
+            FlowOptimizer.report(runner, new Algorithms());
+        }
+        else if(mode == 'p')
+        {
+            fullOutput = false;
+            System.out.print("Enter the max. avg. delay (hrs) and the MOER files of the regions (comma-separated) or 'all' for all " +
+                    region_paths.length + " regions (e.g. '2 all'): ");
+            double maxDelay = scan.nextDouble();
+            String which = scan.next();
+            List<String> regions = which.equalsIgnoreCase("all") ? Arrays.asList(region_paths) : Arrays.asList(which.split(","));
+
+            ParamSweep grids = new ParamSweep().moerThresh(ParamSweep.parseIntGrid("600:1000:100")).confidenceThresh(ParamSweep.parseIntGrid("25:100:25"))
+                    .p95Thresh(ParamSweep.parseGrid("0.6:0.9:0.1")).wasteThresh(ParamSweep.parseGrid("1:7:2")).uIdle(0.01, 0.05);
+            List<String> algs = Arrays.asList("RT", "RA", "CA", "IS", "CR", "RS", "SD", "RT+CR", "RA+CR", "RT+SD", "RA+SD", "CR+SD", "RT+CR+SD", "RA+CR+SD");
+            ParetoExplorer explorer = new ParetoExplorer(grids);
+            Map<String, List<ParamSweep.Point>> fronts = new LinkedHashMap<>();
+            for(String region : regions)
+            {
+                long start = System.currentTimeMillis();
+                List<ParamSweep.Point> front = explorer.explore(runner.forRegion(region), algs);
+                fronts.put(region, front);
+                System.out.println(region + ": " + front.size() + " Pareto-optimal points, " + explorer.summary() + ", took " +
+                        (System.currentTimeMillis() - start) / 1000.0 + "s\n\tpick: " + ParetoExplorer.pick(front, maxDelay));
+            }
+            ParetoExplorer.writeCsv(fronts, pareto_out);
+            System.out.println("Fronts written to " + pareto_out);
         }
         else if(mode == 'a')
         {
             fullOutput = false;
-            int moer_thresh = 810, confidence_thresh = 50, day = 288;
-            double u_idle = 0.01, p95Thresh = 0.8, wasteThresh = 6;
-            Algorithms algos;
+            ParamSweep sweep = new ParamSweep();
+            int[] moer_thresh = {810}, confidence_thresh = {50};
+            double[] u_idle = {0.01}, p95Thresh = {0.8}, wasteThresh = {6};
+            sweep.p95Thresh(p95Thresh).wasteThresh(wasteThresh);
 
+            System.out.println("Parameters are given as a list ('700,750,810') or as a range ('from:to:step'). " +
+                    "A sweep evaluates every combination of the parameters used by the chosen algorithms in parallel.");
             while(true)
             {
-                System.out.print("Which algorithm to adjust? ('1' : rt, '2' : ra, '3' : cr, '4' : sd, 'q' : quit adjuster, 'r' : run full simulation): ");
+                System.out.print("Which parameter to set? ('1' : rt moer threshold, '2' : ra confidence threshold, '3' : cr p95 + waste threshold, '4' : sd u_idle, " +
+                        "'s' : sweep (followed by the algorithms, e.g. 'RT+CR', 'SD>CR>RA' (in this order) or 'all'), 'q' : quit adjuster, 'r' : run full simulation with the first values): ");
 
                 try {
                     if (scan.hasNextInt())
@@ -121,28 +202,17 @@ public class SimMain {
                         switch (scan.nextInt())
                         {
                             case 1:
-                                moer_thresh = scan.nextInt();
-                                algos = new Algorithms(moer_thresh, confidence_thresh, p95Thresh, wasteThresh, u_idle);
-                                RT_dat = AlgRunner.runCycle("Approach Using Intersections (RT)", algos::runRT, (Vm vm_dat) -> {
-                                }, sim_RT, svm_RT);
+                                sweep.moerThresh(moer_thresh = ParamSweep.parseIntGrid(scan.next()));
                                 break;
                             case 2:
-                                confidence_thresh = scan.nextInt();
-                                algos = new Algorithms(moer_thresh, confidence_thresh, p95Thresh, wasteThresh, u_idle);
-                                RA_dat = AlgRunner.runCycle("Approach Using Moving Averages (RA)", algos::runRA, (Vm vm_dat) -> {
-                                }, sim_RA, svm_RA);
-
+                                sweep.confidenceThresh(confidence_thresh = ParamSweep.parseIntGrid(scan.next()));
                                 break;
                             case 3:
-                                p95Thresh = scan.nextDouble();
-                                wasteThresh = scan.nextDouble();
-                                algos = new Algorithms(moer_thresh, confidence_thresh, p95Thresh, wasteThresh, u_idle);
-                                core_reduction_dat = AlgRunner.runCycle("Core Reduction Strategy (CR)", () -> new double[]{0, 0}, algos::runCR, sim_CR, svm_CR);
+                                sweep.p95Thresh(p95Thresh = ParamSweep.parseGrid(scan.next()));
+                                sweep.wasteThresh(wasteThresh = ParamSweep.parseGrid(scan.next()));
                                 break;
                             case 4:
-                                u_idle = scan.nextInt();
-                                algos = new Algorithms(moer_thresh, confidence_thresh, p95Thresh, wasteThresh, u_idle);
-                                shutdown_dat = AlgRunner.runCycle("VM Shutdown Strategy (SD)", () -> new double[]{0, 0}, algos::runSD, sim_SD, svm_SD);
+                                sweep.uIdle(u_idle = ParamSweep.parseGrid(scan.next()));
                                 break;
                             default:
                                 System.out.println("Invalid flag, trying again...");
@@ -155,10 +225,25 @@ public class SimMain {
                             case 'q':
                                 br = true;
                                 break;
+                            case 's':
+                                String which = scan.next();
+                                List<String> algs = which.equalsIgnoreCase("all") ?
+                                        Arrays.asList("RT", "RA", "CR", "SD", "RT+CR", "RA+CR", "RT+SD", "RA+SD") : Collections.singletonList(which);
+                                List<ParamSweep.Point> points = new ArrayList<>();
+                                long start = System.currentTimeMillis();
+                                for(String alg : algs)
+                                {
+                                    List<ParamSweep.Point> res = sweep.run(runner, alg);
+                                    System.out.println("Best of " + res.size() + " points: " + ParamSweep.best(res));
+                                    points.addAll(res);
+                                }
+                                ParamSweep.writeCsv(points, sweep_out);
+                                System.out.println("Evaluated " + points.size() + " points in " + (System.currentTimeMillis() - start) / 1000.0 + "s, results written to " + sweep_out);
+                                break;
                             case 'r':
-                                algos = new Algorithms(moer_thresh, confidence_thresh, p95Thresh, wasteThresh, u_idle);
+                                Algorithms algos = new Algorithms(moer_thresh[0], confidence_thresh[0], p95Thresh[0], wasteThresh[0], u_idle[0]);
                                 fullOutput = true;
-                                runFull(algos);
+                                runFull(runner, algos);
                                 fullOutput = false;
                                 break;
                         }
@@ -166,29 +251,57 @@ public class SimMain {
                     }
                 }
                 catch(Exception ex){
-                    System.out.println("Invalid flags, trying again...");
+                    System.out.println("Invalid flags, trying again... (" + ex.getMessage() + ")");
                 }
             }
         }
     }
 
-    public static void runFull(Algorithms algos)
+    /**
+     * Runs all algorithms and their combinations. In fast mode (or with several display threads) the cycles run concurrently (see AlgRunner#runCycles),
+     * the results are still printed and stored in this order.
+     * RT and RA run one vm at a time (as reschedule stages, same results as runRT/runRA), so that they also work in streaming mode.
+     * CA, IS and RS need the whole table and are left out in streaming mode (see AlgRunner#isStream).
+     */
+    public static void runFull(AlgRunner runner, Algorithms algos)
     {
-        // moer-based algorithms
-        RT_dat = AlgRunner.runCycle("Approach Using Intersections (RT)", algos::runRT, (Vm vm_dat) -> {
-        }, sim_RT, svm_RT);
-        RA_dat = AlgRunner.runCycle("Approach Using Moving Averages (RA)", algos::runRA, (Vm vm_dat) -> {
-        }, sim_RA, svm_RA);
-
-        // vm-based algorithms
-        core_reduction_dat = AlgRunner.runCycle("Core Reduction Strategy (CR)", () -> new double[]{0, 0}, algos::runCR, sim_CR, svm_CR);
-        shutdown_dat = AlgRunner.runCycle("VM Shutdown Strategy (SD)", () -> new double[]{0, 0}, algos::runSD, sim_SD, svm_SD);
-        // moer-based + core reduction
-        RT_CR_dat = AlgRunner.runCycle("RT and CR", algos::runRT, algos::runCR, sim_RT_CR, svm_RA_CR);
-        RA_CR_dat = AlgRunner.runCycle("RA and CR", algos::runRA, algos::runCR, sim_RA_CR, svm_RA_CR);
-
-        // moer-based + shutdown
-        RT_SD_dat = AlgRunner.runCycle("RT and SD", algos::runRT, algos::runSD, sim_RT_SD, svm_RT_SD);
-        RA_SD_dat = AlgRunner.runCycle("RA and SD", algos::runRA, algos::runSD, sim_RA_SD, svm_RA_SD);
+        List<AlgRunner.Cycle> cycles = new ArrayList<>(Arrays.asList(
+                // moer-based algorithms
+                new AlgRunner.Cycle("Approach Using Intersections (RT)", new Pipeline().reschedule(algos::rescheduleRT), sim_RT, svm_RT),
+                new AlgRunner.Cycle("Approach Using Moving Averages (RA)", new Pipeline().reschedule(algos::rescheduleRA), sim_RA, svm_RA),
+
+                // vm-based algorithms
+                new AlgRunner.Cycle("Core Reduction Strategy (CR)", new Pipeline().each(algos::runCR), sim_CR, svm_CR),
+                new AlgRunner.Cycle("VM Shutdown Strategy (SD)", new Pipeline().each(algos::runSD), sim_SD, svm_SD),
+                // moer-based + core reduction
+                new AlgRunner.Cycle("RT and CR", new Pipeline().reschedule(algos::rescheduleRT).each(algos::runCR), sim_RT_CR, svm_RT_CR),
+                new AlgRunner.Cycle("RA and CR", new Pipeline().reschedule(algos::rescheduleRA).each(algos::runCR), sim_RA_CR, svm_RA_CR),
+
+                // moer-based + shutdown
+                new AlgRunner.Cycle("RT and SD", new Pipeline().reschedule(algos::rescheduleRT).each(algos::runSD), sim_RT_SD, svm_RT_SD),
+                new AlgRunner.Cycle("RA and SD", new Pipeline().reschedule(algos::rescheduleRA).each(algos::runSD), sim_RA_SD, svm_RA_SD)));
+        if(!runner.isStream())
+        {
+            // moer-based within the capacity of the datacenters
+            cycles.add(new AlgRunner.Cycle("Capacity-Aware Rescheduling (CA)", new Pipeline().table(algos::runCA), sim_CA, svm_CA));
+
+            // moer-based, suspends and resumes the vms
+            cycles.add(new AlgRunner.Cycle("Interruptible Shifting (IS)", new Pipeline().table(algos::runIS), sim_IS, svm_IS));
+
+            // vm-based, picks the cheapest size of a catalog
+            cycles.add(new AlgRunner.Cycle("Right-Sizing (RS)", new Pipeline().batch(algos::runRS), sim_RS, svm_RS));
+        }
+        List<double[]> res = runner.runCycles(cycles);
+
+        RT_dat = res.get(0); RA_dat = res.get(1);
+        core_reduction_dat = res.get(2); shutdown_dat = res.get(3);
+        RT_CR_dat = res.get(4); RA_CR_dat = res.get(5);
+        RT_SD_dat = res.get(6); RA_SD_dat = res.get(7);
+        if(!runner.isStream())
+        {
+            CA_dat = res.get(8);
+            IS_dat = res.get(9);
+            RS_dat = res.get(10);
+        }
     }
 }
@@ -0,0 +1,187 @@
+import org.cloudbus.cloudsim.Vm;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The VM sizes (SKUs) a vm can be right-sized to (see Algorithms#runRS): core count, RAM and price per SKU,
+ * kept as columns sorted by price (cheapest first), so the first SKU a vm fits on is the cheapest one.
+ *
+ * A SKU may come with its own power model (intercept + util * avg. utilization + mem * RAM in GB, like Vm#linRegPower).
+ * Without one, the power of a vm on the SKU is Vm#linRegPower (which only has its own regression for 2, 4 and 8 cores).
+ * Carbon and waste of the right-sized vms are still computed by VmTable (waste with Vm#price), the catalog prices
+ * only decide which SKU is the cheapest one.
+ *
+ * Never modified after it is created, so it can be shared by all cycles and threads.
+ */
+public final class SkuCatalog {
+
+    // RAM sizes (GB) of the Azure trace, stored the way VmTrace reads them ((int) GB * 1000 MB)
+    private static final double[] TRACE_RAM_GB = {0.75, 1.75, 3.5, 7, 14, 28, 56};
+
+    // columns, sorted by price (ties: fewer cores, then less RAM)
+    private final int[] cores, ram;
+    private final double[] price;
+    // power model per SKU, NaN = Vm#linRegPower
+    private final double[] intercept, util, mem;
+
+    // (cores, RAM) -> index of the SKU (only read after the constructor)
+    private final LongIntMap bySize;
+
+    private SkuCatalog(int[] cores, int[] ram, double[] price, double[] intercept, double[] util, double[] mem)
+    {
+        int n = cores.length;
+        Integer[] idx = new Integer[n];
+        for(int i = 0; i < n; i++) idx[i] = i;
+        Arrays.sort(idx, Comparator.<Integer>comparingDouble(i -> price[i]).thenComparingInt(i -> cores[i]).thenComparingInt(i -> ram[i]));
+
+        this.cores = new int[n]; this.ram = new int[n]; this.price = new double[n];
+        this.intercept = new double[n]; this.util = new double[n]; this.mem = new double[n];
+        for(int i = 0; i < n; i++)
+        {
+            int j = idx[i];
+            if(cores[j] <= 0 || ram[j] < 0 || !(price[j] >= 0)) throw new IllegalArgumentException("invalid SKU: " + cores[j] + " cores, " + ram[j] + " MB, $" + price[j] + "/h");
+            this.cores[i] = cores[j]; this.ram[i] = ram[j]; this.price[i] = price[j];
+            this.intercept[i] = intercept[j]; this.util[i] = util[j]; this.mem[i] = mem[j];
+        }
+        this.bySize = new LongIntMap(n);
+        for(int i = n - 1; i >= 0; i--) bySize.put(LongIntMap.key(this.cores[i], this.ram[i]), i); // the cheapest one wins
+    }
+
+    /**
+     * The SKUs the trace's vms are made of: every core count CR knows (see Algorithms#coreCounts) with every RAM size of the
+     * trace, priced with Vm#price and powered by Vm#linRegPower.
+     *
+     * @return the catalog (42 SKUs)
+     */
+    public static SkuCatalog defaults()
+    {
+        int[] cc = Algorithms.coreCounts();
+        int n = cc.length * TRACE_RAM_GB.length;
+        int[] cores = new int[n], ram = new int[n];
+        double[] price = new double[n], nan = new double[n];
+        Arrays.fill(nan, Double.NaN);
+        int i = 0;
+        for(int c : cc)
+        {
+            for(double gb : TRACE_RAM_GB)
+            {
+                cores[i] = c; ram[i] = (int)gb * 1000;
+                price[i] = Vm.price(c, ram[i]);
+                i++;
+            }
+        }
+        return new SkuCatalog(cores, ram, price, nan, nan.clone(), nan.clone());
+    }
+
+    /**
+     * Reads a catalog from a csv file with a header and one SKU per row:
+     * cores, RAM (MB), price ($/h) and optionally the power model intercept, util, mem (all three or none).
+     *
+     * @param path path to the csv file
+     * @return the catalog
+     * @throws IOException b/c reading from file...
+     */
+    public static SkuCatalog load(String path) throws IOException
+    {
+        List<SkuChunk> chunks = ParallelCsvReader.read(path, true, SkuChunk::new, Integer.MAX_VALUE);
+        int n = 0;
+        for(SkuChunk chunk : chunks) n += chunk.n;
+        if(n == 0) throw new IllegalArgumentException("no SKUs in " + path);
+
+        int[] cores = new int[n], ram = new int[n];
+        double[] price = new double[n], intercept = new double[n], util = new double[n], mem = new double[n];
+        int pos = 0;
+        for(SkuChunk chunk : chunks)
+        {
+            System.arraycopy(chunk.cores, 0, cores, pos, chunk.n);
+            System.arraycopy(chunk.ram, 0, ram, pos, chunk.n);
+            System.arraycopy(chunk.price, 0, price, pos, chunk.n);
+            System.arraycopy(chunk.intercept, 0, intercept, pos, chunk.n);
+            System.arraycopy(chunk.util, 0, util, pos, chunk.n);
+            System.arraycopy(chunk.mem, 0, mem, pos, chunk.n);
+            pos += chunk.n;
+        }
+        return new SkuCatalog(cores, ram, price, intercept, util, mem);
+    }
+
+    /**
+     * The SKUs of one byte range of the catalog file.
+     */
+    private static final class SkuChunk extends ParallelCsvReader.ChunkParser
+    {
+        int n;
+        int[] cores = new int[64], ram = new int[64];
+        double[] price = new double[64], intercept = new double[64], util = new double[64], mem = new double[64];
+
+        @Override
+        void row(ParallelCsvReader.Row row)
+        {
+            if(n == cores.length)
+            {
+                cores = Arrays.copyOf(cores, n * 2); ram = Arrays.copyOf(ram, n * 2); price = Arrays.copyOf(price, n * 2);
+                intercept = Arrays.copyOf(intercept, n * 2); util = Arrays.copyOf(util, n * 2); mem = Arrays.copyOf(mem, n * 2);
+            }
+            cores[n] = (int)row.getDouble(0);
+            ram[n] = (int)row.getDouble(1);
+            price[n] = row.getDouble(2);
+            boolean model = row.numFields() >= 6 && !row.isMissingValue(6);
+            intercept[n] = model ? row.getDouble(3) : Double.NaN;
+            util[n] = model ? row.getDouble(4) : Double.NaN;
+            mem[n] = model ? row.getDouble(5) : Double.NaN;
+            n++;
+        }
+
+        @Override
+        int size() {return n;}
+    }
+
+    /**
+     * @return number of SKUs
+     */
+    public int size() {return cores.length;}
+
+    /**
+     * @param sku index of the SKU, 0 = the cheapest one
+     */
+    public int getCores(int sku) {return cores[sku];}
+
+    /**
+     * @return RAM in MB
+     */
+    public int getRam(int sku) {return ram[sku];}
+
+    /**
+     * @return price in $/hour
+     */
+    public double getPrice(int sku) {return price[sku];}
+
+    /**
+     * Gets the price of a vm size: the one of its SKU if the catalog has it, Vm#price otherwise.
+     *
+     * @param cores number of cores
+     * @param ram RAM in MB
+     * @return price in $/hour
+     */
+    public double priceOf(int cores, int ram)
+    {
+        int sku = bySize.get(LongIntMap.key(cores, ram), -1);
+        return sku >= 0 ? price[sku] : Vm.price(cores, ram);
+    }
+
+    /**
+     * Estimates the power (watt) of a vm on the SKU.
+     *
+     * @param sku index of the SKU
+     * @param avg_util avg. cpu utilization on the SKU
+     * @return power (watt)
+     */
+    public double power(int sku, double avg_util)
+    {
+        if(Double.isNaN(intercept[sku])) return Vm.linRegPower(cores[sku], ram[sku], avg_util);
+        int memory = ram[sku] / 1000; // MB --> GB, like Vm#linRegPower
+        return Math.max(mem[sku] * memory + util[sku] * avg_util + intercept[sku], 0.0);
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Reserved cores per 5-minute slot, as a lazy segment tree: add a number of cores to a range of slots and get the max
+ * or min over a range of slots, all in O(log n).
+ *
+ * Used by the capacity-aware scheduler (see Algorithms#runCA) to check whether a vm still fits into a window.
+ */
+final class SlotLoadTree {
+
+    private final int n;
+
+    // max/min of the node (incl. its own pending add), pending add of the node (not yet pushed to the children)
+    private final long[] max, min, pending;
+
+    /**
+     * @param load the initial load of every slot
+     */
+    SlotLoadTree(long[] load)
+    {
+        this.n = Math.max(1, load.length);
+        this.max = new long[4 * n];
+        this.min = new long[4 * n];
+        this.pending = new long[4 * n];
+        if(load.length > 0) build(1, 0, n, load);
+    }
+
+    private void build(int v, int lo, int hi, long[] load)
+    {
+        if(hi - lo == 1) {max[v] = min[v] = load[lo]; return;}
+        int mid = (lo + hi) >>> 1;
+        build(2 * v, lo, mid, load);
+        build(2 * v + 1, mid, hi, load);
+        max[v] = Math.max(max[2 * v], max[2 * v + 1]);
+        min[v] = Math.min(min[2 * v], min[2 * v + 1]);
+    }
+
+    /**
+     * Adds cores to the slots [from, to).
+     */
+    void add(int from, int to, long cores)
+    {
+        if(from < to) add(1, 0, n, from, to, cores);
+    }
+
+    private void add(int v, int lo, int hi, int from, int to, long cores)
+    {
+        if(to <= lo || hi <= from) return;
+        if(from <= lo && hi <= to) {max[v] += cores; min[v] += cores; pending[v] += cores; return;}
+        int mid = (lo + hi) >>> 1;
+        add(2 * v, lo, mid, from, to, cores);
+        add(2 * v + 1, mid, hi, from, to, cores);
+        max[v] = Math.max(max[2 * v], max[2 * v + 1]) + pending[v];
+        min[v] = Math.min(min[2 * v], min[2 * v + 1]) + pending[v];
+    }
+
+    /**
+     * @return the max load over the slots [from, to), Long.MIN_VALUE if the range is empty
+     */
+    long max(int from, int to)
+    {
+        return from < to ? max(1, 0, n, from, to) : Long.MIN_VALUE;
+    }
+
+    // pending adds are applied on the way back up instead of being pushed down, so queries don't modify the tree
+    private long max(int v, int lo, int hi, int from, int to)
+    {
+        if(to <= lo || hi <= from) return Long.MIN_VALUE;
+        if(from <= lo && hi <= to) return max[v];
+        int mid = (lo + hi) >>> 1;
+        return Math.max(max(2 * v, lo, mid, from, to), max(2 * v + 1, mid, hi, from, to)) + pending[v];
+    }
+
+    /**
+     * @return the min load over the slots [from, to), Long.MAX_VALUE if the range is empty
+     */
+    long min(int from, int to)
+    {
+        return from < to ? min(1, 0, n, from, to) : Long.MAX_VALUE;
+    }
+
+    private long min(int v, int lo, int hi, int from, int to)
+    {
+        if(to <= lo || hi <= from) return Long.MAX_VALUE;
+        if(from <= lo && hi <= to) return min[v];
+        int mid = (lo + hi) >>> 1;
+        return Math.min(min(2 * v, lo, mid, from, to), min(2 * v + 1, mid, hi, from, to)) + pending[v];
+    }
+}
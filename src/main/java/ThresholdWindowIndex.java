@@ -0,0 +1,144 @@
+import org.cloudbus.cloudsim.MoerSeries;
+
+import java.util.Arrays;
+
+/**
+ * The windows used by Rescheduling by Thresholds (RT): maximal runs of 5-minute intervals whose predicted MOER is below the moer threshold.
+ *
+ * Windows are sorted by start (they don't overlap, so their ends are sorted as well). On top of them sits a segment tree
+ * that keeps the max length and the min average PMOER of every node, so the first window that is long enough and cheap enough
+ * is found by descending the tree instead of scanning the windows one by one.
+ *
+ * An index only depends on the PMOER series and the threshold, use #of to share it between VMs, cycles and sweeps.
+ */
+final class ThresholdWindowIndex {
+
+    // bounds of the windows (in 5 min. INDEXES), avg pmoer over each window
+    private final int[] start, end;
+    private final double[] avgPMOER;
+    private final int size;
+
+    // segment tree (leaves at [leaves, 2 * leaves)), empty leaves have length -1 and avg +inf
+    private final int leaves;
+    private final int[] maxLength;
+    private final double[] minAvg;
+
+    private ThresholdWindowIndex(MoerSeries PMOER, int moer_thresh)
+    {
+        int[] s = new int[16], e = new int[16];
+        double[] a = new double[16];
+        int n = 0;
+
+        // find possible windows (same as RT always did)
+        int sign, wstart = 0; double wavg = 0.0;
+        if (PMOER.get(0) - moer_thresh >= 0) sign = 1;
+        else sign = -1;
+        wavg += PMOER.get(0);
+        for(int i = 1; i < PMOER.size(); i++)
+        {
+            if (PMOER.get(i) - moer_thresh >= 0 && sign == -1) // crossed threshold (below -> above)
+            {
+                wavg /= i - wstart;
+                sign = 1;
+                if(n == s.length) {s = Arrays.copyOf(s, n * 2); e = Arrays.copyOf(e, n * 2); a = Arrays.copyOf(a, n * 2);}
+                s[n] = wstart; e[n] = i; a[n] = wavg; n++; // add window to possible windows to recommend
+            }
+            else if (PMOER.get(i) - moer_thresh < 0 && sign == 1) // crossed threshold (above -> below)
+            {
+                wstart = i;
+                wavg = 0;
+                sign = -1;
+            }
+            // we add at end of the loop instead of start
+            // this is bc the moer value represents the avg moer for the *next* 5 min.
+            wavg += PMOER.get(i);
+        }
+
+        this.size = n;
+        this.start = Arrays.copyOf(s, n);
+        this.end = Arrays.copyOf(e, n);
+        this.avgPMOER = Arrays.copyOf(a, n);
+
+        int l = 1;
+        while(l < Math.max(n, 1)) l <<= 1;
+        this.leaves = l;
+        this.maxLength = new int[2 * l];
+        this.minAvg = new double[2 * l];
+        Arrays.fill(maxLength, -1);
+        Arrays.fill(minAvg, Double.POSITIVE_INFINITY);
+        for(int i = 0; i < n; i++) {maxLength[l + i] = end[i] - start[i]; minAvg[l + i] = avgPMOER[i];}
+        for(int v = l - 1; v >= 1; v--)
+        {
+            maxLength[v] = Math.max(maxLength[2 * v], maxLength[2 * v + 1]);
+            minAvg[v] = Math.min(minAvg[2 * v], minAvg[2 * v + 1]);
+        }
+    }
+
+    /**
+     * Gets the index for a PMOER series and threshold, built on first use and cached in the series.
+     *
+     * @param PMOER predicted MOER
+     * @param moer_thresh the moer threshold
+     * @return the index
+     */
+    static ThresholdWindowIndex of(MoerSeries PMOER, int moer_thresh)
+    {
+        return PMOER.derived(Arrays.asList(ThresholdWindowIndex.class, moer_thresh), p -> new ThresholdWindowIndex(p, moer_thresh));
+    }
+
+    int size() {return size;}
+    int getStart(int w) {return start[w];}
+    int getEnd(int w) {return end[w];}
+    double getAvgPMOER(int w) {return avgPMOER[w];}
+
+    /**
+     * @return index of the first window that starts at or after the slot (size() if there is none)
+     */
+    int firstStartingAt(int slot)
+    {
+        return lowerBound(start, slot);
+    }
+
+    /**
+     * @return index of the first window that ends after the slot (size() if there is none)
+     */
+    int firstEndingAfter(int slot)
+    {
+        return lowerBound(end, slot + 1);
+    }
+
+    private int lowerBound(int[] a, int key)
+    {
+        int lo = 0, hi = size;
+        while(lo < hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            if(a[mid] < key) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Finds the first window in [from, to) that is at least minLength long and whose avg PMOER is below maxAvg.
+     *
+     * Subtrees whose longest window is too short or whose cheapest window is too expensive are skipped as a whole.
+     *
+     * @return index of the window, -1 if there is none
+     */
+    int findFirst(int from, int to, int minLength, double maxAvg)
+    {
+        if(from >= to) return -1;
+        return find(1, 0, leaves, from, to, minLength, maxAvg);
+    }
+
+    // node v covers the windows [lo, hi)
+    private int find(int v, int lo, int hi, int from, int to, int minLength, double maxAvg)
+    {
+        if(hi <= from || lo >= to || maxLength[v] < minLength || !(minAvg[v] < maxAvg)) return -1;
+        if(hi - lo == 1) return lo; // leaf: both conditions hold for this very window
+        int mid = (lo + hi) >>> 1;
+        int w = find(2 * v, lo, mid, from, to, minLength, maxAvg);
+        return w >= 0 ? w : find(2 * v + 1, mid, hi, from, to, minLength, maxAvg);
+    }
+}
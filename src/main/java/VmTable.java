@@ -0,0 +1,425 @@
+import org.cloudbus.cloudsim.MoerSeries;
+import org.cloudbus.cloudsim.Vm;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * The VMs of one simulation cycle, stored as primitive columns (struct of arrays) instead of one Vm object per VM.
+ *
+ * A table starts out as a view of the shared VmTrace. A column is copied the first time one of its values is changed
+ * (copy-on-write), so the algorithms only ever modify this cycle's copy and columns that are never changed are not copied at all.
+ * Several threads may change different VMs at the same time (see #applyAndSum): a column is copied under the table's lock and
+ * the flags that tell whether it has been copied are volatile.
+ *
+ * Carbon, waste, energy, etc. are computed exactly like in Vm (see the custom methods there).
+ */
+public final class VmTable {
+
+    // number of VMs summed up sequentially by one fork-join task (see #sumCarbonAndWaste)
+    private static final int SUM_BLOCK = 1 << 14;
+
+    private final VmTrace trace;
+
+    // MOER data (see AlgRunner)
+    private final MoerSeries MOER, PMOER;
+
+    // columns, shared with the trace until they are written to
+    private int[] start, end, cores, ram;
+    private double[] maxUtil, avgUtil, p95, power;
+    private volatile boolean ownTime, ownCores, ownRam, ownMaxUtil, ownAvgUtil, ownP95, ownPower;
+
+    // runs of 5 min. intervals of the vms that are suspended in between (see #setSegments), null until the first one is set
+    private int[][] segments;
+    private volatile boolean ownSegments;
+
+    /**
+     * Creates a table that starts out with the VMs of the trace.
+     *
+     * @param trace the trace
+     * @param MOER observed MOER (per 5 min)
+     * @param PMOER predicted MOER (per 5 min)
+     */
+    public VmTable(VmTrace trace, MoerSeries MOER, MoerSeries PMOER)
+    {
+        this.trace = trace; this.MOER = MOER; this.PMOER = PMOER;
+        this.start = trace.start; this.end = trace.end; this.cores = trace.cores; this.ram = trace.ram;
+        this.maxUtil = trace.maxUtil; this.avgUtil = trace.avgUtil; this.p95 = trace.p95; this.power = trace.power;
+    }
+
+    // shares all columns with the other table (see #snapshot)
+    private VmTable(VmTable other)
+    {
+        this.trace = other.trace; this.MOER = other.MOER; this.PMOER = other.PMOER;
+        this.start = other.start; this.end = other.end; this.cores = other.cores; this.ram = other.ram;
+        this.maxUtil = other.maxUtil; this.avgUtil = other.avgUtil; this.p95 = other.p95; this.power = other.power;
+        this.segments = other.segments;
+    }
+
+    /**
+     * Creates a table with the VMs as they are in this one, e.g. to try several algorithms on top of the same moved VMs
+     * (see ParetoExplorer). No column is copied, afterwards both tables copy a column before they first write to it.
+     *
+     * @return the new table
+     */
+    public VmTable snapshot()
+    {
+        ownTime = ownCores = ownRam = ownMaxUtil = ownAvgUtil = ownP95 = ownPower = ownSegments = false;
+        return new VmTable(this);
+    }
+
+    /**
+     * @return number of VMs
+     */
+    public int size() {return start.length;}
+
+    /**
+     * @return number of VMs that can be time-shifted
+     */
+    public int numFlexible() {return trace.numFlexible();}
+
+    /**
+     * @param i index into the flexible VMs
+     * @return id of the i-th VM that can be time-shifted
+     */
+    public int flexibleAt(int i) {return trace.flexibleAt(i);}
+
+    /**
+     * @return true if the VM can be time-shifted (judged by its runtime as read, like #flexibleAt)
+     */
+    public boolean isFlexible(int vm) {return VmTrace.isFlexible(trace.start[vm], trace.end[vm]);}
+
+    public MoerSeries getMOER() {return MOER;}
+    public MoerSeries getPMOER() {return PMOER;}
+
+    //------------Below are getters/setters of one VM-----------//
+
+    public int getStart(int vm) {return start[vm];}
+    public int getEnd(int vm) {return end[vm];}
+
+    public void setTime(int vm, int newStart, int newEnd)
+    {
+        if(!ownTime) ownTime();
+        start[vm] = newStart; end[vm] = newEnd;
+        if(segments != null && segments[vm] != null)
+        {
+            if(!ownSegments) ownSegments();
+            segments[vm] = null;
+        }
+    }
+
+    /**
+     * Lets a VM run in several segments (suspended in between), start and end become the start of the first and the end
+     * of the last segment. Like Vm#setSegments.
+     *
+     * @param vm the vm
+     * @param runs the runs of 5 min. intervals {from0, to0, from1, to1, ...}, each one [from, to), ascending (not copied)
+     */
+    public void setSegments(int vm, int[] runs)
+    {
+        if(!ownTime) ownTime();
+        if(!ownSegments) ownSegments();
+        start[vm] = runs[0] * 300; end[vm] = runs[runs.length - 1] * 300;
+        segments[vm] = runs;
+    }
+
+    /**
+     * @return the segments of a VM (must not be modified), null if it runs from start to end without a break
+     */
+    public int[] getSegments(int vm) {return segments == null ? null : segments[vm];}
+
+    /**
+     * @return the time (sec) a VM actually runs, without the breaks between its segments
+     */
+    public int getRuntime(int vm)
+    {
+        int[] runs = getSegments(vm);
+        if(runs == null) return end[vm] - start[vm];
+        int slots = 0;
+        for(int i = 0; i < runs.length; i += 2) slots += runs[i + 1] - runs[i];
+        return slots * 300;
+    }
+
+    public int getCores(int vm) {return cores[vm];}
+
+    public void setCores(int vm, int c)
+    {
+        if(!ownCores) ownCores();
+        cores[vm] = c;
+    }
+
+    /**
+     * @return RAM in MB
+     */
+    public int getRam(int vm) {return ram[vm];}
+
+    /**
+     * @param r RAM in MB
+     */
+    public void setRam(int vm, int r)
+    {
+        if(!ownRam) ownRam();
+        ram[vm] = r;
+    }
+
+    public double getMaxUtil(int vm) {return maxUtil[vm];}
+
+    public void setMaxUtil(int vm, double u)
+    {
+        if(!ownMaxUtil) ownMaxUtil();
+        maxUtil[vm] = u;
+    }
+
+    public double getAvgUtil(int vm) {return avgUtil[vm];}
+
+    public void setAvgUtil(int vm, double u)
+    {
+        if(!ownAvgUtil) ownAvgUtil();
+        avgUtil[vm] = u;
+    }
+
+    public double getP95(int vm) {return p95[vm];}
+
+    public void setP95(int vm, double u)
+    {
+        if(!ownP95) ownP95();
+        p95[vm] = u;
+    }
+
+    /**
+     * @return power (watt)
+     */
+    public double getPower(int vm) {return power[vm];}
+
+    /**
+     * Updates the power of a VM after its core count or utilization changed (see Vm#linRegPower).
+     */
+    public void updateLinRegPower(int vm)
+    {
+        if(!ownPower) ownPower();
+        power[vm] = Vm.linRegPower(cores[vm], ram[vm], avgUtil[vm]);
+    }
+
+    /**
+     * Sets the power of a VM that comes from another model than Vm#linRegPower (e.g. the one of a SkuCatalog).
+     *
+     * @param watt power (watt)
+     */
+    public void setPower(int vm, double watt)
+    {
+        if(!ownPower) ownPower();
+        power[vm] = watt;
+    }
+
+    // copy a column before it's first written to (see the class comment)
+    private synchronized void ownTime() {if(!ownTime) {start = start.clone(); end = end.clone(); ownTime = true;}}
+    private synchronized void ownCores() {if(!ownCores) {cores = cores.clone(); ownCores = true;}}
+    private synchronized void ownRam() {if(!ownRam) {ram = ram.clone(); ownRam = true;}}
+    private synchronized void ownMaxUtil() {if(!ownMaxUtil) {maxUtil = maxUtil.clone(); ownMaxUtil = true;}}
+    private synchronized void ownAvgUtil() {if(!ownAvgUtil) {avgUtil = avgUtil.clone(); ownAvgUtil = true;}}
+    private synchronized void ownP95() {if(!ownP95) {p95 = p95.clone(); ownP95 = true;}}
+    private synchronized void ownPower() {if(!ownPower) {power = power.clone(); ownPower = true;}}
+    private synchronized void ownSegments()
+    {
+        if(ownSegments) return;
+        segments = segments == null ? new int[size()][] : segments.clone();
+        ownSegments = true;
+    }
+
+    //------------Below are derived values (same as in Vm)-----------//
+
+    /**
+     * Gets the total energy (MWh) over the runtime from start to end.
+     *
+     * @return energy (MWh)
+     */
+    public double getEnergy(int vm)
+    {
+        return energy(power[vm], getRuntime(vm));
+    }
+
+    /**
+     * @return energy (MWh) of a VM with the given power (watt) and runtime (sec)
+     */
+    static double energy(double power, int time)
+    {
+        if (time == 0) return 0;
+        return power * time / (1_000_000 * 3600.0); // watt * s / 1000000 / 3600 = megawatt * hour
+    }
+
+    /**
+     * Gets observed MOER (*averaged* over the runtime interval) in CO2 lbs/MWh.
+     */
+    public double getAverageMOER(int vm)
+    {
+        int[] runs = getSegments(vm);
+        return runs == null ? MOER.average(start[vm], end[vm]) : MOER.average(runs);
+    }
+
+    /**
+     * Gets *predicted* MOER (*averaged* over the runtime interval) in CO2 lbs/MWh.
+     */
+    public double getAveragePMOER(int vm)
+    {
+        int[] runs = getSegments(vm);
+        return runs == null ? PMOER.average(start[vm], end[vm]) : PMOER.average(runs);
+    }
+
+    /**
+     * Gets the carbon (lbs CO2) over the runtime.
+     */
+    public double getCarbon(int vm) {return getAverageMOER(vm) * getEnergy(vm);}
+
+    /**
+     * Get total cost in $
+     */
+    private static double getCost(int cores, int ram, int time) {return Vm.price(cores, ram) * time / 3600.0;}
+
+    /**
+     * Get wasted money in $
+     */
+    public double getWaste(int vm) {return waste(cores[vm], ram[vm], getRuntime(vm), avgUtil[vm]);}
+
+    /**
+     * @return wasted money ($) of a VM with the given size, runtime (sec) and avg. utilization
+     */
+    static double waste(int cores, int ram, int time, double avgUtil) {return getCost(cores, ram, time) * (1 - avgUtil / 100);}
+
+    /**
+     * Gets the cores reserved in every 5 min. interval: a VM reserves its cores from start / 300 until end / 300 (exclusive),
+     * or in its segments, the same intervals its average MOER is taken over.
+     *
+     * @param slots number of intervals (VMs are cut off at the end)
+     * @return reserved cores per interval
+     */
+    public long[] coresPerSlot(int slots)
+    {
+        // difference array
+        long[] load = new long[slots + 1];
+        for(int vm = 0; vm < size(); vm++)
+        {
+            int[] runs = getSegments(vm);
+            int n = runs == null ? 1 : runs.length / 2;
+            for(int i = 0; i < n; i++)
+            {
+                int from = runs == null ? start[vm] / 300 : runs[2 * i], to = runs == null ? end[vm] / 300 : runs[2 * i + 1];
+                from = Math.min(from, slots); to = Math.min(to, slots);
+                load[from] += cores[vm]; load[to] -= cores[vm];
+            }
+        }
+        for(int i = 1; i < slots; i++) load[i] += load[i - 1];
+        return Arrays.copyOf(load, slots);
+    }
+
+    /**
+     * Gets the total carbon and waste of all VMs.
+     *
+     * The VMs are split into fixed blocks of SUM_BLOCK VMs, each block is summed up with a compensated sum
+     * (see CompensatedSum) and the blocks are combined pairwise in a fixed order. The blocks only depend on the number of VMs,
+     * so the result is the same for any number of threads (and exactly reproducible).
+     *
+     * @return {total carbon (lbs CO2), total waste ($)}
+     */
+    public double[] sumCarbonAndWaste()
+    {
+        int blocks = (size() + SUM_BLOCK - 1) / SUM_BLOCK;
+        if(blocks == 0) return new double[]{0, 0};
+        CompensatedSum[] total = ForkJoinPool.commonPool().invoke(new SumTask(this, null, 0, blocks));
+        return new double[]{total[0].get(), total[1].get()};
+    }
+
+    /**
+     * Applies a per-VM stage to every VM and sums up carbon and waste in the same pass (see Pipeline): every block of
+     * SUM_BLOCK VMs is adjusted and then summed up while it's still in cache. The sums are combined like in
+     * #sumCarbonAndWaste, so the result is exactly the same as applying the stage first and summing up after.
+     *
+     * @param stage adjusts one VM (given the table and the vm id), may only change that VM
+     * @param parallel true to adjust and sum up the blocks on the fork-join pool (like #sumCarbonAndWaste),
+     *                 false to visit them one after another in the order of the VMs (for stages that draw from a seeded
+     *                 generator or keep state)
+     * @return {total carbon (lbs CO2), total waste ($)}
+     */
+    double[] applyAndSum(ObjIntConsumer<VmTable> stage, boolean parallel)
+    {
+        int blocks = (size() + SUM_BLOCK - 1) / SUM_BLOCK;
+        if(blocks == 0) return new double[]{0, 0};
+        if(parallel)
+        {
+            CompensatedSum[] total = ForkJoinPool.commonPool().invoke(new SumTask(this, stage, 0, blocks));
+            return new double[]{total[0].get(), total[1].get()};
+        }
+        CompensatedSum[][] sums = new CompensatedSum[blocks][];
+        for(int b = 0; b < blocks; b++)
+        {
+            int end = Math.min(size(), (b + 1) * SUM_BLOCK);
+            for(int vm = b * SUM_BLOCK; vm < end; vm++) stage.accept(this, vm);
+            sums[b] = sumBlock(this, b);
+        }
+        CompensatedSum[] total = combine(sums, 0, blocks);
+        return new double[]{total[0].get(), total[1].get()};
+    }
+
+    // sums up carbon and waste of one block (the runtime of every VM is only computed once)
+    private static CompensatedSum[] sumBlock(VmTable table, int block)
+    {
+        CompensatedSum carbon = new CompensatedSum(), waste = new CompensatedSum();
+        int end = Math.min(table.size(), (block + 1) * SUM_BLOCK);
+        for(int vm = block * SUM_BLOCK; vm < end; vm++)
+        {
+            int time = table.getRuntime(vm);
+            carbon.add(table.getAverageMOER(vm) * energy(table.power[vm], time));
+            waste.add(waste(table.cores[vm], table.ram[vm], time, table.avgUtil[vm]));
+        }
+        return new CompensatedSum[]{carbon, waste};
+    }
+
+    // combines the sums of the blocks [from, to) in the same order as SumTask
+    private static CompensatedSum[] combine(CompensatedSum[][] sums, int from, int to)
+    {
+        if(to - from == 1) return sums[from];
+        int mid = (from + to) >>> 1;
+        CompensatedSum[] l = combine(sums, from, mid), r = combine(sums, mid, to);
+        l[0].add(r[0]); l[1].add(r[1]);
+        return l;
+    }
+
+    /**
+     * Sums up carbon and waste of the blocks [from, to), applies the stage (if any) to every block before.
+     */
+    private static final class SumTask extends RecursiveTask<CompensatedSum[]>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final VmTable table;
+        private final ObjIntConsumer<VmTable> stage;
+        private final int from, to;
+
+        SumTask(VmTable table, ObjIntConsumer<VmTable> stage, int from, int to)
+        {
+            this.table = table; this.stage = stage; this.from = from; this.to = to;
+        }
+
+        @Override
+        protected CompensatedSum[] compute()
+        {
+            if(to - from == 1)
+            {
+                if(stage != null)
+                {
+                    int end = Math.min(table.size(), (from + 1) * SUM_BLOCK);
+                    for(int vm = from * SUM_BLOCK; vm < end; vm++) stage.accept(table, vm);
+                }
+                return sumBlock(table, from);
+            }
+
+            int mid = (from + to) >>> 1;
+            SumTask right = new SumTask(table, stage, mid, to);
+            right.fork();
+            CompensatedSum[] l = new SumTask(table, stage, from, mid).compute(), r = right.join();
+            l[0].add(r[0]); l[1].add(r[1]);
+            return l;
+        }
+    }
+}
@@ -0,0 +1,312 @@
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The Azure VM trace, parsed once and kept in memory as primitive columns.
+ *
+ * A trace is never modified after it is read, so every simulation cycle can share the same instance.
+ * Each cycle builds its own VMs from these columns (see AlgRunner#init_VMs), which means that the algorithms
+ * only ever change the cycle's private copy and the next cycle starts from the original trace again.
+ */
+public final class VmTrace {
+
+    // binary trace format (see writeBinary): header = {MAGIC, VERSION, number of VMs, 0}, then one column after another
+    private static final int MAGIC = 0x564D5452, VERSION = 1, HEADER_BYTES = 16;
+
+    // VMs whose runtime (sec) lies in [FLEX_MIN, FLEX_MAX] are considered for time-shifting
+    static final int FLEX_MIN = 2100, FLEX_MAX = 86100;
+
+    // columns (one entry per VM, index = vm id)
+    // VmTable shares these arrays and copies a column before writing to it, nothing else may write to them
+    final int[] start, end, cores, ram;
+    final double[] maxUtil, avgUtil, p95, power;
+
+    // ids of the VMs that can be time-shifted (ascending)
+    private final int[] flexible;
+
+    // the arrays are taken over as they are (no copy), they must all have the same length
+    private VmTrace(int[] start, int[] end, int[] cores, int[] ram, double[] maxUtil, double[] avgUtil, double[] p95, double[] power)
+    {
+        this.start = start;
+        this.end = end;
+        this.cores = cores;
+        this.ram = ram;
+        this.maxUtil = maxUtil;
+        this.avgUtil = avgUtil;
+        this.p95 = p95;
+        this.power = power;
+
+        int size = start.length;
+        int[] flex = new int[size]; int numFlex = 0;
+        for(int i = 0; i < size; i++)
+            if(isFlexible(this.start[i], this.end[i])) flex[numFlex++] = i;
+        this.flexible = Arrays.copyOf(flex, numFlex);
+    }
+
+    /**
+     * Checks whether a VM with the given runtime can be time-shifted.
+     *
+     * @param start start time (sec)
+     * @param end end time (sec)
+     * @return true if the runtime lies within [FLEX_MIN, FLEX_MAX]
+     */
+    static boolean isFlexible(int start, int end)
+    {
+        return end - start >= FLEX_MIN && end - start <= FLEX_MAX;
+    }
+
+    /**
+     * Gets the path of the binary trace that belongs to a csv trace ('x.csv' -> 'x.bin').
+     *
+     * @param csvPath path to the csv file
+     * @return path to the binary file
+     */
+    public static String binaryPath(String csvPath)
+    {
+        return (csvPath.endsWith(".csv") ? csvPath.substring(0, csvPath.length() - 4) : csvPath) + ".bin";
+    }
+
+    /**
+     * Loads the VM trace. Uses the binary version of the trace (see VmTraceConverter) if there is one that is
+     * at least as new as the csv, otherwise parses the csv.
+     *
+     * @param path path to the csv file (or directly to a binary file)
+     * @param limit max number of VMs to load
+     * @return the trace
+     * @throws IOException b/c reading from file...
+     */
+    public static VmTrace load(String path, int limit) throws IOException
+    {
+        if(path.endsWith(".bin")) return mapBinary(path, limit);
+        File csv = new File(path), bin = new File(binaryPath(path));
+        if(bin.isFile() && bin.lastModified() >= csv.lastModified()) return mapBinary(bin.getPath(), limit);
+        return readCsv(path, limit);
+    }
+
+    /**
+     * Reads the VM trace (csv). The file is parsed in parallel (see ParallelCsvReader), VM ids follow the file order.
+     * Rows with missing values are skipped.
+     *
+     * @param path path to the csv file
+     * @param limit max number of VMs to read
+     * @return the parsed trace
+     * @throws IOException b/c reading from file...
+     */
+    public static VmTrace readCsv(String path, int limit) throws IOException
+    {
+        List<CsvChunk> chunks = ParallelCsvReader.read(path, true, CsvChunk::new, limit);
+
+        int n = 0;
+        for(CsvChunk c : chunks) n += c.n;
+        n = Math.min(n, limit);
+
+        int[] start = new int[n], end = new int[n], cores = new int[n], ram = new int[n];
+        double[] maxUtil = new double[n], avgUtil = new double[n], p95 = new double[n], power = new double[n];
+        int pos = 0;
+        for(CsvChunk c : chunks)
+        {
+            int len = Math.min(c.n, n - pos);
+            System.arraycopy(c.start, 0, start, pos, len);
+            System.arraycopy(c.end, 0, end, pos, len);
+            System.arraycopy(c.cores, 0, cores, pos, len);
+            System.arraycopy(c.ram, 0, ram, pos, len);
+            System.arraycopy(c.maxUtil, 0, maxUtil, pos, len);
+            System.arraycopy(c.avgUtil, 0, avgUtil, pos, len);
+            System.arraycopy(c.p95, 0, p95, pos, len);
+            System.arraycopy(c.power, 0, power, pos, len);
+            pos += len;
+        }
+
+        return new VmTrace(start, end, cores, ram, maxUtil, avgUtil, p95, power);
+    }
+
+    /**
+     * Reads the VM trace (csv) batch by batch, without ever holding the whole trace in memory (see ParallelCsvReader#stream).
+     * Every batch is a trace of its own (VM ids start at 0 in each batch), the batches come in file order.
+     * Rows with missing values are skipped.
+     *
+     * @param path path to the csv file
+     * @param limit max number of VMs to read
+     * @param batches receives the batches
+     * @throws IOException b/c reading from file...
+     */
+    public static void stream(String path, long limit, Consumer<VmTrace> batches) throws IOException
+    {
+        long[] read = {0};
+        ParallelCsvReader.stream(path, true, CsvChunk::new, limit, c -> {
+            int len = (int) Math.min(c.n, limit - read[0]);
+            read[0] += len;
+            if(len > 0) batches.accept(c.toTrace(len));
+        });
+    }
+
+    /**
+     * The VMs of one byte range of the csv file.
+     */
+    private static final class CsvChunk extends ParallelCsvReader.ChunkParser
+    {
+        // number of columns in the csv file
+        private static final int NUM_FIELDS = 9;
+
+        int n, cap = 1 << 12;
+        int[] start = new int[cap], end = new int[cap], cores = new int[cap], ram = new int[cap];
+        double[] maxUtil = new double[cap], avgUtil = new double[cap], p95 = new double[cap], power = new double[cap];
+
+        @Override
+        void row(ParallelCsvReader.Row row)
+        {
+            if(row.isMissingValue(NUM_FIELDS)) return;
+
+            if(n == cap)
+            {
+                cap += cap >> 1;
+                start = Arrays.copyOf(start, cap); end = Arrays.copyOf(end, cap);
+                cores = Arrays.copyOf(cores, cap); ram = Arrays.copyOf(ram, cap);
+                maxUtil = Arrays.copyOf(maxUtil, cap); avgUtil = Arrays.copyOf(avgUtil, cap);
+                p95 = Arrays.copyOf(p95, cap); power = Arrays.copyOf(power, cap);
+            }
+
+            start[n] = (int)(row.getDouble(0));
+            end[n] = (int)(row.getDouble(1));
+            maxUtil[n] = row.getDouble(2) / 100;
+            avgUtil[n] = row.getDouble(3) / 100;
+            p95[n] = row.getDouble(4) / 100;
+            cores[n] = (int)row.getDouble(5); //Number of CPUs requested
+            ram[n] = (int)row.getDouble(6) * 1000; //RAM in MB
+            power[n] = row.getDouble(8);
+            n++;
+        }
+
+        @Override
+        int size() {return n;}
+
+        // the first len VMs of this chunk as a trace
+        VmTrace toTrace(int len)
+        {
+            return new VmTrace(Arrays.copyOf(start, len), Arrays.copyOf(end, len), Arrays.copyOf(cores, len), Arrays.copyOf(ram, len),
+                    Arrays.copyOf(maxUtil, len), Arrays.copyOf(avgUtil, len), Arrays.copyOf(p95, len), Arrays.copyOf(power, len));
+        }
+    }
+
+    /**
+     * Writes the trace to a columnar binary file that can be loaded with #mapBinary.
+     * Layout (little endian): a 16 byte header {MAGIC, VERSION, n, 0} followed by the columns
+     * start, end, cores, ram (int[n] each) and maxUtil, avgUtil, p95, power (double[n] each).
+     *
+     * @param path path to the binary file
+     * @throws IOException b/c writing to file...
+     */
+    public void writeBinary(String path) throws IOException
+    {
+        int n = size();
+        ByteBuffer buf = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        try(OutputStream out = new BufferedOutputStream(new FileOutputStream(path), 1 << 16))
+        {
+            buf.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(0);
+            for(int[] col : new int[][]{start, end, cores, ram})
+                for(int v : col) {if(buf.remaining() < 8) flush(buf, out); buf.putInt(v);}
+            for(double[] col : new double[][]{maxUtil, avgUtil, p95, power})
+                for(double v : col) {if(buf.remaining() < 8) flush(buf, out); buf.putDouble(v);}
+            flush(buf, out);
+        }
+    }
+
+    private static void flush(ByteBuffer buf, OutputStream out) throws IOException
+    {
+        out.write(buf.array(), 0, buf.position());
+        buf.clear();
+    }
+
+    /**
+     * Loads a trace written by #writeBinary. The file is memory-mapped and its columns are copied in bulk,
+     * so nothing is parsed and no objects are created per VM.
+     *
+     * @param path path to the binary file
+     * @param limit max number of VMs to load
+     * @return the trace
+     * @throws IOException b/c reading from file (or if it isn't a binary trace)...
+     */
+    public static VmTrace mapBinary(String path, int limit) throws IOException
+    {
+        try(FileChannel ch = FileChannel.open(Paths.get(path), StandardOpenOption.READ))
+        {
+            if(ch.size() > Integer.MAX_VALUE) throw new IOException(path + " is too large to be mapped (" + ch.size() + " bytes)");
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+
+            if(buf.remaining() < HEADER_BYTES || buf.getInt(0) != MAGIC) throw new IOException(path + " is not a binary VM trace");
+            if(buf.getInt(4) != VERSION) throw new IOException(path + ": unsupported binary trace version " + buf.getInt(4));
+            int total = buf.getInt(8);
+            if(ch.size() != HEADER_BYTES + (long) total * 48) throw new IOException(path + " is truncated");
+
+            int n = Math.min(total, limit);
+            int[][] ints = new int[4][n];
+            double[][] doubles = new double[4][n];
+            for(int c = 0; c < 4; c++)
+            {
+                buf.position(HEADER_BYTES + c * 4 * total);
+                buf.asIntBuffer().get(ints[c]);
+            }
+            for(int c = 0; c < 4; c++)
+            {
+                buf.position(HEADER_BYTES + 16 * total + c * 8 * total);
+                buf.asDoubleBuffer().get(doubles[c]);
+            }
+            return new VmTrace(ints[0], ints[1], ints[2], ints[3], doubles[0], doubles[1], doubles[2], doubles[3]);
+        }
+    }
+
+    /**
+     * Gets the number of VMs in the trace.
+     *
+     * @return number of VMs
+     */
+    public int size() {return start.length;}
+
+    public int getStart(int vm) {return start[vm];}
+    public int getEnd(int vm) {return end[vm];}
+    public int getCores(int vm) {return cores[vm];}
+
+    /**
+     * @return RAM in MB
+     */
+    public int getRam(int vm) {return ram[vm];}
+    public double getMaxUtil(int vm) {return maxUtil[vm];}
+    public double getAvgUtil(int vm) {return avgUtil[vm];}
+    public double getP95(int vm) {return p95[vm];}
+    public double getPower(int vm) {return power[vm];}
+
+    /**
+     * Gets the ids of the VMs that can be time-shifted, in trace order.
+     *
+     * @return a copy of the flexible VM ids
+     */
+    public int[] getFlexible() {return flexible.clone();}
+
+    /**
+     * Gets the number of VMs that can be time-shifted.
+     *
+     * @return number of flexible VMs
+     */
+    public int numFlexible() {return flexible.length;}
+
+    /**
+     * Gets the id of the i-th VM that can be time-shifted.
+     *
+     * @param i index into the flexible VMs
+     * @return vm id
+     */
+    public int flexibleAt(int i) {return flexible[i];}
+}
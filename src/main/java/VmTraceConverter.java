@@ -0,0 +1,23 @@
+import java.io.IOException;
+
+/**
+ * One-time converter from the Azure VM trace (csv) to the binary trace format read by AlgRunner.
+ * Only has to be run again when the csv changes.
+ *
+ * usage: VmTraceConverter [csv path] [binary path]
+ *  (defaults: cloudsim_vm_data_all.csv cloudsim_vm_data_all.bin)
+ */
+public class VmTraceConverter {
+
+    public static void main(String[] args) throws IOException
+    {
+        String csv = (args.length > 0) ? args[0] : "cloudsim_vm_data_all.csv";
+        String bin = (args.length > 1) ? args[1] : VmTrace.binaryPath(csv);
+
+        long start = System.currentTimeMillis();
+        VmTrace trace = VmTrace.readCsv(csv, Integer.MAX_VALUE);
+        trace.writeBinary(bin);
+        System.out.println("Converted " + trace.size() + " VMs from " + csv + " to " + bin +
+                " in " + (System.currentTimeMillis() - start) / 1000.0 + "s");
+    }
+}
@@ -0,0 +1,131 @@
+import org.cloudbus.cloudsim.MoerSeries;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * The windows of one runlength, ordered by their predicted MOER sum W[k] = PMOER[k] + ... + PMOER[k + runlength - 1].
+ *
+ * A segment tree holds the position of the cheapest window (the earliest one on ties) of every node, the sums themselves
+ * come from the prefix sums of the series, so the index only costs one int per window and node.
+ * Used by the capacity-aware scheduler (see Algorithms#runCA) to visit the windows of a range from the cheapest to the most
+ * expensive one until one of them has room for the vm.
+ *
+ * Use #of to share an index between all vms and cycles with the same runlength.
+ */
+final class WindowMinIndex {
+
+    private final MoerSeries PMOER;
+    private final int runlength;
+
+    // number of windows (k = 0 .. n - 1)
+    private final int n;
+
+    // segment tree (leaves at [leaves, 2 * leaves)) of the argmin, empty leaves hold -1
+    private final int leaves;
+    private final int[] argmin;
+
+    private WindowMinIndex(MoerSeries PMOER, int runlength)
+    {
+        this.PMOER = PMOER;
+        this.runlength = runlength;
+        this.n = Math.max(0, PMOER.size() - runlength + 1);
+
+        int l = 1;
+        while(l < Math.max(n, 1)) l <<= 1;
+        this.leaves = l;
+        this.argmin = new int[2 * l];
+        Arrays.fill(argmin, -1);
+        for(int k = 0; k < n; k++) argmin[l + k] = k;
+        for(int v = l - 1; v >= 1; v--) argmin[v] = min(argmin[2 * v], argmin[2 * v + 1]);
+    }
+
+    /**
+     * Gets the index for a PMOER series and runlength, built on first use and cached in the series.
+     *
+     * @param PMOER predicted MOER
+     * @param runlength runlength of the vms (in 5 min. intervals)
+     * @return the index
+     */
+    static WindowMinIndex of(MoerSeries PMOER, int runlength)
+    {
+        return PMOER.derived(Arrays.asList(WindowMinIndex.class, runlength), p -> new WindowMinIndex(p, runlength));
+    }
+
+    int size() {return n;}
+
+    /**
+     * @return the PMOER sum of the window starting at k
+     */
+    long sum(int k)
+    {
+        return PMOER.sum(k, k + runlength);
+    }
+
+    /**
+     * @return the start of the cheapest window in [from, to) (the earliest one on ties), -1 if the range is empty
+     */
+    int argmin(int from, int to)
+    {
+        from = Math.max(from, 0); to = Math.min(to, n);
+        int best = -1;
+        for(int lo = from + leaves, hi = to + leaves; lo < hi; lo >>= 1, hi >>= 1)
+        {
+            if((lo & 1) == 1) best = min(best, argmin[lo++]);
+            if((hi & 1) == 1) best = min(best, argmin[--hi]);
+        }
+        return best;
+    }
+
+    /**
+     * Visits the windows in [from, to) that are cheaper than maxSum, from the cheapest one up, and returns the first one that fits.
+     *
+     * Every visited window splits its range into the parts left and right of it, the cheapest window of each part is a
+     * candidate for the next visit. So visiting m windows takes O(m log n) and at most 2m candidates are kept.
+     *
+     * @param from first start to consider
+     * @param to end (exclusive) of the starts to consider
+     * @param maxSum only windows whose sum is below this are visited
+     * @param fits tests a window (given its start)
+     * @param maxTries max number of windows to visit
+     * @return the start of the first window that fits, -1 if there is none (or it would take more than maxTries visits)
+     */
+    int cheapestFitting(int from, int to, long maxSum, IntPredicate fits, int maxTries)
+    {
+        // candidates: (sum, start) packed into one long (sums fit into an int), and the range each one was taken from
+        long[] keys = new long[2 * maxTries + 1];
+        int[] lo = new int[keys.length], hi = new int[keys.length];
+        int size = 0;
+
+        int k = argmin(from, to);
+        if(k >= 0) {keys[0] = (sum(k) << 32) | k; lo[0] = from; hi[0] = to; size = 1;}
+        for(int tries = 0; tries < maxTries && size > 0; tries++)
+        {
+            // take the cheapest candidate (linear scan, there are only a few)
+            int c = 0;
+            for(int i = 1; i < size; i++) if(keys[i] < keys[c]) c = i;
+            long key = keys[c];
+            int cl = lo[c], ch = hi[c];
+            size--; keys[c] = keys[size]; lo[c] = lo[size]; hi[c] = hi[size];
+
+            if((key >> 32) >= maxSum) return -1; // every window left is at least as expensive
+            k = (int) key;
+            if(fits.test(k)) return k;
+
+            // split the range around the window
+            int left = argmin(cl, k), right = argmin(k + 1, ch);
+            if(left >= 0) {keys[size] = (sum(left) << 32) | left; lo[size] = cl; hi[size] = k; size++;}
+            if(right >= 0) {keys[size] = (sum(right) << 32) | right; lo[size] = k + 1; hi[size] = ch; size++;}
+        }
+        return -1;
+    }
+
+    // the cheaper window of a and b (-1 = none), the earlier one on ties
+    private int min(int a, int b)
+    {
+        if(a < 0) return b;
+        if(b < 0) return a;
+        long sa = sum(a), sb = sum(b);
+        return sa < sb || (sa == sb && a < b) ? a : b;
+    }
+}
@@ -1049,6 +1049,15 @@ public class Datacenter extends SimEntity {
 		Log.printConcatLine(getName(), " is shutting down...");
 	}
 
+	/**
+	 * Each datacenter is a logical process of its own: its hosts and VMs are only changed by its
+	 * events.
+	 */
+	@Override
+	protected int getLogicalProcess() {
+		return getId();
+	}
+
 	@Override
 	public void startEntity() {
 		Log.printConcatLine(getName(), " is starting...");
@@ -32,8 +32,20 @@ public class Log {
          the call for any print method has no effect. */
 	private static boolean disabled;
 	
-	/** Buffer to avoid creating new string builder upon every print. */
-	private static StringBuilder buffer = new StringBuilder();		    
+	/** Buffer to avoid creating new string builder upon every print (one per thread, simulations may run concurrently). */
+	private static final ThreadLocal<StringBuilder> buffer = ThreadLocal.withInitial(StringBuilder::new);
+
+	/** The buffers of the threads whose messages are captured instead of outputted, see {@link #capture(StringBuilder)}. */
+	private static final ThreadLocal<StringBuilder> captured = new ThreadLocal<StringBuilder>();
+
+	/** Indicates if any thread ever captured its messages (the others don't have to check then). */
+	private static volatile boolean capturing;
+
+	/** The output streams of the threads that don't use the common one, see {@link #setThreadOutput(OutputStream)}. */
+	private static final ThreadLocal<OutputStream> threadOutput = new ThreadLocal<OutputStream>();
+
+	/** Indicates if any thread ever got its own output stream. */
+	private static volatile boolean threadOutputs;
 
 	/**
 	 * Prints a message.
@@ -42,6 +54,13 @@ public class Log {
 	 */
 	public static void print(String message) {
 		if (!isDisabled()) {
+			if (capturing) {
+				StringBuilder capture = captured.get();
+				if (capture != null) {
+					capture.append(message);
+					return;
+				}
+			}
 			try {
 				getOutput().write(message.getBytes());
 			} catch (IOException e) {
@@ -89,7 +108,7 @@ public class Log {
 	 */
 	public static void printConcat(Object... messages) {
 		if (!isDisabled()) {
-			buffer.setLength(0); // Clear the buffer		    
+			StringBuilder buffer = concatBuffer();
 			for(int i = 0 ; i < messages.length ; i ++) {
 				buffer.append(String.valueOf(messages[i]));
 			}
@@ -104,7 +123,7 @@ public class Log {
 	 */
 	public static void printConcatLine(Object... messages) {
 		if (!isDisabled()) {
-			buffer.setLength(0); // Clear the buffer		    
+			StringBuilder buffer = concatBuffer();
 			for(int i = 0 ; i < messages.length ; i ++) {
 				buffer.append(String.valueOf(messages[i]));
 			}
@@ -151,9 +170,33 @@ public class Log {
 		}
 	}
 
+	/**
+	 * Captures the messages the current thread prints in a buffer instead of outputting them,
+	 * e.g. to output them later in a deterministic order.
+	 *
+	 * @param capture the buffer, or null to output the messages of the thread again
+	 */
+	public static void capture(StringBuilder capture) {
+		if (capture != null) {
+			capturing = true;
+			captured.set(capture);
+		} else {
+			captured.remove();
+		}
+	}
+
+	/**
+	 * Gets the cleared buffer of the current thread for the concatenated messages.
+	 */
+	private static StringBuilder concatBuffer() {
+		StringBuilder buffer = Log.buffer.get();
+		buffer.setLength(0); // Clear the buffer
+		return buffer;
+	}
+
 	/**
 	 * Sets the output stream.
-	 * 
+	 *
 	 * @param _output the new output
 	 */
 	public static void setOutput(OutputStream _output) {
@@ -161,17 +204,48 @@ public class Log {
 	}
 
 	/**
-	 * Gets the output stream.
+	 * Gets the output stream (of the current thread, if it has its own).
 	 * 
 	 * @return the output
 	 */
 	public static OutputStream getOutput() {
+		if (threadOutputs) {
+			OutputStream out = threadOutput.get();
+			if (out != null) {
+				return out;
+			}
+		}
 		if (output == null) {
 			setOutput(System.out);
 		}
 		return output;
 	}
 
+	/**
+	 * Sets the output stream of the current thread, instead of the one set by
+	 * {@link #setOutput(OutputStream)}, e.g. to keep the logs of simulations that run on different
+	 * threads apart.
+	 *
+	 * @param _output the output of the thread, or null to use the common output again
+	 */
+	public static void setThreadOutput(OutputStream _output) {
+		if (_output != null) {
+			threadOutputs = true;
+			threadOutput.set(_output);
+		} else {
+			threadOutput.remove();
+		}
+	}
+
+	/**
+	 * Gets the output stream of the current thread.
+	 *
+	 * @return the output of the thread, or null if it uses the common output
+	 */
+	public static OutputStream getThreadOutput() {
+		return threadOutputs ? threadOutput.get() : null;
+	}
+
 	/**
 	 * Sets the disable output flag.
 	 * 
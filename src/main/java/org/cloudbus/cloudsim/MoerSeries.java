@@ -0,0 +1,161 @@
+package org.cloudbus.cloudsim;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * CUSTOM. A MOER time series (one value per 5 minutes, in CO2 lbs/MWh) with prefix sums,
+ * so the sum/average over any interval is computed in O(1) instead of looping over the interval.
+ *
+ * The series is never modified after it is created, so it can be shared by all VMs, cycles and threads.
+ */
+public final class MoerSeries {
+
+	/** Length of one MOER interval (sec). */
+	public static final int SLOT_SECONDS = 300;
+
+	/** The MOER values, index = number of 5-minute intervals since the start of the month. */
+	private final int[] values;
+
+	/** prefix[i] = values[0] + ... + values[i - 1] */
+	private final long[] prefix;
+
+	/**
+	 * Number of structures kept per series (see #derived), enough for the indexes of every runlength of a flexible VM
+	 * plus those of a parameter sweep.
+	 */
+	public static final int DERIVED_CAPACITY = 512;
+
+	/**
+	 * Structures computed from this series (e.g. window indexes of the algorithms), see #derived. The least recently
+	 * used one is dropped once there are more than DERIVED_CAPACITY. Guarded by itself.
+	 */
+	private final Map<Object, Object> derived = new LinkedHashMap<Object, Object>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+			return size() > DERIVED_CAPACITY;
+		}
+	};
+
+	/**
+	 * Creates a series.
+	 *
+	 * @param values the MOER values (the array is copied)
+	 */
+	public MoerSeries(int[] values) {
+		this.values = values.clone();
+		this.prefix = new long[values.length + 1];
+		for (int i = 0; i < values.length; i++) {
+			prefix[i + 1] = prefix[i] + values[i];
+		}
+	}
+
+	/**
+	 * Gets the number of 5-minute intervals.
+	 *
+	 * @return the size
+	 */
+	public int size() {
+		return values.length;
+	}
+
+	/**
+	 * Gets the MOER of one interval.
+	 *
+	 * @param slot index of the 5-minute interval
+	 * @return the MOER
+	 */
+	public int get(int slot) {
+		return values[slot];
+	}
+
+	/**
+	 * Gets the sum of the MOER over the intervals [from, to).
+	 *
+	 * @param from first interval (inclusive)
+	 * @param to last interval (exclusive)
+	 * @return the sum
+	 */
+	public long sum(int from, int to) {
+		return prefix[to] - prefix[from];
+	}
+
+	/**
+	 * Gets the MOER averaged over a runtime. The times are converted to 5-minute intervals
+	 * (start / 300 until end / 300, exclusive), like it was done in Vm#getAverageMOER.
+	 *
+	 * The sum is exact (long), so the result is the same as adding up the values one by one.
+	 *
+	 * @param fromSec start time (sec)
+	 * @param toSec end time (sec)
+	 * @return the average MOER, or 0 if the runtime doesn't cover at least one interval
+	 */
+	public double average(int fromSec, int toSec) {
+		int ms = fromSec / SLOT_SECONDS, me = toSec / SLOT_SECONDS;
+		if (me <= ms) {
+			return 0;
+		}
+		return (double) sum(ms, me) / (me - ms);
+	}
+
+	/**
+	 * Gets the MOER averaged over a segmented runtime (see Vm#setSegments).
+	 *
+	 * @param segments the runs of 5-minute intervals {from0, to0, from1, to1, ...}, each one [from, to)
+	 * @return the average MOER, or 0 if the segments don't cover any interval
+	 */
+	public double average(int[] segments) {
+		long sum = 0;
+		int length = 0;
+		for (int i = 0; i < segments.length; i += 2) {
+			sum += sum(segments[i], segments[i + 1]);
+			length += segments[i + 1] - segments[i];
+		}
+		return length > 0 ? (double) sum / length : 0;
+	}
+
+	/**
+	 * Gets a structure computed from this series, computing it on first use. The last DERIVED_CAPACITY structures used
+	 * are kept, so every VM, cycle and parameter sweep that needs the same structure shares one instance, while a long
+	 * sweep over many parameters doesn't keep all of them alive. Callers that use a structure for a whole pass over the
+	 * VMs should hold on to it instead of asking again for every VM.
+	 *
+	 * @param key identifies the structure (incl. all parameters it depends on), must implement equals/hashCode
+	 * @param factory computes the structure from this series
+	 * @return the (possibly cached) structure
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> T derived(Object key, Function<? super MoerSeries, ? extends T> factory) {
+		Object value;
+		synchronized (derived) {
+			value = derived.get(key);
+		}
+		if (value == null) {
+			// computed outside of the lock, so other threads aren't blocked meanwhile
+			value = factory.apply(this);
+			synchronized (derived) {
+				Object prev = derived.get(key);
+				if (prev != null) {
+					value = prev;
+				} else {
+					derived.put(key, value);
+				}
+			}
+		}
+		return (T) value;
+	}
+
+	/**
+	 * Gets a copy of the values.
+	 *
+	 * @return the MOER values
+	 */
+	public int[] toArray() {
+		return Arrays.copyOf(values, values.length);
+	}
+}
@@ -60,6 +60,9 @@ public class Vm {
 	/** CUSTOM. The start time (sec) and end time (sec) of the runtime of this VM. */
 	private int start, end;
 
+	/** CUSTOM. The runs of 5-minute intervals the VM runs in if it's suspended in between (see #setSegments), null = start to end. */
+	private int[] segments;
+
 	/** CUSTOM. Power of the VM. **/
 	private double power;
 
@@ -90,9 +93,9 @@ public class Vm {
 	/** The current allocated mips for each VM's PE. */
 	private List<Double> currentAllocatedMips;
 
-	/** CUSTOM. Refrences to the moer lists in Sim.java */
-	private List<Integer> MOER;
-	private List<Integer> PMOER;
+	/** CUSTOM. Refrences to the (shared) moer series in AlgRunner.java */
+	private MoerSeries MOER;
+	private MoerSeries PMOER;
 
 	/** Indicates if the VM is being instantiated. */
 	private boolean beingInstantiated;
@@ -181,8 +184,8 @@ public class Vm {
 			double p95,
 			int start, int end,
 			double power,
-			List<Integer> MOER,
-			List<Integer> PMOER,
+			MoerSeries MOER,
+			MoerSeries PMOER,
 
 			CloudletSchedulerTimeShared cloudletScheduler) {
 		setId(id);
@@ -715,7 +718,36 @@ public class Vm {
 
 
 	public int[] getTime() {return new int[]{start, end};}
-	public void setTime(int[] t) {start = t[0]; end = t[1];}
+	public void setTime(int[] t) {start = t[0]; end = t[1]; segments = null;}
+
+	/**
+	 * Lets the VM run in several segments (suspended in between). Start and end become the start of the first
+	 * and the end of the last segment.
+	 *
+	 * @param segments the runs of 5-minute intervals {from0, to0, from1, to1, ...}, each one [from, to), ascending
+	 */
+	public void setSegments(int[] segments) {
+		this.segments = segments.clone();
+		start = segments[0] * MoerSeries.SLOT_SECONDS;
+		end = segments[segments.length - 1] * MoerSeries.SLOT_SECONDS;
+	}
+
+	/**
+	 * @return the segments of the runtime, null if the VM runs from start to end without a break
+	 */
+	public int[] getSegments() {return segments == null ? null : segments.clone();}
+
+	/**
+	 * Gets the time (sec) the VM actually runs, i.e. without the breaks between its segments.
+	 *
+	 * @return runtime (sec)
+	 */
+	public int getRuntime() {
+		if (segments == null) return end - start;
+		int slots = 0;
+		for (int i = 0; i < segments.length; i += 2) slots += segments[i + 1] - segments[i];
+		return slots * MoerSeries.SLOT_SECONDS;
+	}
 
 	public double getAvg_util() {return avg_util;}
 
@@ -744,26 +776,36 @@ public class Vm {
 		return this.power;
 	}
 
+	/**
+	 * Updates the power of this VM after its core count or utilization changed (see #linRegPower).
+	 */
 	public void updateLinRegPower()
 	{
+		this.power = linRegPower(numberOfPes, ram, avg_util);
+	}
 
-		int cores = numberOfPes;
+	/**
+	 * Estimates the power (watt) of a VM with linear regressions (one per core count) over memory and avg. utilization.
+	 *
+	 * @param cores number of cores
+	 * @param ram ram in MB
+	 * @param avg_util avg. cpu utilization
+	 * @return power (watt)
+	 */
+	public static double linRegPower(int cores, int ram, double avg_util)
+	{
 		int memory = ram / 1000; // divide by 1000 bc MB --> GB
 
 		// Lin. Reg.
 		switch (cores) {
 			case 2: //intercept 102.922, util 38.4564, mem -9.76648
-				this.power = Math.max(-9.76648 * memory + 38.4564 * avg_util + 102.922, 0.0);
-				break;
+				return Math.max(-9.76648 * memory + 38.4564 * avg_util + 102.922, 0.0);
 			case 4:
-				this.power = Math.max(-0.767754 * memory + 38.4159 * avg_util + 23.2765, 0.0);
-				break;
+				return Math.max(-0.767754 * memory + 38.4159 * avg_util + 23.2765, 0.0);
 			case 8:
-				this.power = Math.max(38.4159 * avg_util + 15.5263, 0.0);
-				break;
+				return Math.max(38.4159 * avg_util + 15.5263, 0.0);
 			default:
-				this.power = Math.max(-0.0502422 * memory + 174.947 * avg_util + 112.429, 0.0);
-				break;
+				return Math.max(-0.0502422 * memory + 174.947 * avg_util + 112.429, 0.0);
 		}
 	}
 
@@ -773,7 +815,7 @@ public class Vm {
 	 * @return energy (MWh)
 	 */
 	public double getEnergy() {
-		int time = end - start;
+		int time = getRuntime();
 		if (time == 0) return 0;
 		return getPower() * time / (1_000_000 * 3600.0); // watt * s / 1000000 / 3600 = megawatt * hour
 	}
@@ -784,13 +826,8 @@ public class Vm {
 	 * @return
 	 */
 	public double getAverageMOER() {
-		double avgMOER = 0;
-		int ms = start / 300, me = end / 300; // convert time-scale from unit = sec to unit = 5min.
-		if(me - ms == 0) return 0;
-		for(int i = ms; i < me; i++) // from [start, end).
-			avgMOER += MOER.get(i);
-		avgMOER /= me - ms;
-		return avgMOER;
+		if (segments != null) return MOER.average(segments);
+		return MOER.average(start, end); // from [start, end), O(1) with prefix sums
 	}
 
 	/**
@@ -799,13 +836,8 @@ public class Vm {
 	 * @return
 	 */
 	public double getAveragePMOER() {
-		double avgPMOER = 0;
-		int ms = start / 300, me = end / 300; // convert time-scale from unit = sec to unit = 5min.
-		if(me - ms == 0) return 0;
-		for(int i = ms; i < me; i++) // from [start, end).
-			avgPMOER += PMOER.get(i);
-		avgPMOER /= me - ms;
-		return avgPMOER;
+		if (segments != null) return PMOER.average(segments);
+		return PMOER.average(start, end); // from [start, end), O(1) with prefix sums
 	}
 
 	/**
@@ -832,7 +864,18 @@ public class Vm {
 	 * @return
 	 */
 	public double getPrice() {
-		return -0.0038 + 0.0468 * numberOfPes + 0.0017 * ram / 1000.0;
+		return price(numberOfPes, ram);
+	}
+
+	/**
+	 * Get price in $/hour of a VM with the given size
+	 *
+	 * @param cores number of cores
+	 * @param ram ram in MB
+	 * @return price in $/hour
+	 */
+	public static double price(int cores, int ram) {
+		return -0.0038 + 0.0468 * cores + 0.0017 * ram / 1000.0;
 	}
 
 	/**
@@ -841,7 +884,7 @@ public class Vm {
 	 * @return
 	 */
 	private double getCost() {
-		return getPrice() * (end - start) / 3600.0;
+		return getPrice() * getRuntime() / 3600.0;
 	}
 
 	/**
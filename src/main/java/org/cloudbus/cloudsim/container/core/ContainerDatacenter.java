@@ -1144,6 +1144,15 @@ public class ContainerDatacenter extends SimEntity {
         Log.printConcatLine(getName(), " is shutting down...");
     }
 
+    /**
+     * Each datacenter is a logical process of its own: its hosts, VMs and containers are only changed
+     * by its events.
+     */
+    @Override
+    protected int getLogicalProcess() {
+        return getId();
+    }
+
     /*
      * (non-Javadoc)
      * @see cloudsim.core.SimEntity#startEntity()
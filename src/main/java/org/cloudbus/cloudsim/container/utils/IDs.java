@@ -7,11 +7,14 @@ package org.cloudbus.cloudsim.container.utils;
 import org.cloudbus.cloudsim.container.containerProvisioners.ContainerPe;
 import org.cloudbus.cloudsim.container.containerVmProvisioners.ContainerVmPe;
 import org.cloudbus.cloudsim.container.core.*;
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.core.SimulationContext;
 
 import java.util.LinkedHashMap;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * A factory for CloudSim entities' ids. CloudSim requires a lot of ids, that
@@ -24,36 +27,39 @@ import java.util.Map;
 
 public final class IDs {
 
+    /** The counters of each simulation, so its ids don't depend on the simulations that ran before or run at the same time. */
+    private static final Map<SimulationContext, IDs> BY_SIMULATION = new WeakHashMap<>();
 
-    private static final Map<Class<?>, Integer> COUNTERS = new LinkedHashMap<>();
-    private static final Set<Class<?>> NO_COUNTERS = new HashSet<>();
-    private static int globalCounter = 1;
-
-    static {
-        COUNTERS.put(ContainerCloudlet.class, 1);
-        COUNTERS.put(ContainerVm.class, 1);
-        COUNTERS.put(Container.class, 1);
-        COUNTERS.put(ContainerHost.class, 1);
-        COUNTERS.put(ContainerDatacenterBroker.class, 1);
-        COUNTERS.put(ContainerPe.class, 1);
-        COUNTERS.put(ContainerVmPe.class, 1);
-    }
+    private final Map<Class<?>, Integer> counters = new LinkedHashMap<>();
+    private final Set<Class<?>> noCounters = new HashSet<>();
+    private int globalCounter = 1;
 
     private IDs() {
+        counters.put(ContainerCloudlet.class, 1);
+        counters.put(ContainerVm.class, 1);
+        counters.put(Container.class, 1);
+        counters.put(ContainerHost.class, 1);
+        counters.put(ContainerDatacenterBroker.class, 1);
+        counters.put(ContainerPe.class, 1);
+        counters.put(ContainerVmPe.class, 1);
     }
 
     /**
-     * Returns a valid id for the specified class.
+     * Returns a valid id for the specified class, counted per simulation (see CloudSim#getContext()).
      *
      * @param clazz - the class of the object to get an id for. Must not be null.
      * @return a valid id for the specified class.
      */
     public static synchronized int pollId(final Class<?> clazz) {
+        return BY_SIMULATION.computeIfAbsent(CloudSim.getContext(), c -> new IDs()).poll(clazz);
+    }
+
+    private int poll(final Class<?> clazz) {
         Class<?> matchClass = null;
-        if (COUNTERS.containsKey(clazz)) {
+        if (counters.containsKey(clazz)) {
             matchClass = clazz;
-        } else if (!NO_COUNTERS.contains(clazz)) {
-            for (Class<?> key : COUNTERS.keySet()) {
+        } else if (!noCounters.contains(clazz)) {
+            for (Class<?> key : counters.keySet()) {
                 if (key.isAssignableFrom(clazz)) {
                     matchClass = key;
                     break;
@@ -63,11 +69,11 @@ public final class IDs {
 
         int result = -1;
         if (matchClass == null) {
-            NO_COUNTERS.add(clazz);
-            result = pollGlobalId();
+            noCounters.add(clazz);
+            result = globalCounter++;
         } else {
-            result = COUNTERS.get(matchClass);
-            COUNTERS.put(matchClass, result + 1);
+            result = counters.get(matchClass);
+            counters.put(matchClass, result + 1);
         }
 
         if (result < 0) {
@@ -78,10 +84,4 @@ public final class IDs {
         return result;
     }
 
-    private static synchronized int pollGlobalId() {
-        return globalCounter++;
-    }
-
 }
-
-
@@ -0,0 +1,392 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A future event queue implemented as a calendar queue (R. Brown, "Calendar queues: a fast O(1) priority
+ * queue implementation for the simulation event set problem", 1988). The time is split into "days" of
+ * {@link #width} seconds, the days are mapped to a ring of buckets ("a year") and every bucket keeps its
+ * events sorted. Adding and polling an event takes O(1) on average, as long as the width fits the
+ * distance between the events: the queue resizes itself (and re-estimates the width from the first
+ * events) when it gets much bigger or smaller than the number of buckets.
+ * <p>
+ * Events that are added in order (the usual case: a new event is rarely earlier than the last one of
+ * its bucket) are appended to their bucket, so even many events of the same time stay cheap, and
+ * {@link #drain(double, Collection)} only has to walk the head of one bucket.
+ *
+ * @since CloudSim Toolkit 3.0
+ * @see EventQueue
+ */
+public class CalendarQueue implements EventQueue {
+
+	/** The minimum number of buckets. */
+	private static final int MIN_BUCKETS = 16;
+
+	/** The number of events used to estimate the width of a day. */
+	private static final int WIDTH_SAMPLE = 25;
+
+	/** The buckets (a power of two of them). */
+	private Bucket[] buckets;
+
+	/** The width of a day (i.e. of a bucket) in seconds. */
+	private double width = 1.0;
+
+	/**
+	 * The current day. No event of the queue is earlier, and the first event is found by walking the
+	 * buckets from this day on.
+	 */
+	private long day = 0;
+
+	/** The number of events. */
+	private int size;
+
+	/** A incremental number used for {@link SimEvent#serial} event attribute. */
+	private long serial = 0;
+
+	/**
+	 * Creates an empty queue.
+	 */
+	public CalendarQueue() {
+		buckets = newBuckets(MIN_BUCKETS);
+	}
+
+	@Override
+	public void addEvent(SimEvent newEvent) {
+		newEvent.setSerial(serial++);
+		insert(newEvent);
+	}
+
+	@Override
+	public void addEventFirst(SimEvent newEvent) {
+		newEvent.setSerial(0);
+		insert(newEvent);
+	}
+
+	@Override
+	public SimEvent first() {
+		return size == 0 ? null : buckets[locate()].first();
+	}
+
+	@Override
+	public SimEvent pollFirst() {
+		if (size == 0) {
+			return null;
+		}
+		SimEvent first = buckets[locate()].pollFirst();
+		size--;
+		if (size < buckets.length >> 2 && buckets.length > MIN_BUCKETS) {
+			resize(buckets.length >> 1);
+		}
+		return first;
+	}
+
+	@Override
+	public int drain(double time, Collection<? super SimEvent> events) {
+		if (size == 0) {
+			return 0;
+		}
+		// all events of the time are in the bucket of the first event
+		Bucket bucket = buckets[locate()];
+		int n = 0;
+		while (bucket.size() > 0 && bucket.first().eventTime() == time) {
+			events.add(bucket.pollFirst());
+			n++;
+		}
+		size -= n;
+		if (size < buckets.length >> 2 && buckets.length > MIN_BUCKETS) {
+			resize(buckets.length >> 1);
+		}
+		return n;
+	}
+
+	@Override
+	public Iterator<SimEvent> iterator() {
+		return new Iterator<SimEvent>() {
+
+			private int bucket = 0;
+
+			private int next = buckets[0].head;
+
+			@Override
+			public boolean hasNext() {
+				while (next >= buckets[bucket].tail) {
+					if (bucket + 1 == buckets.length) {
+						return false;
+					}
+					bucket++;
+					next = buckets[bucket].head;
+				}
+				return true;
+			}
+
+			@Override
+			public SimEvent next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return buckets[bucket].events[next++];
+			}
+		};
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean remove(SimEvent event) {
+		if (size == 0 || !buckets[bucketOf(event.eventTime())].remove(event)) {
+			return false;
+		}
+		size--;
+		return true;
+	}
+
+	@Override
+	public boolean removeAll(Collection<SimEvent> events) {
+		boolean removed = false;
+		for (SimEvent event : events) {
+			removed |= remove(event);
+		}
+		return removed;
+	}
+
+	@Override
+	public boolean removeIf(java.util.function.Predicate<? super SimEvent> filter) {
+		int removed = 0;
+		for (Bucket bucket : buckets) {
+			removed += bucket.removeIf(filter);
+		}
+		size -= removed;
+		return removed > 0;
+	}
+
+	@Override
+	public void clear() {
+		buckets = newBuckets(MIN_BUCKETS);
+		size = 0;
+		day = 0;
+	}
+
+	/**
+	 * Adds an event with its serial already set.
+	 *
+	 * @param ev the event
+	 */
+	private void insert(SimEvent ev) {
+		long d = dayOf(ev.eventTime());
+		if (size == 0 || d < day) {
+			day = d;
+		}
+		buckets[(int) d & (buckets.length - 1)].add(ev);
+		size++;
+		if (size > buckets.length << 1) {
+			resize(buckets.length << 1);
+		}
+	}
+
+	/**
+	 * Finds the bucket of the first event and moves the current day to the day of that event.
+	 * The queue must not be empty.
+	 *
+	 * @return the index of the bucket
+	 */
+	private int locate() {
+		int mask = buckets.length - 1;
+		// a bucket holds the first event if its head is of the day the bucket stands for in this year
+		for (int k = 0; k < buckets.length; k++) {
+			int i = (int) (day + k) & mask;
+			Bucket bucket = buckets[i];
+			if (bucket.size() > 0 && dayOf(bucket.first().eventTime()) == day + k) {
+				day += k;
+				return i;
+			}
+		}
+		// nothing this year (the events are sparse): search the heads of all buckets
+		int min = -1;
+		for (int i = 0; i < buckets.length; i++) {
+			if (buckets[i].size() > 0 && (min < 0 || buckets[i].first().compareTo(buckets[min].first()) < 0)) {
+				min = i;
+			}
+		}
+		day = dayOf(buckets[min].first().eventTime());
+		return min;
+	}
+
+	/**
+	 * Rebuilds the queue with another number of buckets and a width estimated from the first events.
+	 *
+	 * @param count the new number of buckets
+	 */
+	private void resize(int count) {
+		// takes all events out in order, so they are appended to the new buckets again
+		SimEvent[] all = new SimEvent[size];
+		for (int i = 0; i < all.length; i++) {
+			all[i] = buckets[locate()].pollFirst();
+		}
+		width = estimateWidth(all);
+		buckets = newBuckets(count);
+		for (SimEvent ev : all) {
+			buckets[bucketOf(ev.eventTime())].add(ev);
+		}
+		if (all.length > 0) {
+			day = dayOf(all[0].eventTime());
+		}
+	}
+
+	/**
+	 * Estimates the width of a day as three times the average distance between the first events,
+	 * ignoring distances more than twice the average (like Brown does).
+	 *
+	 * @param sorted the events, in order
+	 * @return the width, the current one if the first events are all of the same time
+	 */
+	private double estimateWidth(SimEvent[] sorted) {
+		int n = Math.min(sorted.length, WIDTH_SAMPLE);
+		if (n < 2) {
+			return width;
+		}
+		double avg = (sorted[n - 1].eventTime() - sorted[0].eventTime()) / (n - 1);
+		double sum = 0;
+		int count = 0;
+		for (int i = 1; i < n; i++) {
+			double gap = sorted[i].eventTime() - sorted[i - 1].eventTime();
+			if (gap <= 2 * avg) {
+				sum += gap;
+				count++;
+			}
+		}
+		double estimate = count > 0 ? 3 * sum / count : 0;
+		return estimate > 0 ? estimate : width;
+	}
+
+	private long dayOf(double time) {
+		return (long) Math.floor(time / width);
+	}
+
+	private int bucketOf(double time) {
+		return (int) dayOf(time) & (buckets.length - 1);
+	}
+
+	private static Bucket[] newBuckets(int count) {
+		Bucket[] buckets = new Bucket[count];
+		for (int i = 0; i < count; i++) {
+			buckets[i] = new Bucket();
+		}
+		return buckets;
+	}
+
+	/**
+	 * The sorted events of one bucket, in events[head, tail).
+	 */
+	private static final class Bucket {
+
+		private SimEvent[] events = new SimEvent[4];
+
+		private int head, tail;
+
+		int size() {
+			return tail - head;
+		}
+
+		SimEvent first() {
+			return events[head];
+		}
+
+		SimEvent pollFirst() {
+			SimEvent first = events[head];
+			events[head++] = null;
+			if (head == tail) {
+				head = tail = 0;
+			}
+			return first;
+		}
+
+		/**
+		 * Adds an event after all events that are not greater (events with the same time and serial stay FIFO).
+		 */
+		void add(SimEvent ev) {
+			if (tail == events.length) {
+				if (head > 0) {
+					System.arraycopy(events, head, events, 0, tail - head);
+					Arrays.fill(events, tail - head, tail, null);
+				} else {
+					events = Arrays.copyOf(events, events.length << 1);
+				}
+				tail -= head;
+				head = 0;
+			}
+			int pos = tail;
+			if (pos > head && ev.compareTo(events[pos - 1]) < 0) {
+				pos = upperBound(ev);
+				System.arraycopy(events, pos, events, pos + 1, tail - pos);
+			}
+			events[pos] = ev;
+			tail++;
+		}
+
+		boolean remove(SimEvent ev) {
+			// the event is the last one of its (time, serial) run that is not behind it
+			for (int i = upperBound(ev) - 1; i >= head; i--) {
+				SimEvent other = events[i];
+				if (other == ev) {
+					System.arraycopy(events, i + 1, events, i, tail - i - 1);
+					events[--tail] = null;
+					if (head == tail) {
+						head = tail = 0;
+					}
+					return true;
+				}
+				if (other.eventTime() != ev.eventTime() || other.getSerial() != ev.getSerial()) {
+					break;
+				}
+			}
+			return false;
+		}
+
+		int removeIf(java.util.function.Predicate<? super SimEvent> filter) {
+			int kept = head;
+			for (int i = head; i < tail; i++) {
+				if (!filter.test(events[i])) {
+					events[kept++] = events[i];
+				}
+			}
+			int removed = tail - kept;
+			Arrays.fill(events, kept, tail, null);
+			tail = kept;
+			if (head == tail) {
+				head = tail = 0;
+			}
+			return removed;
+		}
+
+		/**
+		 * @return the first position whose event is greater than the given one (ties count as not greater)
+		 */
+		private int upperBound(SimEvent ev) {
+			int lo = head, hi = tail;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (ev.compareTo(events[mid]) < 0) {
+					hi = mid;
+				} else {
+					lo = mid + 1;
+				}
+			}
+			return lo;
+		}
+	}
+
+}
@@ -8,16 +8,10 @@
 
 package org.cloudbus.cloudsim.core;
 
-import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
+import java.util.function.Supplier;
 
-import org.cloudbus.cloudsim.Log;
 import org.cloudbus.cloudsim.core.predicates.Predicate;
 import org.cloudbus.cloudsim.core.predicates.PredicateAny;
 import org.cloudbus.cloudsim.core.predicates.PredicateNone;
@@ -29,7 +23,12 @@ import org.cloudbus.cloudsim.core.predicates.PredicateNone;
  * network. Later, nodes in such file are mapped to CloudSim entities. Delay calculated from the
  * BRITE model are added to the messages send through CloudSim. Messages using the old model are
  * converted to the apropriate methods with the correct parameters.
- * 
+ * <p>
+ * The state of a simulation is kept in a {@link SimulationContext}. {@link #init} creates a new one
+ * for the calling thread and the static methods of this class work on the context of the current
+ * thread (see {@link #getContext()}), so several threads can run independent simulations at the
+ * same time.
+ *
  * @author Rodrigo N. Calheiros
  * @author Anton Beloglazov
  * @since CloudSim Toolkit 1.0
@@ -37,63 +36,25 @@ import org.cloudbus.cloudsim.core.predicates.PredicateNone;
 public class CloudSim {
 
 	/** The Constant CLOUDSIM_VERSION_STRING. */
-	private static final String CLOUDSIM_VERSION_STRING = "3.0";
-
-	/** The id of CIS entity. */
-	private static int cisId = -1;
-
-	/** The id of CloudSimShutdown entity. */
-	@SuppressWarnings("unused")
-	private static int shutdownId = -1;
-
-	/** The CIS object. */
-	private static CloudInformationService cis = null;
+	static final String CLOUDSIM_VERSION_STRING = "3.0";
 
-	/** The Constant NOT_FOUND. */
-	private static final int NOT_FOUND = -1;
+	/** The simulation of each thread (see {@link #setContext(SimulationContext)}). */
+	private static final ThreadLocal<SimulationContext> current = new ThreadLocal<SimulationContext>();
 
-	/** The trace flag. */
-	@SuppressWarnings("unused")
-	private static boolean traceFlag = false;
+	/** The simulation initialised last, used by the threads that have none while there is only one. */
+	private static volatile SimulationContext last = new SimulationContext(FutureQueue::new, false, 1);
 
-	/** The calendar. */
-	private static Calendar calendar = null;
+	/** The number of simulations initialised so far (see {@link #init}). */
+	private static volatile int contexts = 0;
 
-	/** The termination time. */
-	private static double terminateAt = -1;
-
-	/** The minimal time between events. Events within shorter periods after the last event are discarded. */
-	private static double minTimeBetweenEvents = 0.01;
-	
-	/**
-	 * Initialises all the common attributes.
-	 * 
-	 * @param _calendar the _calendar
-	 * @param _traceFlag the _trace flag
-	 * @param numUser number of users
-	 * @throws Exception This happens when creating this entity before initialising CloudSim package
-	 *             or this entity name is <tt>null</tt> or empty
-	 * @pre $none
-	 * @post $none
-	 */
-	private static void initCommonVariable(Calendar _calendar, boolean _traceFlag, int numUser)
-			throws Exception {
-		initialize();
-		// NOTE: the order for the below 3 lines are important
-		traceFlag = _traceFlag;
+	/** Creates the future event queue of a simulation (see {@link #setFutureQueue(Supplier)}). */
+	private static volatile Supplier<? extends EventQueue> futureQueueFactory = FutureQueue::new;
 
-		// Set the current Wall clock time as the starting time of
-		// simulation
-		if (_calendar == null) {
-			calendar = Calendar.getInstance();
-		} else {
-			calendar = _calendar;
-		}
+	/** Whether the next simulations recycle their events (see {@link #setEventPooling(boolean)}). */
+	private static volatile boolean eventPooling = false;
 
-		// creates a CloudSimShutdown object
-		CloudSimShutdown shutdown = new CloudSimShutdown("CloudSimShutdown", numUser);
-		shutdownId = shutdown.getId();
-	}
+	/** The number of threads that run the logical processes of the next simulations (see {@link #setParallelism(int)}). */
+	private static volatile int parallelism = 1;
 
 	/**
 	 * Initialises CloudSim parameters. This method should be called before creating any entities.
@@ -104,7 +65,9 @@ public class CloudSim {
 	 * <li>CloudSimShutdown
 	 * </ul>
 	 * <p>
-	 * 
+	 * The simulation gets a new {@link SimulationContext}, which becomes the context of the current
+	 * thread.
+	 *
 	 * @param numUser the number of User Entities created. This parameters indicates that
 	 *            {@link gridsim.CloudSimShutdown} first waits for all user entities's
 	 *            END_OF_SIMULATION signal before issuing terminate signal to other entities
@@ -117,21 +80,8 @@ public class CloudSim {
 	 * @post $none
 	 */
 	public static void init(int numUser, Calendar cal, boolean traceFlag) {
-		try {
-			initCommonVariable(cal, traceFlag, numUser);
-
-			// create a GIS object
-			cis = new CloudInformationService("CloudInformationService");
-
-			// set all the above entity IDs
-			cisId = cis.getId();
-		} catch (IllegalArgumentException s) {
-			Log.printLine("CloudSim.init(): The simulation has been terminated due to an unexpected error");
-			Log.printLine(s.getMessage());
-		} catch (Exception e) {
-			Log.printLine("CloudSim.init(): The simulation has been terminated due to an unexpected error");
-			Log.printLine(e.getMessage());
-		}
+		SimulationContext context = newContext();
+		context.init(numUser, cal, traceFlag);
 	}
 
 	/**
@@ -143,7 +93,7 @@ public class CloudSim {
 	 * <li>CloudSimShutdown
 	 * </ul>
 	 * <p>
-	 * 
+	 *
 	 * @param numUser the number of User Entities created. This parameters indicates that
 	 *            {@link gridsim.CloudSimShutdown} first waits for all user entities's
 	 *            END_OF_SIMULATION signal before issuing terminate signal to other entities
@@ -161,20 +111,66 @@ public class CloudSim {
 	    if (periodBetweenEvents <= 0) {
 		throw new IllegalArgumentException("The minimal time between events should be positive, but is:" + periodBetweenEvents);
 	    }
-	    
+
 	    init(numUser, cal, traceFlag);
-	    minTimeBetweenEvents = periodBetweenEvents;
+	    getContext().setMinTimeBetweenEvents(periodBetweenEvents);
+	}
+
+	/**
+	 * Creates the context of a new simulation and binds it to the current thread.
+	 */
+	private static synchronized SimulationContext newContext() {
+		SimulationContext context = new SimulationContext(futureQueueFactory, eventPooling, parallelism);
+		setContext(context);
+		last = context;
+		contexts++;
+		return context;
+	}
+
+	/**
+	 * Gets the simulation of the current thread: the one the thread initialised last (see
+	 * {@link #init}) or was bound to (see {@link #setContext(SimulationContext)}). As long as only
+	 * one simulation has been initialised, a thread without a simulation gets that one, so a single
+	 * simulation can still be watched or paused from other threads (before {@link #init}, it gets
+	 * an idle simulation at time 0). Once there have been more, such a thread can't tell which one
+	 * it means and must be bound first.
+	 *
+	 * @return the context of the simulation
+	 * @throws IllegalStateException if the thread has no simulation and more than one has been initialised
+	 */
+	public static SimulationContext getContext() {
+		SimulationContext context = current.get();
+		if (context != null) {
+			return context;
+		}
+		if (contexts > 1) {
+			throw new IllegalStateException("The current thread has no simulation and there is more than one,"
+					+ " bind it with CloudSim.setContext()");
+		}
+		return last;
+	}
+
+	/**
+	 * Binds the current thread to a simulation: the static methods of this class called by the thread
+	 * work on it afterwards.
+	 *
+	 * @param context the context of the simulation, or null to unbind the thread
+	 */
+	public static void setContext(SimulationContext context) {
+		if (context != null) {
+			current.set(context);
+		} else {
+			current.remove();
+		}
 	}
-	
-	
-	
+
 	/**
 	 * Starts the execution of CloudSim simulation. It waits for complete execution of all entities,
 	 * i.e. until all entities threads reach non-RUNNABLE state or there are no more events in the
 	 * future event queue.
 	 * <p>
 	 * <b>Note</b>: This method should be called after all the entities have been setup and added.
-	 * 
+	 *
 	 * @return the last clock time
 	 * @throws NullPointerException This happens when creating this entity before initialising
 	 *             CloudSim package or this entity name is <tt>null</tt> or empty.
@@ -183,18 +179,8 @@ public class CloudSim {
 	 * @post $none
 	 */
 	public static double startSimulation() throws NullPointerException {
-		Log.printConcatLine("Starting CloudSim version ", CLOUDSIM_VERSION_STRING);
 		try {
-			double clock = run();
-
-			// reset all static variables
-			cisId = -1;
-			shutdownId = -1;
-			cis = null;
-			calendar = null;
-			traceFlag = false;
-
-			return clock;
+			return getContext().startSimulation();
 		} catch (IllegalArgumentException e) {
 			e.printStackTrace();
 			throw new NullPointerException("CloudSim.startCloudSimulation() :"
@@ -206,7 +192,7 @@ public class CloudSim {
 	 * Stops Cloud Simulation (based on {@link Simulation#runStop()}). This should be only called if
 	 * any of the user defined entities <b>explicitly</b> want to terminate simulation during
 	 * execution.
-	 * 
+	 *
 	 * @throws NullPointerException This happens when creating this entity before initialising
 	 *             CloudSim package or this entity name is <tt>null</tt> or empty
 	 * @see gridsim.CloudSim#init(int, Calendar, boolean)
@@ -225,42 +211,35 @@ public class CloudSim {
 
 	/**
 	 * This method is called if one wants to terminate the simulation.
-	 * 
+	 *
 	 * @return true, if successful; false otherwise.
 	 */
 	public static boolean terminateSimulation() {
-		running = false;
-		printMessage("Simulation: Reached termination time.");
-		return true;
+		return getContext().terminateSimulation();
 	}
 
 	/**
 	 * This method is called if one wants to terminate the simulation at a given time.
-	 * 
+	 *
 	 * @param time the time at which the simulation has to be terminated
 	 * @return true, if successful otherwise.
 	 */
 	public static boolean terminateSimulation(double time) {
-		if (time <= clock) {
-			return false;
-		} else {
-			terminateAt = time;
-		}
-		return true;
+		return getContext().terminateSimulation(time);
 	}
 
-	
+
 	/**
-	 * Returns the minimum time between events. Events within shorter periods after the last event are discarded. 
+	 * Returns the minimum time between events. Events within shorter periods after the last event are discarded.
 	 * @return the minimum time between events.
 	 */
 	public static double getMinTimeBetweenEvents() {
-	    return minTimeBetweenEvents;
+	    return getContext().getMinTimeBetweenEvents();
 	}
 
 	/**
 	 * Gets a new copy of initial simulation Calendar.
-	 * 
+	 *
 	 * @return a new copy of Calendar object or if CloudSim hasn't been initialized
 	 * @see gridsim.CloudSim#init(int, Calendar, boolean, String[], String[], String)
 	 * @see gridsim.CloudSim#init(int, Calendar, boolean)
@@ -268,91 +247,41 @@ public class CloudSim {
 	 * @post $none
 	 */
 	public static Calendar getSimulationCalendar() {
-		// make a new copy
-		Calendar clone = calendar;
-		if (calendar != null) {
-			clone = (Calendar) calendar.clone();
-		}
-
-		return clone;
+		return getContext().getSimulationCalendar();
 	}
 
 	/**
 	 * Gets the entity ID of <tt>CloudInformationService</tt>.
-	 * 
+	 *
 	 * @return the Entity ID or if it is not found
 	 * @pre $none
 	 * @post $result >= -1
 	 */
 	public static int getCloudInfoServiceEntityId() {
-		return cisId;
+		return getContext().getCloudInfoServiceEntityId();
 	}
 
 	/**
 	 * Sends a request to Cloud Information Service (CIS) entity to get the list of all Cloud
 	 * hostList.
-	 * 
+	 *
 	 * @return A List containing CloudResource ID (as an Integer object) or if a CIS entity hasn't
 	 *         been created before
 	 * @pre $none
 	 * @post $none
 	 */
 	public static List<Integer> getCloudResourceList() {
-		if (cis == null) {
-			return null;
-		}
-
-		return cis.getList();
+		return getContext().getCloudResourceList();
 	}
 
 	// ======== SIMULATION METHODS ===============//
 
-	/** The entities. */
-	private static List<SimEntity> entities;
-
-	/** The future event queue. */
-	protected static FutureQueue future;
-
-	/** The deferred event queue. */
-	protected static DeferredQueue deferred;
-
-	/** 
-         * The current simulation clock.
-         */
-	private static double clock;
-
-	/** Flag for checking if the simulation is running. */
-	private static boolean running;
-
-	/** The entities by name. */
-	private static Map<String, SimEntity> entitiesByName;
-
-	// The predicates used in entity wait methods
-	/** The wait predicates. */
-	private static Map<Integer, Predicate> waitPredicates;
-
-	/** The paused. */
-	private static boolean paused = false;
-
-	/** The pause at. */
-	private static long pauseAt = -1;
-
-	/** The abrupt terminate. */
-	private static boolean abruptTerminate = false;
-
 	/**
 	 * Initialise the simulation for stand alone simulations. This function should be called at the
 	 * start of the simulation.
 	 */
 	protected static void initialize() {
-		Log.printLine("Initialising...");
-		entities = new ArrayList<SimEntity>();
-		entitiesByName = new LinkedHashMap<String, SimEntity>();
-		future = new FutureQueue();
-		deferred = new DeferredQueue();
-		waitPredicates = new HashMap<Integer, Predicate>();
-		clock = 0;
-		running = false;
+		newContext().initialize();
 	}
 
 	// The two standard predicates
@@ -371,74 +300,63 @@ public class CloudSim {
 	 * @return the simulation time
 	 */
 	public static double clock() {
-		return clock;
+		return getContext().clock();
 	}
 
 	/**
 	 * Get the current number of entities in the simulation.
-	 * 
+	 *
 	 * @return The number of entities
 	 */
 	public static int getNumEntities() {
-		return entities.size();
+		return getContext().getNumEntities();
 	}
 
 	/**
 	 * Get the entity with a given id.
-	 * 
+	 *
 	 * @param id the entity's unique id number
 	 * @return The entity, or if it could not be found
 	 */
 	public static SimEntity getEntity(int id) {
-		return entities.get(id);
+		return getContext().getEntity(id);
 	}
 
 	/**
 	 * Get the entity with a given name.
-	 * 
+	 *
 	 * @param name The entity's name
 	 * @return The entity
 	 */
 	public static SimEntity getEntity(String name) {
-		return entitiesByName.get(name);
+		return getContext().getEntity(name);
 	}
 
 	/**
 	 * Get the id of an entity with a given name.
-	 * 
+	 *
 	 * @param name The entity's name
 	 * @return The entity's unique id number
 	 */
 	public static int getEntityId(String name) {
-		SimEntity obj = entitiesByName.get(name);
-		if (obj == null) {
-			return NOT_FOUND;
-		} else {
-			return obj.getId();
-		}
+		return getContext().getEntityId(name);
 	}
 
 	/**
 	 * Gets name of the entity given its entity ID.
-	 * 
+	 *
 	 * @param entityID the entity ID
 	 * @return the Entity name or if this object does not have one
 	 * @pre entityID > 0
 	 * @post $none
 	 */
 	public static String getEntityName(int entityID) {
-		try {
-			return getEntity(entityID).getName();
-		} catch (IllegalArgumentException e) {
-			return null;
-		} catch (Exception e) {
-			return null;
-		}
+		return getContext().getEntityName(entityID);
 	}
 
 	/**
 	 * Gets name of the entity given its entity ID.
-	 * 
+	 *
 	 * @param entityID the entity ID
 	 * @return the Entity name or if this object does not have one
 	 * @pre entityID > 0
@@ -453,15 +371,11 @@ public class CloudSim {
 
 	/**
 	 * Returns a list of entities created for the simulation.
-	 * 
+	 *
 	 * @return the entity iterator
 	 */
 	public static List<SimEntity> getEntityList() {
-		// create a new list to prevent the user from changing
-		// the list of entities used by Simulation
-		List<SimEntity> list = new LinkedList<SimEntity>();
-		list.addAll(entities);
-		return list;
+		return getContext().getEntityList();
 	}
 
 	// Public update methods
@@ -469,130 +383,66 @@ public class CloudSim {
 	/**
 	 * Add a new entity to the simulation. This is present for compatibility with existing
 	 * simulations since entities are automatically added to the simulation upon instantiation.
-	 * 
+	 *
 	 * @param e The new entity
 	 */
 	public static void addEntity(SimEntity e) {
-		SimEvent evt;
-		if (running) {
-			// Post an event to make this entity
-			evt = new SimEvent(SimEvent.CREATE, clock, 1, 0, 0, e);
-			future.addEvent(evt);
-		}
-		if (e.getId() == -1) { // Only add once!
-			int id = entities.size();
-			e.setId(id);
-			entities.add(e);
-			entitiesByName.put(e.getName(), e);
-		}
+		e.getContext().addEntity(e);
 	}
 
 	/**
 	 * Internal method used to add a new entity to the simulation when the simulation is running. It
 	 * should <b>not</b> be called from user simulations.
-	 * 
+	 *
 	 * @param e The new entity
 	 */
 	protected static void addEntityDynamically(SimEntity e) {
-		if (e == null) {
-			throw new IllegalArgumentException("Adding null entity.");
-		} else {
-			printMessage("Adding: " + e.getName());
-		}
-		e.startEntity();
+		getContext().addEntityDynamically(e);
 	}
 
 	/**
 	 * Internal method used to run one tick of the simulation. This method should <b>not</b> be
 	 * called in simulations.
-	 * 
+	 *
 	 * @return true, if successful otherwise
          * @todo If the method shouldn't be called by the user,
          * it should be protected in any way, such as changing
          * its visibility to package.
 	 */
 	public static boolean runClockTick() {
-		SimEntity ent;
-		boolean queue_empty;
-		
-		int entities_size = entities.size();
-
-		for (int i = 0; i < entities_size; i++) {
-			ent = entities.get(i);
-			if (ent.getState() == SimEntity.RUNNABLE) {
-				ent.run();
-			}
-		}
-				
-		// If there are more future events then deal with them
-		if (future.size() > 0) {
-			List<SimEvent> toRemove = new ArrayList<SimEvent>();
-			Iterator<SimEvent> fit = future.iterator();
-			queue_empty = false;
-			SimEvent first = fit.next();
-			processEvent(first);
-			future.remove(first);
-
-			fit = future.iterator();
-
-			// Check if next events are at same time...
-			boolean trymore = fit.hasNext();
-			while (trymore) {
-				SimEvent next = fit.next();
-				if (next.eventTime() == first.eventTime()) {
-					processEvent(next);
-					toRemove.add(next);
-					trymore = fit.hasNext();
-				} else {
-					trymore = false;
-				}
-			}
-
-			future.removeAll(toRemove);
-
-		} else {
-			queue_empty = true;
-			running = false;
-			printMessage(CloudSim.clock()+": Simulation: No more future events");
-		}
-
-		return queue_empty;
+		return getContext().runClockTick();
 	}
 
 	/**
 	 * Internal method used to stop the simulation. This method should <b>not</b> be used directly.
 	 */
 	public static void runStop() {
-		printMessage("Simulation completed.");
+		getContext().runStop();
 	}
 
 	/**
 	 * Used to hold an entity for some time.
-	 * 
+	 *
 	 * @param src the src
 	 * @param delay the delay
 	 */
 	public static void hold(int src, long delay) {
-		SimEvent e = new SimEvent(SimEvent.HOLD_DONE, clock + delay, src);
-		future.addEvent(e);
-		entities.get(src).setState(SimEntity.HOLDING);
+		getContext().hold(src, delay);
 	}
 
 	/**
 	 * Used to pause an entity for some time.
-	 * 
+	 *
 	 * @param src the src
 	 * @param delay the delay
 	 */
 	public static void pause(int src, double delay) {
-		SimEvent e = new SimEvent(SimEvent.HOLD_DONE, clock + delay, src);
-		future.addEvent(e);
-		entities.get(src).setState(SimEntity.HOLDING);
+		getContext().pause(src, delay);
 	}
 
 	/**
 	 * Used to send an event from one entity to another.
-	 * 
+	 *
 	 * @param src the src
 	 * @param dest the dest
 	 * @param delay the delay
@@ -600,20 +450,12 @@ public class CloudSim {
 	 * @param data the data
 	 */
 	public static void send(int src, int dest, double delay, int tag, Object data) {
-		if (delay < 0) {
-			throw new IllegalArgumentException("Send delay can't be negative.");
-		}
-		if(delay >= Double.MAX_VALUE) {
-			throw new RuntimeException("Send delay can't be infinite.");
-		}
-
-		SimEvent e = new SimEvent(SimEvent.SEND, clock + delay, src, dest, tag, data);
-		future.addEvent(e);
+		getContext().send(src, dest, delay, tag, data);
 	}
 
 	/**
 	 * Used to send an event from one entity to another, with priority in the queue.
-	 * 
+	 *
 	 * @param src the src
 	 * @param dest the dest
 	 * @param delay the delay
@@ -621,195 +463,135 @@ public class CloudSim {
 	 * @param data the data
 	 */
 	public static void sendFirst(int src, int dest, double delay, int tag, Object data) {
-		if (delay < 0) {
-			throw new IllegalArgumentException("Send delay can't be negative.");
-		}
-
-		SimEvent e = new SimEvent(SimEvent.SEND, clock + delay, src, dest, tag, data);
-		future.addEventFirst(e);
+		getContext().sendFirst(src, dest, delay, tag, data);
 	}
 
 	/**
 	 * Sets an entity's state to be waiting. The predicate used to wait for an event is now passed
 	 * to Sim_system. Only events that satisfy the predicate will be passed to the entity. This is
 	 * done to avoid unnecessary context switches.
-	 * 
+	 *
 	 * @param src the src
 	 * @param p the p
 	 */
 	public static void wait(int src, Predicate p) {
-		entities.get(src).setState(SimEntity.WAITING);
-		if (p != SIM_ANY) {
-			// If a predicate has been used store it in order to check it
-			waitPredicates.put(src, p);
-		}
+		getContext().wait(src, p);
 	}
 
 	/**
 	 * Checks if events for a specific entity are present in the deferred event queue.
-	 * 
+	 *
 	 * @param d the d
 	 * @param p the p
 	 * @return the int
 	 */
 	public static int waiting(int d, Predicate p) {
-		int count = 0;
-		SimEvent event;
-		Iterator<SimEvent> iterator = deferred.iterator();
-		while (iterator.hasNext()) {
-			event = iterator.next();
-			if ((event.getDestination() == d) && (p.match(event))) {
-				count++;
-			}
-		}
-		return count;
+		return getContext().waiting(d, p);
 	}
 
 	/**
 	 * Selects an event matching a predicate.
-	 * 
+	 *
 	 * @param src the src
 	 * @param p the p
 	 * @return the sim event
 	 */
 	public static SimEvent select(int src, Predicate p) {
-		SimEvent ev = null;
-		Iterator<SimEvent> iterator = deferred.iterator();
-		while (iterator.hasNext()) {
-			ev = iterator.next();
-			if (ev.getDestination() == src && p.match(ev)) {
-				iterator.remove();
-				break;
-			}
-		}
-		return ev;
+		return getContext().select(src, p);
 	}
 
 	/**
 	 * Find first deferred event matching a predicate.
-	 * 
+	 *
 	 * @param src the src
 	 * @param p the p
 	 * @return the sim event
 	 */
 	public static SimEvent findFirstDeferred(int src, Predicate p) {
-		SimEvent ev = null;
-		Iterator<SimEvent> iterator = deferred.iterator();
-		while (iterator.hasNext()) {
-			ev = iterator.next();
-			if (ev.getDestination() == src && p.match(ev)) {
-				break;
-			}
-		}
-		return ev;
+		return getContext().findFirstDeferred(src, p);
 	}
 
 	/**
 	 * Removes an event from the event queue.
-	 * 
+	 *
 	 * @param src the src
 	 * @param p the p
 	 * @return the sim event
 	 */
 	public static SimEvent cancel(int src, Predicate p) {
-		SimEvent ev = null;
-		Iterator<SimEvent> iter = future.iterator();
-		while (iter.hasNext()) {
-			ev = iter.next();
-			if (ev.getSource() == src && p.match(ev)) {
-				iter.remove();
-				break;
-			}
-		}
-
-		return ev;
+		return getContext().cancel(src, p);
 	}
 
 	/**
 	 * Removes all events that match a given predicate from the future event queue returns true if
 	 * at least one event has been cancelled; false otherwise.
-	 * 
+	 *
 	 * @param src the src
 	 * @param p the p
 	 * @return true, if successful
 	 */
-	public static boolean cancelAll(int src, Predicate p) {
-		SimEvent ev = null;
-		int previousSize = future.size();
-		Iterator<SimEvent> iter = future.iterator();
-		while (iter.hasNext()) {
-			ev = iter.next();
-			if (ev.getSource() == src && p.match(ev)) {
-				iter.remove();
-			}
-		}
-		return previousSize < future.size();
+	public static boolean cancelAll(final int src, final Predicate p) {
+		return getContext().cancelAll(src, p);
 	}
 
-	//
-	// Private internal methods
-	//
+	/**
+	 * Sets how the future event queue of the next simulations is created (by {@link #init}).
+	 * The default is the original {@link FutureQueue} (a TreeSet); an {@link IndexedHeapQueue} is
+	 * usually faster and a {@link CalendarQueue} may be faster for very large queues.
+	 * All of them process the events in the same order.
+	 *
+	 * @param factory creates the queue
+	 */
+	public static void setFutureQueue(Supplier<? extends EventQueue> factory) {
+		futureQueueFactory = factory;
+	}
 
 	/**
-	 * Processes an event.
-	 * 
-	 * @param e the e
+	 * Sets whether the next simulations (see {@link #init}) recycle their events instead of allocating
+	 * a new one for every send, schedule and hold (see {@link SimEventPool}). Off by default, b/c an
+	 * entity that keeps an event after processing it must then {@link SimEvent#retain()} it.
+	 *
+	 * @param pooling true to recycle the events
 	 */
-	private static void processEvent(SimEvent e) {
-		int dest, src;
-		SimEntity dest_ent;
-		// Update the system's clock
-		if (e.eventTime() < clock) {
-			throw new IllegalArgumentException("Past event detected.");
-		}
-		clock = e.eventTime();
-
-		// Ok now process it
-		switch (e.getType()) {
-			case SimEvent.ENULL:
-				throw new IllegalArgumentException("Event has a null type.");
-
-			case SimEvent.CREATE:
-				SimEntity newe = (SimEntity) e.getData();
-				addEntityDynamically(newe);
-				break;
-
-			case SimEvent.SEND:
-				// Check for matching wait
-				dest = e.getDestination();
-				if (dest < 0) {
-					throw new IllegalArgumentException("Attempt to send to a null entity detected.");
-				} else {
-					int tag = e.getTag();
-					dest_ent = entities.get(dest);
-					if (dest_ent.getState() == SimEntity.WAITING) {
-						Integer destObj = Integer.valueOf(dest);
-						Predicate p = waitPredicates.get(destObj);
-						if ((p == null) || (tag == 9999) || (p.match(e))) {
-							dest_ent.setEventBuffer((SimEvent) e.clone());
-							dest_ent.setState(SimEntity.RUNNABLE);
-							waitPredicates.remove(destObj);
-						} else {
-							deferred.addEvent(e);
-						}
-					} else {
-						deferred.addEvent(e);
-					}
-				}
-				break;
-
-			case SimEvent.HOLD_DONE:
-				src = e.getSource();
-				if (src < 0) {
-					throw new IllegalArgumentException("Null entity holding.");
-				} else {
-					entities.get(src).setState(SimEntity.RUNNABLE);
-				}
-				break;
-
-			default:
-				break;
+	public static void setEventPooling(boolean pooling) {
+		eventPooling = pooling;
+	}
+
+	/**
+	 * Sets how many threads run the entities of the next simulations (see {@link #init}). With more
+	 * than one thread, the entities are partitioned into logical processes (see
+	 * {@link SimEntity#getLogicalProcess()}) and, in a clock tick with ready entities of several
+	 * processes, the processes run at the same time. The events they send, their log messages and
+	 * the entities they make ready are only added after the tick, in the order of the entities, so the
+	 * simulation is the same as with one thread.
+	 * <p>
+	 * The events sent between the entities (e.g. by {@link SimEntity#sendNow}) usually have no delay,
+	 * so there is no lookahead beyond the current tick: a tick is the largest window the processes
+	 * can safely run in parallel. Only ticks of datacenters that have events at the same time run in
+	 * parallel, e.g. the periodic updates of several datacenters.
+	 * <p>
+	 * While the processes run, entities can't be added and the simulation can't be terminated.
+	 * Entities can't make entities of other processes runnable, and a {@link #select},
+	 * {@link #findFirstDeferred} or {@link #cancel} without a match fails, b/c the last event of the
+	 * whole queue depends on the other processes. These fail with an {@link IllegalStateException}.
+	 * The default is 1 (sequential).
+	 *
+	 * @param threads the number of threads
+	 */
+	public static void setParallelism(int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("The number of threads should be positive, but is:" + threads);
 		}
+		parallelism = threads;
+	}
+
+	/**
+	 * Gets the event pool of the current (or last) simulation, e.g. to check its hit rate.
+	 *
+	 * @return the pool, null if the simulation doesn't recycle its events
+	 */
+	public static SimEventPool getEventPool() {
+		return getContext().getEventPool();
 	}
 
 	/**
@@ -817,109 +599,55 @@ public class CloudSim {
 	 * simulations.
 	 */
 	public static void runStart() {
-		running = true;
-		// Start all the entities
-		for (SimEntity ent : entities) {
-			ent.startEntity();
-		}
-
-		printMessage("Entities started.");
+		getContext().runStart();
 	}
 
 	/**
 	 * Check if the simulation is still running. This method should be used by entities to check if
 	 * they should continue executing.
-	 * 
+	 *
 	 * @return if the simulation is still running, otherwise
 	 */
 	public static boolean running() {
-		return running;
+		return getContext().running();
 	}
 
 	/**
 	 * This method is called if one wants to pause the simulation.
-	 * 
+	 *
 	 * @return true, if successful otherwise.
 	 */
 	public static boolean pauseSimulation() {
-		paused = true;
-		return paused;
+		return getContext().pauseSimulation();
 	}
 
 	/**
 	 * This method is called if one wants to pause the simulation at a given time.
-	 * 
+	 *
 	 * @param time the time at which the simulation has to be paused
 	 * @return true, if successful otherwise.
 	 */
 	public static boolean pauseSimulation(long time) {
-		if (time <= clock) {
-			return false;
-		} else {
-			pauseAt = time;
-		}
-		return true;
+		return getContext().pauseSimulation(time);
 	}
 
 	/**
 	 * This method is called if one wants to resume the simulation that has previously been paused.
-	 * 
+	 *
 	 * @return if the simulation has been restarted or or otherwise.
 	 */
 	public static boolean resumeSimulation() {
-		paused = false;
-
-		if (pauseAt <= clock) {
-			pauseAt = -1;
-		}
-
-		return !paused;
+		return getContext().resumeSimulation();
 	}
 
 	/**
 	 * Start the simulation running. This should be called after all the entities have been setup
 	 * and added, and their ports linked.
-	 * 
+	 *
 	 * @return the last clock value
 	 */
 	public static double run() {
-		if (!running) {
-			runStart();
-		}
-		while (true) {
-			if (runClockTick() || abruptTerminate) {
-				break;
-			}
-
-			// this block allows termination of simulation at a specific time
-			if (terminateAt > 0.0 && clock >= terminateAt) {
-				terminateSimulation();
-				clock = terminateAt;
-				break;
-			}
-
-			if (pauseAt != -1
-					&& ((future.size() > 0 && clock <= pauseAt && pauseAt <= future.iterator().next()
-							.eventTime()) || future.size() == 0 && pauseAt <= clock)) {
-				pauseSimulation();
-				clock = pauseAt;
-			}
-
-			while (paused) {
-				try {
-					Thread.sleep(100);
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				}
-			}
-		}
-
-		double clock = clock();
-
-		finishSimulation();
-		runStop();
-
-		return clock;
+		return getContext().run();
 	}
 
 	/**
@@ -927,57 +655,23 @@ public class CloudSim {
 	 * in user simulations.
 	 */
 	public static void finishSimulation() {
-		// Allow all entities to exit their body method
-		if (!abruptTerminate) {
-			for (SimEntity ent : entities) {
-				if (ent.getState() != SimEntity.FINISHED) {
-					ent.run();
-				}
-			}
-		}
-
-		for (SimEntity ent : entities) {
-			ent.shutdownEntity();
-		}
-
-		// reset all static variables
-		// Private data members
-		entities = null;
-		entitiesByName = null;
-		future = null;
-		deferred = null;
-		clock = 0L;
-		running = false;
-
-		waitPredicates = null;
-		paused = false;
-		pauseAt = -1;
-		abruptTerminate = false;
+		getContext().finishSimulation();
 	}
 
 	/**
 	 * Abruptally terminate.
 	 */
 	public static void abruptallyTerminate() {
-		abruptTerminate = true;
-	}
-
-	/**
-	 * Prints a message about the progress of the simulation.
-	 * 
-	 * @param message the message
-	 */
-	private static void printMessage(String message) {
-		Log.printLine(message);
+		getContext().abruptallyTerminate();
 	}
 
 	/**
 	 * Checks if is paused.
-	 * 
+	 *
 	 * @return true, if is paused
 	 */
 	public static boolean isPaused() {
-		return paused;
+		return getContext().isPaused();
 	}
 
 }
@@ -8,15 +8,30 @@
 
 package org.cloudbus.cloudsim.core;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.cloudbus.cloudsim.core.predicates.Predicate;
+import org.cloudbus.cloudsim.core.predicates.PredicateAny;
+import org.cloudbus.cloudsim.core.predicates.PredicateFrom;
+import org.cloudbus.cloudsim.core.predicates.PredicateType;
 
 /**
- * This class implements the deferred event queue used by {@link CloudSim}. 
- * The event queue uses a linked list to store the events.
- * 
+ * This class implements the deferred event queue used by {@link CloudSim}.
+ * The events are ordered by their time and, for events of the same time, by the order they were added.
+ * Besides the list of all events, the queue indexes the events by destination entity and, per
+ * destination, by tag and by source, so that selecting or counting the events of an entity with a
+ * {@link PredicateAny}, {@link PredicateType} or {@link PredicateFrom} doesn't scan the whole queue.
+ * Other predicates only scan the events of the destination.
+ * <p>
+ * Removed events are only marked as removed and dropped from the lists lazily.
+ * The destination, tag and source of an event are read when it is added.
+ *
  * @author Marcos Dias de Assuncao
  * @since CloudSim Toolkit 1.0
  * @see CloudSim
@@ -24,65 +39,449 @@ import java.util.ListIterator;
  */
 public class DeferredQueue {
 
-	/** The list of events. */
-	private final List<SimEvent> list = new LinkedList<SimEvent>();
+	/** All events. */
+	private final NodeList all = new NodeList();
+
+	/** The events per destination entity (by id). */
+	private final List<Destination> destinations = new ArrayList<Destination>();
+
+	/** A incremental number that orders events with the same time. */
+	private long seq = 0;
 
-	/** The max time that an added event is scheduled. */
-	private double maxTime = -1;
+	/**
+	 * Whether entities of several threads may remove their events at the same time (see
+	 * {@link #setConcurrent(boolean)}).
+	 */
+	private boolean concurrent;
 
 	/**
 	 * Adds a new event to the queue. Adding a new event to the queue preserves the temporal order
 	 * of the events.
-	 * 
+	 *
 	 * @param newEvent The event to be added to the queue.
 	 */
 	public void addEvent(SimEvent newEvent) {
 		// The event has to be inserted as the last of all events
 		// with the same event_time(). Yes, this matters.
-		double eventTime = newEvent.eventTime();
-		if (eventTime >= maxTime) {
-			list.add(newEvent);
-			maxTime = eventTime;
-			return;
+		Node node = new Node(newEvent, seq++);
+		all.add(node);
+		Destination dest = destination(node.dest, true);
+		if (dest != null) {
+			dest.add(node);
+		}
+	}
+
+	/**
+	 * Gets the first event for an entity that matches a predicate.
+	 *
+	 * @param dest the id of the destination entity
+	 * @param p the predicate
+	 * @return the event, or null if no event matches
+	 */
+	public SimEvent first(int dest, Predicate p) {
+		Node node = firstNode(dest, p);
+		return node == null ? null : node.event;
+	}
+
+	/**
+	 * Removes the first event for an entity that matches a predicate.
+	 *
+	 * @param dest the id of the destination entity
+	 * @param p the predicate
+	 * @return the removed event, or null if no event matches
+	 */
+	public SimEvent removeFirst(int dest, Predicate p) {
+		Node node = firstNode(dest, p);
+		if (node == null) {
+			return null;
 		}
+		remove(node);
+		return node.event;
+	}
 
-		ListIterator<SimEvent> iterator = list.listIterator();
-		SimEvent event;
-		while (iterator.hasNext()) {
-			event = iterator.next();
-			if (event.eventTime() > eventTime) {
-				iterator.previous();
-				iterator.add(newEvent);
-				return;
+	/**
+	 * Counts the events for an entity that match a predicate.
+	 *
+	 * @param dest the id of the destination entity
+	 * @param p the predicate
+	 * @return the number of events
+	 */
+	public int count(int dest, Predicate p) {
+		Destination d = destination(dest, false);
+		if (d == null) {
+			return 0;
+		}
+		if (p.getClass() == PredicateAny.class) {
+			return d.all.live;
+		}
+		int count = 0;
+		if (p.getClass() == PredicateType.class) {
+			PredicateType pt = (PredicateType) p;
+			for (int i = 0; i < pt.getTagCount(); i++) {
+				if (!repeated(pt, i)) {
+					count += live(d.byTag.get(pt.getTag(i)));
+				}
+			}
+		} else if (p.getClass() == PredicateFrom.class) {
+			PredicateFrom pf = (PredicateFrom) p;
+			for (int i = 0; i < pf.getSourceCount(); i++) {
+				if (!repeated(pf, i)) {
+					count += live(d.bySource.get(pf.getSource(i)));
+				}
+			}
+		} else {
+			NodeList list = d.all;
+			for (int i = list.head; i < list.tail; i++) {
+				Node node = list.nodes[i];
+				if (!node.removed && p.match(node.event)) {
+					count++;
+				}
 			}
 		}
+		return count;
+	}
 
-		list.add(newEvent);
+	/**
+	 * Gets the last event of the queue.
+	 *
+	 * @return the event, or null if the queue is empty
+	 */
+	public SimEvent last() {
+		Node node = all.last();
+		return node == null ? null : node.event;
 	}
 
 	/**
 	 * Returns an iterator to the events in the queue.
-	 * 
+	 *
 	 * @return the iterator
 	 */
 	public Iterator<SimEvent> iterator() {
-		return list.iterator();
+		return new Iterator<SimEvent>() {
+
+			private int next = all.head;
+
+			private Node current;
+
+			@Override
+			public boolean hasNext() {
+				while (next < all.tail && all.nodes[next].removed) {
+					next++;
+				}
+				return next < all.tail;
+			}
+
+			@Override
+			public SimEvent next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				current = all.nodes[next++];
+				return current.event;
+			}
+
+			@Override
+			public void remove() {
+				if (current == null || current.removed) {
+					throw new IllegalStateException();
+				}
+				// the lists are not compacted while iterating
+				current.removed = true;
+				all.live--;
+				Destination d = destination(current.dest, false);
+				if (d != null) {
+					d.all.live--;
+					d.byTag.get(current.tag).live--;
+					d.bySource.get(current.src).live--;
+				}
+			}
+		};
 	}
 
 	/**
 	 * Returns the size of this event queue.
-	 * 
+	 *
 	 * @return the number of events in the queue.
 	 */
 	public int size() {
-		return list.size();
+		return all.live;
 	}
 
 	/**
 	 * Clears the queue.
 	 */
 	public void clear() {
-		list.clear();
+		all.clear();
+		destinations.clear();
+	}
+
+	/**
+	 * Sets whether entities of several threads may select and remove their events at the same time.
+	 * Each thread must only access the events of its own entities then, and no events may be added.
+	 *
+	 * @param concurrent true while the threads run
+	 */
+	void setConcurrent(boolean concurrent) {
+		this.concurrent = concurrent;
+	}
+
+	/**
+	 * Finds the first node for an entity that matches a predicate.
+	 */
+	private Node firstNode(int dest, Predicate p) {
+		Destination d = destination(dest, false);
+		if (d == null) {
+			return null;
+		}
+		if (p.getClass() == PredicateAny.class) {
+			return d.all.first();
+		}
+		Node first = null;
+		if (p.getClass() == PredicateType.class) {
+			PredicateType pt = (PredicateType) p;
+			for (int i = 0; i < pt.getTagCount(); i++) {
+				first = earlier(first, first(d.byTag.get(pt.getTag(i))));
+			}
+		} else if (p.getClass() == PredicateFrom.class) {
+			PredicateFrom pf = (PredicateFrom) p;
+			for (int i = 0; i < pf.getSourceCount(); i++) {
+				first = earlier(first, first(d.bySource.get(pf.getSource(i))));
+			}
+		} else {
+			NodeList list = d.all;
+			for (int i = list.head; i < list.tail && first == null; i++) {
+				Node node = list.nodes[i];
+				if (!node.removed && p.match(node.event)) {
+					first = node;
+				}
+			}
+		}
+		return first;
+	}
+
+	/**
+	 * Removes a node from all lists.
+	 */
+	private void remove(Node node) {
+		if (concurrent) {
+			// the list of all events is shared by the threads
+			synchronized (all) {
+				node.removed = true;
+				all.removed();
+			}
+		} else {
+			node.removed = true;
+			all.removed();
+		}
+		Destination d = destination(node.dest, false);
+		if (d != null) {
+			d.all.removed();
+			d.byTag.get(node.tag).removed();
+			d.bySource.get(node.src).removed();
+		}
+	}
+
+	/**
+	 * Gets the events of a destination.
+	 *
+	 * @param dest the id of the destination entity
+	 * @param create whether to create them if there are none yet
+	 * @return the events, or null if there are none (or the id is negative)
+	 */
+	private Destination destination(int dest, boolean create) {
+		if (dest < 0) {
+			return null;
+		}
+		if (dest >= destinations.size()) {
+			if (!create) {
+				return null;
+			}
+			while (destinations.size() <= dest) {
+				destinations.add(null);
+			}
+		}
+		Destination d = destinations.get(dest);
+		if (d == null && create) {
+			d = new Destination();
+			destinations.set(dest, d);
+		}
+		return d;
+	}
+
+	private static Node first(NodeList list) {
+		return list == null ? null : list.first();
+	}
+
+	private static int live(NodeList list) {
+		return list == null ? 0 : list.live;
+	}
+
+	private static Node earlier(Node a, Node b) {
+		return a == null || b != null && b.before(a) ? b : a;
+	}
+
+	// whether the tag at i already occurs before i (so its events are counted already)
+	private static boolean repeated(PredicateType pt, int i) {
+		for (int j = 0; j < i; j++) {
+			if (pt.getTag(j) == pt.getTag(i)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean repeated(PredicateFrom pf, int i) {
+		for (int j = 0; j < i; j++) {
+			if (pf.getSource(j) == pf.getSource(i)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * A deferred event with its position in the order of the queue.
+	 */
+	private static final class Node {
+
+		final SimEvent event;
+
+		final double time;
+
+		final long seq;
+
+		final int dest, tag, src;
+
+		boolean removed;
+
+		Node(SimEvent event, long seq) {
+			this.event = event;
+			this.time = event.eventTime();
+			this.seq = seq;
+			this.dest = event.getDestination();
+			this.tag = event.getTag();
+			this.src = event.getSource();
+		}
+
+		boolean before(Node other) {
+			return time < other.time || time == other.time && seq < other.seq;
+		}
+	}
+
+	/**
+	 * The events of one destination entity: all of them and per tag and source.
+	 */
+	private static final class Destination {
+
+		final NodeList all = new NodeList();
+
+		final Map<Integer, NodeList> byTag = new HashMap<Integer, NodeList>();
+
+		final Map<Integer, NodeList> bySource = new HashMap<Integer, NodeList>();
+
+		void add(Node node) {
+			all.add(node);
+			list(byTag, node.tag).add(node);
+			list(bySource, node.src).add(node);
+		}
+
+		private static NodeList list(Map<Integer, NodeList> index, int key) {
+			NodeList list = index.get(key);
+			if (list == null) {
+				list = new NodeList();
+				index.put(key, list);
+			}
+			return list;
+		}
+	}
+
+	/**
+	 * Ordered nodes in nodes[head, tail), including removed ones that have not been dropped yet.
+	 */
+	private static final class NodeList {
+
+		Node[] nodes = new Node[4];
+
+		int head, tail;
+
+		/** The number of nodes that are not removed. */
+		int live;
+
+		void add(Node node) {
+			if (tail == nodes.length) {
+				compact();
+				if (tail == nodes.length) {
+					nodes = Arrays.copyOf(nodes, nodes.length << 1);
+				}
+			}
+			int pos = tail;
+			if (pos > head && node.before(nodes[pos - 1])) {
+				// earlier than the last one (rare, the events arrive in time order): after all earlier nodes
+				int lo = head, hi = tail;
+				while (lo < hi) {
+					int mid = (lo + hi) >>> 1;
+					if (node.before(nodes[mid])) {
+						hi = mid;
+					} else {
+						lo = mid + 1;
+					}
+				}
+				pos = lo;
+				System.arraycopy(nodes, pos, nodes, pos + 1, tail - pos);
+			}
+			nodes[pos] = node;
+			tail++;
+			live++;
+		}
+
+		Node first() {
+			while (head < tail && nodes[head].removed) {
+				nodes[head++] = null;
+			}
+			return head < tail ? nodes[head] : null;
+		}
+
+		Node last() {
+			for (int i = tail - 1; i >= head; i--) {
+				if (!nodes[i].removed) {
+					return nodes[i];
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Called after a node of the list has been marked as removed.
+		 */
+		void removed() {
+			live--;
+			if (live == 0) {
+				Arrays.fill(nodes, head, tail, null);
+				head = tail = 0;
+			} else if (tail - head > 32 && live < (tail - head) >> 1) {
+				compact();
+			}
+		}
+
+		/**
+		 * Drops the removed nodes and moves the others to the front.
+		 */
+		void compact() {
+			int kept = 0;
+			for (int i = head; i < tail; i++) {
+				if (!nodes[i].removed) {
+					nodes[kept++] = nodes[i];
+				}
+			}
+			Arrays.fill(nodes, kept, tail, null);
+			head = 0;
+			tail = kept;
+		}
+
+		void clear() {
+			Arrays.fill(nodes, head, tail, null);
+			head = tail = live = 0;
+		}
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,110 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * The future event queue used by {@link CloudSim}. Events are ordered by their time and, for events
+ * of the same time, by their serial: {@link #addEvent(SimEvent)} gives every event a new (increasing)
+ * serial and {@link #addEventFirst(SimEvent)} the serial 0. Events with the same time and serial are
+ * kept in the order they were added, like the {@link java.util.TreeSet} of {@link FutureQueue} does.
+ *
+ * @since CloudSim Toolkit 3.0
+ * @see FutureQueue
+ * @see IndexedHeapQueue
+ * @see CalendarQueue
+ */
+public interface EventQueue {
+
+	/**
+	 * Adds a new event to the queue. Adding a new event to the queue preserves the temporal order of
+	 * the events in the queue.
+	 *
+	 * @param newEvent The event to be put in the queue.
+	 */
+	void addEvent(SimEvent newEvent);
+
+	/**
+	 * Adds a new event to the head of the queue (ahead of all events with the same time).
+	 *
+	 * @param newEvent The event to be put in the queue.
+	 */
+	void addEventFirst(SimEvent newEvent);
+
+	/**
+	 * Returns the first event of the queue, without removing it.
+	 *
+	 * @return the first event, or null if the queue is empty
+	 */
+	SimEvent first();
+
+	/**
+	 * Removes the first event of the queue.
+	 *
+	 * @return the removed event, or null if the queue is empty
+	 */
+	SimEvent pollFirst();
+
+	/**
+	 * Removes all events of the given time from the head of the queue and adds them, in order,
+	 * to a collection. Nothing is removed if the first event of the queue has another time.
+	 *
+	 * @param time the time of the events, usually the time of the first event
+	 * @param events the collection the removed events are added to
+	 * @return the number of removed events
+	 */
+	int drain(double time, Collection<? super SimEvent> events);
+
+	/**
+	 * Returns an iterator over the events of the queue. The events are not necessarily iterated in order
+	 * and the queue must not be modified while iterating.
+	 *
+	 * @return the iterator
+	 */
+	Iterator<SimEvent> iterator();
+
+	/**
+	 * Returns the size of this event queue.
+	 *
+	 * @return the size
+	 */
+	int size();
+
+	/**
+	 * Removes the event from the queue.
+	 *
+	 * @param event the event
+	 * @return true, if successful
+	 */
+	boolean remove(SimEvent event);
+
+	/**
+	 * Removes all the events from the queue.
+	 *
+	 * @param events the events
+	 * @return true, if successful
+	 */
+	boolean removeAll(Collection<SimEvent> events);
+
+	/**
+	 * Removes all events that match a filter.
+	 *
+	 * @param filter the filter
+	 * @return true, if at least one event has been removed
+	 */
+	boolean removeIf(java.util.function.Predicate<? super SimEvent> filter);
+
+	/**
+	 * Clears the queue.
+	 */
+	void clear();
+
+}
@@ -10,7 +10,6 @@ package org.cloudbus.cloudsim.core;
 
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.SortedSet;
 import java.util.TreeSet;
 
 /**
@@ -22,13 +21,12 @@ import java.util.TreeSet;
  * @see Simulation
  * @see java.util.TreeSet
  * 
- * @todo It would be used a common interface for queues
- * such as this one and {@link DeferredQueue}
+ * @see EventQueue
  */
-public class FutureQueue {
+public class FutureQueue implements EventQueue {
 
 	/** The sorted set of events. */
-	private final SortedSet<SimEvent> sortedSet = new TreeSet<SimEvent>();
+	private final TreeSet<SimEvent> sortedSet = new TreeSet<SimEvent>();
 
 	/** A incremental number used for {@link SimEvent#serial} event attribute.
          */
@@ -40,6 +38,7 @@ public class FutureQueue {
 	 * 
 	 * @param newEvent The event to be put in the queue.
 	 */
+	@Override
 	public void addEvent(SimEvent newEvent) {
 		newEvent.setSerial(serial++);
 		sortedSet.add(newEvent);
@@ -50,16 +49,45 @@ public class FutureQueue {
 	 * 
 	 * @param newEvent The event to be put in the queue.
 	 */
+	@Override
 	public void addEventFirst(SimEvent newEvent) {
 		newEvent.setSerial(0);
 		sortedSet.add(newEvent);
 	}
 
+	@Override
+	public SimEvent first() {
+		return sortedSet.isEmpty() ? null : sortedSet.first();
+	}
+
+	@Override
+	public SimEvent pollFirst() {
+		// unlinks the first node; remove(first) compares and may miss events with the same time and serial
+		return sortedSet.pollFirst();
+	}
+
+	@Override
+	public int drain(double time, Collection<? super SimEvent> events) {
+		int n = 0;
+		Iterator<SimEvent> it = sortedSet.iterator();
+		while (it.hasNext()) {
+			SimEvent ev = it.next();
+			if (ev.eventTime() != time) {
+				break;
+			}
+			it.remove();
+			events.add(ev);
+			n++;
+		}
+		return n;
+	}
+
 	/**
-	 * Returns an iterator to the queue.
+	 * Returns an iterator to the queue (in order).
 	 * 
 	 * @return the iterator
 	 */
+	@Override
 	public Iterator<SimEvent> iterator() {
 		return sortedSet.iterator();
 	}
@@ -69,6 +97,7 @@ public class FutureQueue {
 	 * 
 	 * @return the size
 	 */
+	@Override
 	public int size() {
 		return sortedSet.size();
 	}
@@ -79,6 +108,7 @@ public class FutureQueue {
 	 * @param event the event
 	 * @return true, if successful
 	 */
+	@Override
 	public boolean remove(SimEvent event) {
 		return sortedSet.remove(event);
 	}
@@ -89,13 +119,20 @@ public class FutureQueue {
 	 * @param events the events
 	 * @return true, if successful
 	 */
+	@Override
 	public boolean removeAll(Collection<SimEvent> events) {
 		return sortedSet.removeAll(events);
 	}
 
+	@Override
+	public boolean removeIf(java.util.function.Predicate<? super SimEvent> filter) {
+		return sortedSet.removeIf(filter);
+	}
+
 	/**
 	 * Clears the queue.
 	 */
+	@Override
 	public void clear() {
 		sortedSet.clear();
 	}
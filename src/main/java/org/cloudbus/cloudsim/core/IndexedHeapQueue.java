@@ -0,0 +1,265 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A future event queue implemented as an indexed 4-ary heap. The keys of the events (time, serial and
+ * the order in which they were added) are kept in arrays next to the events, so sifting doesn't have to
+ * touch the events themselves, and every event knows its position in the heap
+ * ({@link SimEvent#queueIndex}), so {@link #remove(SimEvent)} takes O(log n) instead of a search.
+ * A 4-ary heap is half as deep as a binary one and its children are next to each other in memory,
+ * which makes it faster for the many adds and polls of a simulation.
+ * <p>
+ * An event can only be in one such queue at a time.
+ *
+ * @since CloudSim Toolkit 3.0
+ * @see EventQueue
+ */
+public class IndexedHeapQueue implements EventQueue {
+
+	/** The events, in heap order. */
+	private SimEvent[] events = new SimEvent[64];
+
+	/** The times of the events. */
+	private double[] times = new double[64];
+
+	/** The serials of the events. */
+	private long[] serials = new long[64];
+
+	/** The order in which the events were added (orders events with the same time and serial). */
+	private long[] orders = new long[64];
+
+	/** The number of events. */
+	private int size;
+
+	/** A incremental number used for {@link SimEvent#serial} event attribute. */
+	private long serial = 0;
+
+	/** A incremental number used for {@link #orders}. */
+	private long order = 0;
+
+	@Override
+	public void addEvent(SimEvent newEvent) {
+		newEvent.setSerial(serial++);
+		insert(newEvent);
+	}
+
+	@Override
+	public void addEventFirst(SimEvent newEvent) {
+		newEvent.setSerial(0);
+		insert(newEvent);
+	}
+
+	@Override
+	public SimEvent first() {
+		return size == 0 ? null : events[0];
+	}
+
+	@Override
+	public SimEvent pollFirst() {
+		if (size == 0) {
+			return null;
+		}
+		SimEvent first = events[0];
+		removeAt(0);
+		return first;
+	}
+
+	@Override
+	public int drain(double time, Collection<? super SimEvent> events) {
+		int n = 0;
+		while (size > 0 && times[0] == time) {
+			events.add(pollFirst());
+			n++;
+		}
+		return n;
+	}
+
+	@Override
+	public Iterator<SimEvent> iterator() {
+		return new Iterator<SimEvent>() {
+
+			private int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				return next < size;
+			}
+
+			@Override
+			public SimEvent next() {
+				if (next >= size) {
+					throw new NoSuchElementException();
+				}
+				return events[next++];
+			}
+		};
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean remove(SimEvent event) {
+		int i = event.queueIndex;
+		if (i < 0 || i >= size || events[i] != event) {
+			return false;
+		}
+		removeAt(i);
+		return true;
+	}
+
+	@Override
+	public boolean removeAll(Collection<SimEvent> events) {
+		boolean removed = false;
+		for (SimEvent event : events) {
+			removed |= remove(event);
+		}
+		return removed;
+	}
+
+	@Override
+	public boolean removeIf(java.util.function.Predicate<? super SimEvent> filter) {
+		// compacts the kept events and rebuilds the heap in O(n)
+		int kept = 0;
+		for (int i = 0; i < size; i++) {
+			SimEvent ev = events[i];
+			if (filter.test(ev)) {
+				ev.queueIndex = -1;
+			} else {
+				set(kept++, ev, times[i], serials[i], orders[i]);
+			}
+		}
+		if (kept == size) {
+			return false;
+		}
+		Arrays.fill(events, kept, size, null);
+		size = kept;
+		for (int i = (size - 2) >> 2; i >= 0; i--) {
+			siftDown(i, events[i], times[i], serials[i], orders[i]);
+		}
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			events[i].queueIndex = -1;
+			events[i] = null;
+		}
+		size = 0;
+	}
+
+	/**
+	 * Adds an event with its serial already set.
+	 *
+	 * @param ev the event
+	 */
+	private void insert(SimEvent ev) {
+		if (size == events.length) {
+			int capacity = size * 2;
+			events = Arrays.copyOf(events, capacity);
+			times = Arrays.copyOf(times, capacity);
+			serials = Arrays.copyOf(serials, capacity);
+			orders = Arrays.copyOf(orders, capacity);
+		}
+		siftUp(size++, ev, ev.eventTime(), ev.getSerial(), order++);
+	}
+
+	/**
+	 * Removes the event at a position of the heap.
+	 *
+	 * @param i the position
+	 */
+	private void removeAt(int i) {
+		events[i].queueIndex = -1;
+		int last = --size;
+		if (i != last) {
+			SimEvent ev = events[last];
+			double time = times[last];
+			long ser = serials[last], ord = orders[last];
+			events[last] = null;
+			if (!siftDown(i, ev, time, ser, ord)) {
+				siftUp(i, ev, time, ser, ord);
+			}
+		} else {
+			events[last] = null;
+		}
+	}
+
+	/**
+	 * Checks whether a key (time, serial, order) is less than another one.
+	 */
+	private static boolean less(double time, long ser, long ord, double otherTime, long otherSer, long otherOrd) {
+		return time < otherTime || time == otherTime && (ser < otherSer || ser == otherSer && ord < otherOrd);
+	}
+
+	/**
+	 * Moves an event up from a (free) position until its parent is not greater.
+	 */
+	private void siftUp(int pos, SimEvent ev, double time, long ser, long ord) {
+		while (pos > 0) {
+			int parent = (pos - 1) >> 2;
+			if (!less(time, ser, ord, times[parent], serials[parent], orders[parent])) {
+				break;
+			}
+			set(pos, events[parent], times[parent], serials[parent], orders[parent]);
+			pos = parent;
+		}
+		set(pos, ev, time, ser, ord);
+	}
+
+	/**
+	 * Moves an event down from a (free) position until none of its children is less.
+	 *
+	 * @return true, if the event was moved
+	 */
+	private boolean siftDown(int pos, SimEvent ev, double time, long ser, long ord) {
+		int start = pos;
+		while (true) {
+			int child = (pos << 2) + 1;
+			if (child >= size) {
+				break;
+			}
+			int min = child;
+			int end = Math.min(child + 4, size);
+			for (int c = child + 1; c < end; c++) {
+				if (less(times[c], serials[c], orders[c], times[min], serials[min], orders[min])) {
+					min = c;
+				}
+			}
+			if (!less(times[min], serials[min], orders[min], time, ser, ord)) {
+				break;
+			}
+			set(pos, events[min], times[min], serials[min], orders[min]);
+			pos = min;
+		}
+		set(pos, ev, time, ser, ord);
+		return pos != start;
+	}
+
+	/**
+	 * Puts an event at a position of the heap.
+	 */
+	private void set(int pos, SimEvent ev, double time, long ser, long ord) {
+		events[pos] = ev;
+		times[pos] = time;
+		serials[pos] = ser;
+		orders[pos] = ord;
+		ev.queueIndex = pos;
+	}
+
+}
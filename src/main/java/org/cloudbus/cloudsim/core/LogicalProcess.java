@@ -0,0 +1,242 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.function.Predicate;
+
+import org.cloudbus.cloudsim.Log;
+
+/**
+ * A logical process of the parallel kernel (see {@link CloudSim#setParallelism(int)}): the entities
+ * with the same {@link SimEntity#getLogicalProcess()}. In a clock tick with ready entities of
+ * several logical processes, each process runs its entities on a worker thread, in the order of their
+ * ids. What an entity does to the rest of the simulation (the events it sends, its log messages and
+ * the entities it makes ready) is recorded in a {@link Run} and done by {@link CloudSim} after the
+ * tick, in the order of the entity ids, so the simulation is the same as with the sequential kernel.
+ *
+ * @since CloudSim Toolkit 3.0
+ * @see CloudSim#setParallelism(int)
+ */
+final class LogicalProcess implements Callable<Void> {
+
+	/** The logical process that runs on the current thread, if any. */
+	private static final ThreadLocal<LogicalProcess> current = new ThreadLocal<LogicalProcess>();
+
+	/** The simulation of the process. */
+	private final SimulationContext context;
+
+	/** The key of the process (see {@link SimEntity#getLogicalProcess()}). */
+	private final int key;
+
+	/** The ids of the entities to run in the current tick. */
+	final BitSet ready = new BitSet();
+
+	/** The runs of the entities in the current tick, in the order of the entity ids. */
+	final List<Run> runs = new ArrayList<Run>();
+
+	/** The run of the entity that is running. */
+	private Run run;
+
+	/**
+	 * Creates a logical process.
+	 *
+	 * @param context the simulation of the process
+	 * @param key the key of the process
+	 */
+	LogicalProcess(SimulationContext context, int key) {
+		this.context = context;
+		this.key = key;
+	}
+
+	/**
+	 * Gets the logical process that runs on the current thread.
+	 *
+	 * @return the process, or null if the thread doesn't run one
+	 */
+	static LogicalProcess current() {
+		return current.get();
+	}
+
+	/**
+	 * Runs the ready entities of the process that are runnable.
+	 */
+	@Override
+	public Void call() {
+		current.set(this);
+		// the static methods of CloudSim called by the entities work on this simulation
+		CloudSim.setContext(context);
+		try {
+			// entities of the process that become ready meanwhile run in this tick if their id is greater
+			for (int i = ready.nextSetBit(0); i >= 0; i = ready.nextSetBit(i + 1)) {
+				SimEntity ent = context.getEntity(i);
+				if (ent.getState() == SimEntity.RUNNABLE) {
+					run = new Run(i);
+					runs.add(run);
+					Log.capture(run.log);
+					ent.run();
+				}
+			}
+		} finally {
+			Log.capture(null);
+			run = null;
+			ready.clear();
+			current.remove();
+			CloudSim.setContext(null);
+		}
+		return null;
+	}
+
+	/**
+	 * Records an event sent by the running entity.
+	 *
+	 * @param e the event
+	 * @param first whether the event goes ahead of the events with the same time
+	 */
+	void send(SimEvent e, boolean first) {
+		run.events.add(e);
+		run.first.add(first);
+	}
+
+	/**
+	 * Removes the events the running entity sent in this tick that match a filter.
+	 *
+	 * @param filter the filter
+	 * @return true, if an event has been removed
+	 */
+	boolean cancelAll(Predicate<? super SimEvent> filter) {
+		return run.removeIf(filter);
+	}
+
+	/**
+	 * Removes the first of the events the running entity sent in this tick that match a filter, in
+	 * the order of the future queue.
+	 *
+	 * @param filter the filter
+	 * @param other the first matching event of the future queue, or null
+	 * @return the removed event, or null if none of the events sent in this tick matches or
+	 *         <tt>other</tt> comes first
+	 */
+	SimEvent cancel(Predicate<? super SimEvent> filter, SimEvent other) {
+		int first = -1;
+		for (int i = 0; i < run.events.size(); i++) {
+			SimEvent e = run.events.get(i);
+			if (filter.test(e) && (first < 0 || before(i, first))) {
+				first = i;
+			}
+		}
+		if (first < 0) {
+			return null;
+		}
+		SimEvent e = run.events.get(first);
+		// the events of this tick are added after the events of the queue, the first ones get the serial 0
+		if (other != null && (other.eventTime() < e.eventTime()
+				|| other.eventTime() == e.eventTime() && (!run.first.get(first) || other.getSerial() == 0))) {
+			return null;
+		}
+		run.events.remove(first);
+		run.first.remove(first);
+		return e;
+	}
+
+	/**
+	 * Marks an entity as ready to run.
+	 *
+	 * @param id the id of the entity
+	 * @param process the logical process of the entity
+	 */
+	void setReady(int id, LogicalProcess process) {
+		if (process != this) {
+			throw new IllegalStateException("Entity #" + run.entity + " (logical process " + key
+					+ ") made entity #" + id + " of another logical process runnable.");
+		}
+		if (id > run.entity) {
+			ready.set(id);
+		} else {
+			// like in the sequential kernel, it runs in the next tick
+			run.ready.add(id);
+		}
+	}
+
+	// whether the i-th event of the run comes before the j-th one in the future queue
+	private boolean before(int i, int j) {
+		double ti = run.events.get(i).eventTime(), tj = run.events.get(j).eventTime();
+		if (ti != tj) {
+			return ti < tj;
+		}
+		boolean fi = run.first.get(i), fj = run.first.get(j);
+		return fi != fj ? fi : i < j;
+	}
+
+	/**
+	 * What an entity did in one run in a parallel tick.
+	 */
+	static final class Run {
+
+		/** The id of the entity. */
+		final int entity;
+
+		/** The log messages of the entity. */
+		final StringBuilder log = new StringBuilder();
+
+		/** The events the entity sent, in the order it sent them. */
+		final List<SimEvent> events = new ArrayList<SimEvent>();
+
+		/** Whether the events go ahead of the events with the same time. */
+		final List<Boolean> first = new ArrayList<Boolean>();
+
+		/** The entities the entity made ready for the next tick. */
+		final List<Integer> ready = new ArrayList<Integer>();
+
+		Run(int entity) {
+			this.entity = entity;
+		}
+
+		/**
+		 * Does what the entity did: prints its messages, adds its events to the future queue and
+		 * marks the entities it made ready.
+		 *
+		 * @param future the future queue
+		 * @param readySet the ids of the ready entities
+		 */
+		void commit(EventQueue future, BitSet readySet) {
+			if (log.length() > 0) {
+				Log.print(log.toString());
+			}
+			for (int i = 0; i < events.size(); i++) {
+				if (first.get(i)) {
+					future.addEventFirst(events.get(i));
+				} else {
+					future.addEvent(events.get(i));
+				}
+			}
+			for (int id : ready) {
+				readySet.set(id);
+			}
+		}
+
+		boolean removeIf(Predicate<? super SimEvent> filter) {
+			int kept = 0;
+			for (int i = 0; i < events.size(); i++) {
+				if (!filter.test(events.get(i))) {
+					events.set(kept, events.get(i));
+					first.set(kept++, first.get(i));
+				}
+			}
+			boolean removed = kept < events.size();
+			events.subList(kept, events.size()).clear();
+			first.subList(kept, first.size()).clear();
+			return removed;
+		}
+	}
+
+}
@@ -46,8 +46,14 @@ public abstract class SimEntity implements Cloneable {
 	/** The entity's current state. */
 	private int state;
 
+	/** Whether the entity overrides {@link #run()}, so it has to run in every clock tick. */
+	private final boolean ownRun;
+
+	/** The simulation the entity belongs to. */
+	private final SimulationContext context;
+
 	/**
-	 * Creates a new entity.
+	 * Creates a new entity in the simulation of the current thread (see {@link CloudSim#getContext()}).
 	 * 
 	 * @param name the name to be associated with the entity
 	 */
@@ -58,7 +64,9 @@ public abstract class SimEntity implements Cloneable {
 		this.name = name;
 		id = -1;
 		state = RUNNABLE;
-		CloudSim.addEntity(this);
+		ownRun = declaresRun(getClass());
+		context = CloudSim.getContext();
+		context.addEntity(this);
 	}
 
 	/**
@@ -79,6 +87,16 @@ public abstract class SimEntity implements Cloneable {
 		return id;
 	}
 
+	/**
+	 * Gets the simulation this entity belongs to. Its entities, event queues and clock are
+	 * separate from those of the simulations of other threads.
+	 * 
+	 * @return the context of the simulation
+	 */
+	public SimulationContext getContext() {
+		return context;
+	}
+
 	// The schedule functions
 
 	/**
@@ -91,10 +109,10 @@ public abstract class SimEntity implements Cloneable {
 	 * @param data The data to be sent with the event.
 	 */
 	public void schedule(int dest, double delay, int tag, Object data) {
-		if (!CloudSim.running()) {
+		if (!context.running()) {
 			return;
 		}
-		CloudSim.send(id, dest, delay, tag, data);
+		context.send(id, dest, delay, tag, data);
 	}
 
 	/**
@@ -119,7 +137,7 @@ public abstract class SimEntity implements Cloneable {
 	 * @param data The data to be sent with the event.
 	 */
 	public void schedule(String dest, double delay, int tag, Object data) {
-		schedule(CloudSim.getEntityId(dest), delay, tag, data);
+		schedule(context.getEntityId(dest), delay, tag, data);
 	}
 
 	/**
@@ -166,7 +184,7 @@ public abstract class SimEntity implements Cloneable {
 	 * @param data The data to be sent with the event.
 	 */
 	public void scheduleNow(String dest, int tag, Object data) {
-		schedule(CloudSim.getEntityId(dest), 0, tag, data);
+		schedule(context.getEntityId(dest), 0, tag, data);
 	}
 
 	/**
@@ -191,10 +209,10 @@ public abstract class SimEntity implements Cloneable {
 	 * @param data The data to be sent with the event.
 	 */
 	public void scheduleFirst(int dest, double delay, int tag, Object data) {
-		if (!CloudSim.running()) {
+		if (!context.running()) {
 			return;
 		}
-		CloudSim.sendFirst(id, dest, delay, tag, data);
+		context.sendFirst(id, dest, delay, tag, data);
 	}
 
 	/**
@@ -219,7 +237,7 @@ public abstract class SimEntity implements Cloneable {
 	 * @param data The data to be sent with the event.
 	 */
 	public void scheduleFirst(String dest, double delay, int tag, Object data) {
-		scheduleFirst(CloudSim.getEntityId(dest), delay, tag, data);
+		scheduleFirst(context.getEntityId(dest), delay, tag, data);
 	}
 
 	/**
@@ -269,7 +287,7 @@ public abstract class SimEntity implements Cloneable {
 	 * @param data The data to be sent with the event.
 	 */
 	public void scheduleFirstNow(String dest, int tag, Object data) {
-		scheduleFirst(CloudSim.getEntityId(dest), 0, tag, data);
+		scheduleFirst(context.getEntityId(dest), 0, tag, data);
 	}
 
 	/**
@@ -292,10 +310,10 @@ public abstract class SimEntity implements Cloneable {
 		if (delay < 0) {
 			throw new IllegalArgumentException("Negative delay supplied.");
 		}
-		if (!CloudSim.running()) {
+		if (!context.running()) {
 			return;
 		}
-		CloudSim.pause(id, delay);
+		context.pause(id, delay);
 	}
 
 	/**
@@ -305,7 +323,7 @@ public abstract class SimEntity implements Cloneable {
 	 * @return The count of matching events
 	 */
 	public int numEventsWaiting(Predicate p) {
-		return CloudSim.waiting(id, p);
+		return context.waiting(id, p);
 	}
 
 	/**
@@ -314,7 +332,7 @@ public abstract class SimEntity implements Cloneable {
 	 * @return The count of events
 	 */
 	public int numEventsWaiting() {
-		return CloudSim.waiting(id, CloudSim.SIM_ANY);
+		return context.waiting(id, CloudSim.SIM_ANY);
 	}
 
 	/**
@@ -324,11 +342,11 @@ public abstract class SimEntity implements Cloneable {
 	 * @return the simulation event
 	 */
 	public SimEvent selectEvent(Predicate p) {
-		if (!CloudSim.running()) {
+		if (!context.running()) {
 			return null;
 		}
 
-		return CloudSim.select(id, p);
+		return context.select(id, p);
 	}
 
 	/**
@@ -338,11 +356,11 @@ public abstract class SimEntity implements Cloneable {
 	 * @return The number of events cancelled (0 or 1)
 	 */
 	public SimEvent cancelEvent(Predicate p) {
-		if (!CloudSim.running()) {
+		if (!context.running()) {
 			return null;
 		}
 
-		return CloudSim.cancel(id, p);
+		return context.cancel(id, p);
 	}
 
 	/**
@@ -353,7 +371,7 @@ public abstract class SimEntity implements Cloneable {
 	 * @return the simulation event
 	 */
 	public SimEvent getNextEvent(Predicate p) {
-		if (!CloudSim.running()) {
+		if (!context.running()) {
 			return null;
 		}
 		if (numEventsWaiting(p) > 0) {
@@ -369,11 +387,11 @@ public abstract class SimEntity implements Cloneable {
 	 * @param p The predicate to match
 	 */
 	public void waitForEvent(Predicate p) {
-		if (!CloudSim.running()) {
+		if (!context.running()) {
 			return;
 		}
 
-		CloudSim.wait(id, p);
+		context.wait(id, p);
 		state = WAITING;
 	}
 
@@ -424,6 +442,8 @@ public abstract class SimEntity implements Cloneable {
 
 		while (ev != null) {
 			processEvent(ev);
+			// nobody references the event anymore (unless the entity retained it)
+			context.recycle(ev);
 			if (state != RUNNABLE) {
 				break;
 			}
@@ -502,6 +522,43 @@ public abstract class SimEntity implements Cloneable {
 	 */
 	protected void setState(int state) {
 		this.state = state;
+		if (state == RUNNABLE) {
+			// it may have deferred events
+			context.setReady(id);
+		}
+	}
+
+	/**
+	 * Checks whether the entity overrides {@link #run()}. Such entities run in every clock tick,
+	 * other entities only when they got an event or became runnable.
+	 * 
+	 * @return true, if the entity has its own run()
+	 */
+	protected boolean hasOwnRun() {
+		return ownRun;
+	}
+
+	/**
+	 * Gets the logical process of the entity (see {@link CloudSim#setParallelism(int)}). The
+	 * entities of different logical processes may run at the same time on different threads, so
+	 * they must only interact by events. Entities that share other state (or read the state of
+	 * other entities directly) must be in the same logical process.
+	 * <p>
+	 * By default all entities are in the logical process 0, e.g. the brokers read the resource
+	 * list of the {@link CloudInformationService}.
+	 *
+	 * @return the key of the logical process
+	 */
+	protected int getLogicalProcess() {
+		return 0;
+	}
+
+	private static boolean declaresRun(Class<?> c) {
+		try {
+			return c.getMethod("run").getDeclaringClass() != SimEntity.class;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
 	}
 
 	/**
@@ -596,7 +653,7 @@ public abstract class SimEntity implements Cloneable {
 	 * @post $none
 	 */
 	protected void send(String entityName, double delay, int cloudSimTag, Object data) {
-		send(CloudSim.getEntityId(entityName), delay, cloudSimTag, data);
+		send(context.getEntityId(entityName), delay, cloudSimTag, data);
 	}
 
 	/**
@@ -655,7 +712,7 @@ public abstract class SimEntity implements Cloneable {
 	 * @post $none
 	 */
 	protected void sendNow(String entityName, int cloudSimTag, Object data) {
-		send(CloudSim.getEntityId(entityName), 0, cloudSimTag, data);
+		send(context.getEntityId(entityName), 0, cloudSimTag, data);
 	}
 
 	/**
@@ -18,10 +18,10 @@ package org.cloudbus.cloudsim.core;
 public class SimEvent implements Cloneable, Comparable<SimEvent> {
 
 	/** Internal event type. **/
-	private final int etype;
+	private int etype;
 
 	/** The time that this event was scheduled, at which it should occur. **/
-	private final double time;
+	private double time;
 
 	/** Time that the event was removed from the queue to start service. **/
 	private double endWaitingTime;
@@ -33,7 +33,7 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 	private int entDst;
 
 	/** The user defined type of the event. **/
-	private final int tag;
+	private int tag;
 
 	/** 
          * Any data the event is carrying. 
@@ -41,7 +41,7 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
          * But this modification would incur several changes in the simulator core
          * that has to be assessed first.
          **/
-	private final Object data;
+	private Object data;
 
         /**
          * An attribute to help CloudSim to identify the order of received events
@@ -53,6 +53,15 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
          */
 	private long serial = -1;
 
+	/** The position of this event in an {@link IndexedHeapQueue}, -1 if it is in none. */
+	int queueIndex = -1;
+
+	/** Whether an entity keeps this event, so it must not be recycled (see {@link SimEventPool}). */
+	private boolean retained;
+
+	/** Whether this event is a free event of a {@link SimEventPool}. */
+	boolean pooled;
+
 	// Internal event types
 
 	public static final int ENULL = 0;
@@ -99,6 +108,25 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 		this.serial = serial;
 	}
 
+	long getSerial() {
+		return serial;
+	}
+
+	/**
+	 * Reinitialises a recycled event (see {@link SimEventPool}).
+	 */
+	void reset(int evtype, double time, int src, int dest, int tag, Object edata) {
+		etype = evtype;
+		this.time = time;
+		entSrc = src;
+		entDst = dest;
+		this.tag = tag;
+		data = edata;
+		endWaitingTime = -1.0;
+		serial = -1;
+		queueIndex = -1;
+	}
+
 	/**
 	 * Sets the time that the event was removed from the queue to start service. 
 	 * 
@@ -215,6 +243,28 @@ public class SimEvent implements Cloneable, Comparable<SimEvent> {
 		return data;
 	}
 
+	/**
+	 * Keeps this event for later. With event pooling (see {@link CloudSim#setEventPooling(boolean)}),
+	 * events are reused once {@link SimEntity#processEvent(SimEvent)} has returned, so an entity
+	 * that stores an event (and not only its data) must call this first. Without event pooling,
+	 * this does nothing.
+	 * 
+	 * @return this event
+	 */
+	public SimEvent retain() {
+		retained = true;
+		return this;
+	}
+
+	/**
+	 * Checks whether this event has been retained (see {@link #retain()}).
+	 * 
+	 * @return true, if an entity keeps this event
+	 */
+	public boolean isRetained() {
+		return retained;
+	}
+
 	@Override
 	public Object clone() {
 		return new SimEvent(etype, time, entSrc, entDst, tag, data);
@@ -0,0 +1,131 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+/**
+ * A pool of {@link SimEvent} instances, so a simulation doesn't allocate a new event for every
+ * send, schedule and hold. {@link CloudSim} takes its events from the pool (if event pooling is
+ * enabled, see {@link CloudSim#setEventPooling(boolean)}) and gives them back once nobody can
+ * reference them anymore: after the simulation has processed them (holds, creations) or after
+ * {@link SimEntity#processEvent(SimEvent)} has returned. An entity that keeps an event beyond that
+ * must call {@link SimEvent#retain()}.
+ * <p>
+ * The pool also counts how many events were requested and how many of them were reused, so the
+ * effect on the allocation rate can be checked.
+ *
+ * @since CloudSim Toolkit 3.0
+ * @see CloudSim#getEventPool()
+ */
+public final class SimEventPool {
+
+	/** The default maximum number of free events kept. */
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+
+	/** The free events. */
+	private final SimEvent[] free;
+
+	/** The number of free events. */
+	private int size;
+
+	/** The number of requested events. */
+	private long requests;
+
+	/** The number of requests served with a free event. */
+	private long hits;
+
+	/** The number of events given back to the pool. */
+	private long recycled;
+
+	/**
+	 * Creates a pool keeping at most {@link #DEFAULT_CAPACITY} free events.
+	 */
+	public SimEventPool() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a pool.
+	 *
+	 * @param capacity the maximum number of free events kept (more are left to the garbage collector)
+	 */
+	public SimEventPool(int capacity) {
+		free = new SimEvent[capacity];
+	}
+
+	/**
+	 * Gets an event, a free one if there is one.
+	 */
+	SimEvent obtain(int evtype, double time, int src, int dest, int tag, Object edata) {
+		requests++;
+		if (size == 0) {
+			return new SimEvent(evtype, time, src, dest, tag, edata);
+		}
+		hits++;
+		SimEvent ev = free[--size];
+		free[size] = null;
+		ev.pooled = false;
+		ev.reset(evtype, time, src, dest, tag, edata);
+		return ev;
+	}
+
+	/**
+	 * Gives an event back, unless it is retained. The event must not be referenced by any queue anymore.
+	 */
+	void release(SimEvent ev) {
+		if (ev.isRetained() || ev.pooled || size == free.length) {
+			return;
+		}
+		ev.reset(SimEvent.ENULL, -1, -1, -1, -1, null);
+		ev.pooled = true;
+		free[size++] = ev;
+		recycled++;
+	}
+
+	/**
+	 * @return the number of requested events
+	 */
+	public long getRequests() {
+		return requests;
+	}
+
+	/**
+	 * @return the number of requests served with a recycled event
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of events given back to the pool
+	 */
+	public long getRecycled() {
+		return recycled;
+	}
+
+	/**
+	 * @return the share of requests served with a recycled event (0 without requests)
+	 */
+	public double getHitRate() {
+		return requests == 0 ? 0 : (double) hits / requests;
+	}
+
+	/**
+	 * @return the number of free events in the pool
+	 */
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public String toString() {
+		return "Event pool: " + requests + " events requested, " + hits + " reused ("
+				+ String.format("%.1f", getHitRate() * 100) + "%), " + recycled + " recycled";
+	}
+
+}
@@ -0,0 +1,1129 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.core.predicates.Predicate;
+
+/**
+ * The state of one simulation: its entities, the future and deferred event queues, the clock and
+ * the CIS. {@link CloudSim#init} creates a new context and binds it to the calling thread; the
+ * static methods of {@link CloudSim} work on the context of the current thread (see
+ * {@link CloudSim#getContext()}) and every {@link SimEntity} works on the context it was created
+ * in (see {@link SimEntity#getContext()}). Simulations on different threads therefore don't share
+ * any state and can run at the same time, e.g. on a thread pool.
+ * <p>
+ * A context is used by one thread at a time (or by the threads of its parallel kernel, see
+ * {@link CloudSim#setParallelism(int)}).
+ *
+ * @since CloudSim Toolkit 3.0
+ * @see CloudSim
+ */
+public final class SimulationContext {
+
+	/** The Constant NOT_FOUND. */
+	private static final int NOT_FOUND = -1;
+
+	/** The id of CIS entity. */
+	private int cisId = -1;
+
+	/** The id of CloudSimShutdown entity. */
+	@SuppressWarnings("unused")
+	private int shutdownId = -1;
+
+	/** The CIS object. */
+	private CloudInformationService cis = null;
+
+	/** The trace flag. */
+	@SuppressWarnings("unused")
+	private boolean traceFlag = false;
+
+	/** The calendar. */
+	private Calendar calendar = null;
+
+	/** The termination time. */
+	private double terminateAt = -1;
+
+	/** The minimal time between events. Events within shorter periods after the last event are discarded. */
+	private double minTimeBetweenEvents = 0.01;
+
+	/** The entities. */
+	private List<SimEntity> entities;
+
+	/** The future event queue. */
+	private EventQueue future;
+
+	/**
+	 * The ids of the entities that may have something to do in the next clock tick: entities that
+	 * became runnable or got a deferred event since they last ran, and entities with their own
+	 * {@link SimEntity#run()}. Other entities are not run (their run() would find no event).
+	 */
+	private BitSet ready;
+
+	/** Creates the future event queue (see {@link CloudSim#setFutureQueue(Supplier)}). */
+	private final Supplier<? extends EventQueue> futureQueueFactory;
+
+	/** Whether the simulation recycles its events (see {@link CloudSim#setEventPooling(boolean)}). */
+	private final boolean eventPooling;
+
+	/** The event pool of the simulation, null if events are not recycled. */
+	private SimEventPool eventPool;
+
+	/** The events of the current clock tick (reused to save allocations). */
+	private final List<SimEvent> tickEvents = new ArrayList<SimEvent>();
+
+	/** The number of threads that run the logical processes (see {@link CloudSim#setParallelism(int)}). */
+	private final int parallelism;
+
+	/** The threads that run the logical processes, null if the simulation runs sequentially. */
+	private ExecutorService workers;
+
+	/** The logical processes by key (see {@link SimEntity#getLogicalProcess()}). */
+	private Map<Integer, LogicalProcess> processes;
+
+	/** The logical process of each entity (by id), null if it hasn't been looked up yet. */
+	private List<LogicalProcess> processOf;
+
+	/** The logical processes with ready entities in the current clock tick. */
+	private final List<LogicalProcess> tickProcesses = new ArrayList<LogicalProcess>();
+
+	/** The runs of the entities in the current clock tick, if it runs in parallel. */
+	private final List<LogicalProcess.Run> tickRuns = new ArrayList<LogicalProcess.Run>();
+
+	/** Whether the entities of the current clock tick run in parallel. */
+	private boolean parallelTick;
+
+	/** The deferred event queue. */
+	private DeferredQueue deferred;
+
+	/** The current simulation clock. */
+	private double clock;
+
+	/** Flag for checking if the simulation is running. */
+	private boolean running;
+
+	/** The entities by name. */
+	private Map<String, SimEntity> entitiesByName;
+
+	// The predicates used in entity wait methods
+	/** The wait predicates. */
+	private Map<Integer, Predicate> waitPredicates;
+
+	/** The paused. */
+	private boolean paused = false;
+
+	/** The pause at. */
+	private long pauseAt = -1;
+
+	/** The abrupt terminate. */
+	private boolean abruptTerminate = false;
+
+	/**
+	 * Creates a context without entities (see {@link #initialize()}).
+	 *
+	 * @param futureQueueFactory creates the future event queue
+	 * @param eventPooling whether the simulation recycles its events
+	 * @param parallelism the number of threads that run the logical processes
+	 */
+	SimulationContext(Supplier<? extends EventQueue> futureQueueFactory, boolean eventPooling, int parallelism) {
+		this.futureQueueFactory = futureQueueFactory;
+		this.eventPooling = eventPooling;
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Initialises the simulation: creates the CloudSimShutdown and CloudInformationService entities
+	 * (see {@link CloudSim#init(int, Calendar, boolean)}). The context has to be bound to the current
+	 * thread, so the entities are created in it.
+	 *
+	 * @param numUser the number of User Entities created
+	 * @param _calendar starting time for this simulation, or null for the current time
+	 * @param _traceFlag <tt>true</tt> if CloudSim trace need to be written
+	 */
+	void init(int numUser, Calendar _calendar, boolean _traceFlag) {
+		try {
+			initialize();
+			// NOTE: the order for the below 3 lines are important
+			traceFlag = _traceFlag;
+
+			// Set the current Wall clock time as the starting time of
+			// simulation
+			if (_calendar == null) {
+				calendar = Calendar.getInstance();
+			} else {
+				calendar = _calendar;
+			}
+
+			// creates a CloudSimShutdown object
+			CloudSimShutdown shutdown = new CloudSimShutdown("CloudSimShutdown", numUser);
+			shutdownId = shutdown.getId();
+
+			// create a GIS object
+			cis = new CloudInformationService("CloudInformationService");
+
+			// set all the above entity IDs
+			cisId = cis.getId();
+		} catch (IllegalArgumentException s) {
+			Log.printLine("CloudSim.init(): The simulation has been terminated due to an unexpected error");
+			Log.printLine(s.getMessage());
+		} catch (Exception e) {
+			Log.printLine("CloudSim.init(): The simulation has been terminated due to an unexpected error");
+			Log.printLine(e.getMessage());
+		}
+	}
+
+	/**
+	 * Sets the minimal time between events.
+	 *
+	 * @param periodBetweenEvents the minimal period between events
+	 */
+	void setMinTimeBetweenEvents(double periodBetweenEvents) {
+		minTimeBetweenEvents = periodBetweenEvents;
+	}
+
+	/**
+	 * Initialise the simulation for stand alone simulations.
+	 */
+	void initialize() {
+		Log.printLine("Initialising...");
+		entities = new ArrayList<SimEntity>();
+		entitiesByName = new LinkedHashMap<String, SimEntity>();
+		future = futureQueueFactory.get();
+		eventPool = eventPooling ? new SimEventPool() : null;
+		deferred = new DeferredQueue();
+		ready = new BitSet();
+		processes = new HashMap<Integer, LogicalProcess>();
+		processOf = new ArrayList<LogicalProcess>();
+		waitPredicates = new HashMap<Integer, Predicate>();
+		clock = 0;
+		running = false;
+	}
+
+	/**
+	 * Starts the execution of the simulation (see {@link CloudSim#startSimulation()}).
+	 *
+	 * @return the last clock time
+	 */
+	public double startSimulation() {
+		Log.printConcatLine("Starting CloudSim version ", CloudSim.CLOUDSIM_VERSION_STRING);
+		double clock = run();
+
+		// reset all the variables of the simulation
+		cisId = -1;
+		shutdownId = -1;
+		cis = null;
+		calendar = null;
+		traceFlag = false;
+
+		return clock;
+	}
+
+	/**
+	 * Terminates the simulation (see {@link CloudSim#terminateSimulation()}).
+	 *
+	 * @return true, if successful; false otherwise.
+	 */
+	public boolean terminateSimulation() {
+		if (parallelTick) {
+			// the entities of the other logical processes would stop sending at another point
+			throw new IllegalStateException("The simulation can't be terminated while logical processes run in parallel.");
+		}
+		running = false;
+		printMessage("Simulation: Reached termination time.");
+		return true;
+	}
+
+	/**
+	 * Terminates the simulation at a given time.
+	 *
+	 * @param time the time at which the simulation has to be terminated
+	 * @return true, if successful otherwise.
+	 */
+	public boolean terminateSimulation(double time) {
+		if (time <= clock) {
+			return false;
+		} else {
+			terminateAt = time;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the minimum time between events. Events within shorter periods after the last event are discarded.
+	 *
+	 * @return the minimum time between events.
+	 */
+	public double getMinTimeBetweenEvents() {
+		return minTimeBetweenEvents;
+	}
+
+	/**
+	 * Gets a new copy of initial simulation Calendar.
+	 *
+	 * @return a new copy of Calendar object or if the simulation hasn't been initialized
+	 */
+	public Calendar getSimulationCalendar() {
+		// make a new copy
+		Calendar clone = calendar;
+		if (calendar != null) {
+			clone = (Calendar) calendar.clone();
+		}
+
+		return clone;
+	}
+
+	/**
+	 * Gets the entity ID of <tt>CloudInformationService</tt>.
+	 *
+	 * @return the Entity ID or if it is not found
+	 */
+	public int getCloudInfoServiceEntityId() {
+		return cisId;
+	}
+
+	/**
+	 * Gets the list of all Cloud resources registered at the CIS.
+	 *
+	 * @return A List containing CloudResource ID (as an Integer object) or if a CIS entity hasn't
+	 *         been created before
+	 */
+	public List<Integer> getCloudResourceList() {
+		if (cis == null) {
+			return null;
+		}
+
+		return cis.getList();
+	}
+
+	// Public access methods
+
+	/**
+	 * Get the current simulation time.
+	 *
+	 * @return the simulation time
+	 */
+	public double clock() {
+		return clock;
+	}
+
+	/**
+	 * Get the current number of entities in the simulation.
+	 *
+	 * @return The number of entities
+	 */
+	public int getNumEntities() {
+		return entities.size();
+	}
+
+	/**
+	 * Get the entity with a given id.
+	 *
+	 * @param id the entity's unique id number
+	 * @return The entity, or if it could not be found
+	 */
+	public SimEntity getEntity(int id) {
+		return entities.get(id);
+	}
+
+	/**
+	 * Get the entity with a given name.
+	 *
+	 * @param name The entity's name
+	 * @return The entity
+	 */
+	public SimEntity getEntity(String name) {
+		return entitiesByName.get(name);
+	}
+
+	/**
+	 * Get the id of an entity with a given name.
+	 *
+	 * @param name The entity's name
+	 * @return The entity's unique id number
+	 */
+	public int getEntityId(String name) {
+		SimEntity obj = entitiesByName.get(name);
+		if (obj == null) {
+			return NOT_FOUND;
+		} else {
+			return obj.getId();
+		}
+	}
+
+	/**
+	 * Gets name of the entity given its entity ID.
+	 *
+	 * @param entityID the entity ID
+	 * @return the Entity name or if this object does not have one
+	 */
+	public String getEntityName(int entityID) {
+		try {
+			return getEntity(entityID).getName();
+		} catch (IllegalArgumentException e) {
+			return null;
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Returns a list of entities created for the simulation.
+	 *
+	 * @return the entity iterator
+	 */
+	public List<SimEntity> getEntityList() {
+		// create a new list to prevent the user from changing
+		// the list of entities used by Simulation
+		List<SimEntity> list = new LinkedList<SimEntity>();
+		list.addAll(entities);
+		return list;
+	}
+
+	// Public update methods
+
+	/**
+	 * Add a new entity to the simulation.
+	 *
+	 * @param e The new entity
+	 */
+	public void addEntity(SimEntity e) {
+		SimEvent evt;
+		if (parallelTick) {
+			// the ids of the entities would depend on the threads
+			throw new IllegalStateException("Entities can't be added while logical processes run in parallel.");
+		}
+		if (running) {
+			// Post an event to make this entity
+			evt = newEvent(SimEvent.CREATE, clock, 1, 0, 0, e);
+			future.addEvent(evt);
+		}
+		if (e.getId() == -1) { // Only add once!
+			int id = entities.size();
+			e.setId(id);
+			entities.add(e);
+			entitiesByName.put(e.getName(), e);
+			if (e.hasOwnRun()) {
+				ready.set(id);
+			}
+		}
+	}
+
+	/**
+	 * Internal method used to add a new entity to the simulation when the simulation is running.
+	 *
+	 * @param e The new entity
+	 */
+	void addEntityDynamically(SimEntity e) {
+		if (e == null) {
+			throw new IllegalArgumentException("Adding null entity.");
+		} else {
+			printMessage("Adding: " + e.getName());
+		}
+		e.startEntity();
+	}
+
+	/**
+	 * Internal method used to run one tick of the simulation (see {@link CloudSim#runClockTick()}).
+	 *
+	 * @return true, if the future queue is empty
+	 */
+	public boolean runClockTick() {
+		SimEntity ent;
+		boolean queue_empty;
+
+		int entities_size = entities.size();
+
+		if (workers == null || !runParallelTick(entities_size)) {
+			// only the ready entities, in the order of their ids (entities that become ready meanwhile
+			// run in this tick if their id is greater, like in a loop over all entities)
+			for (int i = ready.nextSetBit(0); i >= 0 && i < entities_size; i = ready.nextSetBit(i + 1)) {
+				ent = entities.get(i);
+				if (!ent.hasOwnRun()) {
+					ready.clear(i);
+				}
+				if (ent.getState() == SimEntity.RUNNABLE) {
+					ent.run();
+				}
+			}
+		}
+
+		// If there are more future events then deal with them
+		if (future.size() > 0) {
+			queue_empty = false;
+			SimEvent first = future.pollFirst();
+			// read before processing, the event may be recycled by then (see SimEventPool)
+			double time = first.eventTime();
+			processEvent(first);
+
+			// ...and with the next events at the same time (also those the first one created)
+			future.drain(time, tickEvents);
+			try {
+				for (int i = 0; i < tickEvents.size(); i++) {
+					processEvent(tickEvents.get(i));
+				}
+			} finally {
+				tickEvents.clear();
+			}
+
+		} else {
+			queue_empty = true;
+			running = false;
+			printMessage(clock + ": Simulation: No more future events");
+		}
+
+		return queue_empty;
+	}
+
+	/**
+	 * Internal method used to stop the simulation.
+	 */
+	public void runStop() {
+		printMessage("Simulation completed.");
+	}
+
+	/**
+	 * Used to hold an entity for some time.
+	 *
+	 * @param src the src
+	 * @param delay the delay
+	 */
+	public void hold(int src, long delay) {
+		SimEvent e = newEvent(SimEvent.HOLD_DONE, clock + delay, src, -1, -1, null);
+		enqueue(e, false);
+		entities.get(src).setState(SimEntity.HOLDING);
+	}
+
+	/**
+	 * Used to pause an entity for some time.
+	 *
+	 * @param src the src
+	 * @param delay the delay
+	 */
+	public void pause(int src, double delay) {
+		SimEvent e = newEvent(SimEvent.HOLD_DONE, clock + delay, src, -1, -1, null);
+		enqueue(e, false);
+		entities.get(src).setState(SimEntity.HOLDING);
+	}
+
+	/**
+	 * Used to send an event from one entity to another.
+	 *
+	 * @param src the src
+	 * @param dest the dest
+	 * @param delay the delay
+	 * @param tag the tag
+	 * @param data the data
+	 */
+	public void send(int src, int dest, double delay, int tag, Object data) {
+		if (delay < 0) {
+			throw new IllegalArgumentException("Send delay can't be negative.");
+		}
+		if(delay >= Double.MAX_VALUE) {
+			throw new RuntimeException("Send delay can't be infinite.");
+		}
+
+		SimEvent e = newEvent(SimEvent.SEND, clock + delay, src, dest, tag, data);
+		enqueue(e, false);
+	}
+
+	/**
+	 * Used to send an event from one entity to another, with priority in the queue.
+	 *
+	 * @param src the src
+	 * @param dest the dest
+	 * @param delay the delay
+	 * @param tag the tag
+	 * @param data the data
+	 */
+	public void sendFirst(int src, int dest, double delay, int tag, Object data) {
+		if (delay < 0) {
+			throw new IllegalArgumentException("Send delay can't be negative.");
+		}
+
+		SimEvent e = newEvent(SimEvent.SEND, clock + delay, src, dest, tag, data);
+		enqueue(e, true);
+	}
+
+	/**
+	 * Sets an entity's state to be waiting for an event that matches a predicate.
+	 *
+	 * @param src the src
+	 * @param p the p
+	 */
+	public void wait(int src, Predicate p) {
+		entities.get(src).setState(SimEntity.WAITING);
+		if (p != CloudSim.SIM_ANY) {
+			// If a predicate has been used store it in order to check it
+			if (parallelTick) {
+				synchronized (waitPredicates) {
+					waitPredicates.put(src, p);
+				}
+			} else {
+				waitPredicates.put(src, p);
+			}
+		}
+	}
+
+	/**
+	 * Checks if events for a specific entity are present in the deferred event queue.
+	 *
+	 * @param d the d
+	 * @param p the p
+	 * @return the int
+	 */
+	public int waiting(int d, Predicate p) {
+		return deferred.count(d, p);
+	}
+
+	/**
+	 * Selects an event matching a predicate.
+	 *
+	 * @param src the src
+	 * @param p the p
+	 * @return the sim event
+	 */
+	public SimEvent select(int src, Predicate p) {
+		SimEvent ev = deferred.removeFirst(src, p);
+		// without a match, the last deferred event is returned (but not removed), like a search of the whole queue did
+		return ev != null ? ev : lastDeferred();
+	}
+
+	/**
+	 * Find first deferred event matching a predicate.
+	 *
+	 * @param src the src
+	 * @param p the p
+	 * @return the sim event
+	 */
+	public SimEvent findFirstDeferred(int src, Predicate p) {
+		SimEvent ev = deferred.first(src, p);
+		return ev != null ? ev : lastDeferred();
+	}
+
+	/**
+	 * Removes an event from the event queue.
+	 *
+	 * @param src the src
+	 * @param p the p
+	 * @return the sim event
+	 */
+	public SimEvent cancel(int src, Predicate p) {
+		LogicalProcess lp = process();
+		if (lp != null) {
+			synchronized (future) {
+				SimEvent ev = firstMatch(src, p);
+				SimEvent own = lp.cancel(e -> e.getSource() == src && p.match(e), ev);
+				if (own != null) {
+					return own;
+				}
+				if (ev == null) {
+					throw new IllegalStateException("The last future event depends on the other logical processes.");
+				}
+				future.remove(ev);
+				return ev;
+			}
+		}
+		// the first matching event in queue order (the queue iterates in any order)
+		SimEvent ev = null;
+		SimEvent last = null;
+		Iterator<SimEvent> iter = future.iterator();
+		while (iter.hasNext()) {
+			SimEvent next = iter.next();
+			if (last == null || next.compareTo(last) > 0) {
+				last = next;
+			}
+			if (next.getSource() == src && p.match(next) && (ev == null || next.compareTo(ev) < 0)) {
+				ev = next;
+			}
+		}
+		if (ev == null) {
+			// nothing cancelled, returns the last event like an ordered search does
+			return last;
+		}
+		future.remove(ev);
+		return ev;
+	}
+
+	/**
+	 * Removes all events that match a given predicate from the future event queue returns true if
+	 * at least one event has been cancelled; false otherwise.
+	 *
+	 * @param src the src
+	 * @param p the p
+	 * @return true, if successful
+	 */
+	public boolean cancelAll(final int src, final Predicate p) {
+		LogicalProcess lp = process();
+		if (lp != null) {
+			boolean removed = lp.cancelAll(ev -> ev.getSource() == src && p.match(ev));
+			// the other threads only remove events of their entities
+			synchronized (future) {
+				return future.removeIf(ev -> ev.getSource() == src && p.match(ev)) || removed;
+			}
+		}
+		return future.removeIf(ev -> ev.getSource() == src && p.match(ev));
+	}
+
+	/**
+	 * Finds the first event of the future queue sent by an entity that matches a predicate.
+	 */
+	private SimEvent firstMatch(int src, Predicate p) {
+		SimEvent ev = null;
+		Iterator<SimEvent> iter = future.iterator();
+		while (iter.hasNext()) {
+			SimEvent next = iter.next();
+			if (next.getSource() == src && p.match(next) && (ev == null || next.compareTo(ev) < 0)) {
+				ev = next;
+			}
+		}
+		return ev;
+	}
+
+	/**
+	 * Gets the event pool of the simulation, e.g. to check its hit rate.
+	 *
+	 * @return the pool, null if the simulation doesn't recycle its events
+	 */
+	public SimEventPool getEventPool() {
+		return eventPool;
+	}
+
+	/**
+	 * Marks an entity as ready to run in the next clock tick (see {@link #runClockTick()}).
+	 *
+	 * @param id the id of the entity
+	 */
+	void setReady(int id) {
+		if (ready != null && id >= 0) {
+			LogicalProcess lp = process();
+			if (lp != null) {
+				lp.setReady(id, id < processOf.size() ? processOf.get(id) : null);
+			} else {
+				ready.set(id);
+			}
+		}
+	}
+
+	/**
+	 * Creates an event, or takes a recycled one from the event pool.
+	 */
+	SimEvent newEvent(int evtype, double time, int src, int dest, int tag, Object data) {
+		// the pool is not shared by the threads of a parallel tick
+		return eventPool != null && !parallelTick ? eventPool.obtain(evtype, time, src, dest, tag, data)
+				: new SimEvent(evtype, time, src, dest, tag, data);
+	}
+
+	/**
+	 * Adds an event to the future queue, or records it for the end of the tick if the entities run in
+	 * parallel.
+	 */
+	private void enqueue(SimEvent e, boolean first) {
+		LogicalProcess lp = process();
+		if (lp != null) {
+			lp.send(e, first);
+		} else if (first) {
+			future.addEventFirst(e);
+		} else {
+			future.addEvent(e);
+		}
+	}
+
+	/**
+	 * Gets the logical process that runs on the current thread in a parallel tick.
+	 */
+	private LogicalProcess process() {
+		return parallelTick ? LogicalProcess.current() : null;
+	}
+
+	/**
+	 * Gets the last deferred event (if nothing else matches).
+	 */
+	private SimEvent lastDeferred() {
+		if (parallelTick) {
+			throw new IllegalStateException("The last deferred event depends on the other logical processes.");
+		}
+		return deferred.last();
+	}
+
+	/**
+	 * Gets the logical process of an entity (see {@link SimEntity#getLogicalProcess()}).
+	 */
+	private LogicalProcess processOf(SimEntity ent) {
+		int id = ent.getId();
+		while (processOf.size() <= id) {
+			processOf.add(null);
+		}
+		LogicalProcess lp = processOf.get(id);
+		if (lp == null) {
+			int key = ent.getLogicalProcess();
+			lp = processes.get(key);
+			if (lp == null) {
+				lp = new LogicalProcess(this, key);
+				processes.put(key, lp);
+			}
+			processOf.set(id, lp);
+		}
+		return lp;
+	}
+
+	/**
+	 * Runs the ready entities of the current clock tick in their logical processes, in parallel, if
+	 * entities of at least two processes are runnable (see {@link CloudSim#setParallelism(int)}).
+	 *
+	 * @param size the number of entities to consider
+	 * @return false, if the entities have to run sequentially (nothing has been run then)
+	 */
+	private boolean runParallelTick(int size) {
+		tickProcesses.clear();
+		for (int i = ready.nextSetBit(0); i >= 0 && i < size; i = ready.nextSetBit(i + 1)) {
+			SimEntity ent = entities.get(i);
+			if (ent.getState() == SimEntity.RUNNABLE) {
+				LogicalProcess lp = processOf(ent);
+				if (lp.ready.isEmpty()) {
+					tickProcesses.add(lp);
+				}
+				lp.ready.set(i);
+			}
+		}
+		if (tickProcesses.size() < 2) {
+			for (LogicalProcess lp : tickProcesses) {
+				lp.ready.clear();
+			}
+			return false;
+		}
+		// like in the sequential loop, the entities leave the ready set when their turn comes
+		for (int i = ready.nextSetBit(0); i >= 0 && i < size; i = ready.nextSetBit(i + 1)) {
+			if (!entities.get(i).hasOwnRun()) {
+				ready.clear(i);
+			}
+		}
+
+		parallelTick = true;
+		deferred.setConcurrent(true);
+		try {
+			for (Future<Void> f : workers.invokeAll(tickProcesses)) {
+				f.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while running the logical processes.", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		} finally {
+			parallelTick = false;
+			deferred.setConcurrent(false);
+			for (LogicalProcess lp : tickProcesses) {
+				tickRuns.addAll(lp.runs);
+				lp.runs.clear();
+			}
+		}
+
+		// what the entities did, in the order the sequential kernel would have done it
+		try {
+			tickRuns.sort(Comparator.comparingInt(r -> r.entity));
+			for (LogicalProcess.Run r : tickRuns) {
+				r.commit(future, ready);
+			}
+		} finally {
+			tickRuns.clear();
+		}
+		return true;
+	}
+
+	/**
+	 * Gives an event nobody references anymore back to the event pool (if there is one).
+	 */
+	void recycle(SimEvent e) {
+		if (eventPool != null && !parallelTick) {
+			eventPool.release(e);
+		}
+	}
+
+	//
+	// Private internal methods
+	//
+
+	/**
+	 * Processes an event.
+	 *
+	 * @param e the e
+	 */
+	private void processEvent(SimEvent e) {
+		int dest, src;
+		SimEntity dest_ent;
+		// Update the system's clock
+		if (e.eventTime() < clock) {
+			throw new IllegalArgumentException("Past event detected.");
+		}
+		clock = e.eventTime();
+
+		// Ok now process it
+		switch (e.getType()) {
+			case SimEvent.ENULL:
+				throw new IllegalArgumentException("Event has a null type.");
+
+			case SimEvent.CREATE:
+				SimEntity newe = (SimEntity) e.getData();
+				addEntityDynamically(newe);
+				recycle(e);
+				break;
+
+			case SimEvent.SEND:
+				// Check for matching wait
+				dest = e.getDestination();
+				if (dest < 0) {
+					throw new IllegalArgumentException("Attempt to send to a null entity detected.");
+				} else {
+					int tag = e.getTag();
+					dest_ent = entities.get(dest);
+					if (dest_ent.getState() == SimEntity.WAITING) {
+						Integer destObj = Integer.valueOf(dest);
+						Predicate p = waitPredicates.get(destObj);
+						if ((p == null) || (tag == 9999) || (p.match(e))) {
+							dest_ent.setEventBuffer(newEvent(e.getType(), e.eventTime(), e.getSource(), e.getDestination(),
+									e.getTag(), e.getData()));
+							dest_ent.setState(SimEntity.RUNNABLE);
+							waitPredicates.remove(destObj);
+							recycle(e);
+						} else {
+							deferred.addEvent(e);
+						}
+					} else {
+						deferred.addEvent(e);
+						ready.set(dest);
+					}
+				}
+				break;
+
+			case SimEvent.HOLD_DONE:
+				src = e.getSource();
+				if (src < 0) {
+					throw new IllegalArgumentException("Null entity holding.");
+				} else {
+					entities.get(src).setState(SimEntity.RUNNABLE);
+				}
+				recycle(e);
+				break;
+
+			default:
+				break;
+		}
+	}
+
+	/**
+	 * Internal method used to start the simulation.
+	 */
+	public void runStart() {
+		running = true;
+		// Start all the entities
+		for (SimEntity ent : entities) {
+			ent.startEntity();
+		}
+
+		printMessage("Entities started.");
+	}
+
+	/**
+	 * Check if the simulation is still running.
+	 *
+	 * @return if the simulation is still running, otherwise
+	 */
+	public boolean running() {
+		return running;
+	}
+
+	/**
+	 * Pauses the simulation.
+	 *
+	 * @return true, if successful otherwise.
+	 */
+	public boolean pauseSimulation() {
+		paused = true;
+		return paused;
+	}
+
+	/**
+	 * Pauses the simulation at a given time.
+	 *
+	 * @param time the time at which the simulation has to be paused
+	 * @return true, if successful otherwise.
+	 */
+	public boolean pauseSimulation(long time) {
+		if (time <= clock) {
+			return false;
+		} else {
+			pauseAt = time;
+		}
+		return true;
+	}
+
+	/**
+	 * Resumes the simulation that has previously been paused.
+	 *
+	 * @return if the simulation has been restarted or or otherwise.
+	 */
+	public boolean resumeSimulation() {
+		paused = false;
+
+		if (pauseAt <= clock) {
+			pauseAt = -1;
+		}
+
+		return !paused;
+	}
+
+	/**
+	 * Runs the simulation (see {@link CloudSim#run()}).
+	 *
+	 * @return the last clock value
+	 */
+	public double run() {
+		if (!running) {
+			runStart();
+		}
+		if (parallelism > 1) {
+			workers = Executors.newFixedThreadPool(parallelism, r -> {
+				Thread t = new Thread(r, "logical-process");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		try {
+			runTicks();
+		} finally {
+			if (workers != null) {
+				workers.shutdownNow();
+				workers = null;
+			}
+		}
+
+		double clock = clock();
+
+		finishSimulation();
+		runStop();
+
+		return clock;
+	}
+
+	/**
+	 * Runs the clock ticks until the simulation ends, is terminated or is paused.
+	 */
+	private void runTicks() {
+		while (true) {
+			if (runClockTick() || abruptTerminate) {
+				break;
+			}
+
+			// this block allows termination of simulation at a specific time
+			if (terminateAt > 0.0 && clock >= terminateAt) {
+				terminateSimulation();
+				clock = terminateAt;
+				break;
+			}
+
+			if (pauseAt != -1
+					&& ((future.size() > 0 && clock <= pauseAt && pauseAt <= future.first().eventTime()) || future.size() == 0 && pauseAt <= clock)) {
+				pauseSimulation();
+				clock = pauseAt;
+			}
+
+			while (paused) {
+				try {
+					Thread.sleep(100);
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Internal method that allows the entities to terminate.
+	 */
+	public void finishSimulation() {
+		// Allow all entities to exit their body method
+		if (!abruptTerminate) {
+			for (SimEntity ent : entities) {
+				if (ent.getState() != SimEntity.FINISHED) {
+					ent.run();
+				}
+			}
+		}
+
+		for (SimEntity ent : entities) {
+			ent.shutdownEntity();
+		}
+
+		// reset all the variables of the simulation
+		// Private data members
+		entities = null;
+		entitiesByName = null;
+		future = null;
+		deferred = null;
+		ready = null;
+		processes = null;
+		processOf = null;
+		clock = 0L;
+		running = false;
+
+		waitPredicates = null;
+		paused = false;
+		pauseAt = -1;
+		abruptTerminate = false;
+	}
+
+	/**
+	 * Abruptally terminate.
+	 */
+	public void abruptallyTerminate() {
+		abruptTerminate = true;
+	}
+
+	/**
+	 * Prints a message about the progress of the simulation.
+	 *
+	 * @param message the message
+	 */
+	private void printMessage(String message) {
+		Log.printLine(message);
+	}
+
+	/**
+	 * Checks if is paused.
+	 *
+	 * @return true, if is paused
+	 */
+	public boolean isPaused() {
+		return paused;
+	}
+
+}
@@ -42,6 +42,25 @@ public class PredicateFrom extends Predicate {
 		ids = sourceIds.clone();
 	}
 
+	/**
+	 * Gets the number of source entities (used to look up the events by source, see DeferredQueue).
+	 * 
+	 * @return the number of sources
+	 */
+	public int getSourceCount() {
+		return ids.length;
+	}
+
+	/**
+	 * Gets the id of a source entity.
+	 * 
+	 * @param i the index of the source
+	 * @return the id of the source entity
+	 */
+	public int getSource(int i) {
+		return ids[i];
+	}
+
 	/**
 	 * Matches any event received from the registered sources.
 	 * 
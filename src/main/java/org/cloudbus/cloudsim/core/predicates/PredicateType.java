@@ -41,6 +41,25 @@ public class PredicateType extends Predicate {
 		this.tags = tags.clone();
 	}
 
+	/**
+	 * Gets the number of tags (used to look up the events by tag, see DeferredQueue).
+	 * 
+	 * @return the number of tags
+	 */
+	public int getTagCount() {
+		return tags.length;
+	}
+
+	/**
+	 * Gets a tag.
+	 * 
+	 * @param i the index of the tag
+	 * @return the tag
+	 */
+	public int getTag(int i) {
+		return tags[i];
+	}
+
 	/**
 	 * Matches any event that has one of the specified {@link #tags}.
 	 * 
@@ -232,4 +232,13 @@ public class NetworkDatacenter extends Datacenter {
 		checkCloudletCompletion();
 	}
 
+	/**
+	 * The {@link NetDatacenterBroker} creates the VMs in its datacenter directly, so network
+	 * datacenters are in the logical process of the brokers.
+	 */
+	@Override
+	protected int getLogicalProcess() {
+		return 0;
+	}
+
 }
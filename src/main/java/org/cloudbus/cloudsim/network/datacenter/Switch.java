@@ -511,4 +511,13 @@ public class Switch extends SimEntity {
 		Log.printConcatLine(getName(), " is shutting down...");
 	}
 
+	/**
+	 * A switch delivers the packets to the hosts of its datacenter directly, so it is in the logical
+	 * process of the datacenter.
+	 */
+	@Override
+	protected int getLogicalProcess() {
+		return dc != null ? dc.getLogicalProcess() : 0;
+	}
+
 }
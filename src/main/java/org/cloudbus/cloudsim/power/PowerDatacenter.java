@@ -261,6 +261,15 @@ public class PowerDatacenter extends Datacenter {
 		setCloudletSubmitted(CloudSim.clock());
 	}
 
+	/**
+	 * Without a deferred migration, {@link #processVmMigrate} gets the last deferred event of all
+	 * entities, so power datacenters don't run in parallel to the other entities.
+	 */
+	@Override
+	protected int getLogicalProcess() {
+		return 0;
+	}
+
 	/**
 	 * Gets the power.
 	 * 
@@ -0,0 +1,68 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that cycles which run at the same time give the same results as cycles run one after another.
+ */
+public class AlgRunnerTest {
+
+    private File vms, moer;
+    private AlgRunner runner;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        vms = TestData.traceCsv(20000, 21);
+        moer = TestData.moerCsv(22);
+        runner = new AlgRunner(vms.getPath(), moer.getPath(), 20000, true);
+    }
+
+    @After
+    public void tearDown()
+    {
+        vms.delete();
+        moer.delete();
+    }
+
+    @Test
+    public void testConcurrentCycles()
+    {
+        Algorithms algos = new Algorithms();
+        List<AlgRunner.Cycle> cycles = new ArrayList<>();
+        cycles.add(new AlgRunner.Cycle("none", t -> new double[]{0, 0}, (t, vm) -> {}, null, null));
+        cycles.add(new AlgRunner.Cycle("RT", algos::runRT, (t, vm) -> {}, null, null));
+        cycles.add(new AlgRunner.Cycle("RA", algos::runRA, (t, vm) -> {}, null, null));
+        cycles.add(new AlgRunner.Cycle("CR", t -> new double[]{0, 0}, algos::runCR, null, null));
+        cycles.add(new AlgRunner.Cycle("SD", t -> new double[]{0, 0}, algos::runSD, null, null));
+        cycles.add(new AlgRunner.Cycle("RT+CR", algos::runRT, algos::runCR, null, null));
+        cycles.add(new AlgRunner.Cycle("RA+SD", algos::runRA, algos::runSD, null, null));
+
+        List<double[]> concurrent = runner.runCycles(cycles, false);
+        assertEquals(cycles.size(), concurrent.size());
+        for(int i = 0; i < cycles.size(); i++)
+        {
+            double[] alone = runner.runCycles(Collections.singletonList(cycles.get(i)), false).get(0);
+            assertArrayEquals(cycles.get(i).name, alone, concurrent.get(i), 0);
+        }
+    }
+
+    @Test
+    public void testCyclesStartFromTheTrace()
+    {
+        Algorithms algos = new Algorithms();
+        AlgRunner.Cycle none = new AlgRunner.Cycle("none", t -> new double[]{0, 0}, (t, vm) -> {}, null, null);
+        double[] before = runner.runCycles(Collections.singletonList(none), false).get(0);
+        runner.runCycles(Collections.singletonList(new AlgRunner.Cycle("RT+CR", algos::runRT, algos::runCR, null, null)), false);
+        assertArrayEquals(before, runner.runCycles(Collections.singletonList(none), false).get(0), 0);
+    }
+}
@@ -0,0 +1,142 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.cloudbus.cloudsim.MoerSeries;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the algorithms against searching every vm on its own (without the memos and indexes they share between vms).
+ */
+public class AlgorithmsTest {
+
+    private static final int DAY = 288;
+
+    private VmTrace trace;
+    private MoerSeries moer, pmoer;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        trace = TestData.trace(20000, 61);
+        moer = TestData.moer(62);
+        pmoer = TestData.moer(63);
+    }
+
+    @Test
+    public void testRT()
+    {
+        VmTable table = new VmTable(trace, moer, pmoer), expected = new VmTable(trace, moer, pmoer);
+        double[] delays = new Algorithms().runRT(table);
+
+        ThresholdWindowIndex windows = ThresholdWindowIndex.of(pmoer, 810);
+        int moved = 0;
+        for(int vm = 0; vm < expected.size(); vm++)
+        {
+            if(!expected.isFlexible(vm)) continue;
+            int vstart = expected.getStart(vm) / 300, runlength = expected.getEnd(vm) / 300 - vstart;
+            int w = windows.findFirst(windows.firstStartingAt(vstart), windows.firstEndingAfter(vstart + DAY), runlength,
+                    expected.getAveragePMOER(vm));
+            if(w < 0) continue;
+            expected.setTime(vm, windows.getStart(w) * 300, (windows.getStart(w) + runlength) * 300);
+            moved++;
+        }
+        assertTrue(moved > 500);
+        assertEquals(moved, delays[2], 0);
+        assertSameTimes(expected, table);
+    }
+
+    @Test
+    public void testRA()
+    {
+        VmTable table = new VmTable(trace, moer, pmoer), expected = new VmTable(trace, moer, pmoer);
+        double[] delays = new Algorithms().runRA(table);
+
+        int moved = 0;
+        for(int vm = 0; vm < expected.size(); vm++)
+        {
+            if(!expected.isFlexible(vm)) continue;
+            int vstart = expected.getStart(vm) / 300, runlength = expected.getEnd(vm) / 300 - vstart;
+            int ni = MovingAverageIndex.of(pmoer, runlength, DAY).newStart(vstart, expected.getAveragePMOER(vm) - 50);
+            if(ni < 0) continue;
+            expected.setTime(vm, ni * 300, (ni + runlength) * 300);
+            moved++;
+        }
+        assertTrue(moved > 1000);
+        assertEquals(moved, delays[2], 0);
+        assertSameTimes(expected, table);
+    }
+
+    @Test
+    public void testCA()
+    {
+        VmTable table = new VmTable(trace, moer, pmoer), before = new VmTable(trace, moer, pmoer);
+        int slots = pmoer.size();
+        long[] load = before.coresPerSlot(slots), sorted = load.clone();
+        Arrays.sort(sorted);
+        Algorithms algos = new Algorithms();
+        algos.setCapacity((int) sorted[slots / 2]); // full for half of the intervals
+        double[] delays = algos.runCA(table);
+
+        int moved = 0;
+        for(int vm = 0; vm < table.size(); vm++)
+        {
+            int vstart = before.getStart(vm) / 300, runlength = before.getEnd(vm) / 300 - vstart, nstart = table.getStart(vm) / 300;
+            if(table.getStart(vm) == before.getStart(vm)) continue;
+            assertEquals(runlength, table.getEnd(vm) / 300 - nstart);
+            assertTrue(before.isFlexible(vm));
+            assertTrue(nstart > vstart && nstart + runlength <= Math.min(vstart + DAY, slots));
+            assertTrue(pmoer.sum(nstart, nstart + runlength) < pmoer.sum(vstart, vstart + runlength));
+            moved++;
+        }
+        assertTrue(moved > 1000);
+        assertEquals(moved, delays[2], 0);
+
+        // no interval ends up above the capacity, or above its load before if that was higher already
+        long[] after = table.coresPerSlot(slots);
+        for(int i = 0; i < slots; i++) assertTrue("interval " + i, after[i] <= Math.max(algos.getCapacity(), load[i]));
+    }
+
+    @Test
+    public void testIS()
+    {
+        VmTable table = new VmTable(trace, moer, pmoer), expected = new VmTable(trace, moer, pmoer);
+        double[] delays = new Algorithms().runIS(table);
+
+        int slots = pmoer.size(), moved = 0;
+        int[] values = new int[slots];
+        for(int i = 0; i < slots; i++) values[i] = pmoer.get(i);
+        for(int vm = 0; vm < expected.size(); vm++)
+        {
+            if(!expected.isFlexible(vm)) continue;
+            int vstart = expected.getStart(vm) / 300, vend = expected.getEnd(vm) / 300, runlength = vend - vstart;
+            if(vend <= vstart || vend > slots) continue;
+
+            // the runlength cheapest intervals of the next day
+            int[] sorted = CheapestSlotIndexTest.sortedSlots(values, vstart, Math.min(vstart + DAY, slots));
+            if(runlength >= sorted.length) continue;
+            long sum = 0;
+            for(int i = 0; i < runlength; i++) sum += values[sorted[i]];
+            if(sum >= pmoer.sum(vstart, vend)) continue;
+            expected.setSegments(vm, CheapestSlotIndexTest.runs(sorted, runlength, slots));
+            moved++;
+        }
+        assertTrue(moved > 1000);
+        assertEquals(moved, delays[2], 0);
+        assertSameTimes(expected, table);
+    }
+
+    static void assertSameTimes(VmTable expected, VmTable actual)
+    {
+        for(int vm = 0; vm < expected.size(); vm++)
+        {
+            assertEquals("start of vm " + vm, expected.getStart(vm), actual.getStart(vm));
+            assertEquals("end of vm " + vm, expected.getEnd(vm), actual.getEnd(vm));
+            assertArrayEquals("segments of vm " + vm, expected.getSegments(vm), actual.getSegments(vm));
+        }
+    }
+}
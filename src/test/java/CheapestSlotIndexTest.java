@@ -0,0 +1,80 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.cloudbus.cloudsim.MoerSeries;
+import org.junit.Test;
+
+/**
+ * Checks the index against sorting the intervals of the horizon.
+ */
+public class CheapestSlotIndexTest {
+
+    @Test
+    public void testAgainstSort()
+    {
+        // few distinct values, so there are many ties
+        Random r = new Random(41);
+        int[] values = new int[3000];
+        for(int i = 0; i < values.length; i++) values[i] = 300 + r.nextInt(i < 1500 ? 20 : 800);
+        MoerSeries pmoer = new MoerSeries(values);
+
+        CheapestSlotIndex index = new CheapestSlotIndex(pmoer);
+        int from = 0, to = 0;
+        while(to < values.length)
+        {
+            // mostly small steps, sometimes past the old horizon
+            to = Math.min(values.length, to + r.nextInt(r.nextInt(10) == 0 ? 400 : 20));
+            from = Math.min(to, from + r.nextInt(r.nextInt(10) == 0 ? 400 : 20));
+            if(to - from > 288) from = to - 288;
+            index.slideTo(from, to);
+            assertEquals(to - from, index.size());
+
+            int[] sorted = sortedSlots(values, from, to);
+            for(int q = 0; q < 5 && to > from; q++)
+            {
+                int k = 1 + r.nextInt(to - from);
+                long sum = 0;
+                for(int i = 0; i < k; i++) sum += values[sorted[i]];
+                assertEquals(values[sorted[k - 1]], index.kth(k));
+                assertEquals(sum, index.sumOfCheapest(k));
+                assertArrayEquals(runs(sorted, k, values.length), index.select(k));
+            }
+            assertEquals(0, index.sumOfCheapest(0));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBackwards()
+    {
+        CheapestSlotIndex index = new CheapestSlotIndex(TestData.moer(42));
+        index.slideTo(10, 100);
+        index.slideTo(9, 100);
+    }
+
+    // the slots of [from, to) by value, the earlier one on ties
+    static int[] sortedSlots(int[] values, int from, int to)
+    {
+        return IntStream.range(from, to).boxed()
+                .sorted((a, b) -> values[a] != values[b] ? Integer.compare(values[a], values[b]) : Integer.compare(a, b))
+                .mapToInt(Integer::intValue).toArray();
+    }
+
+    // the k first slots as ascending runs {from0, to0, ...}
+    static int[] runs(int[] sorted, int k, int slots)
+    {
+        boolean[] taken = new boolean[slots + 1];
+        for(int i = 0; i < k; i++) taken[sorted[i]] = true;
+        int[] runs = new int[2 * k];
+        int n = 0;
+        for(int i = 0; i <= slots; i++)
+        {
+            if(taken[i] && (i == 0 || !taken[i - 1])) runs[n++] = i;
+            if(!taken[i] && i > 0 && taken[i - 1]) runs[n++] = i;
+        }
+        return Arrays.copyOf(runs, n);
+    }
+}
@@ -0,0 +1,83 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the compensated sums against exact (BigDecimal) sums and the plain double accumulation used before.
+ */
+public class CompensatedSumTest {
+
+    @Test
+    public void testMoreExactThanPlainSum()
+    {
+        Random r = new Random(8);
+        CompensatedSum sum = new CompensatedSum();
+        double plain = 0;
+        BigDecimal exact = BigDecimal.ZERO;
+        for(int i = 0; i < 1_000_000; i++)
+        {
+            double v = r.nextDouble() * Math.pow(10, r.nextInt(8) - 4);
+            sum.add(v);
+            plain += v;
+            exact = exact.add(new BigDecimal(v));
+        }
+        double error = Math.abs(sum.get() - exact.doubleValue()), plainError = Math.abs(plain - exact.doubleValue());
+        assertTrue(error <= Math.ulp(exact.doubleValue()));
+        assertTrue(error <= plainError);
+    }
+
+    @Test
+    public void testCancellation()
+    {
+        CompensatedSum sum = new CompensatedSum();
+        for(double v : new double[]{1e16, 1, -1e16, 1}) sum.add(v);
+        assertEquals(2, sum.get(), 0);
+    }
+
+    @Test
+    public void testPartialSums()
+    {
+        Random r = new Random(9);
+        CompensatedSum all = new CompensatedSum(), left = new CompensatedSum(), right = new CompensatedSum();
+        BigDecimal exact = BigDecimal.ZERO;
+        for(int i = 0; i < 100_000; i++)
+        {
+            double v = (r.nextDouble() - 0.3) * Math.pow(10, r.nextInt(10));
+            all.add(v);
+            (i % 2 == 0 ? left : right).add(v);
+            exact = exact.add(new BigDecimal(v));
+        }
+        left.add(right);
+        assertEquals(exact.doubleValue(), left.get(), Math.ulp(exact.doubleValue()));
+        assertEquals(all.get(), left.get(), Math.ulp(exact.doubleValue()));
+    }
+
+    @Test
+    public void testSumCarbonAndWaste() throws IOException
+    {
+        // several fork-join blocks
+        VmTable table = new VmTable(TestData.trace(40000, 12), TestData.moer(3), TestData.moer(4));
+        BigDecimal carbon = BigDecimal.ZERO, waste = BigDecimal.ZERO;
+        for(int vm = 0; vm < table.size(); vm++)
+        {
+            carbon = carbon.add(new BigDecimal(table.getCarbon(vm)));
+            waste = waste.add(new BigDecimal(table.getWaste(vm)));
+        }
+        double[] sums = table.sumCarbonAndWaste();
+        assertEquals(carbon.doubleValue(), sums[0], Math.ulp(carbon.doubleValue()));
+        assertEquals(waste.doubleValue(), sums[1], Math.ulp(waste.doubleValue()));
+
+        // the blocks are combined in a fixed order
+        for(int i = 0; i < 5; i++)
+        {
+            double[] again = table.sumCarbonAndWaste();
+            assertEquals(sums[0], again[0], 0);
+            assertEquals(sums[1], again[1], 0);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Checks that the bound is below the carbon of schedules that fit into the capacity.
+ */
+public class FlowOptimizerTest {
+
+    @Test
+    public void testBound() throws IOException
+    {
+        VmTrace trace = TestData.trace(20000, 32);
+        VmTable table = new VmTable(trace, TestData.moer(33), TestData.moer(34));
+        int slots = table.getPMOER().size();
+        long[] load = table.coresPerSlot(slots);
+        Arrays.sort(load);
+        Algorithms algos = new Algorithms();
+        algos.setCapacity((int) load[slots / 2]);
+
+        FlowOptimizer.Bound bound = FlowOptimizer.lowerBound(table, algos.getCapacity(), algos.getDay());
+        assertTrue(bound.unconstrained <= bound.lowerBound);
+        assertTrue(bound.lowerBound <= FlowOptimizer.flexibleCarbon(table));
+        assertEquals(0, FlowOptimizer.overload(table, bound));
+
+        algos.runCA(table);
+        assertEquals(0, FlowOptimizer.overload(table, bound));
+        assertTrue(bound.lowerBound <= FlowOptimizer.flexibleCarbon(table));
+    }
+}
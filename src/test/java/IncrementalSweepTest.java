@@ -0,0 +1,89 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import org.cloudbus.cloudsim.MoerSeries;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the incremental sweeps against running CR and SD on a fresh table for every point.
+ */
+public class IncrementalSweepTest {
+
+    private VmTrace trace;
+    private MoerSeries moer, pmoer;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        trace = TestData.trace(20000, 43);
+        moer = TestData.moer(44);
+        pmoer = TestData.moer(45);
+    }
+
+    @Test
+    public void testSortBy()
+    {
+        // many ties, +-0, infinities and NaN, against sorting boxed indexes (stable, in the order of Double#compare)
+        Random r = new Random(46);
+        double[] special = {0.0, -0.0, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.MIN_VALUE, -Double.MAX_VALUE};
+        for(int n : new int[]{0, 1, 31, 32, 33, 1000, 100_003})
+        {
+            double[] key = new double[n + 5]; // only the first n are sorted
+            for(int i = 0; i < key.length; i++)
+                key[i] = r.nextInt(10) == 0 ? special[r.nextInt(special.length)] : (r.nextInt(200) - 100) / 8.0;
+            Integer[] expected = new Integer[n];
+            for(int i = 0; i < n; i++) expected[i] = i;
+            Arrays.sort(expected, Comparator.comparingDouble(i -> key[i]));
+
+            int[] actual = IncrementalSweep.sortBy(key, n);
+            assertEquals(n, actual.length);
+            for(int i = 0; i < n; i++) assertEquals("n = " + n + ", position " + i, (int) expected[i], actual[i]);
+        }
+    }
+
+    @Test
+    public void testCR()
+    {
+        // unsorted, with duplicates and values outside of [0, 1]
+        double[] p95 = {0.8, 0.3, 0.95, 0.3, 0.55, 1.2, 0}, waste = {5, 0, 20, -1, 5, 100};
+        double[][][] points = new IncrementalSweep(new VmTable(trace, moer, pmoer)).cr(p95, waste);
+        for(int p = 0; p < p95.length; p++)
+            for(int w = 0; w < waste.length; w++)
+            {
+                VmTable table = new VmTable(trace, moer, pmoer);
+                Algorithms algos = new Algorithms(810, 50, p95[p], waste[w], 0.01);
+                for(int vm = 0; vm < table.size(); vm++) algos.runCR(table, vm);
+                assertSamePoint(table.sumCarbonAndWaste(), points[p][w]);
+            }
+        assertTrue(points[0][1][0] != points[1][1][0] && points[0][0][0] != points[0][1][0]);
+    }
+
+    @Test
+    public void testSD()
+    {
+        double[] u_idle = {0.05, 0.01, 0.3, 0, 0.01, 0.12, 0.9};
+        double[][] points = new IncrementalSweep(new VmTable(trace, moer, pmoer)).sd(u_idle);
+        for(int u = 0; u < u_idle.length; u++)
+        {
+            VmTable table = new VmTable(trace, moer, pmoer);
+            Algorithms algos = new Algorithms(810, 50, 0.8, 5.0, u_idle[u]);
+            for(int vm = 0; vm < table.size(); vm++) algos.runSD(table, vm);
+            assertSamePoint(table.sumCarbonAndWaste(), points[u]);
+        }
+        assertTrue(points[0][0] != points[1][0]);
+    }
+
+    private static void assertSamePoint(double[] expected, double[] point)
+    {
+        assertEquals(expected[0], point[0], 1e-9 * expected[0]);
+        assertEquals(expected[1], point[1], 1e-9 * expected[1]);
+        assertEquals(0, point[2], 0);
+        assertEquals(0, point[3], 0);
+    }
+}
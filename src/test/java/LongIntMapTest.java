@@ -0,0 +1,48 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the map against a HashMap.
+ */
+public class LongIntMapTest {
+
+    @Test
+    public void testAgainstHashMap()
+    {
+        Random r = new Random(14);
+        LongIntMap map = new LongIntMap(4);
+        Map<Long, Integer> expected = new HashMap<>();
+        for(int i = 0; i < 200_000; i++)
+        {
+            // few distinct keys at first (overwrites), then the map has to grow
+            long key = i < 1000 ? r.nextInt(50) : LongIntMap.key(r.nextInt(9000), r.nextInt(300) - 10);
+            int value = r.nextInt();
+            map.put(key, value);
+            expected.put(key, value);
+
+            long probe = LongIntMap.key(r.nextInt(9000), r.nextInt(300) - 10);
+            assertEquals((int) expected.getOrDefault(probe, -7), map.get(probe, -7));
+        }
+        assertEquals(expected.size(), map.size());
+        for(Map.Entry<Long, Integer> e : expected.entrySet()) assertEquals((int) e.getValue(), map.get(e.getKey(), -7));
+    }
+
+    @Test
+    public void testKey()
+    {
+        assertEquals(0x0000000500000007L, LongIntMap.key(5, 7));
+        assertEquals(0xFFFFFFFFFFFFFFFFL, LongIntMap.key(-1, -1));
+        assertEquals(0x00000001FFFFFFFFL, LongIntMap.key(1, -1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyKey()
+    {
+        new LongIntMap(4).put(Long.MIN_VALUE, 1);
+    }
+}
@@ -0,0 +1,160 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the network simplex against successive shortest paths (Bellman-Ford) on small random networks.
+ */
+public class MinCostFlowTest {
+
+    @Test
+    public void testRandom()
+    {
+        Random r = new Random(31);
+        int feasible = 0;
+        for(int q = 0; q < 500; q++)
+        {
+            int nodes = 2 + r.nextInt(12), arcs = r.nextInt(nodes * 4);
+            int[] from = new int[arcs], to = new int[arcs];
+            long[] cap = new long[arcs], cost = new long[arcs], supply = new long[nodes];
+            for(int e = 0; e < arcs; e++)
+            {
+                from[e] = r.nextInt(nodes);
+                to[e] = r.nextInt(nodes);
+                cap[e] = r.nextInt(20);
+                cost[e] = r.nextInt(50);
+            }
+            for(int i = 0; i < 3; i++)
+            {
+                int u = r.nextInt(nodes), v = r.nextInt(nodes), units = r.nextInt(15);
+                supply[u] += units;
+                supply[v] -= units;
+            }
+
+            MinCostFlow flow = new MinCostFlow(nodes);
+            for(int u = 0; u < nodes; u++) flow.setSupply(u, supply[u]);
+            for(int e = 0; e < arcs; e++) assertEquals(e, flow.addArc(from[e], to[e], cap[e], cost[e]));
+
+            long expected = shortestPaths(nodes, from, to, cap, cost, supply);
+            long actual;
+            try
+            {
+                actual = flow.solve();
+            }
+            catch(IllegalStateException e)
+            {
+                assertEquals(-1, expected);
+                continue;
+            }
+            assertEquals(expected, actual);
+            feasible++;
+
+            // capacities, conservation and reduced costs of the flow
+            long[] net = new long[nodes];
+            for(int e = 0; e < arcs; e++)
+            {
+                long f = flow.flow(e), reduced = cost[e] + flow.potential(from[e]) - flow.potential(to[e]);
+                assertTrue(f >= 0 && f <= cap[e]);
+                if(f < cap[e]) assertTrue(reduced >= 0);
+                if(f > 0) assertTrue(reduced <= 0);
+                net[from[e]] += f;
+                net[to[e]] -= f;
+            }
+            assertEquals(Arrays.toString(supply), Arrays.toString(net));
+        }
+        assertTrue(feasible > 100);
+    }
+
+    @Test
+    public void testTransportation()
+    {
+        // 2 sources, 2 sinks: the cheap arc 0 -> 2 is full, the rest goes the second cheapest way
+        MinCostFlow flow = new MinCostFlow(4);
+        flow.setSupply(0, 5); flow.setSupply(1, 5); flow.setSupply(2, -6); flow.setSupply(3, -4);
+        int a02 = flow.addArc(0, 2, 3, 1), a03 = flow.addArc(0, 3, 10, 4), a12 = flow.addArc(1, 2, 10, 2), a13 = flow.addArc(1, 3, 10, 3);
+        assertEquals(3 + 2 * 4 + 3 * 2 + 2 * 3, flow.solve());
+        assertEquals(3, flow.flow(a02));
+        assertEquals(2, flow.flow(a03));
+        assertEquals(3, flow.flow(a12));
+        assertEquals(2, flow.flow(a13));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnbalanced()
+    {
+        MinCostFlow flow = new MinCostFlow(2);
+        flow.setSupply(0, 1);
+        flow.addArc(0, 1, 1, 1);
+        flow.solve();
+    }
+
+    @Test
+    public void testInfeasible()
+    {
+        MinCostFlow flow = new MinCostFlow(2);
+        flow.setSupply(0, 2); flow.setSupply(1, -2);
+        flow.addArc(0, 1, 1, 1);
+        try
+        {
+            flow.solve();
+            fail();
+        }
+        catch(IllegalStateException expected) {}
+    }
+
+    // min cost of meeting the supplies (costs >= 0), -1 if they can't be met
+    private static long shortestPaths(int nodes, int[] from, int[] to, long[] cap, long[] cost, long[] supply)
+    {
+        // residual graph with a super source s and sink t
+        int s = nodes, t = nodes + 1, n = nodes + 2, m = 2 * (from.length + nodes);
+        int[] head = new int[m], tail = new int[m];
+        long[] rcap = new long[m], rcost = new long[m];
+        int k = 0;
+        long need = 0;
+        for(int e = 0; e < from.length; e++)
+        {
+            tail[k] = from[e]; head[k] = to[e]; rcap[k] = cap[e]; rcost[k++] = cost[e];
+            tail[k] = to[e]; head[k] = from[e]; rcost[k++] = -cost[e];
+        }
+        for(int u = 0; u < nodes; u++)
+        {
+            int a = supply[u] > 0 ? s : u, b = supply[u] > 0 ? u : t;
+            tail[k] = a; head[k] = b; rcap[k++] = Math.abs(supply[u]);
+            tail[k] = b; head[k++] = a;
+            if(supply[u] > 0) need += supply[u];
+        }
+
+        long total = 0;
+        while(need > 0)
+        {
+            long[] dist = new long[n];
+            int[] via = new int[n];
+            Arrays.fill(dist, Long.MAX_VALUE);
+            Arrays.fill(via, -1);
+            dist[s] = 0;
+            for(int round = 0; round < n; round++)
+                for(int e = 0; e < m; e++)
+                    if(rcap[e] > 0 && dist[tail[e]] != Long.MAX_VALUE && dist[tail[e]] + rcost[e] < dist[head[e]])
+                    {
+                        dist[head[e]] = dist[tail[e]] + rcost[e];
+                        via[head[e]] = e;
+                    }
+            if(dist[t] == Long.MAX_VALUE) return -1;
+            long push = need;
+            for(int v = t; v != s; v = tail[via[v]]) push = Math.min(push, rcap[via[v]]);
+            for(int v = t; v != s; v = tail[via[v]])
+            {
+                rcap[via[v]] -= push;
+                rcap[via[v] ^ 1] += push;
+            }
+            total += push * dist[t];
+            need -= push;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,95 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that Monte-Carlo runs are reproducible and agree with the deterministic runs when every suggestion is accepted.
+ */
+public class MonteCarloTest {
+
+    private File vms, moer;
+    private AlgRunner runner;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        vms = TestData.traceCsv(10000, 51);
+        moer = TestData.moerCsv(52);
+        runner = new AlgRunner(vms.getPath(), moer.getPath(), 10000, true);
+    }
+
+    @After
+    public void tearDown()
+    {
+        vms.delete();
+        moer.delete();
+    }
+
+    @Test
+    public void testReproducible()
+    {
+        double[] acceptance = {0.5, 0.5, 0.7, 0.3};
+        MonteCarlo.Summary a = MonteCarlo.run(runner, "RT+CR+SD", null, acceptance, 6, 99);
+        MonteCarlo.Summary b = MonteCarlo.run(runner, "RT+CR+SD", null, acceptance, 6, 99);
+        MonteCarlo.Summary c = MonteCarlo.run(runner, "RT+CR+SD", null, acceptance, 6, 100);
+        for(int m = 0; m < 4; m++)
+        {
+            assertEquals(a.getMean(m), b.getMean(m), 0);
+            assertEquals(a.getHalfWidth(m), b.getHalfWidth(m), 0);
+        }
+        assertTrue(a.getMean(0) != c.getMean(0));
+        assertTrue(a.getHalfWidth(0) > 0);
+    }
+
+    @Test
+    public void testFullAcceptance()
+    {
+        MonteCarlo.Summary s = MonteCarlo.run(runner, "RT+CR", null, new double[]{1, 1, 1, 1}, 3, 1);
+        Algorithms algos = new Algorithms();
+        double[] expected = runner.runCycles(Collections.singletonList(
+                new AlgRunner.Cycle("RT and CR", algos::runRT, algos::runCR, null, null)), false).get(0);
+        for(int m = 0; m < 4; m++)
+        {
+            assertEquals(expected[m], s.getMean(m), 1e-12 * Math.abs(expected[m]));
+            assertEquals(0, s.getHalfWidth(m), 1e-9 * Math.abs(expected[m]));
+        }
+    }
+
+    @Test
+    public void testSummary()
+    {
+        Random r = new Random(6);
+        List<double[]> results = new ArrayList<>();
+        for(int i = 0; i < 50; i++) results.add(new double[]{1e6 + r.nextGaussian(), r.nextDouble(), 3, r.nextInt(10)});
+        MonteCarlo.Summary s = new MonteCarlo.Summary("x", results);
+
+        // two-pass mean and standard deviation
+        double[] mean = new double[4], half = new double[4];
+        for(int m = 0; m < 4; m++)
+        {
+            for(double[] x : results) mean[m] += x[m] / results.size();
+            double ss = 0;
+            for(double[] x : results) ss += (x[m] - mean[m]) * (x[m] - mean[m]);
+            half[m] = 1.96 * Math.sqrt(ss / (results.size() - 1) / results.size());
+        }
+        assertArrayEquals(mean, new double[]{s.getMean(0), s.getMean(1), s.getMean(2), s.getMean(3)}, 1e-9);
+        assertArrayEquals(half, new double[]{s.getHalfWidth(0), s.getHalfWidth(1), s.getHalfWidth(2), s.getHalfWidth(3)}, 1e-9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAcceptanceOutOfRange()
+    {
+        MonteCarlo.run(runner, "CR", null, new double[]{1, 1, 1.5, 1}, 2, 1);
+    }
+}
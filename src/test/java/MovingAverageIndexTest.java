@@ -0,0 +1,52 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.cloudbus.cloudsim.MoerSeries;
+import org.junit.Test;
+
+/**
+ * Checks the index against the scan over all start slots that RA used before.
+ */
+public class MovingAverageIndexTest {
+
+    private static final int DAY = 288;
+
+    @Test
+    public void testNewStart()
+    {
+        MoerSeries pmoer = TestData.moer(8);
+        Random r = new Random(13);
+        int moved = 0;
+        for(int runlength : new int[]{1, 2, 7, 12, 50, 140, 285, 286, 287, 300})
+        {
+            MovingAverageIndex index = MovingAverageIndex.of(pmoer, runlength, DAY);
+            for(int q = 0; q < 3000; q++)
+            {
+                int vstart = q < 10 ? pmoer.size() - 1 - q - runlength : r.nextInt(pmoer.size() - runlength);
+                double maxAvg = 500 + 600 * r.nextDouble();
+                int expected = scan(pmoer, vstart, runlength, maxAvg);
+                assertEquals("runlength " + runlength + ", start " + vstart, expected, index.newStart(vstart, maxAvg));
+                if(expected >= 0) moved++;
+            }
+        }
+        assertTrue(moved > 5000);
+    }
+
+    // the search loop of RA before the index: the new start, -1 if the vm stays where it is
+    private static int scan(MoerSeries PMOER, int vstart, int runlength, double maxAvg)
+    {
+        for(int i = vstart + 1; i + runlength < Math.min(vstart + DAY, PMOER.size()) - 1; i++)
+        {
+            int j = i + runlength;
+            double
+                    wavg = (double) PMOER.sum(i + 1, j + 1) / runlength, // (i, j]
+                    pwavg = (double) PMOER.sum(i, j) / runlength,
+                    navg = (double) PMOER.sum(i + 2, j + 2) / runlength;
+
+            if(wavg <= pwavg && wavg <= navg && maxAvg > wavg) return i;
+        }
+        return -1;
+    }
+}
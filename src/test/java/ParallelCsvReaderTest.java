@@ -0,0 +1,122 @@
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the parallel reader against reading the file line by line with String#split and Double#parseDouble.
+ */
+public class ParallelCsvReaderTest {
+
+    @Test
+    public void testParseDouble()
+    {
+        Random r = new Random(3);
+        List<String> numbers = new ArrayList<>();
+        for(String s : new String[]{"0", "-0", "0.0", "-0.0", "+1", ".5", "5.", "007.250", "1e5", "1E-5", "-2.5e+3", "123456789012345",
+                "1234567890123456789", "0.1234567890123456789", "1e22", "1e23", "1e-22", "1e-400", "NaN", "-Infinity"}) numbers.add(s);
+        for(int i = 0; i < 10000; i++)
+        {
+            double d = r.nextDouble() * Math.pow(10, r.nextInt(12) - 4);
+            numbers.add(Double.toString(d));
+            numbers.add(String.format("%." + r.nextInt(8) + "f", -d));
+            numbers.add(Integer.toString(r.nextInt()));
+        }
+        for(String s : numbers)
+        {
+            ByteBuffer buf = ByteBuffer.wrap((" " + s + " ").getBytes(StandardCharsets.ISO_8859_1));
+            double expected = Double.parseDouble(s), actual = ParallelCsvReader.parseDouble(buf, 1, buf.limit() - 1);
+            assertEquals(s, Double.doubleToLongBits(expected), Double.doubleToLongBits(actual));
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void testParseNotANumber()
+    {
+        ParallelCsvReader.parseDouble(ByteBuffer.wrap("12x".getBytes(StandardCharsets.ISO_8859_1)), 0, 3);
+    }
+
+    @Test
+    public void testRead() throws IOException
+    {
+        // large enough for several ranges, so rows are split up at range boundaries
+        File csv = File.createTempFile("parallelcsv", ".csv");
+        try
+        {
+            Random r = new Random(5);
+            try(Writer out = new BufferedWriter(new FileWriter(csv)))
+            {
+                out.write("a,b,c\n");
+                for(int i = 0; i < 400_000; i++)
+                {
+                    if(i % 50_000 == 7) out.write("\n");
+                    out.write(i + "," + r.nextDouble() * 1000 + "," + (i % 13 == 0 ? "" : Integer.toString(r.nextInt(100))));
+                    out.write(i % 3 == 0 ? "\r\n" : "\n");
+                }
+            }
+            List<double[]> expected = new ArrayList<>();
+            try(BufferedReader br = new BufferedReader(new FileReader(csv)))
+            {
+                br.readLine();
+                String line;
+                while((line = br.readLine()) != null)
+                {
+                    if(line.isEmpty()) continue;
+                    String[] values = line.split(",", -1);
+                    double[] row = new double[values.length];
+                    for(int i = 0; i < values.length; i++) row[i] = values[i].isEmpty() ? Double.NaN : Double.parseDouble(values[i]);
+                    expected.add(row);
+                }
+            }
+
+            List<Rows> chunks = ParallelCsvReader.read(csv.getPath(), true, Rows::new, Integer.MAX_VALUE);
+            List<double[]> actual = new ArrayList<>();
+            for(Rows chunk : chunks) actual.addAll(chunk.rows);
+            assertEquals(true, chunks.size() > 1);
+            assertEquals(expected.size(), actual.size());
+            for(int i = 0; i < expected.size(); i++)
+            {
+                double[] e = expected.get(i), a = actual.get(i);
+                assertEquals(e.length, a.length);
+                for(int f = 0; f < e.length; f++) assertEquals(e[f], a[f], 0);
+            }
+
+            // a limit stops reading after the range that reaches it
+            List<Rows> first = ParallelCsvReader.read(csv.getPath(), true, Rows::new, 10);
+            assertEquals(1, first.size());
+            assertEquals(chunks.get(0).rows.size(), first.get(0).rows.size());
+        }
+        finally
+        {
+            csv.delete();
+        }
+    }
+
+    // keeps all rows (of 3 fields, only the last one may be empty), an empty field as NaN
+    private static final class Rows extends ParallelCsvReader.ChunkParser
+    {
+        final List<double[]> rows = new ArrayList<>();
+
+        @Override
+        void row(ParallelCsvReader.Row row)
+        {
+            assertEquals(3, row.numFields());
+            rows.add(new double[]{row.getDouble(0), row.getDouble(1), row.isMissingValue(3) ? Double.NaN : row.getDouble(2)});
+        }
+
+        @Override
+        int size() {return rows.size();}
+    }
+}
@@ -0,0 +1,58 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the points of a sweep against running one cycle per combination of parameters, like the adjustment mode did.
+ */
+public class ParamSweepTest {
+
+    private File vms, moer;
+    private AlgRunner runner;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        vms = TestData.traceCsv(10000, 41);
+        moer = TestData.moerCsv(42);
+        runner = new AlgRunner(vms.getPath(), moer.getPath(), 10000, true);
+    }
+
+    @After
+    public void tearDown()
+    {
+        vms.delete();
+        moer.delete();
+    }
+
+    @Test
+    public void testPoints()
+    {
+        List<ParamSweep.Point> points = new ParamSweep().moerThresh(700, 810, 900).uIdle(0.01, 0.05).p95Thresh(0.5, 0.8)
+                .run(runner, "RT+SD");
+        // p95Thresh isn't used by RT or SD
+        assertEquals(6, points.size());
+        for(ParamSweep.Point p : points)
+        {
+            assertEquals(0.5, p.p95Thresh, 0);
+            Algorithms algos = new Algorithms(p.moer_thresh, p.confidence_thresh, p.p95Thresh, p.wasteThresh, p.u_idle);
+            double[] expected = runner.runCycles(Collections.singletonList(
+                    new AlgRunner.Cycle("RT and SD", algos::runRT, algos::runSD, null, null)), false).get(0);
+            assertArrayEquals(p.toString(), expected, new double[]{p.getCarbon(), p.getWaste(), p.getDelay(), p.getPostponedDelay()}, 0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSdAfterIs()
+    {
+        new ParamSweep().run(runner, "IS>SD");
+    }
+}
@@ -0,0 +1,87 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the front (with pruned cells) against the front of all points of the sweeps.
+ */
+public class ParetoExplorerTest {
+
+    private File vms, moer;
+    private AlgRunner runner;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        vms = TestData.traceCsv(10000, 91);
+        moer = TestData.moerCsv(92);
+        runner = new AlgRunner(vms.getPath(), moer.getPath(), 10000, true);
+    }
+
+    @After
+    public void tearDown()
+    {
+        vms.delete();
+        moer.delete();
+    }
+
+    @Test
+    public void testFront()
+    {
+        List<String> algorithms = Arrays.asList("CR", "SD", "RT+CR", "RA+SD", "CA+CR+SD", "SD>CR");
+        ParamSweep grids = new ParamSweep().moerThresh(700, 810, 900).confidenceThresh(20, 50).p95Thresh(0.5, 0.8)
+                .wasteThresh(0, 5).uIdle(0.01, 0.1);
+        ParetoExplorer explorer = new ParetoExplorer(grids);
+        List<ParamSweep.Point> front = explorer.explore(runner, algorithms);
+        assertTrue(explorer.summary(), !explorer.summary().startsWith("0 of")); // the bounds are tested, too
+
+        List<ParamSweep.Point> all = new ArrayList<>();
+        for(String a : algorithms) all.addAll(grids.run(runner, a));
+        List<ParamSweep.Point> expected = new ArrayList<>();
+        for(ParamSweep.Point p : all)
+        {
+            boolean dominated = false;
+            for(ParamSweep.Point q : all) dominated |= q != p && atLeastAsGood(q, p) && !atLeastAsGood(p, q);
+            if(!dominated && expected.stream().noneMatch(q -> atLeastAsGood(q, p))) expected.add(p);
+        }
+        expected.sort((p, q) -> Double.compare(p.getCarbon(), q.getCarbon()));
+
+        assertEquals(expected.size(), front.size());
+        assertTrue(front.size() > 2);
+        for(int i = 0; i < front.size(); i++)
+        {
+            ParamSweep.Point e = expected.get(i), p = front.get(i);
+            assertEquals(e.getCarbon(), p.getCarbon(), 1e-9 * e.getCarbon());
+            assertEquals(e.getWaste(), p.getWaste(), 1e-9 * e.getWaste());
+            assertEquals(e.getDelay(), p.getDelay(), 1e-12);
+        }
+    }
+
+    @Test
+    public void testPick()
+    {
+        List<ParamSweep.Point> front = new ParetoExplorer(new ParamSweep().moerThresh(700, 900)).explore(runner, Arrays.asList("CR", "RT"));
+        ParamSweep.Point best = null;
+        for(ParamSweep.Point p : front) if(best == null || p.getCarbon() < best.getCarbon()) best = p;
+        assertSame(best, ParetoExplorer.pick(front, Double.POSITIVE_INFINITY));
+        assertEquals(0, ParetoExplorer.pick(front, 0).getDelay(), 0);
+        assertNull(ParetoExplorer.pick(front, -1));
+    }
+
+    // up to rounding, the sweeps may differ from the cycles in the last digits
+    private static boolean atLeastAsGood(ParamSweep.Point p, ParamSweep.Point q)
+    {
+        return p.getCarbon() <= q.getCarbon() * (1 + 1e-12) && p.getWaste() <= q.getWaste() * (1 + 1e-12) && p.getDelay() <= q.getDelay();
+    }
+}
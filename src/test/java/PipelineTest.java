@@ -0,0 +1,94 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+import org.cloudbus.cloudsim.MoerSeries;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the fused passes of a pipeline against applying its stages one after another to the whole table, and the parallel
+ * passes against the ordered ones.
+ */
+public class PipelineTest {
+
+    private VmTrace trace;
+    private MoerSeries moer, pmoer;
+    private Algorithms algos;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        // more vms than one block of VmTable#applyAndSum
+        trace = TestData.trace(40000, 71);
+        moer = TestData.moer(72);
+        pmoer = TestData.moer(73);
+        algos = new Algorithms();
+    }
+
+    @Test
+    public void testFusedAgainstStaged()
+    {
+        VmTable fused = new VmTable(trace, moer, pmoer), staged = new VmTable(trace, moer, pmoer);
+        double[] out = new Pipeline().each(algos::runSD).each(algos::runCR).reschedule(algos::rescheduleRA).applyAndSum(fused);
+
+        for(int vm = 0; vm < staged.size(); vm++) algos.runSD(staged, vm);
+        for(int vm = 0; vm < staged.size(); vm++) algos.runCR(staged, vm);
+        double[] delays = algos.runRA(staged);
+        double[] sums = staged.sumCarbonAndWaste();
+
+        assertSameTable(staged, fused);
+        assertArrayEquals(new double[]{sums[0], sums[1], delays[0], delays[1], delays[2]}, out, 0);
+    }
+
+    @Test
+    public void testTableStageInBetween()
+    {
+        VmTable fused = new VmTable(trace, moer, pmoer), staged = new VmTable(trace, moer, pmoer);
+        double[] out = new Pipeline().each(algos::runSD).table(algos::runCA).each(algos::runCR).applyAndSum(fused);
+
+        for(int vm = 0; vm < staged.size(); vm++) algos.runSD(staged, vm);
+        double[] delays = algos.runCA(staged);
+        for(int vm = 0; vm < staged.size(); vm++) algos.runCR(staged, vm);
+        double[] sums = staged.sumCarbonAndWaste();
+
+        assertSameTable(staged, fused);
+        assertArrayEquals(new double[]{sums[0], sums[1], delays[0], delays[1], delays[2]}, out, 0);
+    }
+
+    @Test
+    public void testParallelAgainstInOrder()
+    {
+        VmTable parallel = new VmTable(trace, moer, pmoer), ordered = new VmTable(trace, moer, pmoer);
+        double[] a = new Pipeline().each(algos::runSD).each(algos::runCR).applyAndSum(parallel);
+        double[] b = new Pipeline().each(algos::runSD).each(algos::runCR).inOrder().applyAndSum(ordered);
+        assertSameTable(ordered, parallel);
+        assertArrayEquals(b, a, 0);
+        assertArrayEquals(new double[]{0, 0}, new Pipeline().each(algos::runCR).apply(new VmTable(trace, moer, pmoer)), 0);
+    }
+
+    @Test
+    public void testApplyAndSum()
+    {
+        VmTable parallel = new VmTable(trace, moer, pmoer), ordered = new VmTable(trace, moer, pmoer);
+        double[] a = parallel.applyAndSum(algos::runCR, true), b = ordered.applyAndSum(algos::runCR, false);
+        assertSameTable(ordered, parallel);
+        assertArrayEquals(b, a, 0);
+        assertArrayEquals(ordered.sumCarbonAndWaste(), b, 0);
+    }
+
+    private static void assertSameTable(VmTable expected, VmTable actual)
+    {
+        assertEquals(expected.size(), actual.size());
+        for(int vm = 0; vm < expected.size(); vm++)
+        {
+            assertEquals(expected.getStart(vm), actual.getStart(vm));
+            assertEquals(expected.getEnd(vm), actual.getEnd(vm));
+            assertArrayEquals(expected.getSegments(vm), actual.getSegments(vm));
+            assertEquals(expected.getCores(vm), actual.getCores(vm));
+            assertEquals(expected.getPower(vm), actual.getPower(vm), 0);
+            assertEquals(expected.getAvgUtil(vm), actual.getAvgUtil(vm), 0);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Random;
+
+import org.cloudbus.cloudsim.MoerSeries;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the blocked SKU search against scanning the catalog for every vm, and RS against CR with the default catalog.
+ */
+public class RightSizerTest {
+
+    private VmTrace trace;
+    private MoerSeries moer;
+    private VmTable table;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        trace = TestData.trace(20000, 82);
+        moer = TestData.moer(81);
+        table = new VmTable(trace, moer, moer);
+    }
+
+    @Test
+    public void testDefaults()
+    {
+        assertChosen(SkuCatalog.defaults(), 0.8, 5);
+        assertChosen(SkuCatalog.defaults(), 0.5, 0);
+    }
+
+    @Test
+    public void testLoaded() throws IOException
+    {
+        // random sizes and prices, some of them cheaper than the trace's own sizes
+        Random r = new Random(83);
+        File csv = File.createTempFile("skus", ".csv");
+        try
+        {
+            try(PrintWriter out = new PrintWriter(csv))
+            {
+                out.println("cores,ram,price");
+                for(int i = 0; i < 60; i++)
+                {
+                    int cores = 1 + r.nextInt(32), ram = 1000 * (1 + r.nextInt(64));
+                    out.println(cores + "," + ram + "," + (0.01 * cores + 0.002 * ram / 1000) * (0.5 + r.nextDouble()));
+                }
+            }
+            SkuCatalog skus = SkuCatalog.load(csv.getPath());
+            assertEquals(60, skus.size());
+            assertChosen(skus, 0.8, 5);
+            assertChosen(skus, 0.95, 1);
+        }
+        finally
+        {
+            csv.delete();
+        }
+    }
+
+    @Test
+    public void testSameAsCR()
+    {
+        VmTable rs = table, cr = new VmTable(trace, moer, moer);
+        Algorithms algos = new Algorithms();
+        algos.runRS(rs);
+        int reduced = 0;
+        for(int vm = 0; vm < cr.size(); vm++)
+        {
+            int cores = cr.getCores(vm);
+            algos.runCR(cr, vm);
+            if(cr.getRam(vm) > 56000) continue; // more RAM than any SKU of the catalog (the trace's vms have at most 56 GB)
+            assertEquals("vm " + vm, cr.getCores(vm), rs.getCores(vm));
+            assertEquals("vm " + vm, cr.getAvgUtil(vm), rs.getAvgUtil(vm), 0);
+            if(cr.getCores(vm) != cores) reduced++;
+        }
+        assertTrue(reduced > 100);
+    }
+
+    private void assertChosen(SkuCatalog skus, double p95Thresh, double wasteThresh)
+    {
+        int[] expected = new int[table.size()];
+        int moved = 0;
+        for(int vm = 0; vm < table.size(); vm++)
+        {
+            expected[vm] = scan(skus, vm, p95Thresh, wasteThresh);
+            if(expected[vm] >= 0) moved++;
+        }
+        assertTrue(moved > 100);
+        assertArrayEquals(expected, RightSizer.choose(table, skus, p95Thresh, wasteThresh));
+    }
+
+    // the first (cheapest) SKU the vm fits on that is cheaper than its own size, -1 if there is none
+    private int scan(SkuCatalog skus, int vm, double p95Thresh, double wasteThresh)
+    {
+        if(table.getP95(vm) >= p95Thresh || table.getWaste(vm) <= wasteThresh) return -1;
+        int cores = table.getCores(vm);
+        double price = skus.priceOf(cores, table.getRam(vm));
+        for(int s = 0; s < skus.size() && skus.getPrice(s) < price; s++)
+        {
+            int c = skus.getCores(s);
+            if(table.getP95(vm) * cores / c < p95Thresh && table.getMaxUtil(vm) * cores / c <= 1 && table.getRam(vm) <= skus.getRam(s))
+                return s;
+        }
+        return -1;
+    }
+}
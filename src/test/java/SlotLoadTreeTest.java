@@ -0,0 +1,40 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the tree against adding to and scanning a plain array.
+ */
+public class SlotLoadTreeTest {
+
+    @Test
+    public void testAgainstArray()
+    {
+        Random r = new Random(26);
+        for(int n : new int[]{1, 2, 7, 64, 1000})
+        {
+            long[] load = new long[n];
+            for(int i = 0; i < n; i++) load[i] = r.nextInt(100) - 50;
+            SlotLoadTree tree = new SlotLoadTree(load.clone());
+            for(int q = 0; q < 20000; q++)
+            {
+                int from = r.nextInt(n + 1), to = from + r.nextInt(n + 1 - from);
+                if(r.nextBoolean())
+                {
+                    long cores = r.nextInt(21) - 10;
+                    tree.add(from, to, cores);
+                    for(int i = from; i < to; i++) load[i] += cores;
+                }
+                else
+                {
+                    long max = Long.MIN_VALUE, min = Long.MAX_VALUE;
+                    for(int i = from; i < to; i++) {max = Math.max(max, load[i]); min = Math.min(min, load[i]);}
+                    assertEquals(max, tree.max(from, to));
+                    assertEquals(min, tree.min(from, to));
+                }
+            }
+        }
+    }
+}
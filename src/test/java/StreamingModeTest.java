@@ -0,0 +1,160 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that the streaming mode (batch by batch) gives the same results as evaluating the loaded trace.
+ */
+public class StreamingModeTest {
+
+    // enough vms for several batches (see ParallelCsvReader)
+    private static final int VMS = 120000;
+
+    private File vms, moer;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        vms = TestData.traceCsv(VMS, 31);
+        moer = TestData.moerCsv(32);
+    }
+
+    @After
+    public void tearDown()
+    {
+        vms.delete();
+        moer.delete();
+    }
+
+    @Test
+    public void testSameResults() throws IOException
+    {
+        Algorithms algos = new Algorithms();
+        List<AlgRunner.Cycle> cycles = new ArrayList<>();
+        for(String chain : chains()) cycles.add(new AlgRunner.Cycle(chain, pipeline(chain, algos), null, null));
+        assertSameResults(cycles, cycles);
+    }
+
+    @Test
+    public void testSameResultsSeeded() throws IOException
+    {
+        // the acceptance decisions are drawn in the order of the vms, batch after batch in streaming mode
+        List<AlgRunner.Cycle> loaded = new ArrayList<>(), streamed = new ArrayList<>();
+        long seed = 33;
+        for(String chain : chains())
+        {
+            loaded.add(new AlgRunner.Cycle(chain, pipeline(chain, seeded(seed)).inOrder(), null, null));
+            streamed.add(new AlgRunner.Cycle(chain, pipeline(chain, seeded(seed)).inOrder(), null, null));
+            seed++;
+        }
+        assertSameResults(loaded, streamed);
+    }
+
+    @Test
+    public void testWholeTableStagesAreRefused() throws IOException
+    {
+        Algorithms algos = new Algorithms();
+        AlgRunner runner = new AlgRunner(vms.getPath(), moer.getPath(), VMS, true, true);
+        List<Pipeline> refused = Arrays.asList(
+                new Pipeline().table(algos::runCA),
+                new Pipeline().table(algos::runIS),
+                new Pipeline().batch(algos::runRS),
+                new Pipeline().each(algos::runCR).table(algos::runCA),
+                new Pipeline().reschedule(algos::rescheduleRT).batch(algos::runRS));
+        for(Pipeline p : refused)
+        {
+            try
+            {
+                runner.runCycle("refused", p, null, null);
+                fail("whole-table stage ran in streaming mode");
+            }
+            catch(IllegalArgumentException expected)
+            {
+            }
+        }
+        // the whole-table form of RT (see Algorithms#rescheduleRT for the per-vm one)
+        try
+        {
+            runner.runCycle("RT", algos::runRT, (t, vm) -> {}, null, null);
+            fail("whole-table stage ran in streaming mode");
+        }
+        catch(IllegalArgumentException expected)
+        {
+        }
+    }
+
+    // every chain of per-vm stages: none/RT/RA first or last, with none, one or both of CR and SD
+    private static List<String> chains()
+    {
+        List<String> chains = new ArrayList<>();
+        for(String adjusters : new String[]{"", "CR", "SD", "CR>SD", "SD>CR"})
+        {
+            if(!adjusters.isEmpty()) chains.add(adjusters);
+            for(String mover : new String[]{"RT", "RA"})
+            {
+                if(adjusters.isEmpty())
+                {
+                    chains.add(mover);
+                    continue;
+                }
+                chains.add(mover + ">" + adjusters);
+                chains.add(adjusters + ">" + mover);
+            }
+        }
+        chains.add("");
+        return chains;
+    }
+
+    private static Pipeline pipeline(String chain, Algorithms algos)
+    {
+        Pipeline p = new Pipeline();
+        if(chain.isEmpty()) return p;
+        for(String stage : chain.split(">"))
+        {
+            switch(stage)
+            {
+                case "RT": p.reschedule(algos::rescheduleRT); break;
+                case "RA": p.reschedule(algos::rescheduleRA); break;
+                case "CR": p.each(algos::runCR); break;
+                case "SD": p.each(algos::runSD); break;
+                default: throw new IllegalArgumentException(stage);
+            }
+        }
+        assertTrue(chain, p.isPerVm());
+        return p;
+    }
+
+    // accepts 70% of the suggestions, drawn from a generator with the given seed
+    private static Algorithms seeded(long seed)
+    {
+        return new Algorithms(null, null, null, null, null, new double[]{0.7, 0.7, 0.7, 0.7}, new SplittableRandom(seed));
+    }
+
+    private void assertSameResults(List<AlgRunner.Cycle> loadedCycles, List<AlgRunner.Cycle> streamedCycles) throws IOException
+    {
+        List<double[]> loaded = new AlgRunner(vms.getPath(), moer.getPath(), VMS, true).runCycles(loadedCycles, false);
+        List<double[]> streamed = new AlgRunner(vms.getPath(), moer.getPath(), VMS, true, true).runCycles(streamedCycles, false);
+        for(int i = 0; i < loadedCycles.size(); i++)
+        {
+            double[] l = loaded.get(i), s = streamed.get(i);
+            for(int j = 0; j < 4; j++) assertEquals("'" + loadedCycles.get(i).name + "' [" + j + "]", l[j], s[j], 1e-9 * Math.abs(l[j]));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOnlyInFastMode() throws IOException
+    {
+        new AlgRunner(vms.getPath(), moer.getPath(), VMS, false, true);
+    }
+}
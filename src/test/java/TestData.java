@@ -0,0 +1,89 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Random;
+
+import org.cloudbus.cloudsim.MoerSeries;
+
+/**
+ * Random VM traces and MOER series for the tests (a month of 5 min. intervals, like the real data).
+ */
+final class TestData {
+
+    // number of 5 min. intervals of the MOER series, the vms end well before
+    static final int SLOTS = 9000;
+
+    private TestData() {}
+
+    /**
+     * Creates a trace with the same kind of values as the Azure trace (a mix of short, flexible and long vms).
+     *
+     * @param n number of vms
+     * @param seed seed of the values
+     * @return the trace
+     * @throws IOException b/c the trace is written to a temporary csv file and read back...
+     */
+    static VmTrace trace(int n, long seed) throws IOException
+    {
+        File csv = traceCsv(n, seed);
+        try
+        {
+            return VmTrace.readCsv(csv.getPath(), n);
+        }
+        finally
+        {
+            csv.delete();
+        }
+    }
+
+    /**
+     * Writes the vms of #trace to a temporary csv file (the caller deletes it).
+     */
+    static File traceCsv(int n, long seed) throws IOException
+    {
+        Random r = new Random(seed);
+        File csv = File.createTempFile("trace", ".csv");
+        try(PrintWriter out = new PrintWriter(csv))
+        {
+            out.println("vmcreated,vmdeleted,maxcpu,avgcpu,p95maxcpu,vmcorecount,vmmemory,lifetime,power");
+            for(int i = 0; i < n; i++)
+            {
+                int start = r.nextInt(2_400_000);
+                int runtime = r.nextInt(3) == 0 ? 300 * (1 + r.nextInt(6)) : r.nextInt(4) == 0 ? 300 * (300 + r.nextInt(100)) : 2100 + r.nextInt(84000);
+                double avg = 0.5 + 40 * r.nextDouble() * r.nextDouble(), max = Math.min(100, avg * (1 + 15 * r.nextDouble()));
+                double p95 = avg + (max - avg) * r.nextDouble();
+                int cores = new int[]{2, 4, 8, 16, 24, 32}[r.nextInt(6)];
+                out.println(start + "," + (start + runtime) + "," + max + "," + avg + "," + p95 + "," + cores + ","
+                        + cores * (2 + r.nextInt(3)) + "," + runtime / 3600.0 + "," + (20 + 300 * r.nextDouble()));
+            }
+        }
+        return csv;
+    }
+
+    /**
+     * @return a MOER series of SLOTS intervals with a daily cycle and noise (lbs/MWh)
+     */
+    static MoerSeries moer(long seed)
+    {
+        Random r = new Random(seed);
+        int[] values = new int[SLOTS];
+        for(int i = 0; i < SLOTS; i++) values[i] = Math.max(0, (int) (800 + 300 * Math.sin(i * 2 * Math.PI / 288) + 200 * r.nextGaussian()));
+        return new MoerSeries(values);
+    }
+
+    /**
+     * Writes #moer(seed) (observed) and #moer(seed + 1) (predicted) to a temporary csv file like the MOER files of the
+     * regions (the caller deletes it).
+     */
+    static File moerCsv(long seed) throws IOException
+    {
+        int[] moer = moer(seed).toArray(), pmoer = moer(seed + 1).toArray();
+        File csv = File.createTempFile("moer", ".csv");
+        try(PrintWriter out = new PrintWriter(csv))
+        {
+            out.println("MOER,prediction,timestamp");
+            for(int i = 0; i < SLOTS; i++) out.println(moer[i] + ".0," + pmoer[i] + ".0," + i);
+        }
+        return csv;
+    }
+}
@@ -0,0 +1,79 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.cloudbus.cloudsim.MoerSeries;
+import org.junit.Test;
+
+/**
+ * Checks the index against the linear scan over the windows that RT used before.
+ */
+public class ThresholdWindowIndexTest {
+
+    private static final int DAY = 288;
+
+    @Test
+    public void testWindows()
+    {
+        MoerSeries pmoer = TestData.moer(5);
+        ThresholdWindowIndex index = ThresholdWindowIndex.of(pmoer, 810);
+        assertTrue(index.size() > 10);
+        for(int w = 0; w < index.size(); w++)
+        {
+            int start = index.getStart(w), end = index.getEnd(w);
+            double sum = 0;
+            for(int i = start; i < end; i++)
+            {
+                assertTrue(pmoer.get(i) < 810);
+                sum += pmoer.get(i);
+            }
+            assertTrue(pmoer.get(end) >= 810);
+            assertTrue(start == 0 || pmoer.get(start - 1) >= 810);
+            assertEquals(sum / (end - start), index.getAvgPMOER(w), 1e-9);
+        }
+    }
+
+    @Test
+    public void testFindFirst()
+    {
+        Random r = new Random(12);
+        int hits = 0;
+        for(int thresh : new int[]{500, 810, 1000})
+        {
+            ThresholdWindowIndex index = ThresholdWindowIndex.of(TestData.moer(6), thresh);
+            for(int q = 0; q < 20000; q++)
+            {
+                int vstart = r.nextInt(TestData.SLOTS), runlength = 1 + r.nextInt(r.nextBoolean() ? 20 : 200);
+                double avg = 400 + 800 * r.nextDouble();
+                int found = index.findFirst(index.firstStartingAt(vstart), index.firstEndingAfter(vstart + DAY), runlength, avg);
+                assertEquals(scan(index, vstart, runlength, avg), found);
+                if(found >= 0) hits++;
+            }
+        }
+        assertTrue(hits > 5000);
+    }
+
+    @Test
+    public void testShared()
+    {
+        MoerSeries pmoer = TestData.moer(7);
+        assertSame(ThresholdWindowIndex.of(pmoer, 810), ThresholdWindowIndex.of(pmoer, 810));
+    }
+
+    // the search loop of RT before the index (windows sorted by start)
+    private static int scan(ThresholdWindowIndex windows, int vstart, int runlength, double avgPMOER)
+    {
+        int i = 0;
+        while(i < windows.size() && windows.getStart(i) < vstart) i++;
+        for(; i < windows.size() && windows.getStart(i) < vstart + DAY; i++)
+        {
+            if(windows.getEnd(i) > vstart + DAY) break;
+            if(windows.getEnd(i) - windows.getStart(i) < runlength) continue;
+            if(windows.getAvgPMOER(i) >= avgPMOER) continue;
+            return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,108 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+
+import org.cloudbus.cloudsim.CloudletSchedulerTimeShared;
+import org.cloudbus.cloudsim.MoerSeries;
+import org.cloudbus.cloudsim.Vm;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the table against the Vm objects the algorithms used to work on.
+ */
+public class VmTableTest {
+
+    private VmTrace trace;
+    private MoerSeries moer, pmoer;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        trace = TestData.trace(3000, 11);
+        moer = TestData.moer(1);
+        pmoer = TestData.moer(2);
+    }
+
+    @Test
+    public void testDerivedValues()
+    {
+        VmTable table = new VmTable(trace, moer, pmoer);
+        for(int vm = 0; vm < table.size(); vm++)
+        {
+            Vm v = vm(table, vm);
+            assertEquals(v.getRuntime(), table.getRuntime(vm));
+            assertEquals(v.getEnergy(), table.getEnergy(vm), 0);
+            assertEquals(v.getAverageMOER(), table.getAverageMOER(vm), 0);
+            assertEquals(v.getCarbon(), table.getCarbon(vm), 0);
+            assertEquals(v.getWaste(), table.getWaste(vm), 0);
+        }
+    }
+
+    @Test
+    public void testChangedVms()
+    {
+        VmTable table = new VmTable(trace, moer, pmoer);
+        for(int vm = 0; vm < table.size(); vm += 3)
+        {
+            Vm v = vm(table, vm);
+            v.setNumberOfPes(2);
+            v.setAvg_util(v.getAvg_util() / 2);
+            v.setTime(new int[]{v.getTime()[0] + 600, v.getTime()[1] + 600});
+            v.updateLinRegPower();
+
+            table.setCores(vm, 2);
+            table.setAvgUtil(vm, table.getAvgUtil(vm) / 2);
+            table.setTime(vm, table.getStart(vm) + 600, table.getEnd(vm) + 600);
+            table.updateLinRegPower(vm);
+
+            assertEquals(v.getPower(), table.getPower(vm), 0);
+            assertEquals(v.getCarbon(), table.getCarbon(vm), 0);
+            assertEquals(v.getWaste(), table.getWaste(vm), 0);
+        }
+    }
+
+    @Test
+    public void testCopyOnWrite()
+    {
+        int cores = trace.getCores(5), start = trace.getStart(5);
+        VmTable table = new VmTable(trace, moer, pmoer);
+        table.setCores(5, cores + 1);
+        table.setTime(5, start + 300, start + 600);
+        VmTable snapshot = table.snapshot();
+        table.setCores(5, cores + 2);
+        snapshot.setSegments(5, new int[]{1, 2, 4, 5});
+
+        assertEquals(cores, trace.getCores(5));
+        assertEquals(start, trace.getStart(5));
+        assertEquals(cores + 2, table.getCores(5));
+        assertEquals(cores + 1, snapshot.getCores(5));
+        assertNull(table.getSegments(5));
+        assertEquals(start + 300, table.getStart(5));
+        assertEquals(cores, new VmTable(trace, moer, pmoer).getCores(5));
+    }
+
+    @Test
+    public void testSumCarbonAndWaste()
+    {
+        VmTable table = new VmTable(trace, moer, pmoer);
+        double carbon = 0, waste = 0;
+        for(int vm = 0; vm < table.size(); vm++)
+        {
+            carbon += table.getCarbon(vm);
+            waste += table.getWaste(vm);
+        }
+        double[] sums = table.sumCarbonAndWaste();
+        assertEquals(carbon, sums[0], 1e-9 * carbon);
+        assertEquals(waste, sums[1], 1e-9 * waste);
+    }
+
+    // the vm the way AlgRunner#init_VMs creates it
+    private Vm vm(VmTable table, int vm)
+    {
+        return new Vm(vm, 0, 1000, table.getCores(vm), table.getRam(vm), 1000, 10000, "Windows Hyper-V", table.getAvgUtil(vm),
+                table.getMaxUtil(vm), table.getP95(vm), table.getStart(vm), table.getEnd(vm), table.getPower(vm), moer, pmoer,
+                new CloudletSchedulerTimeShared());
+    }
+}
@@ -0,0 +1,172 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the parsed trace against the line-by-line parsing AlgRunner#init_VMs used to do.
+ */
+public class VmTraceTest {
+
+    private File csv;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        csv = File.createTempFile("vmtrace", ".csv");
+        Random r = new Random(7);
+        try(PrintWriter out = new PrintWriter(csv))
+        {
+            out.println("vmcreated,vmdeleted,maxcpu,avgcpu,p95maxcpu,vmcorecount,vmmemory,lifetime,power");
+            for(int i = 0; i < 5000; i++)
+            {
+                int start = r.nextInt(2_500_000), end = start + 300 * (1 + r.nextInt(400));
+                String ram = i % 97 == 5 ? "" : Double.toString(0.75 * (1 + r.nextInt(64))); // some rows miss a value
+                out.println(start + "," + end + "," + 100 * r.nextDouble() + "," + 30 * r.nextDouble() + "," + 60 * r.nextDouble()
+                        + "," + (1 << r.nextInt(6)) + "," + ram + "," + (end - start) / 3600.0 + "," + 200 * r.nextDouble());
+            }
+        }
+    }
+
+    @After
+    public void tearDown()
+    {
+        csv.delete();
+    }
+
+    @Test
+    public void testReadCsv() throws IOException
+    {
+        List<double[]> rows = reference(Integer.MAX_VALUE);
+        VmTrace trace = VmTrace.readCsv(csv.getPath(), Integer.MAX_VALUE);
+        assertEquals(rows.size(), trace.size());
+        for(int vm = 0; vm < rows.size(); vm++) assertVm(rows.get(vm), trace, vm);
+    }
+
+    @Test
+    public void testLimit() throws IOException
+    {
+        List<double[]> rows = reference(1234);
+        VmTrace trace = VmTrace.readCsv(csv.getPath(), 1234);
+        assertEquals(1234, trace.size());
+        for(int vm = 0; vm < rows.size(); vm++) assertVm(rows.get(vm), trace, vm);
+    }
+
+    @Test
+    public void testFlexible() throws IOException
+    {
+        VmTrace trace = VmTrace.readCsv(csv.getPath(), Integer.MAX_VALUE);
+        List<Integer> flexible = new ArrayList<>();
+        for(int vm = 0; vm < trace.size(); vm++)
+        {
+            int runtime = trace.getEnd(vm) - trace.getStart(vm);
+            if(runtime >= 2100 && runtime <= 86100) flexible.add(vm);
+        }
+        assertArrayEquals(flexible.stream().mapToInt(Integer::intValue).toArray(), trace.getFlexible());
+        assertEquals(flexible.size(), trace.numFlexible());
+    }
+
+    @Test
+    public void testBinary() throws IOException
+    {
+        VmTrace trace = VmTrace.readCsv(csv.getPath(), Integer.MAX_VALUE);
+        File bin = new File(VmTrace.binaryPath(csv.getPath()));
+        try
+        {
+            trace.writeBinary(bin.getPath());
+            assertSameVms(trace, VmTrace.mapBinary(bin.getPath(), Integer.MAX_VALUE), trace.size());
+            assertSameVms(trace, VmTrace.mapBinary(bin.getPath(), 100), 100);
+            // the binary file is newer than the csv
+            assertSameVms(trace, VmTrace.load(csv.getPath(), Integer.MAX_VALUE), trace.size());
+        }
+        finally
+        {
+            bin.delete();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotBinary() throws IOException
+    {
+        VmTrace.mapBinary(csv.getPath(), Integer.MAX_VALUE);
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedBinary() throws IOException
+    {
+        File bin = new File(VmTrace.binaryPath(csv.getPath()));
+        try
+        {
+            VmTrace.readCsv(csv.getPath(), Integer.MAX_VALUE).writeBinary(bin.getPath());
+            try(RandomAccessFile f = new RandomAccessFile(bin, "rw")) {f.setLength(f.length() - 8);}
+            VmTrace.mapBinary(bin.getPath(), Integer.MAX_VALUE);
+        }
+        finally
+        {
+            bin.delete();
+        }
+    }
+
+    // the first n vms of the two traces are the same
+    private static void assertSameVms(VmTrace expected, VmTrace actual, int n)
+    {
+        assertEquals(n, actual.size());
+        for(int vm = 0; vm < n; vm++)
+        {
+            assertEquals(expected.getMaxUtil(vm), actual.getMaxUtil(vm), 0);
+            assertEquals(expected.getAvgUtil(vm), actual.getAvgUtil(vm), 0);
+            assertEquals(expected.getP95(vm), actual.getP95(vm), 0);
+            assertEquals(expected.getRam(vm), actual.getRam(vm));
+            assertEquals(expected.getStart(vm), actual.getStart(vm));
+            assertEquals(expected.getEnd(vm), actual.getEnd(vm));
+            assertEquals(expected.getCores(vm), actual.getCores(vm));
+            assertEquals(expected.getPower(vm), actual.getPower(vm), 0);
+        }
+    }
+
+    private static void assertVm(double[] row, VmTrace trace, int vm)
+    {
+        assertEquals((int) row[0], trace.getStart(vm));
+        assertEquals((int) row[1], trace.getEnd(vm));
+        assertEquals(row[2] / 100, trace.getMaxUtil(vm), 0);
+        assertEquals(row[3] / 100, trace.getAvgUtil(vm), 0);
+        assertEquals(row[4] / 100, trace.getP95(vm), 0);
+        assertEquals((int) row[5], trace.getCores(vm));
+        assertEquals((int) row[6] * 1000, trace.getRam(vm));
+        assertEquals(row[8], trace.getPower(vm), 0);
+    }
+
+    // the rows the way init_VMs read them (split + Double.parseDouble, rows with missing values skipped)
+    private List<double[]> reference(int limit) throws IOException
+    {
+        List<double[]> rows = new ArrayList<>();
+        try(BufferedReader br = new BufferedReader(new FileReader(csv)))
+        {
+            br.readLine();
+            String line;
+            while(rows.size() < limit && (line = br.readLine()) != null)
+            {
+                String[] values = line.split(",");
+                boolean missingValue = false; for(String s : values) if(s.equals("")) {missingValue = true; break;}
+                if(missingValue) continue;
+
+                double[] row = new double[values.length];
+                for(int i = 0; i < values.length; i++) row[i] = Double.parseDouble(values[i]);
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,100 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.cloudbus.cloudsim.MoerSeries;
+import org.junit.Test;
+
+/**
+ * Checks the index against scans over the window sums.
+ */
+public class WindowMinIndexTest {
+
+    @Test
+    public void testArgmin()
+    {
+        MoerSeries pmoer = TestData.moer(21);
+        Random r = new Random(22);
+        for(int runlength : new int[]{1, 3, 12, 100, 288})
+        {
+            WindowMinIndex index = WindowMinIndex.of(pmoer, runlength);
+            assertEquals(pmoer.size() - runlength + 1, index.size());
+            for(int q = 0; q < 5000; q++)
+            {
+                int from = r.nextInt(index.size() + 10) - 5, to = from + r.nextInt(400);
+                assertEquals(scanArgmin(pmoer, runlength, from, to), index.argmin(from, to));
+            }
+        }
+    }
+
+    @Test
+    public void testTies()
+    {
+        // constant series: every window has the same sum, the earliest one wins
+        MoerSeries flat = new MoerSeries(new int[]{5, 5, 5, 5, 5, 5, 5, 5, 5, 5});
+        WindowMinIndex index = WindowMinIndex.of(flat, 3);
+        assertEquals(2, index.argmin(2, 8));
+        assertEquals(-1, index.argmin(4, 4));
+    }
+
+    @Test
+    public void testCheapestFitting()
+    {
+        MoerSeries pmoer = TestData.moer(23);
+        Random r = new Random(24);
+        int found = 0;
+        for(int runlength : new int[]{1, 6, 40, 200})
+        {
+            WindowMinIndex index = WindowMinIndex.of(pmoer, runlength);
+            for(int q = 0; q < 2000; q++)
+            {
+                int from = r.nextInt(index.size()), to = Math.min(index.size(), from + 1 + r.nextInt(288));
+                long maxSum = index.sum(from) + r.nextInt(200) * runlength - 100 * runlength;
+                int maxTries = 1 + r.nextInt(40);
+                BitSet full = new BitSet();
+                for(int k = from; k < to; k++) if(r.nextInt(4) != 0) full.set(k);
+
+                int expected = scanFitting(index, from, to, maxSum, full, maxTries);
+                assertEquals(expected, index.cheapestFitting(from, to, maxSum, k -> !full.get(k), maxTries));
+                if(expected >= 0) found++;
+            }
+        }
+        assertTrue(found > 1000);
+    }
+
+    @Test
+    public void testShared()
+    {
+        MoerSeries pmoer = TestData.moer(25);
+        assertSame(WindowMinIndex.of(pmoer, 12), WindowMinIndex.of(pmoer, 12));
+    }
+
+    private static int scanArgmin(MoerSeries pmoer, int runlength, int from, int to)
+    {
+        int best = -1;
+        for(int k = Math.max(from, 0); k < Math.min(to, pmoer.size() - runlength + 1); k++)
+            if(best < 0 || pmoer.sum(k, k + runlength) < pmoer.sum(best, best + runlength)) best = k;
+        return best;
+    }
+
+    // visits the windows sorted by (sum, start)
+    private static int scanFitting(WindowMinIndex index, int from, int to, long maxSum, BitSet full, int maxTries)
+    {
+        List<Integer> windows = new ArrayList<>();
+        for(int k = from; k < to; k++) windows.add(k);
+        windows.sort(Comparator.comparingLong(index::sum).thenComparingInt(k -> k));
+        for(int t = 0; t < Math.min(maxTries, windows.size()); t++)
+        {
+            int k = windows.get(t);
+            if(index.sum(k) >= maxSum) return -1;
+            if(!full.get(k)) return k;
+        }
+        return -1;
+    }
+}
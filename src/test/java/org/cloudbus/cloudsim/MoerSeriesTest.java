@@ -0,0 +1,103 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link MoerSeries} against averaging the values in a loop, the way Vm#getAverageMOER used
+ * to do it.
+ */
+public class MoerSeriesTest {
+
+	private int[] values;
+
+	private MoerSeries series;
+
+	@Before
+	public void setUp() {
+		Random r = new Random(4);
+		values = new int[8640];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = 200 + r.nextInt(1500);
+		}
+		series = new MoerSeries(values);
+	}
+
+	@Test
+	public void testAverage() {
+		Random r = new Random(5);
+		for (int i = 0; i < 10000; i++) {
+			int start = r.nextInt(values.length * 300), end = start + r.nextInt(values.length * 300 - start);
+			assertEquals(loopAverage(start, end), series.average(start, end), 0);
+		}
+		assertEquals(0, series.average(600, 899), 0);
+	}
+
+	@Test
+	public void testAverageOfSegments() {
+		int[] segments = {3, 10, 20, 21, 100, 150};
+		double sum = 0;
+		for (int i = 0; i < segments.length; i += 2) {
+			for (int slot = segments[i]; slot < segments[i + 1]; slot++) {
+				sum += values[slot];
+			}
+		}
+		assertEquals(sum / 58, series.average(segments), 0);
+		assertEquals(0, series.average(new int[0]), 0);
+	}
+
+	@Test
+	public void testValuesAreCopied() {
+		int first = values[0];
+		values[0]++;
+		assertEquals(first, series.get(0));
+		series.toArray()[0]++;
+		assertEquals(first, series.get(0));
+	}
+
+	@Test
+	public void testDerivedIsComputedOnce() {
+		Object a = series.derived("key", s -> new Object());
+		assertSame(a, series.derived("key", s -> new Object()));
+	}
+
+	@Test
+	public void testDerivedIsBounded() {
+		Object first = series.derived(0, s -> new Object()), recent = series.derived(1, s -> new Object());
+		for (int key = 2; key <= MoerSeries.DERIVED_CAPACITY; key++) {
+			series.derived(key, s -> new Object());
+			assertSame(recent, series.derived(1, s -> new Object())); // keeps the one used last
+		}
+		assertNotSame(first, series.derived(0, s -> new Object()));
+		assertSame(recent, series.derived(1, s -> new Object()));
+	}
+
+	// the average of [start, end) the way Vm#getAverageMOER computed it
+	private double loopAverage(int start, int end) {
+		double avgMOER = 0;
+		int ms = start / 300, me = end / 300;
+		if (me - ms == 0) {
+			return 0;
+		}
+		for (int i = ms; i < me; i++) {
+			avgMOER += values[i];
+		}
+		avgMOER /= me - ms;
+		return avgMOER;
+	}
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import org.cloudbus.cloudsim.core.CloudSim;
+import org.cloudbus.cloudsim.provisioners.BwProvisionerSimple;
+import org.cloudbus.cloudsim.provisioners.PeProvisionerSimple;
+import org.cloudbus.cloudsim.provisioners.RamProvisionerSimple;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests that datacenters running their clock ticks in parallel (each one is a logical process)
+ * give the same cloudlet results and log as the sequential kernel.
+ */
+public class ParallelDatacentersTest {
+
+	@After
+	public void tearDown() {
+		CloudSim.setParallelism(1);
+		CloudSim.setEventPooling(false);
+	}
+
+	@Test
+	public void testSameAsSequential() throws Exception {
+		String sequential = simulate(1, false);
+		assertTrue(sequential.split("\n").length > 300);
+		assertEquals(sequential, simulate(3, false));
+		assertEquals(sequential, simulate(3, true));
+	}
+
+	/**
+	 * Runs a broker with cloudlets of random lengths on the vms of three datacenters.
+	 *
+	 * @return the cloudlets (id, vm, datacenter, start and finish time) and the log
+	 */
+	private static String simulate(int threads, boolean pooling) throws Exception {
+		CloudSim.setParallelism(threads);
+		CloudSim.setEventPooling(pooling);
+		ByteArrayOutputStream log = new ByteArrayOutputStream();
+		Log.setThreadOutput(log);
+		try {
+			CloudSim.init(1, Calendar.getInstance(), false);
+			for (int d = 0; d < 3; d++) {
+				List<Host> hosts = new ArrayList<Host>();
+				for (int h = 0; h < 2; h++) {
+					List<Pe> pes = new ArrayList<Pe>();
+					for (int p = 0; p < 8; p++) {
+						pes.add(new Pe(p, new PeProvisionerSimple(1000)));
+					}
+					hosts.add(new Host(h, new RamProvisionerSimple(65536), new BwProvisionerSimple(100000), 1000000, pes,
+							new VmSchedulerTimeShared(pes)));
+				}
+				DatacenterCharacteristics characteristics = new DatacenterCharacteristics("x86", "Linux", "Xen", hosts, 10, 3,
+						0.05, 0.001, 0);
+				new Datacenter("Datacenter_" + d, characteristics, new VmAllocationPolicySimple(hosts),
+						new LinkedList<Storage>(), 0);
+			}
+
+			DatacenterBroker broker = new DatacenterBroker("Broker");
+			List<Vm> vms = new ArrayList<Vm>();
+			for (int i = 0; i < 30; i++) {
+				vms.add(new Vm(i, broker.getId(), 1000, 1 + i % 2, 512, 1000, 10000, "Xen", new CloudletSchedulerTimeShared()));
+			}
+			List<Cloudlet> cloudlets = new ArrayList<Cloudlet>();
+			Random r = new Random(7);
+			for (int i = 0; i < 300; i++) {
+				Cloudlet c = new Cloudlet(i, 1000 + r.nextInt(100000), 1, 300, 300, new UtilizationModelFull(),
+						new UtilizationModelFull(), new UtilizationModelFull());
+				c.setUserId(broker.getId());
+				cloudlets.add(c);
+			}
+			broker.submitVmList(vms);
+			broker.submitCloudletList(cloudlets);
+			CloudSim.startSimulation();
+			CloudSim.stopSimulation();
+
+			StringBuilder out = new StringBuilder();
+			for (Cloudlet c : broker.getCloudletReceivedList()) {
+				out.append(c.getCloudletId()).append(' ').append(c.getVmId()).append(' ').append(c.getResourceId()).append(' ')
+						.append(c.getExecStartTime()).append(' ').append(c.getFinishTime()).append('\n');
+			}
+			return out.append(log).toString();
+		} finally {
+			Log.setThreadOutput(null);
+		}
+	}
+}
@@ -0,0 +1,161 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.ListIterator;
+import java.util.Random;
+
+import org.cloudbus.cloudsim.core.predicates.Predicate;
+import org.cloudbus.cloudsim.core.predicates.PredicateAny;
+import org.cloudbus.cloudsim.core.predicates.PredicateFrom;
+import org.cloudbus.cloudsim.core.predicates.PredicateNotType;
+import org.cloudbus.cloudsim.core.predicates.PredicateType;
+import org.junit.Test;
+
+/**
+ * Tests that selecting and counting the events of the indexed {@link DeferredQueue} gives the same
+ * results as scanning a time-ordered LinkedList, as the queue did before it was indexed.
+ */
+public class DeferredQueueTest {
+
+	private static final int DESTINATIONS = 5, TAGS = 7, SOURCES = 6;
+
+	@Test
+	public void testAgainstList() {
+		Random r = new Random(3);
+		DeferredQueue queue = new DeferredQueue();
+		LinkedList<SimEvent> list = new LinkedList<SimEvent>();
+		double maxTime = -1;
+		int matched = 0;
+		for (int op = 0; op < 50000; op++) {
+			int kind = r.nextInt(10);
+			if (kind < 4 || list.isEmpty()) {
+				// mostly in order, sometimes earlier than the last event
+				double time = r.nextInt(5) == 0 ? r.nextInt(Math.max(1, (int) maxTime + 1)) : Math.max(maxTime, 0) + r.nextInt(3);
+				SimEvent ev = new SimEvent(SimEvent.SEND, time, r.nextInt(SOURCES), r.nextInt(DESTINATIONS), r.nextInt(TAGS), null);
+				queue.addEvent(ev);
+				maxTime = add(list, ev, maxTime);
+			} else if (kind < 9) {
+				int dest = r.nextInt(DESTINATIONS);
+				Predicate p = predicate(r);
+				SimEvent expected = find(list, dest, p);
+				if (expected != null) {
+					matched++;
+				}
+				assertEquals(count(list, dest, p), queue.count(dest, p));
+				if (kind < 7) {
+					assertSame(expected, queue.first(dest, p));
+				} else {
+					list.remove(expected);
+					assertSame(expected, queue.removeFirst(dest, p));
+				}
+			} else {
+				// remove some events while iterating
+				int k = 2 + r.nextInt(20);
+				Iterator<SimEvent> it = queue.iterator();
+				ListIterator<SimEvent> expected = list.listIterator();
+				while (it.hasNext()) {
+					SimEvent ev = it.next();
+					assertSame(expected.next(), ev);
+					if (ev.getTag() * 31 % k == 0) {
+						it.remove();
+						expected.remove();
+					}
+				}
+				assertEquals(false, expected.hasNext());
+			}
+			assertEquals(list.size(), queue.size());
+			assertSame(list.isEmpty() ? null : list.getLast(), queue.last());
+		}
+		assertEquals(true, matched > 10000);
+
+		queue.clear();
+		assertEquals(0, queue.size());
+		assertSame(null, queue.first(0, new PredicateAny()));
+		assertEquals(0, queue.count(0, new PredicateType(1)));
+	}
+
+	/** The insertion of the LinkedList queue: the last of the events with the same time. */
+	private static double add(LinkedList<SimEvent> list, SimEvent ev, double maxTime) {
+		if (ev.eventTime() >= maxTime) {
+			list.add(ev);
+			return ev.eventTime();
+		}
+		ListIterator<SimEvent> it = list.listIterator();
+		while (it.hasNext()) {
+			if (it.next().eventTime() > ev.eventTime()) {
+				it.previous();
+				it.add(ev);
+				return maxTime;
+			}
+		}
+		list.add(ev);
+		return maxTime;
+	}
+
+	private static SimEvent find(LinkedList<SimEvent> list, int dest, Predicate p) {
+		for (SimEvent ev : list) {
+			if (ev.getDestination() == dest && p.match(ev)) {
+				return ev;
+			}
+		}
+		return null;
+	}
+
+	private static int count(LinkedList<SimEvent> list, int dest, Predicate p) {
+		int count = 0;
+		for (SimEvent ev : list) {
+			if (ev.getDestination() == dest && p.match(ev)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/** The indexed predicates (with repeated tags and sources), subclasses of them and others. */
+	private static Predicate predicate(Random r) {
+		switch (r.nextInt(8)) {
+			case 0:
+				return new PredicateAny();
+			case 1:
+				return new PredicateType(r.nextInt(TAGS));
+			case 2:
+				return new PredicateType(new int[] {r.nextInt(TAGS), r.nextInt(TAGS), r.nextInt(TAGS)});
+			case 3:
+				return new PredicateFrom(r.nextInt(SOURCES));
+			case 4:
+				return new PredicateFrom(new int[] {r.nextInt(SOURCES), r.nextInt(SOURCES), r.nextInt(SOURCES)});
+			case 5:
+				return new PredicateNotType(r.nextInt(TAGS));
+			case 6:
+				// a subclass isn't looked up in the indexes
+				return new PredicateType(r.nextInt(TAGS)) {
+
+					@Override
+					public boolean match(SimEvent ev) {
+						return super.match(ev) && ev.getSource() % 2 == 0;
+					}
+				};
+			default:
+				final int sum = r.nextInt(TAGS + SOURCES);
+				return new Predicate() {
+
+					@Override
+					public boolean match(SimEvent ev) {
+						return ev.getTag() + ev.getSource() >= sum;
+					}
+				};
+		}
+	}
+}
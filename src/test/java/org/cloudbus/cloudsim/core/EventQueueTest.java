@@ -0,0 +1,132 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * Tests that {@link IndexedHeapQueue} and {@link CalendarQueue} return the events in the same order
+ * as the {@link FutureQueue} (a TreeSet), for the same sequence of operations.
+ */
+public class EventQueueTest {
+
+	@Test
+	public void testIndexedHeapQueue() {
+		compare(new IndexedHeapQueue(), 1);
+		compare(new IndexedHeapQueue(), 2);
+	}
+
+	@Test
+	public void testCalendarQueue() {
+		compare(new CalendarQueue(), 1);
+		compare(new CalendarQueue(), 2);
+	}
+
+	@Test
+	public void testEmpty() {
+		EventQueue[] queues = {new FutureQueue(), new IndexedHeapQueue(), new CalendarQueue()};
+		for (EventQueue queue : queues) {
+			assertNull(queue.first());
+			assertNull(queue.pollFirst());
+			assertEquals(0, queue.drain(0, new ArrayList<SimEvent>()));
+			assertEquals(0, queue.size());
+		}
+	}
+
+	/**
+	 * Runs the same random operations on the queue and on a FutureQueue. The events are told apart
+	 * by their tag, the times only move forward (like the clock of a simulation) and repeat often.
+	 */
+	private static void compare(EventQueue queue, long seed) {
+		Random r = new Random(seed);
+		FutureQueue expected = new FutureQueue();
+		List<SimEvent> expectedEvents = new ArrayList<SimEvent>(), events = new ArrayList<SimEvent>();
+		double now = 0;
+		for (int op = 0; op < 100000; op++) {
+			int kind = r.nextInt(20);
+			if (kind < 9 || expected.size() == 0) {
+				// mostly ties and short delays, sometimes far ahead (spreads the calendar)
+				double time = now + (r.nextInt(3) == 0 ? 0 : r.nextInt(10) == 0 ? r.nextDouble() * 10000 : r.nextInt(5) * 0.5);
+				int tag = expectedEvents.size();
+				SimEvent a = new SimEvent(SimEvent.SEND, time, 1, 2, tag, null), b = new SimEvent(SimEvent.SEND, time, 1, 2, tag, null);
+				expectedEvents.add(a);
+				events.add(b);
+				if (r.nextInt(10) == 0) {
+					expected.addEventFirst(a);
+					queue.addEventFirst(b);
+				} else {
+					expected.addEvent(a);
+					queue.addEvent(b);
+				}
+			} else if (kind < 15) {
+				SimEvent a = expected.pollFirst(), b = queue.pollFirst();
+				assertEquals(a.getTag(), b.getTag());
+				now = a.eventTime();
+			} else if (kind < 17) {
+				List<SimEvent> a = new ArrayList<SimEvent>(), b = new ArrayList<SimEvent>();
+				double time = expected.first().eventTime();
+				assertEquals(expected.drain(time, a), queue.drain(time, b));
+				assertEquals(tags(a), tags(b));
+				now = time;
+			} else if (kind < 19) {
+				int tag = r.nextInt(expectedEvents.size());
+				assertEquals(expected.remove(expectedEvents.get(tag)), queue.remove(events.get(tag)));
+			} else {
+				int k = r.nextInt(50);
+				assertEquals(expected.removeIf(e -> e.getTag() % 50 == k), queue.removeIf(e -> e.getTag() % 50 == k));
+			}
+			assertEquals(expected.size(), queue.size());
+			if (expected.size() > 0) {
+				assertEquals(expected.first().getTag(), queue.first().getTag());
+			}
+		}
+		assertEquals(tags(expected.iterator()), tags(queue.iterator()));
+		assertTrue(expected.size() > 0);
+
+		List<Integer> a = new ArrayList<Integer>(), b = new ArrayList<Integer>();
+		for (SimEvent e; (e = expected.pollFirst()) != null;) {
+			a.add(e.getTag());
+		}
+		for (SimEvent e; (e = queue.pollFirst()) != null;) {
+			b.add(e.getTag());
+		}
+		assertEquals(a, b);
+
+		queue.addEvent(new SimEvent(SimEvent.SEND, now, 1, 2, 0, null));
+		queue.clear();
+		assertEquals(0, queue.size());
+	}
+
+	private static List<Integer> tags(List<SimEvent> events) {
+		List<Integer> tags = new ArrayList<Integer>();
+		for (SimEvent e : events) {
+			tags.add(e.getTag());
+		}
+		return tags;
+	}
+
+	// the iterators have no order, so the tags are compared as sets
+	private static TreeSet<Integer> tags(Iterator<SimEvent> it) {
+		TreeSet<Integer> tags = new TreeSet<Integer>();
+		while (it.hasNext()) {
+			tags.add(it.next().getTag());
+		}
+		return tags;
+	}
+}
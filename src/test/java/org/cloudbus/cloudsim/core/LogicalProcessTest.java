@@ -0,0 +1,134 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+
+import org.cloudbus.cloudsim.Log;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests that a simulation whose entities are in several logical processes does the same with
+ * several threads as with one (see {@link CloudSim#setParallelism(int)}), with and without event
+ * pooling.
+ */
+public class LogicalProcessTest {
+
+	private static final int ENTITIES = 8, PROCESSES = 3;
+
+	@After
+	public void tearDown() {
+		CloudSim.setParallelism(1);
+		CloudSim.setEventPooling(false);
+	}
+
+	@Test
+	public void testSameAsSequential() {
+		String sequential = simulate(1, false);
+		assertTrue(sequential.length() > 10000);
+		assertEquals(sequential, simulate(2, false));
+		assertEquals(sequential, simulate(4, false));
+		assertEquals(sequential, simulate(4, true));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoThreads() {
+		CloudSim.setParallelism(0);
+	}
+
+	/**
+	 * Runs entities of several processes that send each other events (many of them at the same
+	 * time), pause and log what they do. Every entity draws from its own seeded generator and keeps
+	 * its own trace.
+	 *
+	 * @return the traces of the entities (in the order of their ids) and the log
+	 */
+	private static String simulate(int threads, boolean pooling) {
+		CloudSim.setParallelism(threads);
+		CloudSim.setEventPooling(pooling);
+		ByteArrayOutputStream log = new ByteArrayOutputStream();
+		Log.setThreadOutput(log);
+		try {
+			CloudSim.init(0, Calendar.getInstance(), false);
+			Node[] nodes = new Node[ENTITIES];
+			for (int i = 0; i < ENTITIES; i++) {
+				nodes[i] = new Node("N" + i, i, nodes);
+			}
+			CloudSim.startSimulation();
+
+			StringBuilder out = new StringBuilder();
+			for (Node n : nodes) {
+				out.append(n.getName()).append(' ').append(n.trace).append('\n');
+			}
+			return out.append(log).toString();
+		} finally {
+			Log.setThreadOutput(null);
+		}
+	}
+
+	/**
+	 * An entity that forwards its events to random entities until its budget is used up.
+	 */
+	private static class Node extends SimEntity {
+
+		final int index;
+
+		final Node[] nodes;
+
+		final Random random;
+
+		final List<String> trace = new ArrayList<String>();
+
+		int budget = 300;
+
+		Node(String name, int index, Node[] nodes) {
+			super(name);
+			this.index = index;
+			this.nodes = nodes;
+			this.random = new Random(index);
+		}
+
+		@Override
+		protected int getLogicalProcess() {
+			return index % PROCESSES;
+		}
+
+		@Override
+		public void startEntity() {
+			schedule(getId(), 0, 0);
+			schedule(getId(), 1, 1);
+		}
+
+		@Override
+		public void processEvent(SimEvent ev) {
+			trace.add(CloudSim.clock() + " " + ev.getTag() + " from " + ev.getSource() + " waiting " + numEventsWaiting());
+			Log.printConcatLine(CloudSim.clock(), ": ", getName(), " got ", ev.getTag());
+			int what = random.nextInt(8);
+			if (what == 0) {
+				pause(random.nextInt(2));
+			}
+			for (int k = 0; k < 2 && what > 1 && budget > 0; k++, budget--) {
+				sendNow(nodes[random.nextInt(ENTITIES)].getId(), ev.getTag() + 1);
+				schedule(nodes[random.nextInt(ENTITIES)].getId(), random.nextInt(3), ev.getTag() + 1);
+			}
+		}
+
+		@Override
+		public void shutdownEntity() {
+		}
+	}
+}
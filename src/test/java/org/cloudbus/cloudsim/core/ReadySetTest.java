@@ -0,0 +1,154 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+
+import org.cloudbus.cloudsim.Log;
+import org.cloudbus.cloudsim.core.predicates.PredicateFrom;
+import org.cloudbus.cloudsim.core.predicates.PredicateType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that running only the ready entities in a clock tick gives the same simulation as running
+ * every entity in every tick. Entities that override {@link SimEntity#run()} stay ready, so
+ * overriding it in all entities runs them like the loop over all entities did.
+ */
+public class ReadySetTest {
+
+	private static final int ENTITIES = 6, TAGS = 5;
+
+	@Before
+	public void setUp() {
+		Log.disable();
+	}
+
+	@After
+	public void tearDown() {
+		Log.enable();
+	}
+
+	@Test
+	public void testSameTraceAsAllEntities() {
+		List<String> ready = simulate(false);
+		assertEquals(simulate(true), ready);
+
+		assertTrue(ready.size() > 2000);
+	}
+
+	/**
+	 * Runs entities that send each other events, pause, wait for events of a tag (so others are
+	 * deferred) and select deferred events, plus one entity that counts its ticks in its own run().
+	 * All decisions are drawn from one seeded generator, in the order the entities process events.
+	 *
+	 * @param allReady true to override run() in all entities
+	 * @return what the entities did, as "time entity what"
+	 */
+	private static List<String> simulate(boolean allReady) {
+		CloudSim.init(0, Calendar.getInstance(), false);
+		Scenario s = new Scenario();
+		for (int i = 0; i < ENTITIES; i++) {
+			s.entities[i] = allReady ? new AlwaysReady("E" + i, s) : new Node("E" + i, s);
+		}
+		new Node("Ticker", s) {
+
+			@Override
+			public void run() {
+				scenario.trace.add(CloudSim.clock() + " tick");
+				super.run();
+			}
+		};
+		CloudSim.startSimulation();
+		return s.trace;
+	}
+
+	/**
+	 * The state shared by the entities of a simulation.
+	 */
+	private static class Scenario {
+
+		final List<String> trace = new ArrayList<String>();
+
+		final Random random = new Random(17);
+
+		final SimEntity[] entities = new SimEntity[ENTITIES];
+
+		int budget = 3000;
+	}
+
+	/**
+	 * An entity that does what the generator of the scenario tells it for every event.
+	 */
+	private static class Node extends SimEntity {
+
+		final Scenario scenario;
+
+		Node(String name, Scenario scenario) {
+			super(name);
+			this.scenario = scenario;
+		}
+
+		@Override
+		public void startEntity() {
+			if (getName().startsWith("E")) {
+				schedule(getId(), getId() * 0.5, getId() % TAGS);
+			}
+		}
+
+		@Override
+		public void processEvent(SimEvent ev) {
+			List<String> trace = scenario.trace;
+			Random r = scenario.random;
+			String now = CloudSim.clock() + " " + getName();
+			trace.add(now + " got " + ev.getTag() + " from " + ev.getSource());
+			int what = r.nextInt(12);
+			if (what < 8) {
+				for (int k = 0; k < 2 && scenario.budget > 0; k++, scenario.budget--) {
+					schedule(scenario.entities[r.nextInt(ENTITIES)].getId(), r.nextInt(4) * 0.5, r.nextInt(TAGS));
+				}
+			} else if (what == 8) {
+				pause(r.nextInt(3));
+			} else if (what == 9) {
+				waitForEvent(new PredicateType(r.nextInt(TAGS)));
+			} else if (what == 10) {
+				SimEvent sel = selectEvent(new PredicateFrom(scenario.entities[r.nextInt(ENTITIES)].getId()));
+				trace.add(now + " selected " + (sel == null ? "-" : sel.getTag() + " " + sel.getDestination()));
+			} else {
+				trace.add(now + " waiting " + numEventsWaiting());
+			}
+		}
+
+		@Override
+		public void shutdownEntity() {
+		}
+	}
+
+	/**
+	 * A node that overrides run() (without changing it), so it runs in every clock tick.
+	 */
+	private static class AlwaysReady extends Node {
+
+		AlwaysReady(String name, Scenario scenario) {
+			super(name, scenario);
+		}
+
+		@Override
+		public void run() {
+			super.run();
+		}
+	}
+}
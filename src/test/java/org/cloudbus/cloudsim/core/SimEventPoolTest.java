@@ -0,0 +1,191 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+import org.cloudbus.cloudsim.Log;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link SimEventPool} and that a simulation processes the same events at the same times
+ * with event pooling as without.
+ */
+public class SimEventPoolTest {
+
+	@Before
+	public void setUp() {
+		Log.disable();
+	}
+
+	@After
+	public void tearDown() {
+		CloudSim.setEventPooling(false);
+		Log.enable();
+	}
+
+	@Test
+	public void testReleasedEventIsReused() {
+		SimEventPool pool = new SimEventPool(4);
+		SimEvent first = pool.obtain(SimEvent.SEND, 1, 2, 3, 4, "data");
+		pool.release(first);
+		assertEquals(1, pool.size());
+
+		SimEvent second = pool.obtain(SimEvent.HOLD_DONE, 5, 6, 7, 8, null);
+		assertSame(first, second);
+		assertEquals(SimEvent.HOLD_DONE, second.getType());
+		assertEquals(5, second.eventTime(), 0);
+		assertEquals(6, second.getSource());
+		assertEquals(7, second.getDestination());
+		assertEquals(8, second.getTag());
+		assertEquals(null, second.getData());
+		assertEquals(2, pool.getRequests());
+		assertEquals(1, pool.getHits());
+		assertEquals(1, pool.getRecycled());
+	}
+
+	@Test
+	public void testRetainedEventIsNotReused() {
+		SimEventPool pool = new SimEventPool(4);
+		SimEvent kept = pool.obtain(SimEvent.SEND, 1, 2, 3, 4, null).retain();
+		pool.release(kept);
+		assertEquals(0, pool.size());
+		assertNotSame(kept, pool.obtain(SimEvent.SEND, 1, 2, 3, 4, null));
+		assertEquals(1, kept.eventTime(), 0);
+	}
+
+	@Test
+	public void testReleaseTwice() {
+		SimEventPool pool = new SimEventPool(4);
+		SimEvent ev = pool.obtain(SimEvent.SEND, 1, 2, 3, 4, null);
+		pool.release(ev);
+		pool.release(ev);
+		assertEquals(1, pool.size());
+		assertEquals(1, pool.getRecycled());
+	}
+
+	/**
+	 * The first event of a clock tick wakes up a waiting entity, so it is recycled right away. The
+	 * other events at the same time must still be delivered in the same tick.
+	 */
+	@Test
+	public void testSameTickEventsWithPooling() {
+		assertEquals(1, eventsOfCWhenAWakesUp(true));
+	}
+
+	@Test
+	public void testSameTickEventsWithoutPooling() {
+		assertEquals(1, eventsOfCWhenAWakesUp(false));
+	}
+
+	@Test
+	public void testSameTraceWithAndWithoutPooling() {
+		List<String> pooled = pingPong(true);
+		assertEquals(pingPong(false), pooled);
+		assertEquals(2 * 20, pooled.size());
+	}
+
+	/**
+	 * Runs A (waiting), B and C; B schedules an event to A and one to C, both at time 5.
+	 *
+	 * @return the number of events waiting for C when A processes its event
+	 */
+	private static int eventsOfCWhenAWakesUp(boolean pooling) {
+		CloudSim.setEventPooling(pooling);
+		CloudSim.init(0, Calendar.getInstance(), false);
+		final int[] waiting = {-1};
+		final SimEntity[] c = new SimEntity[1];
+		final SimEntity a = new Entity("A") {
+
+			@Override
+			public void startEntity() {
+				waitForEvent(CloudSim.SIM_ANY);
+			}
+
+			@Override
+			public void processEvent(SimEvent ev) {
+				waiting[0] = c[0].numEventsWaiting();
+			}
+		};
+		new Entity("B") {
+
+			@Override
+			public void startEntity() {
+				schedule(a.getId(), 5, 100);
+				schedule(c[0].getId(), 5, 200);
+			}
+		};
+		c[0] = new Entity("C");
+		CloudSim.startSimulation();
+		return waiting[0];
+	}
+
+	/**
+	 * Runs two entities that send each other events with delays (some of them at the same time).
+	 *
+	 * @return the events processed, as "time entity tag"
+	 */
+	private static List<String> pingPong(boolean pooling) {
+		CloudSim.setEventPooling(pooling);
+		CloudSim.init(0, Calendar.getInstance(), false);
+		final List<String> trace = new ArrayList<String>();
+		final SimEntity[] other = new SimEntity[2];
+		for (int i = 0; i < 2; i++) {
+			final int me = i;
+			other[1 - i] = new Entity("Ping" + i) {
+
+				@Override
+				public void startEntity() {
+					schedule(getId(), me, 0);
+				}
+
+				@Override
+				public void processEvent(SimEvent ev) {
+					trace.add(CloudSim.clock() + " " + getName() + " " + ev.getTag());
+					if (ev.getTag() < 19) {
+						schedule(other[me].getId(), ev.getTag() % 3, ev.getTag() + 1);
+					}
+				}
+			};
+		}
+		CloudSim.startSimulation();
+		return trace;
+	}
+
+	/**
+	 * An entity that ignores its events.
+	 */
+	private static class Entity extends SimEntity {
+
+		Entity(String name) {
+			super(name);
+		}
+
+		@Override
+		public void startEntity() {
+		}
+
+		@Override
+		public void processEvent(SimEvent ev) {
+		}
+
+		@Override
+		public void shutdownEntity() {
+		}
+	}
+
+}
@@ -0,0 +1,157 @@
+/*
+ * Title:        CloudSim Toolkit
+ * Description:  CloudSim (Cloud Simulation) Toolkit for Modeling and Simulation of Clouds
+ * Licence:      GPL - http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2009-2012, The University of Melbourne, Australia
+ */
+
+package org.cloudbus.cloudsim.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.cloudbus.cloudsim.Log;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests that simulations run in different threads (see {@link SimulationContext}) don't see each
+ * other.
+ */
+public class SimulationContextTest {
+
+	@Before
+	public void setUp() {
+		Log.disable();
+	}
+
+	@After
+	public void tearDown() {
+		Log.enable();
+	}
+
+	@Test
+	public void testConcurrentSimulationsAreIsolated() throws Exception {
+		int n = 6;
+		List<List<String>> sequential = new ArrayList<List<String>>();
+		for (int i = 0; i < n; i++) {
+			sequential.add(countDown(i));
+		}
+
+		ExecutorService threads = Executors.newFixedThreadPool(3);
+		try {
+			List<Future<List<String>>> concurrent = new ArrayList<Future<List<String>>>();
+			for (int i = 0; i < n; i++) {
+				final int seed = i;
+				concurrent.add(threads.submit(new Callable<List<String>>() {
+
+					@Override
+					public List<String> call() {
+						return countDown(seed);
+					}
+				}));
+			}
+			for (int i = 0; i < n; i++) {
+				assertEquals(sequential.get(i), concurrent.get(i).get());
+			}
+		} finally {
+			threads.shutdown();
+		}
+	}
+
+	@Test
+	public void testEntitiesBelongToTheirSimulation() {
+		CloudSim.init(0, Calendar.getInstance(), false);
+		SimulationContext first = CloudSim.getContext();
+		SimEntity a = new Entity("A");
+
+		CloudSim.init(0, Calendar.getInstance(), false);
+		SimulationContext second = CloudSim.getContext();
+		SimEntity b = new Entity("B");
+
+		assertSame(first, a.getContext());
+		assertSame(second, b.getContext());
+		assertEquals(a.getId(), b.getId());
+		assertSame(a, first.getEntity("A"));
+		assertEquals(null, second.getEntity("A"));
+
+		CloudSim.setContext(first);
+		assertSame(first, CloudSim.getContext());
+		assertSame(a, CloudSim.getEntity("A"));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testUnboundThreadWithSeveralSimulations() throws Throwable {
+		CloudSim.init(0, Calendar.getInstance(), false);
+		CloudSim.init(0, Calendar.getInstance(), false);
+		CloudSim.setContext(null);
+		try {
+			CloudSim.getContext();
+		} finally {
+			CloudSim.init(0, Calendar.getInstance(), false);
+		}
+	}
+
+	/**
+	 * Runs an entity that sends itself events with delays that depend on the seed.
+	 *
+	 * @return the events processed, as "time entity tag"
+	 */
+	private static List<String> countDown(final int seed) {
+		CloudSim.init(0, Calendar.getInstance(), false);
+		final List<String> trace = new ArrayList<String>();
+		for (int i = 0; i < 3; i++) {
+			final int start = 10 + seed + i;
+			new Entity("Counter" + i) {
+
+				@Override
+				public void startEntity() {
+					schedule(getId(), 0, start);
+				}
+
+				@Override
+				public void processEvent(SimEvent ev) {
+					trace.add(CloudSim.clock() + " " + getName() + " " + ev.getTag());
+					if (ev.getTag() > 0) {
+						schedule(getId(), ev.getTag() % (seed + 2), ev.getTag() - 1);
+					}
+				}
+			};
+		}
+		CloudSim.startSimulation();
+		return trace;
+	}
+
+	/**
+	 * An entity that ignores its events.
+	 */
+	private static class Entity extends SimEntity {
+
+		Entity(String name) {
+			super(name);
+		}
+
+		@Override
+		public void startEntity() {
+		}
+
+		@Override
+		public void processEvent(SimEvent ev) {
+		}
+
+		@Override
+		public void shutdownEntity() {
+		}
+	}
+
+}